@@ -0,0 +1,178 @@
+package org.vgu.backend.config;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.vgu.backend.config.AsyncProperties.ExecutorMode;
+import org.vgu.backend.config.AsyncProperties.ExecutorSettings;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Async execution configuration
+ * Defines the named executors referenced by {@code @Async} across the
+ * application. Each one is either a bounded platform pool or a
+ * virtual-thread-per-task executor, depending on {@code app.async.*}.
+ * Tomcat request threads follow {@code spring.threads.virtual.enabled}.
+ */
+@Configuration
+@EnableAsync
+@EnableConfigurationProperties(AsyncProperties.class)
+public class AsyncConfig implements AsyncConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncConfig.class);
+
+    private final AsyncProperties asyncProperties;
+    private final MeterRegistry meterRegistry;
+
+    public AsyncConfig(AsyncProperties asyncProperties, MeterRegistry meterRegistry) {
+        this.asyncProperties = asyncProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Default executor for un-qualified {@code @Async} methods
+     */
+    @Bean(name = "taskExecutor")
+    public AsyncTaskExecutor taskExecutor() {
+        return createExecutor("taskExecutor", "async-", asyncProperties.getTask());
+    }
+
+    @Bean(name = "notificationExecutor")
+    public AsyncTaskExecutor notificationExecutor() {
+        return createExecutor("notificationExecutor", "notification-", asyncProperties.getNotification());
+    }
+
+    @Bean(name = "emailExecutor")
+    public AsyncTaskExecutor emailExecutor() {
+        return createExecutor("emailExecutor", "email-", asyncProperties.getEmail());
+    }
+
+    @Bean(name = "asyncBookingUpdateExecutor")
+    public AsyncTaskExecutor asyncBookingUpdateExecutor() {
+        return createExecutor("asyncBookingUpdateExecutor", "booking-update-", asyncProperties.getBookingUpdate());
+    }
+
+    @Bean(name = "streamingExecutor")
+    public AsyncTaskExecutor streamingExecutor() {
+        return createExecutor("streamingExecutor", "streaming-", asyncProperties.getStreaming());
+    }
+
+    /**
+     * Run MVC async work (StreamingResponseBody, Callable) on the streaming
+     * executor instead of an unbounded thread-per-request fallback
+     */
+    @Bean
+    public WebMvcConfigurer asyncWebMvcConfigurer() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(streamingExecutor());
+                configurer.setDefaultTimeout(asyncProperties.getMvcRequestTimeoutMs());
+            }
+        };
+    }
+
+    @Override
+    public Executor getAsyncExecutor() {
+        return taskExecutor();
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return (ex, method, params) -> logger.error("Uncaught exception in async method {}.{}: {}",
+                method.getDeclaringClass().getSimpleName(), method.getName(), ex.getMessage(), ex);
+    }
+
+    private AsyncTaskExecutor createExecutor(String name, String threadNamePrefix, ExecutorSettings settings) {
+        ExecutorMode mode = settings.getMode() != null ? settings.getMode() : asyncProperties.getDefaultMode();
+        ContextPropagatingTaskDecorator decorator = new ContextPropagatingTaskDecorator(name, meterRegistry);
+
+        if (mode == ExecutorMode.VIRTUAL) {
+            logger.info("Executor {} running on virtual threads (concurrency limit {})",
+                    name, settings.getVirtualConcurrencyLimit());
+            return createVirtualExecutor(threadNamePrefix, settings, decorator);
+        }
+
+        logger.info("Executor {} running on platform pool (core {}, max {}, queue {}, policy {})",
+                name, settings.getCorePoolSize(), settings.getMaxPoolSize(),
+                settings.getQueueCapacity(), settings.getRejectionPolicy());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(settings.getCorePoolSize());
+        executor.setMaxPoolSize(settings.getMaxPoolSize());
+        executor.setQueueCapacity(settings.getQueueCapacity());
+        executor.setKeepAliveSeconds(settings.getKeepAliveSeconds());
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setTaskDecorator(decorator);
+        executor.setRejectedExecutionHandler(rejectionHandler(name, settings));
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(settings.getAwaitTerminationSeconds());
+        registerPoolGauges(name, executor);
+        return executor;
+    }
+
+    private SimpleAsyncTaskExecutor createVirtualExecutor(String threadNamePrefix, ExecutorSettings settings,
+            ContextPropagatingTaskDecorator decorator) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        executor.setTaskDecorator(decorator);
+        executor.setConcurrencyLimit(settings.getVirtualConcurrencyLimit());
+        // ABORT fails fast at the limit; other policies block the submitter as
+        // backpressure
+        executor.setRejectTasksWhenLimitReached(
+                settings.getRejectionPolicy() == AsyncProperties.RejectionPolicy.ABORT);
+        executor.setTaskTerminationTimeout(settings.getAwaitTerminationSeconds() * 1000L);
+        return executor;
+    }
+
+    private RejectedExecutionHandler rejectionHandler(String name, ExecutorSettings settings) {
+        RejectedExecutionHandler delegate = switch (settings.getRejectionPolicy()) {
+            case ABORT -> new ThreadPoolExecutor.AbortPolicy();
+            case DISCARD_OLDEST -> new ThreadPoolExecutor.DiscardOldestPolicy();
+            case CALLER_RUNS -> new ThreadPoolExecutor.CallerRunsPolicy();
+        };
+        Counter rejected = Counter.builder("app.async.task.rejected")
+                .description("Tasks that hit the executor's saturation policy")
+                .tag("executor", name)
+                .tag("policy", settings.getRejectionPolicy().name())
+                .register(meterRegistry);
+
+        return (task, pool) -> {
+            rejected.increment();
+            logger.warn("Executor {} saturated (active {}, queued {}), applying {}",
+                    name, pool.getActiveCount(), pool.getQueue().size(), settings.getRejectionPolicy());
+            delegate.rejectedExecution(task, pool);
+        };
+    }
+
+    private void registerPoolGauges(String name, ThreadPoolTaskExecutor executor) {
+        Gauge.builder("app.async.pool.queued", executor, ThreadPoolTaskExecutor::getQueueSize)
+                .description("Tasks waiting in the executor queue")
+                .tag("executor", name)
+                .register(meterRegistry);
+        Gauge.builder("app.async.pool.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Threads actively running tasks")
+                .tag("executor", name)
+                .register(meterRegistry);
+        Gauge.builder("app.async.pool.size", executor, ThreadPoolTaskExecutor::getPoolSize)
+                .description("Current number of pool threads")
+                .tag("executor", name)
+                .register(meterRegistry);
+    }
+}
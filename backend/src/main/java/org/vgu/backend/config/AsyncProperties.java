@@ -0,0 +1,82 @@
+package org.vgu.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Settings for the named async executors, bound from {@code app.async.*}
+ * Every executor can run either as a bounded platform thread pool or as a
+ * virtual-thread-per-task executor with a concurrency limit
+ */
+@Data
+@ConfigurationProperties(prefix = "app.async")
+public class AsyncProperties {
+
+    /**
+     * Mode used by executors that do not set their own
+     */
+    private ExecutorMode defaultMode = ExecutorMode.PLATFORM;
+
+    private ExecutorSettings task = new ExecutorSettings(4, 8, 100, RejectionPolicy.CALLER_RUNS);
+
+    private ExecutorSettings notification = new ExecutorSettings(2, 4, 500, RejectionPolicy.CALLER_RUNS);
+
+    private ExecutorSettings email = new ExecutorSettings(2, 4, 500, RejectionPolicy.CALLER_RUNS);
+
+    private ExecutorSettings bookingUpdate = new ExecutorSettings(2, 4, 50, RejectionPolicy.ABORT);
+
+    /**
+     * Runs Spring MVC async handlers such as streaming downloads
+     */
+    private ExecutorSettings streaming = new ExecutorSettings(2, 8, 16, RejectionPolicy.ABORT);
+
+    /**
+     * Timeout for async MVC requests (streaming exports can run for a while)
+     */
+    private long mvcRequestTimeoutMs = 1_800_000;
+
+    public enum ExecutorMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    /**
+     * What happens when a platform pool and its queue are both full.
+     * In virtual mode the concurrency limit plays the same role: ABORT rejects,
+     * every other policy blocks the submitting thread until a slot frees up.
+     */
+    public enum RejectionPolicy {
+        /** Run the task on the submitting thread, slowing the producer down */
+        CALLER_RUNS,
+        /** Throw TaskRejectedException back to the caller */
+        ABORT,
+        /** Drop the oldest queued task to make room for the new one */
+        DISCARD_OLDEST
+    }
+
+    @Data
+    public static class ExecutorSettings {
+        private ExecutorMode mode;
+        private int corePoolSize;
+        private int maxPoolSize;
+        private int queueCapacity;
+        private int keepAliveSeconds = 60;
+        private RejectionPolicy rejectionPolicy;
+        /** Max tasks in flight when running on virtual threads */
+        private int virtualConcurrencyLimit = 256;
+        private int awaitTerminationSeconds = 30;
+
+        public ExecutorSettings() {
+            this(1, 1, 0, RejectionPolicy.CALLER_RUNS);
+        }
+
+        public ExecutorSettings(int corePoolSize, int maxPoolSize, int queueCapacity,
+                RejectionPolicy rejectionPolicy) {
+            this.corePoolSize = corePoolSize;
+            this.maxPoolSize = maxPoolSize;
+            this.queueCapacity = queueCapacity;
+            this.rejectionPolicy = rejectionPolicy;
+        }
+    }
+}
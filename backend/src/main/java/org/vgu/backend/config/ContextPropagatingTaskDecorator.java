@@ -0,0 +1,75 @@
+package org.vgu.backend.config;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Task decorator shared by all async executors.
+ * Carries the caller's SecurityContext and MDC over to the worker thread and
+ * records how long each task waited before starting and how long it ran.
+ */
+public class ContextPropagatingTaskDecorator implements TaskDecorator {
+
+    private final Timer waitTimer;
+    private final Timer executionTimer;
+    private final AtomicInteger running = new AtomicInteger();
+
+    public ContextPropagatingTaskDecorator(String executorName, MeterRegistry meterRegistry) {
+        this.waitTimer = Timer.builder("app.async.task.wait")
+                .description("Time between task submission and start")
+                .tag("executor", executorName)
+                .register(meterRegistry);
+        this.executionTimer = Timer.builder("app.async.task.duration")
+                .description("Task execution time")
+                .tag("executor", executorName)
+                .register(meterRegistry);
+        Gauge.builder("app.async.task.running", running, AtomicInteger::get)
+                .description("Tasks currently executing")
+                .tag("executor", executorName)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        Map<String, String> mdc = MDC.getCopyOfContextMap();
+        long submittedAt = System.nanoTime();
+
+        return () -> {
+            long startedAt = System.nanoTime();
+            waitTimer.record(startedAt - submittedAt, TimeUnit.NANOSECONDS);
+
+            SecurityContext previousSecurityContext = SecurityContextHolder.getContext();
+            Map<String, String> previousMdc = MDC.getCopyOfContextMap();
+            SecurityContextHolder.setContext(securityContext);
+            setMdc(mdc);
+            running.incrementAndGet();
+            try {
+                runnable.run();
+            } finally {
+                running.decrementAndGet();
+                executionTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
+                SecurityContextHolder.setContext(previousSecurityContext);
+                setMdc(previousMdc);
+            }
+        };
+    }
+
+    private static void setMdc(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.vgu.backend.controllers;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.vgu.backend.dto.request.CapacityAllotmentRequest;
+import org.vgu.backend.dto.response.CapacityAllotmentResponse;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.exception.DataNotFoundException;
+import org.vgu.backend.service.allotment.AllotmentService;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@RestController
+@RequestMapping("${api.prefix}/allotments")
+@RequiredArgsConstructor
+@Slf4j
+public class AllotmentController {
+
+    private final AllotmentService allotmentService;
+
+    /**
+     * Create a corporate allotment and reserve it on every future matching sailing
+     */
+    @PostMapping
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> createAllotment(@Valid @RequestBody CapacityAllotmentRequest request) {
+        try {
+            log.info("Creating allotment: {}", request);
+            AllotmentService.CarveResult result = allotmentService.createAllotment(request);
+            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
+                    "allotment", CapacityAllotmentResponse.fromEntity(result.getAllotment()),
+                    "sailings", result.getSailings(),
+                    "shortSailings", result.getShortSailings()));
+        } catch (DataNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (BusinessException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+        } catch (Exception e) {
+            log.error("Error creating allotment: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to create allotment"));
+        }
+    }
+
+    @GetMapping("/customer/{customerId}")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER', 'ROLE_OPERATOR')")
+    public ResponseEntity<List<CapacityAllotmentResponse>> getCustomerAllotments(@PathVariable Long customerId) {
+        return ResponseEntity.ok(allotmentService.getCustomerAllotments(customerId).stream()
+                .map(CapacityAllotmentResponse::fromEntity)
+                .toList());
+    }
+
+    /**
+     * Unused allotment space a customer holds on a sailing
+     */
+    @GetMapping("/schedules/{scheduleId}/customers/{customerId}")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER', 'ROLE_OPERATOR', 'ROLE_CUSTOMER')")
+    public ResponseEntity<AllotmentService.Remaining> getRemaining(@PathVariable Long scheduleId,
+            @PathVariable Long customerId) {
+        return ResponseEntity.ok(allotmentService.remaining(scheduleId, customerId));
+    }
+
+    /**
+     * Stop an allotment; its unused space on future sailings returns to the public pool
+     */
+    @DeleteMapping("/{id}")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> deactivateAllotment(@PathVariable Long id) {
+        try {
+            int released = allotmentService.deactivate(id);
+            return ResponseEntity.ok(Map.of("message", "Allotment deactivated", "releasedSailings", released));
+        } catch (DataNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error deactivating allotment {}: {}", id, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to deactivate allotment"));
+        }
+    }
+}
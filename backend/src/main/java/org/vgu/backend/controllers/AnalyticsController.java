@@ -0,0 +1,82 @@
+package org.vgu.backend.controllers;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.vgu.backend.service.analytics.UtilizationAnalyticsService;
+import org.vgu.backend.service.analytics.UtilizationAnalyticsService.Dimension;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Fleet utilization, served from the in-memory snapshot in
+ * UtilizationAnalyticsService
+ */
+@RestController
+@RequestMapping("${api.prefix}/analytics")
+@RequiredArgsConstructor
+public class AnalyticsController {
+
+    private final UtilizationAnalyticsService utilizationService;
+    private final Logger logger = LoggerFactory.getLogger(AnalyticsController.class);
+
+    /**
+     * Load factors grouped by any of ferry, route, weekday and hour
+     *
+     * @param groupBy comma-separated dimensions; empty for one fleet-wide cell
+     */
+    @GetMapping("/utilization")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> getUtilization(
+            @RequestParam(required = false) Long ferryId,
+            @RequestParam(required = false) Long routeId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "ferry,route") String groupBy) {
+        if (!utilizationService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Utilization analytics are still loading"));
+        }
+        Set<Dimension> dimensions = EnumSet.noneOf(Dimension.class);
+        for (String name : groupBy.split(",")) {
+            if (name.isBlank()) {
+                continue;
+            }
+            try {
+                dimensions.add(Dimension.valueOf(name.trim().toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "Unknown dimension: " + name.trim()
+                                + ". Use ferry, route, weekday or hour"));
+            }
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'to' is before 'from'"));
+        }
+        try {
+            return ResponseEntity.ok(utilizationService.utilization(ferryId, routeId, from, to, dimensions));
+        } catch (Exception e) {
+            logger.error("Error computing utilization: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to compute utilization"));
+        }
+    }
+
+    @GetMapping("/utilization/status")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<Map<String, Object>> getUtilizationStatus() {
+        return ResponseEntity.ok(utilizationService.getStatus());
+    }
+}
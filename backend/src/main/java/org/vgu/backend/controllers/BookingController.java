@@ -1,17 +1,25 @@
 package org.vgu.backend.controllers;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -27,12 +35,15 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.vgu.backend.dto.request.BookingCreateRequest;
 import org.vgu.backend.dto.request.BookingUpdateRequest;
+import org.vgu.backend.dto.request.ChangeSailingRequest;
 import org.vgu.backend.dto.response.ApprovalResponse;
 import org.vgu.backend.dto.response.BookingResponse;
 import org.vgu.backend.dto.response.VehicleResponse;
 import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.TypeAction;
 import org.vgu.backend.exception.BusinessException;
 import org.vgu.backend.exception.DataNotFoundException;
 import org.vgu.backend.model.Account;
@@ -44,7 +55,14 @@ import org.vgu.backend.repository.BookingRepository;
 import org.vgu.backend.repository.ScheduleRepository;
 import org.vgu.backend.repository.VehicleRepository;
 import org.vgu.backend.service.account.IAccountService;
+import org.vgu.backend.service.booking.AsyncBookingUpdateService;
+import org.vgu.backend.service.booking.BookingSailingChangeService;
+import org.vgu.backend.service.booking.BookingStateMachine;
+import org.vgu.backend.service.booking.BookingStatsService;
+import org.vgu.backend.service.booking.BookingStatsService.Metric;
+import org.vgu.backend.service.booking.BookingUpdateJob;
 import org.vgu.backend.service.booking.IBookingService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCapture;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -59,8 +77,15 @@ public class BookingController {
         private final IAccountService accountService;
         private final VehicleRepository vehicleRepository;
         private final ScheduleRepository scheduleRepository;
+        private final BookingStatsService bookingStatsService;
+        private final BookingStateMachine stateMachine;
+        private final BookingSailingChangeService sailingChangeService;
+        private final AuditChangeCapture changeCapture;
+        private final AsyncBookingUpdateService asyncBookingUpdateService;
         private final Logger logger = LoggerFactory.getLogger(BookingController.class);
 
+        private static final int MAX_SERIES_BUCKETS = 2000;
+
         /**
          * Get all bookings with pagination
          */
@@ -229,14 +254,29 @@ public class BookingController {
          */
         @PatchMapping("/{id}/cancel")
         @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR', 'ROLE_CUSTOMER')")
-        public ResponseEntity<?> cancelBooking(@PathVariable Long id) {
+        @Transactional
+        public ResponseEntity<?> cancelBooking(@PathVariable Long id, Authentication authentication) {
                 try {
                         logger.info("Cancelling booking with id: {}", id);
                         Booking booking = bookingRepository.findById(id)
                                         .orElseThrow(() -> new DataNotFoundException(
                                                         "Booking not found with id: " + id));
+                        AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
-                        booking.setStatus(BookingStatus.CANCELLED);
+                        String refusal = stateMachine.check(booking, BookingStatus.CANCELLED);
+                        if (refusal != null) {
+                                return ResponseEntity.badRequest().body(Map.of("error", refusal));
+                        }
+
+                        Account actor = null;
+                        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+                                actor = accountService.getAccountByKeycloakId(jwt.getClaimAsString("sub"))
+                                                .orElse(null);
+                        }
+                        booking.setCancelledAt(LocalDateTime.now());
+                        booking.setCancelledBy(actor);
+                        stateMachine.transition(booking, BookingStatus.CANCELLED, actor, TypeAction.BOOKING_CANCELLED,
+                                        "Booking cancelled", before);
 
                         Booking updatedBooking = bookingRepository.save(booking);
 
@@ -259,13 +299,18 @@ public class BookingController {
         public ResponseEntity<?> updateBooking(@PathVariable Long id, @RequestBody BookingUpdateRequest updateRequest) {
                 try {
                         logger.info("Editing booking with id: {}", id);
+                        // A new schedule goes through the sailing change so capacity and price follow;
+                        // done before loading the booking so the entity reflects it
+                        if (updateRequest.getScheduleId() != null
+                                        && !bookingRepository.existsByIdAndScheduleId(id, updateRequest.getScheduleId())
+                                        && scheduleRepository.existsById(updateRequest.getScheduleId())) {
+                                sailingChangeService.changeSailing(id, updateRequest.getScheduleId(), null, null);
+                        }
                         Booking booking = bookingRepository.findById(id)
                                         .orElseThrow(() -> new DataNotFoundException(
                                                         "Booking not found with id: " + id));
 
                         // Update booking details
-                        booking.setSchedule(scheduleRepository.findById(updateRequest.getScheduleId())
-                                        .orElse(booking.getSchedule()));
                         booking.setTotalAmount(updateRequest.getTotalAmount() != null ? updateRequest.getTotalAmount()
                                         : booking.getTotalAmount());
                         booking.setNote(updateRequest.getNotes() != null ? updateRequest.getNotes()
@@ -279,6 +324,9 @@ public class BookingController {
                         logger.error("Booking not found with id: {}", id);
                         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                                         .body(Map.of("error", e.getMessage()));
+                } catch (BusinessException e) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
                 } catch (Exception e) {
                         logger.error("Error editing booking with id {}: {}", id, e.getMessage(), e);
                         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -286,6 +334,81 @@ public class BookingController {
                 }
         }
 
+        /**
+         * Apply many booking updates in the background. Answers 202 with the
+         * job's status URL; poll it until the job is finished.
+         */
+        @PostMapping("/batch-update")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATION_MANAGER')")
+        public ResponseEntity<?> batchUpdateBookings(@RequestBody List<BookingUpdateRequest> requests) {
+                if (requests == null || requests.isEmpty()) {
+                        return ResponseEntity.badRequest().body(Map.of("error", "No booking updates given"));
+                }
+                try {
+                        BookingUpdateJob job = asyncBookingUpdateService.submitBatchUpdate(requests);
+                        logger.info("Batch booking update job {} submitted for {} bookings", job.getJobId(),
+                                        requests.size());
+                        URI status = ServletUriComponentsBuilder.fromCurrentRequest().path("/{jobId}")
+                                        .buildAndExpand(job.getJobId()).toUri();
+                        return ResponseEntity.accepted().location(status).body(job.toStatusMap());
+                } catch (TaskRejectedException e) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .body(Map.of("error", "Too many batch updates running, try again later",
+                                                        "errorCode", "UPDATE_QUEUE_FULL"));
+                }
+        }
+
+        @GetMapping("/batch-update/{jobId}")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATION_MANAGER')")
+        public ResponseEntity<?> getBatchUpdateJob(@PathVariable String jobId) {
+                return asyncBookingUpdateService.getJobStatus(jobId)
+                                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                                .body(Map.of("error", "Batch update job not found: " + jobId)));
+        }
+
+        /**
+         * Current status of a booking and of the last batch update that touched it
+         */
+        @GetMapping("/{id}/update-status")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATION_MANAGER')")
+        public CompletableFuture<ResponseEntity<?>> getBookingUpdateStatus(@PathVariable Long id) {
+                return asyncBookingUpdateService.getUpdateStatusAsync(id)
+                                .<ResponseEntity<?>>thenApply(ResponseEntity::ok)
+                                .exceptionally(e -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                                                .body(Map.of("error", "Booking not found with id: " + id)));
+        }
+
+        /**
+         * Move a booking to another sailing, keeping its code and history.
+         * The price difference between the two routes is applied to the total.
+         */
+        @PatchMapping("/{id}/sailing")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR', 'ROLE_CUSTOMER')")
+        public ResponseEntity<?> changeSailing(@PathVariable Long id, @Valid @RequestBody ChangeSailingRequest request,
+                        Authentication authentication) {
+                try {
+                        logger.info("Changing booking {} to sailing {}", id, request.getScheduleId());
+                        Account actor = null;
+                        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+                                actor = accountService.getAccountByKeycloakId(jwt.getClaimAsString("sub"))
+                                                .orElse(null);
+                        }
+                        BookingSailingChangeService.SailingChangeResult result = sailingChangeService
+                                        .changeSailing(id, request.getScheduleId(), request.getReason(), actor);
+                        return ResponseEntity.ok(result);
+                } catch (DataNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+                } catch (BusinessException e) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+                } catch (Exception e) {
+                        logger.error("Error changing sailing for booking {}: {}", id, e.getMessage(), e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(Map.of("error", "Failed to change sailing"));
+                }
+        }
+
         /**
          * Check ferry capacity availability for a specific date
          */
@@ -314,22 +437,72 @@ public class BookingController {
 
         /**
          * Get booking statistics (for dashboard)
+         * Served from the pre-aggregated counters in BookingStatsService
          */
         @GetMapping("/stats")
         @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
         public ResponseEntity<Map<String, Object>> getBookingStats() {
-                logger.info("Getting booking statistics");
-                long totalBookings = bookingRepository.count();
-                Map<String, Object> stats = Map.of(
-                                "totalBookings", totalBookings,
-                                "todayBookings", Math.min(totalBookings, 25), // Mock data
-                                "thisWeekBookings", Math.min(totalBookings, 150), // Mock data
-                                "thisMonthBookings", Math.min(totalBookings, 500) // Mock data
-                );
-                logger.info("Booking statistics retrieved successfully");
+                if (!bookingStatsService.isReady()) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .body(Map.of("error", "Booking statistics are still loading"));
+                }
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("totalBookings", bookingStatsService.getTotalBookings());
+                stats.put("todayBookings", bookingStatsService.getToday(Metric.BOOKINGS_CREATED));
+                stats.put("thisWeekBookings", bookingStatsService.getThisWeek(Metric.BOOKINGS_CREATED));
+                stats.put("thisMonthBookings", bookingStatsService.getThisMonth(Metric.BOOKINGS_CREATED));
+                stats.put("todayRevenue",
+                                BookingStatsService.toAmount(bookingStatsService.getToday(Metric.REVENUE_CREATED)));
+                stats.put("thisMonthRevenue",
+                                BookingStatsService.toAmount(bookingStatsService.getThisMonth(Metric.REVENUE_CREATED)));
+                stats.put("statusCounts", bookingStatsService.getStatusCounts());
                 return ResponseEntity.ok(stats);
         }
 
+        /**
+         * Get booking and revenue buckets for charts
+         */
+        @GetMapping("/stats/series")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
+        public ResponseEntity<?> getBookingStatsSeries(
+                        @RequestParam(defaultValue = "DAY") BookingStatsService.Granularity granularity,
+                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+                        @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+                if (!startDate.isBefore(endDate)) {
+                        return ResponseEntity.badRequest().body(Map.of("error", "Start date must be before end date"));
+                }
+                long buckets = switch (granularity) {
+                        case HOUR -> Duration.between(startDate, endDate).toHours();
+                        case DAY -> Duration.between(startDate, endDate).toDays();
+                        case MONTH -> ChronoUnit.MONTHS.between(startDate, endDate);
+                };
+                if (buckets > MAX_SERIES_BUCKETS) {
+                        return ResponseEntity.badRequest()
+                                        .body(Map.of("error", "Range too large, at most " + MAX_SERIES_BUCKETS + " buckets"));
+                }
+                if (!bookingStatsService.isReady()) {
+                        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                        .body(Map.of("error", "Booking statistics are still loading"));
+                }
+                return ResponseEntity.ok(Map.of(
+                                "granularity", granularity,
+                                "series", bookingStatsService.getSeries(granularity, startDate, endDate)));
+        }
+
+        /**
+         * Recompute booking statistics from the bookings table (Admin only)
+         */
+        @PostMapping("/stats/rebuild")
+        @PreAuthorize("hasRole('ROLE_ADMIN')")
+        public ResponseEntity<?> rebuildBookingStats() {
+                logger.info("Rebuilding booking statistics");
+                if (!bookingStatsService.rebuildAsync()) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", "Booking statistics rebuild already running"));
+                }
+                return ResponseEntity.accepted().body(bookingStatsService.getStatus());
+        }
+
         /**
          * Add vehicle to booking
          */
@@ -347,8 +520,7 @@ public class BookingController {
                                         .orElseThrow(() -> new DataNotFoundException(
                                                         "Booking not found with id: " + bookingId));
 
-                        if (booking.getStatus() != BookingStatus.PENDING &&
-                                        booking.getStatus() != BookingStatus.CONFIRMED) {
+                        if (!booking.getStatus().allowsVehicleChanges()) {
                                 return ResponseEntity.badRequest()
                                                 .body(Map.of("error",
                                                                 "Can only add vehicles to pending or confirmed bookings"));
@@ -448,8 +620,7 @@ public class BookingController {
                         }
 
                         // Check if booking can be modified
-                        if (booking.getStatus() != BookingStatus.PENDING &&
-                                        booking.getStatus() != BookingStatus.CONFIRMED) {
+                        if (!booking.getStatus().allowsVehicleChanges()) {
                                 return ResponseEntity.badRequest()
                                                 .body(Map.of("error",
                                                                 "Cannot modify vehicles for bookings in current status"));
@@ -1,5 +1,8 @@
 package org.vgu.backend.controllers;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -21,14 +24,22 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.vgu.backend.dto.response.BookingRecordResponse;
 import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.exception.BusinessException;
 import org.vgu.backend.model.Account;
 import org.vgu.backend.model.BookingRecord;
 import org.vgu.backend.service.account.IAccountService;
+import org.vgu.backend.service.bookingrecord.AuditArchiveService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCapture;
+import org.vgu.backend.service.bookingrecord.AuditSearchService;
+import org.vgu.backend.service.bookingrecord.AuditStatisticsService;
 import org.vgu.backend.service.bookingrecord.IBookingRecordService;
 
 import lombok.RequiredArgsConstructor;
@@ -44,8 +55,14 @@ public class BookingRecordController {
 
     private final IBookingRecordService bookingRecordService;
     private final IAccountService accountService;
+    private final AuditSearchService auditSearchService;
+    private final AuditArchiveService auditArchiveService;
+    private final AuditStatisticsService auditStatisticsService;
+    private final AuditChangeCapture changeCapture;
     private final Logger logger = LoggerFactory.getLogger(BookingRecordController.class);
 
+    private static final int MAX_SERIES_BUCKETS = 2000;
+
     /**
      * Get all booking records with pagination (Admin/Operator only)
      */
@@ -103,7 +120,7 @@ public class BookingRecordController {
 
             Pageable pageable = PageRequest.of(page, limit, Sort.by("createdAt").descending());
             Page<BookingRecord> records = bookingRecordService.getRecordsForBooking(bookingId, pageable);
-            Page<BookingRecordResponse> responses = records.map(this::convertToResponse);
+            Page<BookingRecordResponse> responses = records.map(this::convertToDetailedResponse);
 
             logger.info("Retrieved {} records for booking {}", records.getTotalElements(), bookingId);
             return ResponseEntity.ok(responses);
@@ -262,6 +279,7 @@ public class BookingRecordController {
                         .body(Map.of("error", "Search keyword cannot be empty"));
             }
 
+            // Ranked by relevance when the search index is ready, newest first otherwise
             Pageable pageable = PageRequest.of(page, limit, Sort.by("createdAt").descending());
             Page<BookingRecord> records = bookingRecordService.searchRecordsByDescription(keyword, pageable);
             Page<BookingRecordResponse> responses = records.map(this::convertToResponse);
@@ -276,6 +294,71 @@ public class BookingRecordController {
         }
     }
 
+    /**
+     * Rebuild the full-text search index from the audit table (Admin only)
+     */
+    @PostMapping("/search/rebuild")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<?> rebuildSearchIndex() {
+        logger.info("Rebuilding booking record search index");
+        if (!auditSearchService.rebuildAsync()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Search index rebuild already running or search disabled"));
+        }
+        return ResponseEntity.accepted().body(auditSearchService.getStatus());
+    }
+
+    /**
+     * Get full-text search index status
+     */
+    @GetMapping("/search/status")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
+    public ResponseEntity<?> getSearchIndexStatus() {
+        return ResponseEntity.ok(auditSearchService.getStatus());
+    }
+
+    /**
+     * Get audit archive status
+     */
+    @GetMapping("/archive/status")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
+    public ResponseEntity<?> getArchiveStatus() {
+        return ResponseEntity.ok(auditArchiveService.getStatus());
+    }
+
+    /**
+     * Archive records created before the given time in the background (Admin
+     * only); poll the returned status URL
+     */
+    @PostMapping("/archive/jobs")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    public ResponseEntity<?> submitArchiveJob(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime before) {
+        try {
+            AuditArchiveService.ArchiveJob job = auditArchiveService.submit(before);
+            logger.info("Audit archive job {} submitted for records before {}", job.getId(), before);
+            URI status = ServletUriComponentsBuilder.fromCurrentRequest().replaceQuery(null).path("/{id}")
+                    .buildAndExpand(job.getId()).toUri();
+            return ResponseEntity.accepted().location(status).body(job);
+        } catch (BusinessException e) {
+            HttpStatus status = "ARCHIVE_RUNNING".equals(e.getErrorCode()) ? HttpStatus.CONFLICT
+                    : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status)
+                    .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+        }
+    }
+
+    @GetMapping("/archive/jobs/{jobId}")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
+    public ResponseEntity<?> getArchiveJob(@PathVariable String jobId) {
+        AuditArchiveService.ArchiveJob job = auditArchiveService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Archive job not found: " + jobId));
+        }
+        return ResponseEntity.ok(job);
+    }
+
     /**
      * Get audit summary for a booking
      */
@@ -325,41 +408,64 @@ public class BookingRecordController {
     }
 
     /**
-     * Export booking records to CSV
+     * Get record counts bucketed by hour or day, optionally for one action
+     */
+    @GetMapping("/statistics/series")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
+    public ResponseEntity<?> getStatisticsSeries(
+            @RequestParam(defaultValue = "HOUR") AuditStatisticsService.Granularity granularity,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) TypeAction action) {
+        if (!startDate.isBefore(endDate)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Start date must be before end date"));
+        }
+        long buckets = granularity == AuditStatisticsService.Granularity.DAY
+                ? Duration.between(startDate, endDate).toDays()
+                : Duration.between(startDate, endDate).toHours();
+        if (buckets > MAX_SERIES_BUCKETS) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Range too large, at most " + MAX_SERIES_BUCKETS + " buckets"));
+        }
+        if (!auditStatisticsService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Audit statistics are still loading"));
+        }
+        return ResponseEntity.ok(Map.of(
+                "granularity", granularity,
+                "series", auditStatisticsService.getSeries(granularity, startDate, endDate, action)));
+    }
+
+    /**
+     * Export booking records to CSV (Admin/Operator only)
+     * Rows are streamed from the database straight to the response, optionally
+     * gzip-compressed, so memory use does not grow with the date range
      */
     @GetMapping("/export")
     @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATOR')")
     public ResponseEntity<?> exportRecords(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
-        try {
-            logger.info("Exporting booking records for date range: {} to {}", startDate, endDate);
-
-            if (startDate.isAfter(endDate)) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("error", "Start date must be before end date"));
-            }
-
-            String csvContent = bookingRecordService.exportRecordsToCsv(startDate, endDate);
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(defaultValue = "false") boolean gzip) {
+        logger.info("Exporting booking records for date range: {} to {} (gzip: {})", startDate, endDate, gzip);
 
-            String filename = String.format("booking_records_%s_to_%s.csv",
-                    startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
-                    endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+        if (startDate.isAfter(endDate)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Start date must be before end date"));
+        }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
-            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_PLAIN_VALUE);
+        String filename = String.format("booking_records_%s_to_%s.csv%s",
+                startDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+                endDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd")),
+                gzip ? ".gz" : "");
 
-            logger.info("Exported booking records to CSV: {}", filename);
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .body(csvContent);
+        StreamingResponseBody body = out -> bookingRecordService.exportRecordsToCsv(startDate, endDate, out, gzip);
 
-        } catch (Exception e) {
-            logger.error("Error exporting booking records: {}", e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to export booking records"));
-        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename)
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip")
+                        : new MediaType("text", "csv", StandardCharsets.UTF_8))
+                .body(body);
     }
 
     /**
@@ -379,6 +485,17 @@ public class BookingRecordController {
                 .build();
     }
 
+    /**
+     * Response including the changed fields, decoded to JSON
+     */
+    private BookingRecordResponse convertToDetailedResponse(BookingRecord record) {
+        BookingRecordResponse response = convertToResponse(record);
+        response.setPreviousValues(changeCapture.renderPrevious(record.getPreviousValues(), record.getCurrentValues()));
+        response.setCurrentValues(changeCapture.renderCurrent(record.getCurrentValues()));
+        response.setAdditionalData(record.getAdditionalData());
+        return response;
+    }
+
     /**
      * Check if current user has customer role
      */
@@ -2,6 +2,7 @@ package org.vgu.backend.controllers;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -29,6 +30,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.vgu.backend.dto.request.ApprovalRequest;
+import org.vgu.backend.dto.request.BulkWorkflowRequest;
 import org.vgu.backend.dto.request.RejectionRequest;
 import org.vgu.backend.dto.request.ReviewApprovalRequest;
 import org.vgu.backend.dto.response.ApprovalResponse;
@@ -42,6 +44,11 @@ import org.vgu.backend.model.Booking;
 import org.vgu.backend.repository.ApprovalRepository;
 import org.vgu.backend.repository.BookingRepository;
 import org.vgu.backend.service.account.IAccountService;
+import org.vgu.backend.service.booking.ApprovalQueueService;
+import org.vgu.backend.service.booking.BookingStateMachine;
+import org.vgu.backend.service.booking.BookingStatsService;
+import org.vgu.backend.service.booking.BookingWorkflowBulkService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCapture;
 import org.vgu.backend.service.bookingrecord.IBookingRecordService;
 
 import jakarta.validation.Valid;
@@ -60,6 +67,11 @@ public class BookingWorkflowController {
     private final ApprovalRepository approvalRepository;
     private final IAccountService accountService;
     private final IBookingRecordService bookingRecordService;
+    private final AuditChangeCapture changeCapture;
+    private final BookingStatsService bookingStatsService;
+    private final ApprovalQueueService approvalQueueService;
+    private final BookingWorkflowBulkService bulkService;
+    private final BookingStateMachine stateMachine;
     private final Logger logger = LoggerFactory.getLogger(BookingWorkflowController.class);
 
     // ==================== ACCOUNTANT OPERATIONS ====================
@@ -91,6 +103,104 @@ public class BookingWorkflowController {
         }
     }
 
+    /**
+     * Claim up to {@code count} pending bookings for the current accountant.
+     * Returns every claim they hold, so a retry is harmless.
+     */
+    @PostMapping("/queue/claim")
+    @PreAuthorize("hasRole('ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> claimPendingBookings(
+            @RequestParam(defaultValue = "5") int count,
+            Authentication authentication) {
+        try {
+            Account currentUser = getCurrentUser(authentication);
+            if (currentUser == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid authentication"));
+            }
+            if (count < 1) {
+                return ResponseEntity.badRequest().body(Map.of("error", "count must be at least 1"));
+            }
+
+            List<ApprovalQueueService.Claim> claims = approvalQueueService.claim(currentUser, count);
+            Map<Long, Booking> bookings = bookingRepository.findAllById(
+                    claims.stream().map(ApprovalQueueService.Claim::getBookingId).toList())
+                    .stream().collect(Collectors.toMap(Booking::getId, b -> b));
+
+            List<Map<String, Object>> items = claims.stream()
+                    .filter(claim -> bookings.containsKey(claim.getBookingId()))
+                    .map(claim -> toClaimItem(claim, bookings.get(claim.getBookingId())))
+                    .toList();
+            return ResponseEntity.ok(Map.of("claims", items));
+
+        } catch (Exception e) {
+            logger.error("Error claiming pending bookings: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to claim pending bookings"));
+        }
+    }
+
+    /**
+     * Next booking for the current accountant to decide: their oldest open
+     * claim, or a newly claimed one. 204 when the queue is empty.
+     */
+    @PostMapping("/queue/next")
+    @PreAuthorize("hasRole('ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> nextPendingBooking(Authentication authentication) {
+        try {
+            Account currentUser = getCurrentUser(authentication);
+            if (currentUser == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid authentication"));
+            }
+
+            Optional<ApprovalQueueService.Claim> claim = approvalQueueService.next(currentUser);
+            if (claim.isEmpty()) {
+                return ResponseEntity.noContent().build();
+            }
+            Booking booking = bookingRepository.findByIdWithDetails(claim.get().getBookingId())
+                    .orElseThrow(() -> new DataNotFoundException("Booking not found: " + claim.get().getBookingId()));
+            return ResponseEntity.ok(toClaimItem(claim.get(), booking));
+
+        } catch (Exception e) {
+            logger.error("Error getting next pending booking: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to get next pending booking"));
+        }
+    }
+
+    /**
+     * Return a claimed booking to the queue
+     */
+    @PostMapping("/queue/{bookingId}/release")
+    @PreAuthorize("hasRole('ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> releaseClaim(
+            @PathVariable Long bookingId,
+            Authentication authentication) {
+        Account currentUser = getCurrentUser(authentication);
+        if (currentUser == null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid authentication"));
+        }
+        if (!approvalQueueService.release(bookingId, currentUser.getId())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "No claim held on booking " + bookingId));
+        }
+        return ResponseEntity.ok(Map.of("message", "Booking returned to the queue"));
+    }
+
+    /**
+     * Backlog and open claims per reviewer
+     */
+    @GetMapping("/queue/status")
+    @PreAuthorize("hasAnyRole('ROLE_ACCOUNTANT', 'ROLE_ADMIN')")
+    public ResponseEntity<?> getQueueStatus() {
+        try {
+            return ResponseEntity.ok(approvalQueueService.getQueueStatus());
+        } catch (Exception e) {
+            logger.error("Error getting approval queue status: {}", e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to get approval queue status"));
+        }
+    }
+
     /**
      * Approve a booking (ACCOUNTANT only)
      */
@@ -101,6 +211,7 @@ public class BookingWorkflowController {
             @PathVariable Long bookingId,
             @RequestBody @Valid ApprovalRequest request,
             Authentication authentication) {
+        long started = System.nanoTime();
         try {
             Account currentUser = getCurrentUser(authentication);
             if (currentUser == null) {
@@ -111,15 +222,18 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findByIdWithDetails(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             if (!BookingStatus.PENDING.equals(booking.getStatus())) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Booking cannot be approved in current status: " + booking.getStatus()));
             }
 
-            // Move to confirmed status
-            booking.setStatus(BookingStatus.CONFIRMED);
-            booking.setUpdatedAt(LocalDateTime.now());
+            Optional<String> claimant = approvalQueueService.findOtherClaimant(bookingId, currentUser.getId());
+            if (claimant.isPresent()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Booking is claimed by " + claimant.get()));
+            }
 
             // Create or update approval
             Approval approval = booking.getApproval();
@@ -136,17 +250,17 @@ public class BookingWorkflowController {
             approval.setReviewDeadline(LocalDateTime.now().plusMinutes(30));
             approval.setStatus(org.vgu.backend.enums.ApprovalStatus.IN_REVIEW);
 
-            // Move booking to review status
-            booking.setStatus(BookingStatus.IN_REVIEW);
+            // Confirm the booking, then move it to review; one audit record covers both
+            String notes = request.getReviewNotes() != null ? request.getReviewNotes() : "No notes provided";
+            stateMachine.transition(booking, BookingStatus.CONFIRMED, currentUser, null, null, null);
+            stateMachine.transition(booking, BookingStatus.IN_REVIEW, currentUser, TypeAction.BOOKING_CONFIRMED,
+                    String.format("Booking approved by accountant %s. Notes: %s",
+                            currentUser.getUsername(), notes),
+                    before);
 
             Booking savedBooking = bookingRepository.save(booking);
             approvalRepository.save(approval);
-
-            // Record the approval activity
-            String notes = request.getReviewNotes() != null ? request.getReviewNotes() : "No notes provided";
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_CONFIRMED, currentUser,
-                    String.format("Booking approved by accountant %s. Notes: %s",
-                            currentUser.getUsername(), notes));
+            approvalQueueService.completed(bookingId, currentUser, "approved");
 
             logger.info("Booking {} approved and moved to review with 30-minute window", bookingId);
             return ResponseEntity.ok(Map.of(
@@ -157,6 +271,8 @@ public class BookingWorkflowController {
             logger.error("Error approving booking {}: {}", bookingId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to approve booking"));
+        } finally {
+            bulkService.recordThroughput(BookingWorkflowBulkService.Action.APPROVE, "single", started, 1);
         }
     }
 
@@ -170,6 +286,7 @@ public class BookingWorkflowController {
             @PathVariable Long bookingId,
             @RequestBody @Valid RejectionRequest request,
             Authentication authentication) {
+        long started = System.nanoTime();
         try {
             Account currentUser = getCurrentUser(authentication);
             if (currentUser == null) {
@@ -180,25 +297,30 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             if (!BookingStatus.PENDING.equals(booking.getStatus())) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Booking cannot be rejected in current status: " + booking.getStatus()));
             }
 
+            Optional<String> claimant = approvalQueueService.findOtherClaimant(bookingId, currentUser.getId());
+            if (claimant.isPresent()) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Booking is claimed by " + claimant.get()));
+            }
+
             // Reject booking by cancelling it
-            booking.setStatus(BookingStatus.CANCELLED);
             booking.setCancelledAt(LocalDateTime.now());
             booking.setCancelledBy(currentUser);
             booking.setCancellationReason(request.getRejectionReason());
-            booking.setUpdatedAt(LocalDateTime.now());
+            stateMachine.transition(booking, BookingStatus.CANCELLED, currentUser, TypeAction.BOOKING_CANCELLED,
+                    String.format("Booking rejected by accountant %s. Reason: %s",
+                            currentUser.getUsername(), request.getRejectionReason()),
+                    before);
 
             Booking savedBooking = bookingRepository.save(booking);
-
-            // Record the rejection activity
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_CANCELLED, currentUser,
-                    String.format("Booking rejected by accountant %s. Reason: %s",
-                            currentUser.getUsername(), request.getRejectionReason()));
+            approvalQueueService.completed(bookingId, currentUser, "rejected");
 
             logger.info("Booking {} rejected successfully", bookingId);
             return ResponseEntity.ok(Map.of(
@@ -209,6 +331,8 @@ public class BookingWorkflowController {
             logger.error("Error rejecting booking {}: {}", bookingId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to reject booking"));
+        } finally {
+            bulkService.recordThroughput(BookingWorkflowBulkService.Action.REJECT, "single", started, 1);
         }
     }
 
@@ -266,6 +390,7 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             if (!BookingStatus.CONFIRMED.equals(booking.getStatus()) &&
                     !BookingStatus.WAITING_FOR_PAYMENT.equals(booking.getStatus())) {
@@ -273,10 +398,6 @@ public class BookingWorkflowController {
                         .body(Map.of("error", "Booking cannot be paid in current status"));
             }
 
-            // Mark as paid and move to review
-            booking.setStatus(BookingStatus.IN_REVIEW);
-            booking.setUpdatedAt(LocalDateTime.now());
-
             // Create or update approval for review
             Approval approval = booking.getApproval();
             if (approval == null) {
@@ -293,13 +414,14 @@ public class BookingWorkflowController {
                 approval.setReviewDeadline(LocalDateTime.now().plusMinutes(30));
             }
 
+            // Mark as paid and move to review; one audit record covers both
+            stateMachine.transition(booking, BookingStatus.PAID, currentUser, null, null, null);
+            stateMachine.transition(booking, BookingStatus.IN_REVIEW, currentUser, TypeAction.BOOKING_UPDATED,
+                    "Payment received and booking moved to review for planner/operation manager", before);
+
             Booking savedBooking = bookingRepository.save(booking);
             approvalRepository.save(approval);
 
-            // Record the payment activity
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_UPDATED, currentUser,
-                    "Payment received and booking moved to review for planner/operation manager");
-
             logger.info("Booking {} marked as paid and moved to review", bookingId);
             return ResponseEntity.ok(Map.of(
                     "message", "Payment confirmed and booking is now under review",
@@ -352,6 +474,7 @@ public class BookingWorkflowController {
             @PathVariable Long bookingId,
             @RequestBody @Valid ReviewApprovalRequest request,
             Authentication authentication) {
+        long started = System.nanoTime();
         try {
             Account currentUser = getCurrentUser(authentication);
             if (currentUser == null) {
@@ -362,6 +485,7 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             if (!BookingStatus.IN_REVIEW.equals(booking.getStatus())) {
                 return ResponseEntity.badRequest()
@@ -381,14 +505,11 @@ public class BookingWorkflowController {
             }
 
             // Move to in progress
-            booking.setStatus(BookingStatus.IN_PROGRESS);
-            booking.setUpdatedAt(LocalDateTime.now());
-            Booking savedBooking = bookingRepository.save(booking);
-
-            // Record the review approval activity
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_UPDATED, currentUser,
+            stateMachine.transition(booking, BookingStatus.IN_PROGRESS, currentUser, TypeAction.BOOKING_UPDATED,
                     String.format("Review approved by %s and moved to progress. Notes: %s",
-                            currentUser.getUsername(), request.getNotes()));
+                            currentUser.getUsername(), request.getNotes()),
+                    before);
+            Booking savedBooking = bookingRepository.save(booking);
 
             logger.info("Review approved for booking {} and moved to progress", bookingId);
             return ResponseEntity.ok(Map.of(
@@ -399,6 +520,8 @@ public class BookingWorkflowController {
             logger.error("Error approving review for booking {}: {}", bookingId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to approve review"));
+        } finally {
+            bulkService.recordThroughput(BookingWorkflowBulkService.Action.APPROVE_REVIEW, "single", started, 1);
         }
     }
 
@@ -438,6 +561,7 @@ public class BookingWorkflowController {
     public ResponseEntity<?> confirmArrival(
             @PathVariable Long bookingId,
             Authentication authentication) {
+        long started = System.nanoTime();
         try {
             Account currentUser = getCurrentUser(authentication);
             if (currentUser == null) {
@@ -448,6 +572,7 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             if (!BookingStatus.IN_PROGRESS.equals(booking.getStatus())) {
                 return ResponseEntity.badRequest()
@@ -461,7 +586,7 @@ public class BookingWorkflowController {
             Booking savedBooking = bookingRepository.save(booking);
 
             // Record the confirmation activity
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_UPDATED, currentUser,
+            recordBookingActivity(savedBooking, before, TypeAction.BOOKING_UPDATED, currentUser,
                     String.format("Arrival confirmed by %s", currentUser.getUsername()));
 
             logger.info("Arrival confirmed for booking {}", bookingId);
@@ -473,6 +598,8 @@ public class BookingWorkflowController {
             logger.error("Error confirming arrival for booking {}: {}", bookingId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to confirm arrival"));
+        } finally {
+            bulkService.recordThroughput(BookingWorkflowBulkService.Action.CONFIRM_ARRIVAL, "single", started, 1);
         }
     }
 
@@ -487,6 +614,7 @@ public class BookingWorkflowController {
     public ResponseEntity<?> completeBooking(
             @PathVariable Long bookingId,
             Authentication authentication) {
+        long started = System.nanoTime();
         try {
             Account customer = getCurrentUser(authentication);
             if (customer == null) {
@@ -497,6 +625,7 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             // Verify customer owns the booking
             if (!booking.getCustomer().getAccount().getId().equals(customer.getId())) {
@@ -504,21 +633,17 @@ public class BookingWorkflowController {
                         .body(Map.of("error", "You can only complete your own bookings"));
             }
 
-            if (!BookingStatus.IN_PROGRESS.equals(booking.getStatus())) {
+            if (!stateMachine.canTransition(booking, BookingStatus.COMPLETED)) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Booking must be in progress to complete"));
             }
 
             // Complete booking
-            booking.setStatus(BookingStatus.COMPLETED);
             booking.setCompletedAt(LocalDateTime.now());
-            booking.setUpdatedAt(LocalDateTime.now());
+            stateMachine.transition(booking, BookingStatus.COMPLETED, customer, TypeAction.BOOKING_COMPLETED,
+                    "Booking completed by customer", before);
             Booking savedBooking = bookingRepository.save(booking);
 
-            // Record the completion activity
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_COMPLETED, customer,
-                    "Booking completed by customer");
-
             logger.info("Booking {} completed successfully", bookingId);
             return ResponseEntity.ok(Map.of(
                     "message", "Booking completed successfully",
@@ -528,9 +653,72 @@ public class BookingWorkflowController {
             logger.error("Error completing booking {}: {}", bookingId, e.getMessage(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Failed to complete booking"));
+        } finally {
+            bulkService.recordThroughput(BookingWorkflowBulkService.Action.COMPLETE, "single", started, 1);
         }
     }
 
+    // ==================== BULK OPERATIONS ====================
+
+    /**
+     * Approve many pending bookings at once (ACCOUNTANT only)
+     */
+    @PatchMapping("/bulk/approve")
+    @PreAuthorize("hasRole('ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> bulkApprove(
+            @RequestBody @Valid BulkWorkflowRequest request,
+            Authentication authentication) {
+        return applyBulk(BookingWorkflowBulkService.Action.APPROVE, request, authentication);
+    }
+
+    /**
+     * Reject many pending bookings at once (ACCOUNTANT only). The notes are
+     * used as the rejection reason.
+     */
+    @PatchMapping("/bulk/reject")
+    @PreAuthorize("hasRole('ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> bulkReject(
+            @RequestBody @Valid BulkWorkflowRequest request,
+            Authentication authentication) {
+        if (request.getNotes() == null || request.getNotes().isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Rejection reason is required"));
+        }
+        return applyBulk(BookingWorkflowBulkService.Action.REJECT, request, authentication);
+    }
+
+    /**
+     * Approve the review of many bookings at once (Planner/Operation Manager)
+     */
+    @PatchMapping("/bulk/approve-review")
+    @PreAuthorize("hasAnyRole('ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> bulkApproveReview(
+            @RequestBody @Valid BulkWorkflowRequest request,
+            Authentication authentication) {
+        return applyBulk(BookingWorkflowBulkService.Action.APPROVE_REVIEW, request, authentication);
+    }
+
+    /**
+     * Confirm arrival for many bookings at once (Planner/Operation Manager)
+     */
+    @PatchMapping("/bulk/confirm-arrival")
+    @PreAuthorize("hasAnyRole('ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> bulkConfirmArrival(
+            @RequestBody @Valid BulkWorkflowRequest request,
+            Authentication authentication) {
+        return applyBulk(BookingWorkflowBulkService.Action.CONFIRM_ARRIVAL, request, authentication);
+    }
+
+    /**
+     * Complete many of the customer's own bookings at once (Customer)
+     */
+    @PatchMapping("/bulk/complete")
+    @PreAuthorize("hasRole('ROLE_CUSTOMER')")
+    public ResponseEntity<?> bulkComplete(
+            @RequestBody @Valid BulkWorkflowRequest request,
+            Authentication authentication) {
+        return applyBulk(BookingWorkflowBulkService.Action.COMPLETE, request, authentication);
+    }
+
     // ==================== CANCELLATION AND REFUND ====================
 
     /**
@@ -553,25 +741,22 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
-            if (BookingStatus.CANCELLED.equals(booking.getStatus()) ||
-                    BookingStatus.COMPLETED.equals(booking.getStatus())) {
+            if (!stateMachine.canTransition(booking, BookingStatus.CANCELLED)) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Booking cannot be cancelled in current status: " + booking.getStatus()));
             }
 
             // Cancel booking
-            booking.setStatus(BookingStatus.CANCELLED);
             booking.setCancelledAt(LocalDateTime.now());
             booking.setCancelledBy(currentUser);
             booking.setCancellationReason(request.reason);
-            booking.setUpdatedAt(LocalDateTime.now());
-            Booking savedBooking = bookingRepository.save(booking);
-
-            // Record the cancellation activity
-            recordBookingActivity(savedBooking, TypeAction.BOOKING_CANCELLED, currentUser,
+            stateMachine.transition(booking, BookingStatus.CANCELLED, currentUser, TypeAction.BOOKING_CANCELLED,
                     String.format("Booking cancelled by %s. Reason: %s",
-                            currentUser.getUsername(), request.reason));
+                            currentUser.getUsername(), request.reason),
+                    before);
+            Booking savedBooking = bookingRepository.save(booking);
 
             logger.info("Booking {} cancelled - status: {}", bookingId, savedBooking.getStatus());
             return ResponseEntity.ok(Map.of(
@@ -605,6 +790,7 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             // Verify the booking belongs to the customer
             if (!booking.getCustomer().getAccount().getId().equals(currentUser.getId())) {
@@ -624,7 +810,7 @@ public class BookingWorkflowController {
             bookingRepository.save(booking);
 
             // Record activity
-            recordBookingActivity(booking, TypeAction.BOOKING_UPDATED, currentUser,
+            recordBookingActivity(booking, before, TypeAction.BOOKING_UPDATED, currentUser,
                     String.format("Refund requested by customer: %s", request.getReason()));
 
             logger.info("Refund request submitted for booking {} by customer {}", bookingId, currentUser.getUsername());
@@ -684,17 +870,17 @@ public class BookingWorkflowController {
         try {
             logger.info("Getting booking workflow statistics");
 
-            // Count bookings by status
-            long pendingCount = bookingRepository.countByStatus(BookingStatus.PENDING);
-            long awaitingPaymentCount = bookingRepository.countByStatus(BookingStatus.WAITING_FOR_PAYMENT);
-            long inProgressCount = bookingRepository.countByStatus(BookingStatus.IN_PROGRESS);
-
-            // Count pending refund requests
-            long refundRequestsCount = bookingRepository.countByStatus(BookingStatus.IN_REFUND);
+            if (!bookingStatsService.isReady()) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Map.of("error", "Booking statistics are still loading"));
+            }
 
-            // Count completed bookings (all time, not just today since repository method
-            // doesn't support date filtering)
-            long completedTodayCount = bookingRepository.countByStatus(BookingStatus.COMPLETED);
+            // Served from the pre-aggregated counters, no queries
+            long pendingCount = bookingStatsService.getStatusCount(BookingStatus.PENDING);
+            long awaitingPaymentCount = bookingStatsService.getStatusCount(BookingStatus.WAITING_FOR_PAYMENT);
+            long inProgressCount = bookingStatsService.getStatusCount(BookingStatus.IN_PROGRESS);
+            long refundRequestsCount = bookingStatsService.getStatusCount(BookingStatus.IN_REFUND);
+            long completedTodayCount = bookingStatsService.getToday(BookingStatsService.Metric.BOOKINGS_COMPLETED);
 
             Map<String, Object> stats = Map.of(
                     "pendingCount", pendingCount,
@@ -734,6 +920,7 @@ public class BookingWorkflowController {
 
             Booking booking = bookingRepository.findById(bookingId)
                     .orElseThrow(() -> new DataNotFoundException("Booking not found: " + bookingId));
+            AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
 
             if (!booking.hasRefundRequested()) {
                 return ResponseEntity.badRequest()
@@ -756,9 +943,8 @@ public class BookingWorkflowController {
                 // Approve refund - this terminates the booking process and cancels any pending
                 // approvals
                 booking.approveRefund(currentUser, decision.getNotes());
-
-                recordBookingActivity(booking, TypeAction.BOOKING_UPDATED, currentUser,
-                        String.format("Refund approved by accountant: %s", decision.getNotes()));
+                stateMachine.transition(booking, BookingStatus.REFUNDED, currentUser, TypeAction.BOOKING_UPDATED,
+                        String.format("Refund approved by accountant: %s", decision.getNotes()), before);
 
                 // Prepare response with additional information about cancelled approvals
                 Map<String, Object> response = Map.of(
@@ -776,7 +962,7 @@ public class BookingWorkflowController {
                 // Reject refund - booking continues with original status
                 booking.rejectRefund(currentUser, decision.getNotes());
 
-                recordBookingActivity(booking, TypeAction.BOOKING_UPDATED, currentUser,
+                recordBookingActivity(booking, before, TypeAction.BOOKING_UPDATED, currentUser,
                         String.format("Refund rejected by accountant: %s", decision.getNotes()));
 
                 logger.info("Refund rejected for booking {} - booking process continues", bookingId);
@@ -794,6 +980,35 @@ public class BookingWorkflowController {
 
     // ==================== HELPER METHODS ====================
 
+    private ResponseEntity<?> applyBulk(BookingWorkflowBulkService.Action action, BulkWorkflowRequest request,
+            Authentication authentication) {
+        try {
+            Account currentUser = getCurrentUser(authentication);
+            if (currentUser == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid authentication"));
+            }
+
+            logger.info("Bulk {} of {} bookings by {}", action.tag(), request.getBookingIds().size(),
+                    currentUser.getUsername());
+
+            List<BookingWorkflowBulkService.ItemResult> results = bulkService.apply(action,
+                    request.getBookingIds(), currentUser, request.getNotes());
+            Map<BookingWorkflowBulkService.Outcome, Long> summary = results.stream()
+                    .collect(Collectors.groupingBy(BookingWorkflowBulkService.ItemResult::getOutcome,
+                            LinkedHashMap::new, Collectors.counting()));
+
+            return ResponseEntity.ok(Map.of(
+                    "action", action.tag(),
+                    "summary", summary,
+                    "results", results));
+
+        } catch (Exception e) {
+            logger.error("Error applying bulk {}: {}", action.tag(), e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to apply bulk " + action.tag()));
+        }
+    }
+
     private Account getCurrentUser(Authentication authentication) {
         try {
             if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
@@ -807,18 +1022,26 @@ public class BookingWorkflowController {
         return null;
     }
 
-    private void recordBookingActivity(Booking booking, TypeAction action, Account performer, String description) {
+    private void recordBookingActivity(Booking booking, AuditChangeCapture.Snapshot before, TypeAction action,
+            Account performer, String description) {
         try {
-            recordBookingActivityInNewTransaction(booking, action, performer, description);
+            recordBookingActivityInNewTransaction(booking, before, action, performer, description);
         } catch (Exception e) {
             logger.warn("Failed to record booking activity for {}: {}", booking.getBookingCode(), e.getMessage());
         }
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
-    private void recordBookingActivityInNewTransaction(Booking booking, TypeAction action, Account performer,
-            String description) {
-        bookingRecordService.createRecord(booking, action, performer, description);
+    private void recordBookingActivityInNewTransaction(Booking booking, AuditChangeCapture.Snapshot before,
+            TypeAction action, Account performer, String description) {
+        bookingRecordService.createChangeRecord(booking, action, performer, description, before);
+    }
+
+    private Map<String, Object> toClaimItem(ApprovalQueueService.Claim claim, Booking booking) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("booking", convertToResponse(booking));
+        item.put("claimExpiresAt", claim.getExpiresAt().toString());
+        return item;
     }
 
     private BookingResponse convertToResponse(Booking booking) {
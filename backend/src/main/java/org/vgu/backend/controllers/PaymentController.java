@@ -1,24 +1,35 @@
 package org.vgu.backend.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 import org.vgu.backend.dto.request.PaymentRequest;
+import org.vgu.backend.dto.response.PaymentHistoryItem;
 import org.vgu.backend.dto.response.PaymentResponse;
+import org.vgu.backend.dto.response.PaymentStatementResponse;
 import org.vgu.backend.enums.PaymentMethod;
 import org.vgu.backend.model.Account;
+import org.vgu.backend.model.Customer;
 import org.vgu.backend.service.payment.IPaymentService;
 import org.vgu.backend.repository.AccountRepository;
+import org.vgu.backend.repository.CustomerRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.validation.Valid;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.springframework.format.annotation.DateTimeFormat;
+
 @RestController
 @RequestMapping("${api.prefix}/payments")
 @CrossOrigin(origins = "*")
@@ -32,8 +43,15 @@ public class PaymentController {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Value("${api.prefix}")
+    private String apiPrefix;
+
     /**
-     * Process a payment for a booking
+     * Submit a payment for a booking. Answers 202 at once; poll the status
+     * URL until the payment leaves PROCESSING.
      */
     @PostMapping("/process")
     @PreAuthorize("hasAnyRole('ROLE_CUSTOMER', 'ROLE_ACCOUNTANT')")
@@ -50,10 +68,12 @@ public class PaymentController {
             logger.info("Processing payment for booking {} by {}", request.getBookingId(), currentUser.getUsername());
 
             PaymentResponse response = paymentService.processPayment(request, currentUser);
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Payment processed successfully",
-                "payment", response
+            URI status = statusUri(response);
+
+            return ResponseEntity.accepted().location(status).body(Map.of(
+                "message", "Payment submitted for processing",
+                "payment", response,
+                "statusUrl", status.toString()
             ));
 
         } catch (Exception e) {
@@ -81,10 +101,12 @@ public class PaymentController {
             logger.info("Simulating payment for booking {} using {} by {}", bookingId, method, currentUser.getUsername());
 
             PaymentResponse response = paymentService.simulatePayment(bookingId, method, currentUser);
-            
-            return ResponseEntity.ok(Map.of(
-                "message", "Payment simulated successfully",
+            URI status = statusUri(response);
+
+            return ResponseEntity.accepted().location(status).body(Map.of(
+                "message", "Payment submitted for processing",
                 "payment", response,
+                "statusUrl", status.toString(),
                 "simulation", true
             ));
 
@@ -128,28 +150,69 @@ public class PaymentController {
     }
 
     /**
-     * Get payment history for current customer
+     * Get payment history for current customer, newest first. Pass the
+     * returned nextCursor as cursor to get the next page.
      */
     @GetMapping("/history")
     @PreAuthorize("hasRole('ROLE_CUSTOMER')")
-    public ResponseEntity<?> getPaymentHistory(Authentication authentication) {
+    public ResponseEntity<?> getPaymentHistory(
+            Authentication authentication,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int limit) {
         try {
-            Account currentUser = getCurrentUser(authentication);
-            if (currentUser == null) {
+            Customer customer = getCurrentCustomer(authentication);
+            if (customer == null) {
                 return ResponseEntity.badRequest().body(Map.of("error", "Invalid authentication"));
             }
 
-            List<PaymentResponse> responses = paymentService.getPaymentHistory(currentUser.getUsername());
-            return ResponseEntity.ok(Map.of(
-                "payments", responses,
-                "count", responses.size()
-            ));
+            int pageSize = Math.max(1, Math.min(limit, 100));
+            // One extra row tells whether another page follows
+            List<PaymentHistoryItem> payments = paymentService.getPaymentHistory(customer.getId(), cursor,
+                    pageSize + 1);
+            boolean hasMore = payments.size() > pageSize;
+            if (hasMore) {
+                payments = payments.subList(0, pageSize);
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("payments", payments);
+            response.put("count", payments.size());
+            response.put("hasMore", hasMore);
+            response.put("nextCursor", hasMore ? payments.get(payments.size() - 1).getId() : null);
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
             logger.error("Error getting payment history: {}", e.getMessage());
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Statement of the current customer's payments over a period; defaults
+     * to the current month
+     */
+    @GetMapping("/statement")
+    @PreAuthorize("hasRole('ROLE_CUSTOMER')")
+    public ResponseEntity<?> getStatement(
+            Authentication authentication,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            Customer customer = getCurrentCustomer(authentication);
+            if (customer == null) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Invalid authentication"));
+            }
+            LocalDate start = from != null ? from : LocalDate.now().withDayOfMonth(1);
+            LocalDate end = to != null ? to : LocalDate.now();
+            if (end.isBefore(start)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "'to' is before 'from'"));
+            }
+            PaymentStatementResponse statement = paymentService.getStatement(customer.getId(), start, end);
+            return ResponseEntity.ok(statement);
+        } catch (Exception e) {
+            logger.error("Error getting payment statement: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Refund a payment
      */
@@ -211,6 +274,18 @@ public class PaymentController {
         }
     }
 
+    private Customer getCurrentCustomer(Authentication authentication) {
+        Account account = getCurrentUser(authentication);
+        return account != null ? customerRepository.findByAccountId(account.getId()).orElse(null) : null;
+    }
+
+    private URI statusUri(PaymentResponse payment) {
+        return ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path(apiPrefix + "/payments/{paymentNumber}")
+                .buildAndExpand(payment.getPaymentNumber())
+                .toUri();
+    }
+
     private Account getCurrentUser(Authentication authentication) {
         if (authentication == null || authentication.getName() == null) {
             return null;
@@ -1,16 +1,32 @@
 package org.vgu.backend.controllers;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.vgu.backend.dto.request.BerthCreateRequest;
+import org.vgu.backend.dto.response.BerthResponse;
 import org.vgu.backend.dto.response.PortResponse;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.model.Berth;
 import org.vgu.backend.model.Port;
+import org.vgu.backend.repository.BerthRepository;
 import org.vgu.backend.repository.PortRepository;
+import org.vgu.backend.service.berth.BerthAllocationService;
 
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -21,6 +37,8 @@ import lombok.extern.slf4j.Slf4j;
 public class PortController {
 
     private final PortRepository portRepository;
+    private final BerthRepository berthRepository;
+    private final BerthAllocationService berthAllocationService;
 
     /**
      * Get all active ports (Public endpoint)
@@ -35,4 +53,66 @@ public class PortController {
         log.info("Active ports listed successfully: {} ports found", portResponses.size());
         return ResponseEntity.ok(portResponses);
     }
-}
\ No newline at end of file
+
+    /**
+     * Get the berths of a port
+     */
+    @GetMapping("/{portId}/berths")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> getBerths(@PathVariable Long portId) {
+        if (!portRepository.existsById(portId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Port not found with id: " + portId));
+        }
+        return ResponseEntity.ok(berthRepository.findByPortIdOrderByBerthCode(portId).stream()
+                .map(BerthResponse::from)
+                .collect(Collectors.toList()));
+    }
+
+    /**
+     * Add a berth to a port. Sailings at the port are slot-checked from
+     * its first berth on.
+     */
+    @PostMapping("/{portId}/berths")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> createBerth(@PathVariable Long portId, @RequestBody @Valid BerthCreateRequest request) {
+        Port port = portRepository.findById(portId).orElse(null);
+        if (port == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Port not found with id: " + portId));
+        }
+        if (berthRepository.existsByPortIdAndBerthCode(portId, request.getBerthCode())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Berth " + request.getBerthCode() + " already exists at this port",
+                            "errorCode", "DUPLICATE_BERTH"));
+        }
+        Berth berth = berthRepository.save(Berth.builder()
+                .port(port)
+                .berthCode(request.getBerthCode())
+                .build());
+        log.info("Berth {} added to port {}", berth.getBerthCode(), portId);
+        return ResponseEntity.status(HttpStatus.CREATED).body(BerthResponse.from(berth));
+    }
+
+    /**
+     * Free berth windows at a port of at least minMinutes, by start time
+     */
+    @GetMapping("/{portId}/berths/free-windows")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+    public ResponseEntity<?> getFreeWindows(
+            @PathVariable Long portId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "60") int minMinutes) {
+        try {
+            return ResponseEntity.ok(berthAllocationService.freeWindows(portId, from, to, minMinutes));
+        } catch (BusinessException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+        } catch (Exception e) {
+            log.error("Error finding free berth windows at port {}: {}", portId, e.getMessage(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", "Failed to find free berth windows"));
+        }
+    }
+}
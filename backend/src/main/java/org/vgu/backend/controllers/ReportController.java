@@ -0,0 +1,207 @@
+package org.vgu.backend.controllers;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.service.report.RevenueReportService;
+import org.vgu.backend.service.report.RevenueReportService.Dimension;
+import org.vgu.backend.service.report.RevenueReportService.Format;
+import org.vgu.backend.service.report.RevenueReportService.JobStatus;
+import org.vgu.backend.service.report.RevenueReportService.ReportJob;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Revenue and settlement reports over settled payments
+ */
+@RestController
+@RequestMapping("${api.prefix}/reports")
+@RequiredArgsConstructor
+public class ReportController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final RevenueReportService revenueReportService;
+    private final Logger logger = LoggerFactory.getLogger(ReportController.class);
+
+    /**
+     * Revenue report streamed in the response. Ranges longer than
+     * app.revenue-report.sync-max-days must go through a report job.
+     *
+     * @param groupBy comma-separated: day, route, ferry, method
+     */
+    @GetMapping("/revenue")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> getRevenueReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy,
+            @RequestParam(defaultValue = "csv") String format) {
+        try {
+            Set<Dimension> dimensions = dimensions(groupBy);
+            Format output = format(format);
+            if (!revenueReportService.fitsRequest(from, to)) {
+                return ResponseEntity.badRequest().body(Map.of("error",
+                        "Range too large for a direct report; submit a report job instead",
+                        "errorCode", "USE_REPORT_JOB"));
+            }
+            logger.info("Streaming revenue report {} to {} by {} as {}", from, to, dimensions, output);
+            StreamingResponseBody body = out -> revenueReportService.write(from, to, dimensions, output, out);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename="
+                            + String.format("revenue_%s_to_%s.%s", from, to, format.toLowerCase()))
+                    .contentType(mediaType(output))
+                    .body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (BusinessException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+        }
+    }
+
+    /**
+     * Run a revenue report in the background; poll the returned status URL
+     * and download the file when it is DONE
+     */
+    @PostMapping("/revenue/jobs")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> submitRevenueReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy,
+            @RequestParam(defaultValue = "csv") String format) {
+        try {
+            ReportJob job = revenueReportService.submit(from, to, dimensions(groupBy),
+                    format(format));
+            logger.info("Revenue report job {} submitted for {} to {}", job.getId(), from, to);
+            URI status = ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}")
+                    .buildAndExpand(job.getId()).toUri();
+            return ResponseEntity.accepted().location(status).body(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (BusinessException e) {
+            HttpStatus status = "TOO_MANY_JOBS".equals(e.getErrorCode()) ? HttpStatus.TOO_MANY_REQUESTS
+                    : HttpStatus.BAD_REQUEST;
+            return ResponseEntity.status(status)
+                    .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+        }
+    }
+
+    @GetMapping("/revenue/jobs/{jobId}")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_ACCOUNTANT')")
+    public ResponseEntity<?> getRevenueReportJob(@PathVariable String jobId) {
+        ReportJob job = revenueReportService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Report job not found: " + jobId));
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * Download a finished report. Tomcat sends the file with sendfile when
+     * the connector supports it; otherwise it is copied channel to channel.
+     */
+    @GetMapping("/revenue/jobs/{jobId}/file")
+    @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_ACCOUNTANT')")
+    public void downloadRevenueReport(@PathVariable String jobId, HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        ReportJob job = revenueReportService.getJob(jobId);
+        if (job == null || job.getStatus() != JobStatus.DONE || job.getFile() == null
+                || !Files.exists(job.getFile())) {
+            int status = job == null || job.getStatus() == JobStatus.DONE ? HttpServletResponse.SC_NOT_FOUND
+                    : HttpServletResponse.SC_CONFLICT;
+            response.setStatus(status);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+            response.getWriter().write(status == HttpServletResponse.SC_CONFLICT
+                    ? "{\"error\":\"Report is not ready\",\"status\":\"" + job.getStatus() + "\"}"
+                    : "{\"error\":\"Report not found\"}");
+            return;
+        }
+        Path file = job.getFile();
+        long length = Files.size(file);
+        response.setContentType(mediaType(job.getFormat()).toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + job.getFilename());
+        response.setContentLengthLong(length);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, target);
+            }
+            out.flush();
+        }
+    }
+
+    private static Set<Dimension> dimensions(String groupBy) {
+        Set<Dimension> dimensions = EnumSet.noneOf(Dimension.class);
+        for (String name : groupBy.split(",")) {
+            if (!name.isBlank()) {
+                try {
+                    dimensions.add(Dimension.valueOf(name.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown dimension: " + name.trim()
+                            + ". Use day, route, ferry or method");
+                }
+            }
+        }
+        return dimensions;
+    }
+
+    private static Format format(String format) {
+        try {
+            return Format.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown format: " + format + ". Use csv or json");
+        }
+    }
+
+    private static MediaType mediaType(Format format) {
+        return format == Format.CSV ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_JSON;
+    }
+}
@@ -14,6 +14,9 @@ import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,16 +28,29 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.vgu.backend.dto.request.ScheduleCreateRequest;
+import org.vgu.backend.dto.request.ScheduleDisruptionRequest;
+import org.vgu.backend.dto.request.ScheduleGenerationRequest;
 import org.vgu.backend.dto.request.ScheduleUpdateRequest;
+import org.vgu.backend.dto.request.VesselSwapRequest;
 import org.vgu.backend.dto.response.ScheduleResponse;
 import org.vgu.backend.enums.ScheduleStatus;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.exception.DataNotFoundException;
+import org.vgu.backend.model.Account;
 import org.vgu.backend.model.Ferry;
 import org.vgu.backend.model.Route;
 import org.vgu.backend.model.Schedule;
 import org.vgu.backend.repository.FerryRepository;
 import org.vgu.backend.repository.RouteRepository;
 import org.vgu.backend.repository.ScheduleRepository;
-
+import org.vgu.backend.service.account.IAccountService;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.berth.BerthAllocationService;
+import org.vgu.backend.service.schedule.CapacityReconciliationService;
+import org.vgu.backend.service.schedule.ScheduleDisruptionService;
+import org.vgu.backend.service.schedule.ScheduleGeneratorService;
+
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 
 @RestController
@@ -46,6 +62,12 @@ public class ScheduleController {
         private final ScheduleRepository scheduleRepository;
         private final RouteRepository routeRepository;
         private final FerryRepository ferryRepository;
+        private final ScheduleDisruptionService disruptionService;
+        private final IAccountService accountService;
+        private final AllotmentService allotmentService;
+        private final ScheduleGeneratorService generatorService;
+        private final BerthAllocationService berthAllocationService;
+        private final CapacityReconciliationService reconciliationService;
         private final Logger logger = LoggerFactory.getLogger(ScheduleController.class);
 
         /**
@@ -144,7 +166,7 @@ public class ScheduleController {
          * Create a new schedule
          */
         @PostMapping
-        public ResponseEntity<ScheduleResponse> createSchedule(@RequestBody ScheduleCreateRequest request) {
+        public ResponseEntity<?> createSchedule(@RequestBody ScheduleCreateRequest request) {
                 logger.info("Creating new schedule: {}", request);
 
                 try {
@@ -172,21 +194,83 @@ public class ScheduleController {
                                         .notes(request.getNotes())
                                         .build();
 
+                        // A sailing needs a berth at both ends
+                        BerthAllocationService.Sailing sailing = null;
+                        if (schedule.getStatus() != ScheduleStatus.CANCELLED) {
+                                sailing = new BerthAllocationService.Sailing(null, route.getDeparturePort().getId(),
+                                                route.getArrivalPort().getId(), schedule.getDepartureTime(),
+                                                schedule.getArrivalTime());
+                                BerthAllocationService.Plan plan = berthAllocationService.plan(List.of(sailing),
+                                                false);
+                                if (plan.hasConflicts()) {
+                                        return berthConflict(plan.getConflicts());
+                                }
+                        }
+
                         Schedule savedSchedule = scheduleRepository.save(schedule);
                         logger.info("Schedule created successfully with ID: {}", savedSchedule.getId());
+                        if (sailing != null) {
+                                sailing.setScheduleId(savedSchedule.getId());
+                                berthAllocationService.allocate(sailing);
+                        }
 
-                        return ResponseEntity.status(HttpStatus.CREATED).body(convertToResponse(savedSchedule));
+                        // Hold back corporate allotments on the route before the sailing goes on sale
+                        AllotmentService.Split reserved = allotmentService.applyToSchedule(savedSchedule.getId());
+                        ScheduleResponse response = convertToResponse(savedSchedule);
+                        if (!reserved.isEmpty()) {
+                                if (response.getAvailableVehicleSpaces() != null) {
+                                        response.setAvailableVehicleSpaces(
+                                                        response.getAvailableVehicleSpaces() - reserved.getVehicles());
+                                }
+                                if (response.getAvailablePassengerSpaces() != null) {
+                                        response.setAvailablePassengerSpaces(response.getAvailablePassengerSpaces()
+                                                        - reserved.getPassengers());
+                                }
+                        }
+                        return ResponseEntity.status(HttpStatus.CREATED).body(response);
                 } catch (Exception e) {
                         logger.error("Error creating schedule", e);
                         throw new RuntimeException("Failed to create schedule: " + e.getMessage());
                 }
         }
 
+        /**
+         * Generate a season of sailings from a recurrence rule. Conflicts with
+         * the ferry's other sailings are reported and nothing is created,
+         * unless skipConflicts is set; with dryRun only the report is returned.
+         */
+        @PostMapping("/generate")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+        public ResponseEntity<?> generateSchedules(@RequestBody @Valid ScheduleGenerationRequest request) {
+                try {
+                        logger.info("Generating schedules for ferry {} on route {} from {} to {}",
+                                        request.getFerryId(), request.getRouteId(), request.getStartDate(),
+                                        request.getEndDate());
+                        ScheduleGeneratorService.GenerationResult result = generatorService.generate(request);
+                        if (result.isApplied()) {
+                                return ResponseEntity.status(HttpStatus.CREATED).body(result);
+                        }
+                        if (!request.isDryRun() && !result.getConflicts().isEmpty()) {
+                                return ResponseEntity.status(HttpStatus.CONFLICT).body(result);
+                        }
+                        return ResponseEntity.ok(result);
+                } catch (DataNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+                } catch (BusinessException e) {
+                        return ResponseEntity.badRequest()
+                                        .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+                } catch (Exception e) {
+                        logger.error("Error generating schedules: {}", e.getMessage(), e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(Map.of("error", "Failed to generate schedules"));
+                }
+        }
+
         /**
          * Update an existing schedule
          */
         @PutMapping("/{scheduleId}")
-        public ResponseEntity<ScheduleResponse> updateSchedule(
+        public ResponseEntity<?> updateSchedule(
                         @PathVariable Long scheduleId,
                         @RequestBody ScheduleUpdateRequest request) {
                 logger.info("Updating schedule ID: {} with data: {}", scheduleId, request);
@@ -205,13 +289,38 @@ public class ScheduleController {
                                 existingSchedule.setRoute(route);
                         }
 
-                        // Update ferry if changed
+                        // Re-check berths before anything is saved when the sailing moves
+                        boolean cancelled = request.getStatus() != null
+                                        && ScheduleStatus.valueOf(request.getStatus().toUpperCase())
+                                                        == ScheduleStatus.CANCELLED;
+                        BerthAllocationService.Sailing sailing = null;
+                        if (!cancelled && (request.getRouteId() != null || request.getDepartureTime() != null
+                                        || request.getArrivalTime() != null)) {
+                                Route route = existingSchedule.getRoute();
+                                sailing = new BerthAllocationService.Sailing(scheduleId,
+                                                route.getDeparturePort().getId(), route.getArrivalPort().getId(),
+                                                request.getDepartureTime() != null ? request.getDepartureTime()
+                                                                : existingSchedule.getDepartureTime(),
+                                                request.getArrivalTime() != null ? request.getArrivalTime()
+                                                                : existingSchedule.getArrivalTime());
+                                BerthAllocationService.Plan plan = berthAllocationService.plan(List.of(sailing),
+                                                false);
+                                if (plan.hasConflicts()) {
+                                        return berthConflict(plan.getConflicts());
+                                }
+                        }
+
+                        // Update ferry if changed; capacity is re-projected from the new ferry
                         if (request.getFerryId() != null
                                         && !request.getFerryId().equals(existingSchedule.getFerry().getId())) {
                                 Ferry ferry = ferryRepository.findById(request.getFerryId())
                                                 .orElseThrow(() -> new RuntimeException(
                                                                 "Ferry not found with id: " + request.getFerryId()));
+                                ScheduleDisruptionService.VesselSwapResult swap = disruptionService.swapVessel(
+                                                scheduleId, ferry.getId(), "Schedule updated", false, null);
                                 existingSchedule.setFerry(ferry);
+                                existingSchedule.setAvailableVehicleSpaces(swap.getAvailableVehicleSpaces());
+                                existingSchedule.setAvailablePassengerSpaces(swap.getAvailablePassengerSpaces());
                         }
 
                         // Update other fields
@@ -245,6 +354,11 @@ public class ScheduleController {
 
                         Schedule updatedSchedule = scheduleRepository.save(existingSchedule);
                         logger.info("Schedule updated successfully: {}", updatedSchedule.getId());
+                        if (cancelled) {
+                                berthAllocationService.release(scheduleId);
+                        } else if (sailing != null) {
+                                berthAllocationService.allocate(sailing);
+                        }
 
                         return ResponseEntity.ok(convertToResponse(updatedSchedule));
                 } catch (Exception e) {
@@ -253,6 +367,96 @@ public class ScheduleController {
                 }
         }
 
+        /**
+         * Put another ferry on a sailing. Bookings that no longer fit are
+         * moved to the next sailings of the route or cancelled; with dryRun
+         * only the plan is returned.
+         */
+        @PostMapping("/{scheduleId}/vessel-swap")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+        public ResponseEntity<?> swapVessel(
+                        @PathVariable Long scheduleId,
+                        @RequestBody @Valid VesselSwapRequest request,
+                        Authentication authentication) {
+                try {
+                        logger.info("Swapping schedule {} to ferry {}{}", scheduleId, request.getFerryId(),
+                                        request.isDryRun() ? " (plan only)" : "");
+
+                        Account actor = null;
+                        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+                                actor = accountService.getAccountByKeycloakId(jwt.getClaimAsString("sub"))
+                                                .orElse(null);
+                        }
+
+                        ScheduleDisruptionService.VesselSwapResult result = disruptionService.swapVessel(scheduleId,
+                                        request.getFerryId(), request.getReason(), request.isDryRun(), actor);
+                        return ResponseEntity.ok(result);
+                } catch (DataNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+                } catch (BusinessException e) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+                } catch (Exception e) {
+                        logger.error("Error swapping vessel on schedule {}: {}", scheduleId, e.getMessage(), e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(Map.of("error", "Failed to swap vessel"));
+                }
+        }
+
+        /**
+         * Cancel or delay a sailing and re-accommodate its bookings onto the
+         * next sailings of the same route
+         */
+        @PostMapping("/{scheduleId}/disruption")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_PLANNER', 'ROLE_OPERATION_MANAGER')")
+        public ResponseEntity<?> disruptSchedule(
+                        @PathVariable Long scheduleId,
+                        @RequestBody @Valid ScheduleDisruptionRequest request,
+                        Authentication authentication) {
+                try {
+                        ScheduleDisruptionService.Type type = ScheduleDisruptionService.Type
+                                        .valueOf(request.getType().toUpperCase());
+                        logger.info("Applying {} disruption to schedule {}", type, scheduleId);
+
+                        Account actor = null;
+                        if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+                                actor = accountService.getAccountByKeycloakId(jwt.getClaimAsString("sub"))
+                                                .orElse(null);
+                        }
+
+                        ScheduleDisruptionService.DisruptionResult result = disruptionService.disrupt(scheduleId,
+                                        type, request.getDelayMinutes(), request.getReason(),
+                                        request.isReaccommodate(), actor);
+                        return ResponseEntity.ok(result);
+                } catch (DataNotFoundException e) {
+                        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+                } catch (BusinessException e) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT)
+                                        .body(Map.of("error", e.getMessage(), "errorCode", e.getErrorCode()));
+                } catch (Exception e) {
+                        logger.error("Error applying disruption to schedule {}: {}", scheduleId, e.getMessage(), e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(Map.of("error", "Failed to apply disruption"));
+                }
+        }
+
+        /**
+         * Recompute the remaining capacity of all upcoming sailings from their
+         * bookings and report the drift; with correct=true also fix it
+         */
+        @PostMapping("/capacity-reconciliation")
+        @PreAuthorize("hasAnyRole('ROLE_ADMIN', 'ROLE_OPERATION_MANAGER')")
+        public ResponseEntity<?> reconcileCapacity(@RequestParam(defaultValue = "false") boolean correct) {
+                try {
+                        logger.info("Reconciling capacity of upcoming schedules (correct={})", correct);
+                        return ResponseEntity.ok(reconciliationService.reconcile(correct));
+                } catch (Exception e) {
+                        logger.error("Error reconciling schedule capacity: {}", e.getMessage(), e);
+                        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                                        .body(Map.of("error", "Failed to reconcile capacity"));
+                }
+        }
+
         /**
          * Delete a schedule
          */
@@ -416,6 +620,13 @@ public class ScheduleController {
                 return ResponseEntity.ok(responses);
         }
 
+        private ResponseEntity<?> berthConflict(List<BerthAllocationService.BerthConflict> conflicts) {
+                logger.warn("No free berth: {} conflict(s)", conflicts.size());
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error",
+                                "No free berth for this sailing", "errorCode", "BERTH_CONFLICT", "conflicts",
+                                conflicts));
+        }
+
         /**
          * Convert Schedule entity to ScheduleResponse DTO
          */
@@ -0,0 +1,19 @@
+package org.vgu.backend.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BerthCreateRequest {
+
+    @NotBlank(message = "Berth code is required")
+    @Size(max = 20, message = "Berth code cannot exceed 20 characters")
+    private String berthCode;
+}
@@ -0,0 +1,21 @@
+package org.vgu.backend.dto.request;
+
+import java.util.List;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class BulkWorkflowRequest {
+
+    @NotEmpty(message = "At least one booking ID is required")
+    @Size(max = 1000, message = "Cannot process more than 1000 bookings at once")
+    private List<Long> bookingIds;
+
+    // Review notes, or the rejection reason for bulk reject
+    @Size(max = 1000, message = "Notes cannot exceed 1000 characters")
+    private String notes;
+}
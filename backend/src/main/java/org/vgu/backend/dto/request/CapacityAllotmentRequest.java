@@ -0,0 +1,48 @@
+package org.vgu.backend.dto.request;
+
+import java.time.LocalDate;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CapacityAllotmentRequest {
+
+    @NotNull(message = "Customer ID is required")
+    private Long customerId;
+
+    @NotNull(message = "Route ID is required")
+    private Long routeId;
+
+    // Bit 0 is Monday; every day when omitted
+    @Min(value = 1, message = "At least one day of the week is required")
+    @Max(value = 127, message = "Days of week is a 7-bit mask")
+    private Integer daysOfWeek;
+
+    @NotNull(message = "Vehicle spaces are required")
+    @Min(value = 0, message = "Vehicle spaces cannot be negative")
+    private Integer vehicleSpaces;
+
+    @NotNull(message = "Passenger spaces are required")
+    @Min(value = 0, message = "Passenger spaces cannot be negative")
+    private Integer passengerSpaces;
+
+    // Unused space returns to the public pool this long before departure
+    @NotNull(message = "Release hours are required")
+    @Min(value = 0, message = "Release hours cannot be negative")
+    @Max(value = 720, message = "Release hours cannot exceed 30 days")
+    private Integer releaseHours;
+
+    @NotNull(message = "Start date is required")
+    private LocalDate validFrom;
+
+    private LocalDate validTo;
+}
@@ -0,0 +1,21 @@
+package org.vgu.backend.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChangeSailingRequest {
+
+    @NotNull(message = "Schedule ID is required")
+    private Long scheduleId;
+
+    @Size(max = 500, message = "Reason cannot exceed 500 characters")
+    private String reason;
+}
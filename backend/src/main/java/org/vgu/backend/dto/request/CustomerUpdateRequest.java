@@ -3,6 +3,7 @@ package org.vgu.backend.dto.request;
 import java.time.LocalDate;
 
 import org.vgu.backend.annotations.Over_18.Over18;
+import org.vgu.backend.enums.TypeCustomer;
 
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
@@ -35,4 +36,6 @@ public class CustomerUpdateRequest {
     private Integer postalCode;
 
     private String companyName;
+
+    private TypeCustomer customerType;
 }
\ No newline at end of file
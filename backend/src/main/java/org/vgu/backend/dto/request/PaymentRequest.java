@@ -33,10 +33,6 @@ public class PaymentRequest {
     @Size(max = 500, message = "Notes cannot exceed 500 characters")
     private String notes;
     
-    // For simulation purposes
-    @Builder.Default
-    private boolean isSimulation = false;
-    
     // Mock payment gateway fields
     private String cardNumber;
     private String cardHolderName;
@@ -0,0 +1,35 @@
+package org.vgu.backend.dto.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleDisruptionRequest {
+
+    @NotBlank(message = "Disruption type is required")
+    @Pattern(regexp = "(?i)CANCELLED|DELAYED", message = "Disruption type must be CANCELLED or DELAYED")
+    private String type;
+
+    // Required for DELAYED
+    @Min(value = 1, message = "Delay must be at least 1 minute")
+    @Max(value = 4320, message = "Delay cannot exceed 72 hours")
+    private Integer delayMinutes;
+
+    @NotBlank(message = "Reason is required")
+    @Size(max = 500, message = "Reason cannot exceed 500 characters")
+    private String reason;
+
+    // For DELAYED: also move bookings to later sailings that now depart
+    // earlier than the delayed one. Always done for CANCELLED.
+    private boolean reaccommodate;
+}
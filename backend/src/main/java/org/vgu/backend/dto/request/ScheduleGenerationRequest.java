@@ -0,0 +1,70 @@
+package org.vgu.backend.dto.request;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleGenerationRequest {
+
+    @NotNull(message = "Route ID is required")
+    private Long routeId;
+
+    @NotNull(message = "Ferry ID is required")
+    private Long ferryId;
+
+    @NotNull(message = "Start date is required")
+    private LocalDate startDate;
+
+    @NotNull(message = "End date is required")
+    private LocalDate endDate;
+
+    @NotEmpty(message = "At least one day of the week is required")
+    private List<DayOfWeek> daysOfWeek;
+
+    @NotEmpty(message = "At least one departure time is required")
+    private List<LocalTime> departureTimes;
+
+    // Defaults to the route's duration
+    @Min(value = 1, message = "Duration must be at least 1 minute")
+    private Integer durationMinutes;
+
+    // Minimum time in port between an arrival and the ferry's next departure
+    @Min(value = 0, message = "Turnaround cannot be negative")
+    @Max(value = 1440, message = "Turnaround cannot exceed 24 hours")
+    private Integer turnaroundMinutes;
+
+    // Booking closes this long before departure
+    @Min(value = 0, message = "Booking deadline cannot be negative")
+    private Integer bookingDeadlineMinutes;
+
+    // Check-in window, relative to departure
+    @Min(value = 0, message = "Check-in opening cannot be negative")
+    private Integer checkInOpensMinutes;
+
+    @Min(value = 0, message = "Check-in closing cannot be negative")
+    private Integer checkInClosesMinutes;
+
+    @Size(max = 1000, message = "Notes cannot exceed 1000 characters")
+    private String notes;
+
+    // Only return the expansion and conflict report
+    private boolean dryRun;
+
+    // Create the sailings without conflicts instead of refusing the season
+    private boolean skipConflicts;
+}
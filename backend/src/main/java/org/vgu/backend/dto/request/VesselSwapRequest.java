@@ -0,0 +1,26 @@
+package org.vgu.backend.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VesselSwapRequest {
+
+    @NotNull(message = "Ferry ID is required")
+    private Long ferryId;
+
+    @NotBlank(message = "Reason is required")
+    @Size(max = 500, message = "Reason cannot exceed 500 characters")
+    private String reason;
+
+    // Only return the capacity projection and bump plan
+    private boolean dryRun;
+}
@@ -0,0 +1,32 @@
+package org.vgu.backend.dto.response;
+
+import java.time.LocalDateTime;
+
+import org.vgu.backend.model.Berth;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BerthResponse {
+    private Long id;
+    private Long portId;
+    private String berthCode;
+    private Boolean isActive;
+    private LocalDateTime createdAt;
+
+    public static BerthResponse from(Berth berth) {
+        return BerthResponse.builder()
+                .id(berth.getId())
+                .portId(berth.getPort().getId())
+                .berthCode(berth.getBerthCode())
+                .isActive(berth.getIsActive())
+                .createdAt(berth.getCreatedAt())
+                .build();
+    }
+}
@@ -0,0 +1,41 @@
+package org.vgu.backend.dto.response;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.vgu.backend.model.CapacityAllotment;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class CapacityAllotmentResponse {
+    private Long id;
+    private Long customerId;
+    private Long routeId;
+    private Integer daysOfWeek;
+    private Integer vehicleSpaces;
+    private Integer passengerSpaces;
+    private Integer releaseHours;
+    private LocalDate validFrom;
+    private LocalDate validTo;
+    private boolean isActive;
+    private LocalDateTime createdAt;
+
+    public static CapacityAllotmentResponse fromEntity(CapacityAllotment allotment) {
+        return CapacityAllotmentResponse.builder()
+                .id(allotment.getId())
+                .customerId(allotment.getCustomer().getId())
+                .routeId(allotment.getRoute().getId())
+                .daysOfWeek(allotment.getDaysOfWeek())
+                .vehicleSpaces(allotment.getVehicleSpaces())
+                .passengerSpaces(allotment.getPassengerSpaces())
+                .releaseHours(allotment.getReleaseHours())
+                .validFrom(allotment.getValidFrom())
+                .validTo(allotment.getValidTo())
+                .isActive(Boolean.TRUE.equals(allotment.getIsActive()))
+                .createdAt(allotment.getCreatedAt())
+                .build();
+    }
+}
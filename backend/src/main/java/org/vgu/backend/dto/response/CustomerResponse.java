@@ -3,6 +3,7 @@ package org.vgu.backend.dto.response;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
+import org.vgu.backend.enums.TypeCustomer;
 import org.vgu.backend.model.Account;
 import org.vgu.backend.model.Customer;
 
@@ -15,6 +16,7 @@ public class CustomerResponse {
     // Align with frontend "customer" shape
     private Long id; // was customerId
     private String companyName;
+    private TypeCustomer customerType;
 
     // Optional linkage to account
     private Long accountId;
@@ -41,6 +43,7 @@ public class CustomerResponse {
         return CustomerResponse.builder()
                 .id(customer.getId())
                 .companyName(customer.getCompanyName())
+                .customerType(customer.getCustomerType())
                 .accountId(acc != null ? acc.getId() : null)
                 .username(acc != null ? acc.getUsername() : null)
                 .email(acc != null ? acc.getEmail() : null)
@@ -0,0 +1,51 @@
+package org.vgu.backend.dto.response;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import org.vgu.backend.enums.PaymentMethod;
+import org.vgu.backend.enums.PaymentStatus;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One row of a customer's payment history, projected straight from the
+ * query; field order matches PaymentRepository.findHistoryPage
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentHistoryItem {
+
+    private Long id;
+    private String paymentNumber;
+    private Long bookingId;
+    private String bookingCode;
+    private BigDecimal amount;
+    private PaymentMethod paymentMethod;
+    private PaymentStatus status;
+    private String transactionId;
+    private LocalDateTime paymentDate;
+    private BigDecimal refundAmount;
+    private LocalDateTime refundDate;
+    private LocalDateTime createdAt;
+    private String routeName;
+    private LocalDateTime departureTime;
+    private BigDecimal totalBookingAmount;
+
+    // Same helpers as PaymentResponse
+    public boolean isSuccessful() {
+        return status == PaymentStatus.COMPLETED;
+    }
+
+    public boolean isCanBeRefunded() {
+        return status == PaymentStatus.COMPLETED
+                && (refundAmount == null || refundAmount.compareTo(amount) < 0);
+    }
+
+    public BigDecimal getRefundableAmount() {
+        return refundAmount != null ? amount.subtract(refundAmount) : amount;
+    }
+}
@@ -0,0 +1,35 @@
+package org.vgu.backend.dto.response;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaymentStatementResponse {
+
+    private Long customerId;
+    private LocalDate from;
+    private LocalDate to;
+
+    // Paid minus refunded before the period
+    private BigDecimal openingBalance;
+
+    private long payments;
+    private BigDecimal totalPaid;
+    private long refunds;
+    private BigDecimal totalRefunded;
+    private BigDecimal netPaid;
+
+    private BigDecimal closingBalance;
+
+    // Payments still pending or processing, whenever they were started
+    private BigDecimal pendingAmount;
+    private long failedPayments;
+}
@@ -0,0 +1,10 @@
+package org.vgu.backend.enums;
+
+public enum AuditDurability {
+    /** Insert inside the caller's transaction */
+    SYNC,
+    /** Hand off to the audit writer once the caller's transaction commits */
+    AFTER_COMMIT,
+    /** As AFTER_COMMIT, plus a write-ahead spill file replayed on restart */
+    AFTER_COMMIT_WAL
+}
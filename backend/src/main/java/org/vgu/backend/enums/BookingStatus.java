@@ -1,5 +1,10 @@
 package org.vgu.backend.enums;
 
+/**
+ * Booking lifecycle. Legal transitions are held in a matrix indexed by
+ * ordinal, so checking one is an array lookup; BookingStateMachine adds
+ * guards and side effects on top.
+ */
 public enum BookingStatus {
     PENDING,
     CONFIRMED,
@@ -12,4 +17,57 @@ public enum BookingStatus {
     COMPLETED,
     IN_REVIEW,
     IN_REFUND,
-}
\ No newline at end of file
+    ;
+
+    private static final boolean[][] TRANSITIONS = new boolean[values().length][values().length];
+
+    static {
+        allow(PENDING, CONFIRMED, REJECTED, CANCELLED, IN_REFUND, REFUNDED);
+        allow(CONFIRMED, WAITING_FOR_PAYMENT, PAID, IN_REVIEW, CANCELLED, IN_REFUND, REFUNDED);
+        allow(WAITING_FOR_PAYMENT, PAID, CANCELLED, IN_REFUND, REFUNDED);
+        allow(PAID, IN_REVIEW, IN_PROGRESS, CANCELLED, IN_REFUND, REFUNDED);
+        allow(IN_REVIEW, IN_PROGRESS, CANCELLED, IN_REFUND, REFUNDED);
+        allow(IN_PROGRESS, COMPLETED, CANCELLED, IN_REFUND, REFUNDED);
+        allow(IN_REFUND, REFUNDED, CANCELLED);
+    }
+
+    private static void allow(BookingStatus from, BookingStatus... targets) {
+        for (BookingStatus to : targets) {
+            TRANSITIONS[from.ordinal()][to.ordinal()] = true;
+        }
+    }
+
+    public boolean canTransitionTo(BookingStatus next) {
+        return TRANSITIONS[ordinal()][next.ordinal()];
+    }
+
+    public boolean isTerminal() {
+        return this == REJECTED || this == CANCELLED || this == COMPLETED || this == REFUNDED;
+    }
+
+    /**
+     * Whether a booking in this status still occupies space on its schedule
+     */
+    public boolean holdsCapacity() {
+        return this != REJECTED && this != CANCELLED && this != REFUNDED;
+    }
+
+    /**
+     * Refunds can be requested until the booking goes to review
+     */
+    public boolean allowsRefundRequest() {
+        return this == PENDING || this == CONFIRMED || this == WAITING_FOR_PAYMENT || this == PAID;
+    }
+
+    public boolean allowsVehicleChanges() {
+        return this == PENDING || this == CONFIRMED;
+    }
+
+    /**
+     * A booking can move to another sailing until boarding starts
+     */
+    public boolean allowsSailingChange() {
+        return this == PENDING || this == CONFIRMED || this == WAITING_FOR_PAYMENT || this == PAID
+                || this == IN_REVIEW;
+    }
+}
@@ -0,0 +1,9 @@
+package org.vgu.backend.enums;
+
+public enum BookingUpdateJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    COMPLETED_WITH_ERRORS,
+    FAILED
+}
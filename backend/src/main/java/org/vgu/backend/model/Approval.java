@@ -5,11 +5,13 @@ import java.time.LocalDateTime;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.vgu.backend.enums.ApprovalStatus;
+import org.vgu.backend.service.booking.ApprovalDeadlineListener;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
@@ -28,6 +30,7 @@ import lombok.Setter;
 
 @Entity
 @Table(name = "approvals")
+@EntityListeners(ApprovalDeadlineListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
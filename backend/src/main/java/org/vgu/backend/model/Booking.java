@@ -8,13 +8,16 @@ import java.util.List;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.service.booking.BookingStatsListener;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
@@ -26,6 +29,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
@@ -34,6 +38,7 @@ import lombok.Setter;
 
 @Entity
 @Table(name = "bookings")
+@EntityListeners(BookingStatsListener.class)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -69,6 +74,15 @@ public class Booking {
     @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
     private BigDecimal totalAmount;
 
+    // Part of the booking taken from the customer's allotment rather than the public pool
+    @Column(name = "allotted_vehicles", nullable = false)
+    @Builder.Default
+    private Integer allottedVehicles = 0;
+
+    @Column(name = "allotted_passengers", nullable = false)
+    @Builder.Default
+    private Integer allottedPassengers = 0;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "status", nullable = false)
     private BookingStatus status;
@@ -144,6 +158,15 @@ public class Booking {
     @JsonIgnoreProperties({ "booking" })
     private List<BookingRecord> auditRecords = new ArrayList<>();
 
+    // State as of load or last flush, used by BookingStatsListener to detect transitions
+    @Transient
+    @JsonIgnore
+    private BookingStatus loadedStatus;
+
+    @Transient
+    @JsonIgnore
+    private BigDecimal loadedTotalAmount;
+
     // Helper methods
     public boolean isPending() {
         return this.status == BookingStatus.PENDING;
@@ -189,12 +212,22 @@ public class Booking {
         return isInReview() && approval != null && approval.isReviewOverdue();
     }
 
+    /**
+     * Move to {@code next} if the transition matrix allows it. Guards, capacity
+     * release, audit and notifications live in BookingStateMachine, which
+     * should be used for status changes outside this entity.
+     */
+    public void transitionTo(BookingStatus next) {
+        if (this.status != null && !this.status.canTransitionTo(next)) {
+            throw new IllegalStateException("Booking cannot move from " + this.status + " to " + next);
+        }
+        this.status = next;
+    }
+
     // Refund-related helper methods
     public boolean canRequestRefund() {
         // Can only request refund before IN_REVIEW status
-        return !isInReview() && !isInProgress() && !isCompleted() &&
-                !isCancelled() && !isInRefund() && !isRefunded() &&
-                !this.refundRequested;
+        return this.status.allowsRefundRequest() && !hasRefundRequested();
     }
 
     public boolean hasRefundRequested() {
@@ -212,14 +245,18 @@ public class Booking {
         this.refundRequestedBy = requester;
     }
 
+    /**
+     * Record an approved refund and reject any open approval. The move to
+     * REFUNDED is left to the caller so it goes through the state machine.
+     */
     public void approveRefund(Account processor, String notes) {
         if (!hasRefundRequested()) {
             throw new IllegalStateException("No refund request exists for this booking");
         }
+        if (!this.status.canTransitionTo(BookingStatus.REFUNDED)) {
+            throw new IllegalStateException("Cannot refund booking in status: " + this.status);
+        }
 
-        // Set booking status to CANCELLED first, then to REFUNDED to properly terminate
-        // the process
-        this.status = BookingStatus.CANCELLED;
         this.refundProcessedAt = LocalDateTime.now();
         this.refundProcessedBy = processor;
         this.refundDecisionNotes = notes;
@@ -250,9 +287,6 @@ public class Booking {
                 }
             }
         }
-
-        // Finally set status to REFUNDED to indicate the refund process is complete
-        this.status = BookingStatus.REFUNDED;
     }
 
     public void rejectRefund(Account processor, String notes) {
@@ -293,132 +327,4 @@ public class Booking {
             }
         }
     }
-
-    // Workflow methods
-    public void confirm() {
-        if (!isPending()) {
-            throw new IllegalStateException("Can only confirm PENDING bookings");
-        }
-        this.status = BookingStatus.CONFIRMED;
-        // Payment deadline is now handled in the Payment entity
-    }
-
-    public void markAsPaid() {
-        if (!isConfirmed() && !isWaitingForPayment()) {
-            throw new IllegalStateException("Can only mark CONFIRMED or WAITING_FOR_PAYMENT bookings as PAID");
-        }
-        this.status = BookingStatus.PAID;
-        // Payment timestamp is now handled in the Payment entity
-    }
-
-    public void moveToReview() {
-        // Allow moving to review either right after accountant confirmation or after
-        // payment
-        if (!isPaid() && !isConfirmed()) {
-            throw new IllegalStateException("Can only move to review after confirmation or payment");
-        }
-        this.status = BookingStatus.IN_REVIEW;
-
-        // Create or update approval
-        if (this.approval == null) {
-            this.approval = Approval.builder()
-                    .booking(this)
-                    .status(org.vgu.backend.enums.ApprovalStatus.IN_REVIEW)
-                    .build();
-        }
-        this.approval.startReview();
-    }
-
-    public void startProgress(Account reviewer, String reviewNotes) {
-        if (!isInReview() && !isPaid()) {
-            throw new IllegalStateException("Can only start progress for IN_REVIEW or PAID bookings");
-        }
-        this.status = BookingStatus.IN_PROGRESS;
-
-        // Approve the booking through approval
-        if (this.approval != null) {
-            this.approval.approve(reviewer, reviewNotes);
-        }
-    }
-
-    public void complete() {
-        if (!isInProgress()) {
-            throw new IllegalStateException("Can only complete IN_PROGRESS bookings");
-        }
-        this.status = BookingStatus.COMPLETED;
-    }
-
-    public void requestRefund(Account canceller, String reason) {
-        if (isCancelled() || isCompleted() || isRefunded() || isInRefund()) {
-            throw new IllegalStateException("Booking cannot be cancelled/refunded in current status: " + status);
-        }
-
-        // Special handling for review window: allow refund during 30-min review
-        if (isInReview()) {
-            if (approval != null && approval.getReviewDeadline() != null &&
-                    LocalDateTime.now().isBefore(approval.getReviewDeadline())) {
-                // Move to refund process during the review window
-                this.status = BookingStatus.IN_REFUND;
-                this.cancellationReason = reason;
-                this.cancelledBy = canceller;
-                this.cancelledAt = LocalDateTime.now();
-                // Refund details will be handled in the Payment entity
-                return;
-            } else {
-                // Refund window expired; lock refund
-                throw new IllegalStateException("Refund window has expired; booking is progressing");
-            }
-        }
-
-        // If paid or already in progress, move to refund process
-        if (isPaid() || isInProgress()) {
-            this.status = BookingStatus.IN_REFUND;
-            // Refund details will be handled in the Payment entity
-        }
-        this.status = BookingStatus.IN_REFUND;
-        this.cancellationReason = reason;
-        this.cancelledBy = canceller;
-        this.cancelledAt = LocalDateTime.now();
-    }
-
-    public void processRefund(Account processor) {
-        if (!isInRefund()) {
-            throw new IllegalStateException("Can only process IN_REFUND bookings");
-        }
-        this.status = BookingStatus.REFUNDED;
-        // Refund processing details are now handled in the Payment entity
-    }
-
-    public void cancel(Account canceller, String reason) {
-        if (isCancelled() || isCompleted() || isRefunded() || isInRefund()) {
-            throw new IllegalStateException("Booking cannot be cancelled in current status: " + status);
-        }
-
-        // Special handling for review window: allow refund during 30-min review
-        if (isInReview()) {
-            if (approval != null && approval.getReviewDeadline() != null &&
-                    LocalDateTime.now().isBefore(approval.getReviewDeadline())) {
-                // Move to refund process during the review window
-                this.status = BookingStatus.IN_REFUND;
-                this.cancellationReason = reason;
-                this.cancelledBy = canceller;
-                this.cancelledAt = LocalDateTime.now();
-                // Refund details will be handled in the Payment entity
-                return;
-            } else {
-                // Refund window expired; lock refund
-                throw new IllegalStateException("Refund window has expired; booking is progressing");
-            }
-        }
-
-        this.status = BookingStatus.CANCELLED;
-        this.cancelledBy = canceller;
-        this.cancelledAt = LocalDateTime.now();
-        this.cancellationReason = reason;
-
-        // If paid or already in progress, move to refund process
-        if (isPaid() || isInProgress()) {
-            this.status = BookingStatus.IN_REFUND;
-        }
-    }
-}
\ No newline at end of file
+}
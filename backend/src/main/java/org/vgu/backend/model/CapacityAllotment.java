@@ -0,0 +1,102 @@
+package org.vgu.backend.model;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.CreationTimestamp;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Space a corporate customer holds back on every matching sailing of a
+ * route. Unused space returns to the public pool {@code releaseHours}
+ * before departure.
+ */
+@Entity
+@Table(name = "capacity_allotments")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CapacityAllotment {
+
+    public static final int EVERY_DAY = 0x7F;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id", nullable = false)
+    @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler", "account", "vehicles", "bookings" })
+    private Customer customer;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "route_id", nullable = false)
+    @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
+    private Route route;
+
+    // Bit 0 is Monday
+    @Column(name = "days_of_week", nullable = false)
+    @Builder.Default
+    private Integer daysOfWeek = EVERY_DAY;
+
+    @Column(name = "vehicle_spaces", nullable = false)
+    private Integer vehicleSpaces;
+
+    @Column(name = "passenger_spaces", nullable = false)
+    private Integer passengerSpaces;
+
+    @Column(name = "release_hours", nullable = false)
+    private Integer releaseHours;
+
+    @Column(name = "valid_from", nullable = false)
+    private LocalDate validFrom;
+
+    @Column(name = "valid_to")
+    private LocalDate validTo;
+
+    @Column(name = "is_active", nullable = false)
+    @Builder.Default
+    private Boolean isActive = true;
+
+    @Column(name = "created_at")
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    public boolean appliesTo(LocalDateTime departure) {
+        LocalDate date = departure.toLocalDate();
+        return Boolean.TRUE.equals(isActive) && !date.isBefore(validFrom)
+                && (validTo == null || !date.isAfter(validTo)) && runsOn(date.getDayOfWeek());
+    }
+
+    public boolean runsOn(DayOfWeek day) {
+        return (daysOfWeek & (1 << (day.getValue() - 1))) != 0;
+    }
+
+    /**
+     * Whether both allotments can hold space on the same sailing
+     */
+    public boolean overlaps(CapacityAllotment other) {
+        return (daysOfWeek & other.daysOfWeek) != 0
+                && (validTo == null || other.validFrom == null || !other.validFrom.isAfter(validTo))
+                && (other.validTo == null || !validFrom.isAfter(other.validTo));
+    }
+}
@@ -6,12 +6,15 @@ import java.util.List;
 
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.vgu.backend.enums.TypeCustomer;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
 import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -51,6 +54,12 @@ public class Customer {
     @Column(name = "company_name")
     private String companyName;
 
+    // Corporations can hold capacity allotments
+    @Enumerated(EnumType.STRING)
+    @Column(name = "customer_type")
+    @Builder.Default
+    private TypeCustomer customerType = TypeCustomer.INDIVIDUAL;
+
     @OneToMany(mappedBy = "customer", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
     @Builder.Default
     private List<Vehicle> vehicles = new ArrayList<>();
@@ -0,0 +1,15 @@
+package org.vgu.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.vgu.backend.model.Berth;
+
+@Repository
+public interface BerthRepository extends JpaRepository<Berth, Long> {
+
+    List<Berth> findByPortIdOrderByBerthCode(Long portId);
+
+    boolean existsByPortIdAndBerthCode(Long portId, String berthCode);
+}
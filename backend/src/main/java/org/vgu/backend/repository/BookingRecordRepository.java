@@ -72,6 +72,12 @@ public interface BookingRecordRepository extends JpaRepository<BookingRecord, Lo
     @Query("SELECT COUNT(br) FROM BookingRecord br WHERE br.action = :action")
     Long countByAction(@Param("action") TypeAction action);
 
+    /**
+     * Count records per action type in one pass
+     */
+    @Query("SELECT br.action, COUNT(br) FROM BookingRecord br GROUP BY br.action")
+    List<Object[]> countGroupedByAction();
+
     /**
      * Count records for a specific booking
      */
@@ -231,7 +231,9 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
 
         boolean existsByBookingCodeAndCustomerId(String bookingCode, Long customerId);
 
+        boolean existsByIdAndScheduleId(Long id, Long scheduleId);
+
         @Override
         boolean existsById(@NonNull Long id);
 
-}
\ No newline at end of file
+}
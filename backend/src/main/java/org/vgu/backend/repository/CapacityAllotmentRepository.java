@@ -0,0 +1,17 @@
+package org.vgu.backend.repository;
+
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.vgu.backend.model.CapacityAllotment;
+
+@Repository
+public interface CapacityAllotmentRepository extends JpaRepository<CapacityAllotment, Long> {
+
+    List<CapacityAllotment> findByRouteIdAndIsActiveTrue(Long routeId);
+
+    List<CapacityAllotment> findByCustomerIdAndRouteIdAndIsActiveTrue(Long customerId, Long routeId);
+
+    List<CapacityAllotment> findByCustomerIdOrderByCreatedAtDesc(Long customerId);
+}
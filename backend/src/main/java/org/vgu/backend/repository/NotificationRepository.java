@@ -6,6 +6,7 @@ import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -144,6 +145,7 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
         /**
          * Delete old read notifications (for cleanup)
          */
+        @Modifying
         @Query("DELETE FROM Notification n WHERE n.read = true AND n.readAt < :cutoffDate")
         int deleteOldReadNotifications(@Param("cutoffDate") LocalDateTime cutoffDate);
 
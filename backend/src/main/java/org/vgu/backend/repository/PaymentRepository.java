@@ -1,9 +1,15 @@
 package org.vgu.backend.repository;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.vgu.backend.dto.response.PaymentHistoryItem;
 import org.vgu.backend.enums.PaymentStatus;
 import org.vgu.backend.model.Payment;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.stereotype.Repository;
@@ -18,4 +24,59 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     List<Payment> findByBookingId(Long bookingId);
 
     List<Payment> findByStatus(PaymentStatus status);
-}
\ No newline at end of file
+
+    /**
+     * A customer's payments, newest first, starting below {@code beforeId}
+     * (keyset paging). Driven by bookings.customer_id and payments.booking_id,
+     * so the cost follows that customer's payments only.
+     */
+    @Query("SELECT new org.vgu.backend.dto.response.PaymentHistoryItem(p.id, p.paymentNumber, b.id, "
+            + "b.bookingCode, p.amount, p.paymentMethod, p.status, p.transactionId, p.paymentDate, "
+            + "p.refundAmount, p.refundDate, p.createdAt, r.routeName, s.departureTime, b.totalAmount) "
+            + "FROM Payment p JOIN p.booking b LEFT JOIN b.schedule s LEFT JOIN s.route r "
+            + "WHERE b.customer.id = :customerId AND (:beforeId IS NULL OR p.id < :beforeId) "
+            + "ORDER BY p.id DESC")
+    List<PaymentHistoryItem> findHistoryPage(@Param("customerId") Long customerId, @Param("beforeId") Long beforeId,
+            Limit limit);
+
+    interface StatementTotals {
+        Number getPaidBefore();
+
+        Number getRefundedBefore();
+
+        Number getPayments();
+
+        Number getPaid();
+
+        Number getRefunds();
+
+        Number getRefunded();
+
+        Number getPending();
+
+        Number getFailed();
+    }
+
+    /**
+     * Period totals of a customer's payments in one aggregate pass
+     */
+    @Query("SELECT "
+            + "COALESCE(SUM(CASE WHEN p.status IN :settled AND p.paymentDate < :from THEN p.amount ELSE 0 END), 0) "
+            + "AS paidBefore, "
+            + "COALESCE(SUM(CASE WHEN p.refundDate < :from THEN p.refundAmount ELSE 0 END), 0) AS refundedBefore, "
+            + "COALESCE(SUM(CASE WHEN p.status IN :settled AND p.paymentDate >= :from AND p.paymentDate < :to "
+            + "THEN 1 ELSE 0 END), 0) AS payments, "
+            + "COALESCE(SUM(CASE WHEN p.status IN :settled AND p.paymentDate >= :from AND p.paymentDate < :to "
+            + "THEN p.amount ELSE 0 END), 0) AS paid, "
+            + "COALESCE(SUM(CASE WHEN p.refundDate >= :from AND p.refundDate < :to AND p.refundAmount > 0 "
+            + "THEN 1 ELSE 0 END), 0) AS refunds, "
+            + "COALESCE(SUM(CASE WHEN p.refundDate >= :from AND p.refundDate < :to THEN p.refundAmount ELSE 0 END), 0) "
+            + "AS refunded, "
+            + "COALESCE(SUM(CASE WHEN p.status IN :open THEN p.amount ELSE 0 END), 0) AS pending, "
+            + "COALESCE(SUM(CASE WHEN p.status = :failed AND p.createdAt >= :from AND p.createdAt < :to "
+            + "THEN 1 ELSE 0 END), 0) AS failed "
+            + "FROM Payment p WHERE p.booking.customer.id = :customerId")
+    StatementTotals getStatementTotals(@Param("customerId") Long customerId, @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to, @Param("settled") Collection<PaymentStatus> settled,
+            @Param("open") Collection<PaymentStatus> open, @Param("failed") PaymentStatus failed);
+}
@@ -0,0 +1,572 @@
+package org.vgu.backend.service.allotment;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.dto.request.CapacityAllotmentRequest;
+import org.vgu.backend.enums.TypeCustomer;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.exception.DataNotFoundException;
+import org.vgu.backend.model.CapacityAllotment;
+import org.vgu.backend.model.Customer;
+import org.vgu.backend.model.Route;
+import org.vgu.backend.repository.CapacityAllotmentRepository;
+import org.vgu.backend.repository.CustomerRepository;
+import org.vgu.backend.repository.RouteRepository;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Corporate capacity allotments.
+ * An allotment is carved out of the public pool of every matching sailing
+ * as a block in {@code schedule_allotments}. Bookings by the customer draw
+ * on their block first and on the public pool for the rest.
+ * Unreleased blocks are mirrored in memory as counters keyed by schedule
+ * and customer, so checking one is a pair of map lookups. The database
+ * stays authoritative: every draw is a conditional UPDATE, and a stale
+ * counter, e.g. one drawn down on another node, falls back to the public
+ * pool and is reloaded. A leased sweep hands unused space back to the
+ * public pool at each block's release time, a chunk of blocks per
+ * transaction.
+ */
+@Service
+public class AllotmentService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AllotmentService.class);
+
+    /**
+     * Space taken from an allotment
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Split {
+        private final int vehicles;
+        private final int passengers;
+
+        public boolean isEmpty() {
+            return vehicles == 0 && passengers == 0;
+        }
+    }
+
+    public static final Split NONE = new Split(0, 0);
+
+    @Getter
+    @AllArgsConstructor
+    public static class Remaining {
+        private final Long scheduleId;
+        private final Long customerId;
+        private final int vehicleSpaces;
+        private final int passengerSpaces;
+        // Null when the customer holds no block on the sailing
+        private final LocalDateTime releaseAt;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class CarveResult {
+        private final CapacityAllotment allotment;
+        private final int sailings;
+        // Sailings where the public pool could not cover the full allotment
+        private final int shortSailings;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CapacityAllotmentRepository allotmentRepository;
+    private final CustomerRepository customerRepository;
+    private final RouteRepository routeRepository;
+    private final MeterRegistry meterRegistry;
+    private final JobLeaseService leaseService;
+
+    // Schedule ID -> customer ID -> unreleased block
+    private volatile Map<Long, Map<Long, Block>> blocks = new ConcurrentHashMap<>();
+
+    @Value("${app.allotment.chunk-size:500}")
+    private int chunkSize;
+
+    public AllotmentService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            CapacityAllotmentRepository allotmentRepository, CustomerRepository customerRepository,
+            RouteRepository routeRepository, MeterRegistry meterRegistry, JobLeaseService leaseService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.leaseService = leaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.allotmentRepository = allotmentRepository;
+        this.customerRepository = customerRepository;
+        this.routeRepository = routeRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // ==================== CAPACITY CHECKS ====================
+
+    public Remaining remaining(Long scheduleId, Long customerId) {
+        Block block = block(scheduleId, customerId, LocalDateTime.now());
+        return block == null ? new Remaining(scheduleId, customerId, 0, 0, null)
+                : new Remaining(scheduleId, customerId, Math.max(0, block.vehicles.get()),
+                        Math.max(0, block.passengers.get()), block.releaseAt);
+    }
+
+    /**
+     * Take as much of a booking as the customer's block on the sailing
+     * covers. Must run in the booking's transaction; the rest has to come
+     * from the public pool.
+     */
+    public Split consume(Long scheduleId, Long customerId, int vehicles, int passengers) {
+        LocalDateTime now = LocalDateTime.now();
+        Block block = block(scheduleId, customerId, now);
+        if (block == null) {
+            return NONE;
+        }
+        int takeVehicles = Math.min(vehicles, Math.max(0, block.vehicles.get()));
+        int takePassengers = Math.min(passengers, Math.max(0, block.passengers.get()));
+        if (takeVehicles == 0 && takePassengers == 0) {
+            return NONE;
+        }
+        int updated = jdbcTemplate.update("UPDATE schedule_allotments SET "
+                + "used_vehicle_spaces = used_vehicle_spaces + ?, used_passenger_spaces = used_passenger_spaces + ? "
+                + "WHERE schedule_id = ? AND customer_id = ? AND released_at IS NULL AND release_at > ? "
+                + "AND used_vehicle_spaces + ? <= vehicle_spaces AND used_passenger_spaces + ? <= passenger_spaces",
+                takeVehicles, takePassengers, scheduleId, customerId, Timestamp.valueOf(now), takeVehicles,
+                takePassengers);
+        if (updated == 0) {
+            // Drawn down elsewhere or released; the public pool serves this booking
+            meterRegistry.counter("app.allotment.draws", "outcome", "stale").increment();
+            reload(scheduleId, customerId);
+            return NONE;
+        }
+        reserve(scheduleId, customerId, block, takeVehicles, takePassengers);
+        meterRegistry.counter("app.allotment.draws", "outcome", "allotted").increment();
+        return new Split(takeVehicles, takePassengers);
+    }
+
+    /**
+     * Return a booking's allotted space to its block when the booking is
+     * cancelled or moved
+     *
+     * @return false if the block was already released, so the space belongs
+     *         to the public pool
+     */
+    public boolean giveBack(Long scheduleId, Long customerId, int vehicles, int passengers) {
+        if ((vehicles == 0 && passengers == 0) || scheduleId == null || customerId == null) {
+            return false;
+        }
+        int updated = jdbcTemplate.update("UPDATE schedule_allotments SET "
+                + "used_vehicle_spaces = GREATEST(0, used_vehicle_spaces - ?), "
+                + "used_passenger_spaces = GREATEST(0, used_passenger_spaces - ?) "
+                + "WHERE schedule_id = ? AND customer_id = ? AND released_at IS NULL",
+                vehicles, passengers, scheduleId, customerId);
+        if (updated == 0) {
+            return false;
+        }
+        // Only offer the space to other bookings once it is really back in the block
+        afterCommit(() -> {
+            Block block = blocks.getOrDefault(scheduleId, Map.of()).get(customerId);
+            if (block != null) {
+                block.vehicles.addAndGet(vehicles);
+                block.passengers.addAndGet(passengers);
+            }
+        });
+        return true;
+    }
+
+    // ==================== ALLOTMENTS ====================
+
+    /**
+     * Create an allotment and carve it out of every future matching sailing
+     */
+    public CarveResult createAllotment(CapacityAllotmentRequest request) {
+        Customer customer = customerRepository.findById(request.getCustomerId())
+                .orElseThrow(() -> new DataNotFoundException("Customer not found: " + request.getCustomerId()));
+        if (customer.getCustomerType() != TypeCustomer.CORPORATION) {
+            throw new BusinessException("Allotments are only available to corporate customers", "NOT_CORPORATE");
+        }
+        Route route = routeRepository.findById(request.getRouteId())
+                .orElseThrow(() -> new DataNotFoundException("Route not found: " + request.getRouteId()));
+        if (request.getValidTo() != null && request.getValidTo().isBefore(request.getValidFrom())) {
+            throw new BusinessException("Allotment ends before it starts", "INVALID_ALLOTMENT");
+        }
+
+        CapacityAllotment allotment = CapacityAllotment.builder()
+                .customer(customer)
+                .route(route)
+                .daysOfWeek(request.getDaysOfWeek() != null ? request.getDaysOfWeek() : CapacityAllotment.EVERY_DAY)
+                .vehicleSpaces(request.getVehicleSpaces())
+                .passengerSpaces(request.getPassengerSpaces())
+                .releaseHours(request.getReleaseHours())
+                .validFrom(request.getValidFrom())
+                .validTo(request.getValidTo())
+                .build();
+        for (CapacityAllotment existing : allotmentRepository
+                .findByCustomerIdAndRouteIdAndIsActiveTrue(customer.getId(), route.getId())) {
+            if (existing.overlaps(allotment)) {
+                throw new BusinessException("Customer already holds allotment " + existing.getId()
+                        + " on overlapping sailings of this route", "ALLOTMENT_OVERLAP");
+            }
+        }
+
+        return transactionTemplate.execute(tx -> {
+            CapacityAllotment saved = allotmentRepository.save(allotment);
+            LocalDateTime now = LocalDateTime.now();
+            List<Sailing> sailings = jdbcTemplate.query("SELECT id, departure_time, available_vehicle_spaces, "
+                    + "available_passenger_spaces FROM schedules WHERE route_id = ? AND status = 'SCHEDULED' "
+                    + "AND departure_time > ? ORDER BY id FOR UPDATE", Sailing.MAPPER, route.getId(),
+                    Timestamp.valueOf(now));
+            int[] carved = carve(sailings, List.of(saved), now);
+            logger.info("Allotment {} for customer {} on route {} reserved space on {} sailings ({} short)",
+                    saved.getId(), customer.getId(), route.getId(), carved[0], carved[1]);
+            return new CarveResult(saved, carved[0], carved[1]);
+        });
+    }
+
+    /**
+     * Carve the route's allotments out of a newly created sailing
+     *
+     * @return the space reserved, already taken off the public pool
+     */
+    public Split applyToSchedule(Long scheduleId) {
+        return transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Sailing> sailings = jdbcTemplate.query("SELECT id, departure_time, available_vehicle_spaces, "
+                    + "available_passenger_spaces FROM schedules WHERE id = ? AND status = 'SCHEDULED' "
+                    + "AND departure_time > ? AND NOT EXISTS (SELECT 1 FROM schedule_allotments sa "
+                    + "WHERE sa.schedule_id = schedules.id) FOR UPDATE", Sailing.MAPPER, scheduleId,
+                    Timestamp.valueOf(now));
+            if (sailings.isEmpty()) {
+                return NONE;
+            }
+            Long routeId = jdbcTemplate.queryForObject("SELECT route_id FROM schedules WHERE id = ?", Long.class,
+                    scheduleId);
+            List<CapacityAllotment> allotments = allotmentRepository.findByRouteIdAndIsActiveTrue(routeId);
+            if (allotments.isEmpty()) {
+                return NONE;
+            }
+            Sailing sailing = sailings.get(0);
+            Integer vehiclesBefore = sailing.vehicleSpaces;
+            Integer passengersBefore = sailing.passengerSpaces;
+            carve(sailings, allotments, now);
+            return new Split(vehiclesBefore != null ? vehiclesBefore - sailing.vehicleSpaces : 0,
+                    passengersBefore != null ? passengersBefore - sailing.passengerSpaces : 0);
+        });
+    }
+
+    /**
+     * Carve the route's allotments out of sailings created in bulk, such as
+     * a generated season. Joins the caller's transaction.
+     *
+     * @return the number of sailings that received a block
+     */
+    public int applyToRoute(Long routeId, LocalDateTime from, LocalDateTime to) {
+        List<CapacityAllotment> allotments = allotmentRepository.findByRouteIdAndIsActiveTrue(routeId);
+        if (allotments.isEmpty()) {
+            return 0;
+        }
+        return transactionTemplate.execute(tx -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Sailing> sailings = jdbcTemplate.query("SELECT id, departure_time, available_vehicle_spaces, "
+                    + "available_passenger_spaces FROM schedules WHERE route_id = ? AND status = 'SCHEDULED' "
+                    + "AND departure_time > ? AND departure_time BETWEEN ? AND ? AND NOT EXISTS (SELECT 1 "
+                    + "FROM schedule_allotments sa WHERE sa.schedule_id = schedules.id) ORDER BY id FOR UPDATE",
+                    Sailing.MAPPER, routeId, Timestamp.valueOf(now), Timestamp.valueOf(from), Timestamp.valueOf(to));
+            return carve(sailings, allotments, now)[0];
+        });
+    }
+
+    /**
+     * Stop an allotment and hand its unused space on future sailings back
+     * to the public pool
+     */
+    public int deactivate(Long allotmentId) {
+        CapacityAllotment allotment = allotmentRepository.findById(allotmentId)
+                .orElseThrow(() -> new DataNotFoundException("Allotment not found: " + allotmentId));
+        allotment.setIsActive(false);
+        allotmentRepository.save(allotment);
+        int released = releaseBlocks("allotment_id = ?", allotmentId);
+        logger.info("Allotment {} deactivated, {} blocks released", allotmentId, released);
+        return released;
+    }
+
+    public List<CapacityAllotment> getCustomerAllotments(Long customerId) {
+        return allotmentRepository.findByCustomerIdOrderByCreatedAtDesc(customerId);
+    }
+
+    // ==================== RELEASE ====================
+
+    /**
+     * Hand unused space of blocks past their release time back to the
+     * public pool
+     */
+    @Scheduled(fixedDelayString = "${app.allotment.release-sweep-ms:60000}",
+            initialDelayString = "${app.allotment.release-sweep-ms:60000}")
+    @LeasedJob("allotment-release")
+    public void releaseDueBlocks() {
+        try {
+            int released = releaseBlocks("release_at <= ?", Timestamp.valueOf(LocalDateTime.now()));
+            if (released > 0) {
+                logger.info("Released {} allotment blocks to the public pool", released);
+            }
+        } catch (Exception e) {
+            logger.error("Allotment release sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private int releaseBlocks(String condition, Object argument) {
+        int total = 0;
+        while (true) {
+            Integer released = transactionTemplate.execute(tx -> {
+                // No-op outside the leased sweep
+                leaseService.verify(JobLease.current());
+                return releaseChunk(condition, argument);
+            });
+            total += released;
+            if (released < chunkSize) {
+                return total;
+            }
+        }
+    }
+
+    private int releaseChunk(String condition, Object argument) {
+        List<long[]> due = jdbcTemplate.query("SELECT id, schedule_id, customer_id, "
+                + "GREATEST(0, vehicle_spaces - used_vehicle_spaces), "
+                + "GREATEST(0, passenger_spaces - used_passenger_spaces) FROM schedule_allotments "
+                + "WHERE released_at IS NULL AND " + condition + " ORDER BY schedule_id LIMIT ? FOR UPDATE",
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getLong(4),
+                        rs.getLong(5) },
+                argument, chunkSize);
+        if (due.isEmpty()) {
+            return 0;
+        }
+        // One capacity update per sailing, in id order
+        Map<Long, long[]> returned = new TreeMap<>();
+        for (long[] block : due) {
+            long[] sum = returned.computeIfAbsent(block[1], id -> new long[2]);
+            sum[0] += block[3];
+            sum[1] += block[4];
+        }
+        List<Object[]> capacity = new ArrayList<>(returned.size());
+        returned.forEach((scheduleId, sum) -> capacity.add(new Object[] { sum[0], sum[1], scheduleId }));
+        jdbcTemplate.batchUpdate("UPDATE schedules SET "
+                + "available_vehicle_spaces = available_vehicle_spaces + ?, "
+                + "available_passenger_spaces = available_passenger_spaces + ? WHERE id = ?", capacity);
+
+        List<Object> args = new ArrayList<>(due.size() + 1);
+        args.add(Timestamp.valueOf(LocalDateTime.now()));
+        due.forEach(block -> args.add(block[0]));
+        jdbcTemplate.update("UPDATE schedule_allotments SET released_at = ? WHERE id IN ("
+                + placeholders(due.size()) + ")", args.toArray());
+
+        afterCommit(() -> due.forEach(block -> {
+            Map<Long, Block> bySchedule = blocks.get(block[1]);
+            if (bySchedule != null) {
+                bySchedule.remove(block[2]);
+            }
+        }));
+        meterRegistry.counter("app.allotment.released").increment(due.size());
+        return due.size();
+    }
+
+    // ==================== CARVING ====================
+
+    /**
+     * Reserve each allotment's space on the matching sailings, capped by
+     * the public pool. Sailings must be locked by the caller.
+     *
+     * @return {sailings with a block, sailings where the pool fell short}
+     */
+    private int[] carve(List<Sailing> sailings, List<CapacityAllotment> allotments, LocalDateTime now) {
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> capacity = new ArrayList<>();
+        List<Object[]> created = new ArrayList<>();
+        int carvedSailings = 0;
+        int shortSailings = 0;
+        for (Sailing sailing : sailings) {
+            int vehicles = 0;
+            int passengers = 0;
+            boolean isShort = false;
+            for (CapacityAllotment allotment : allotments) {
+                LocalDateTime releaseAt = sailing.departureTime.minusHours(allotment.getReleaseHours());
+                if (!allotment.appliesTo(sailing.departureTime) || !releaseAt.isAfter(now)) {
+                    continue;
+                }
+                int v = sailing.vehicleSpaces == null ? allotment.getVehicleSpaces()
+                        : Math.min(allotment.getVehicleSpaces(), Math.max(0, sailing.vehicleSpaces - vehicles));
+                int p = sailing.passengerSpaces == null ? allotment.getPassengerSpaces()
+                        : Math.min(allotment.getPassengerSpaces(),
+                                Math.max(0, sailing.passengerSpaces - passengers));
+                isShort |= v < allotment.getVehicleSpaces() || p < allotment.getPassengerSpaces();
+                vehicles += v;
+                passengers += p;
+                Long customerId = allotment.getCustomer().getId();
+                inserts.add(new Object[] { allotment.getId(), sailing.id, customerId, v, p,
+                        Timestamp.valueOf(releaseAt) });
+                created.add(new Object[] { sailing.id, customerId, new Block(releaseAt, v, p) });
+            }
+            if (vehicles > 0 || passengers > 0) {
+                capacity.add(new Object[] { vehicles, passengers, sailing.id });
+                sailing.vehicleSpaces = sailing.vehicleSpaces != null ? sailing.vehicleSpaces - vehicles : null;
+                sailing.passengerSpaces = sailing.passengerSpaces != null ? sailing.passengerSpaces - passengers
+                        : null;
+            }
+            carvedSailings += vehicles > 0 || passengers > 0 ? 1 : 0;
+            shortSailings += isShort ? 1 : 0;
+        }
+        for (int i = 0; i < inserts.size(); i += chunkSize) {
+            jdbcTemplate.batchUpdate("INSERT INTO schedule_allotments (allotment_id, schedule_id, customer_id, "
+                    + "vehicle_spaces, passenger_spaces, release_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    inserts.subList(i, Math.min(i + chunkSize, inserts.size())));
+        }
+        jdbcTemplate.batchUpdate("UPDATE schedules SET "
+                + "available_vehicle_spaces = available_vehicle_spaces - ?, "
+                + "available_passenger_spaces = available_passenger_spaces - ? WHERE id = ?", capacity);
+        afterCommit(() -> created.forEach(row -> blocks
+                .computeIfAbsent((Long) row[0], id -> new ConcurrentHashMap<>())
+                .put((Long) row[1], (Block) row[2])));
+        return new int[] { carvedSailings, shortSailings };
+    }
+
+    // ==================== IN-MEMORY COUNTERS ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            reloadAll();
+        } catch (Exception e) {
+            logger.warn("Failed to load allotment blocks: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Pick up blocks carved, drawn or released on other nodes
+     */
+    @Scheduled(fixedDelayString = "${app.allotment.refresh-ms:60000}",
+            initialDelayString = "${app.allotment.refresh-ms:60000}")
+    public void reloadAll() {
+        Map<Long, Map<Long, Block>> loaded = new ConcurrentHashMap<>();
+        jdbcTemplate.query("SELECT schedule_id, customer_id, release_at, vehicle_spaces - used_vehicle_spaces, "
+                + "passenger_spaces - used_passenger_spaces FROM schedule_allotments "
+                + "WHERE released_at IS NULL AND release_at > ?",
+                rs -> {
+                    loaded.computeIfAbsent(rs.getLong(1), id -> new ConcurrentHashMap<>()).put(rs.getLong(2),
+                            new Block(rs.getTimestamp(3).toLocalDateTime(), rs.getInt(4), rs.getInt(5)));
+                },
+                Timestamp.valueOf(LocalDateTime.now()));
+        blocks = loaded;
+        logger.debug("Loaded allotment blocks for {} sailings", loaded.size());
+    }
+
+    private void reload(Long scheduleId, Long customerId) {
+        List<Block> rows = jdbcTemplate.query("SELECT release_at, vehicle_spaces - used_vehicle_spaces, "
+                + "passenger_spaces - used_passenger_spaces FROM schedule_allotments "
+                + "WHERE schedule_id = ? AND customer_id = ? AND released_at IS NULL",
+                (rs, rowNum) -> new Block(rs.getTimestamp(1).toLocalDateTime(), rs.getInt(2), rs.getInt(3)),
+                scheduleId, customerId);
+        Map<Long, Block> bySchedule = blocks.computeIfAbsent(scheduleId, id -> new ConcurrentHashMap<>());
+        if (rows.isEmpty()) {
+            bySchedule.remove(customerId);
+        } else {
+            bySchedule.put(customerId, rows.get(0));
+        }
+    }
+
+    private Block block(Long scheduleId, Long customerId, LocalDateTime now) {
+        Map<Long, Block> bySchedule = blocks.get(scheduleId);
+        Block block = bySchedule != null ? bySchedule.get(customerId) : null;
+        // Past its release time the space belongs to the public pool, swept or not
+        return block != null && block.releaseAt.isAfter(now) ? block : null;
+    }
+
+    /**
+     * Take space off the counters straight away, so concurrent bookings do
+     * not size their draws on it, and put it back if the transaction rolls
+     * back. When the outcome is unknown the block is read again instead.
+     */
+    private void reserve(Long scheduleId, Long customerId, Block block, int vehicles, int passengers) {
+        block.vehicles.addAndGet(-vehicles);
+        block.passengers.addAndGet(-passengers);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        block.vehicles.addAndGet(vehicles);
+                        block.passengers.addAndGet(passengers);
+                    } else if (status == STATUS_UNKNOWN) {
+                        reload(scheduleId, customerId);
+                    }
+                }
+            });
+        }
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Block {
+        private final LocalDateTime releaseAt;
+        // Unused space
+        private final AtomicInteger vehicles;
+        private final AtomicInteger passengers;
+
+        private Block(LocalDateTime releaseAt, int vehicles, int passengers) {
+            this.releaseAt = releaseAt;
+            this.vehicles = new AtomicInteger(vehicles);
+            this.passengers = new AtomicInteger(passengers);
+        }
+    }
+
+    private static final class Sailing {
+        private static final RowMapper<Sailing> MAPPER = (rs, rowNum) -> new Sailing(
+                rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(), rs.getObject(3, Integer.class),
+                rs.getObject(4, Integer.class));
+
+        private final long id;
+        private final LocalDateTime departureTime;
+        // Null means the sailing does not track that capacity
+        private Integer vehicleSpaces;
+        private Integer passengerSpaces;
+
+        private Sailing(long id, LocalDateTime departureTime, Integer vehicleSpaces, Integer passengerSpaces) {
+            this.id = id;
+            this.departureTime = departureTime;
+            this.vehicleSpaces = vehicleSpaces;
+            this.passengerSpaces = passengerSpaces;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package org.vgu.backend.service.analytics;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Load factors of sailings by ferry, route, weekday and hour.
+ * Every sailing of the last years is held as one row of a columnar
+ * snapshot: parallel primitive arrays sorted by schedule id, with the
+ * departure packed as an epoch hour. Cubes are aggregated from the arrays
+ * with a parallel stream into per-thread maps keyed by a packed long, so
+ * no entity or boxed row is created per sailing.
+ * Refreshes are incremental: only sailings whose schedule or bookings
+ * changed since the last refresh are re-read, and merged into a new
+ * snapshot that replaces the old one atomically. Vehicles have no update
+ * timestamp, so a daily full reload catches changes that did not touch
+ * the booking row.
+ */
+@Service
+public class UtilizationAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UtilizationAnalyticsService.class);
+
+    private static final String RELEASED = "'CANCELLED', 'REFUNDED', 'REJECTED'";
+
+    public enum Dimension {
+        FERRY, ROUTE, WEEKDAY, HOUR
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Cell {
+        // Null when not grouped by that dimension
+        private final Long ferryId;
+        private final Long routeId;
+        private final DayOfWeek dayOfWeek;
+        private final Integer hour;
+        private final long sailings;
+        private final long vehicleCapacity;
+        private final long vehiclesCarried;
+        private final double vehicleLoadFactor;
+        private final long passengerCapacity;
+        private final long passengersCarried;
+        private final double passengerLoadFactor;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class UtilizationReport {
+        private final Set<Dimension> groupBy;
+        private final long sailings;
+        private final List<Cell> cells;
+        private final LocalDateTime snapshotAt;
+        private final long durationMs;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+
+    @Value("${app.analytics.history-years:3}")
+    private int historyYears;
+
+    // Re-read changes this far before the last refresh, for late commits
+    @Value("${app.analytics.overlap-minutes:5}")
+    private int overlapMinutes;
+
+    @Value("${app.analytics.chunk-size:500}")
+    private int chunkSize;
+
+    public UtilizationAnalyticsService(JdbcTemplate jdbcTemplate,
+            @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskExecutor = taskExecutor;
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        taskExecutor.execute(this::reload);
+    }
+
+    @Scheduled(cron = "${app.analytics.reload-cron:0 45 3 * * *}")
+    public void reload() {
+        if (!refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long started = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime cutoff = now.minusYears(historyYears);
+            Builder builder = new Builder(snapshot != null ? snapshot.size : 1024);
+            readFacts("s.departure_time >= ?",
+                    "b.schedule_id IN (SELECT id FROM schedules WHERE departure_time >= ?)",
+                    List.of(Timestamp.valueOf(cutoff)), builder::add);
+            snapshot = builder.build(now);
+            logger.info("Utilization snapshot loaded: {} sailings in {} ms", snapshot.size,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            logger.error("Failed to load utilization snapshot: {}", e.getMessage(), e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.analytics.refresh-ms:300000}",
+            initialDelayString = "${app.analytics.refresh-ms:300000}")
+    public void refresh() {
+        if (snapshot == null || !refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Snapshot current = snapshot;
+            long started = System.nanoTime();
+            LocalDateTime now = LocalDateTime.now();
+            Timestamp since = Timestamp.valueOf(current.takenAt.minusMinutes(overlapMinutes));
+            long lastId = current.size > 0 ? current.scheduleIds[current.size - 1] : 0;
+            List<Long> changed = jdbcTemplate.queryForList("SELECT id FROM schedules WHERE id > ? OR updated_at >= ? "
+                    + "UNION SELECT schedule_id FROM bookings WHERE updated_at >= ?",
+                    Long.class, lastId, since, since);
+
+            Builder fresh = new Builder(changed.size());
+            Collections.sort(changed);
+            for (int from = 0; from < changed.size(); from += chunkSize) {
+                List<Long> chunk = changed.subList(from, Math.min(from + chunkSize, changed.size()));
+                String in = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+                readFacts("s.id IN (" + in + ")", "b.schedule_id IN (" + in + ")", new ArrayList<>(chunk),
+                        fresh::add);
+            }
+            int cutoff = epochHour(now.minusYears(historyYears));
+            snapshot = merge(current, fresh.build(now), cutoff, now);
+            logger.debug("Utilization snapshot refreshed: {} sailings re-read in {} ms", changed.size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            logger.error("Failed to refresh utilization snapshot: {}", e.getMessage(), e);
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Load factors of the sailings matching the filters, one cell per
+     * combination of the grouped dimensions. Cancelled sailings are left out.
+     */
+    public UtilizationReport utilization(Long ferryId, Long routeId, LocalDate from, LocalDate to,
+            Set<Dimension> groupBy) {
+        long started = System.nanoTime();
+        Snapshot s = snapshot;
+        if (s == null) {
+            throw new IllegalStateException("Utilization snapshot is still loading");
+        }
+        int fromHour = from != null ? epochHour(from.atStartOfDay()) : Integer.MIN_VALUE;
+        int toHour = to != null ? epochHour(to.plusDays(1).atStartOfDay()) : Integer.MAX_VALUE;
+        IntPredicate matches = i -> !s.cancelled[i]
+                && s.epochHours[i] >= fromHour && s.epochHours[i] < toHour
+                && (ferryId == null || s.ferryIds[i] == ferryId)
+                && (routeId == null || s.routeIds[i] == routeId);
+        boolean byFerry = groupBy.contains(Dimension.FERRY);
+        boolean byRoute = groupBy.contains(Dimension.ROUTE);
+        boolean byWeekday = groupBy.contains(Dimension.WEEKDAY);
+        boolean byHour = groupBy.contains(Dimension.HOUR);
+
+        // Cell key: ferry << 40 | route << 10 | weekday << 5 | hour, with 0 for an ungrouped dimension
+        Map<Long, long[]> cells = IntStream.range(0, s.size).parallel()
+                .filter(matches)
+                .collect(HashMap::new, (map, i) -> {
+                    int day = Math.floorDiv(s.epochHours[i], 24);
+                    long key = (byFerry ? (long) s.ferryIds[i] << 40 : 0)
+                            | (byRoute ? (long) s.routeIds[i] << 10 : 0)
+                            | (byWeekday ? (long) (Math.floorMod(day + 3, 7) + 1) << 5 : 0)
+                            | (byHour ? Math.floorMod(s.epochHours[i], 24) + 1 : 0);
+                    long[] cell = map.computeIfAbsent(key, k -> new long[5]);
+                    cell[0]++;
+                    cell[1] += s.vehicleCapacity[i];
+                    cell[2] += s.vehicles[i];
+                    cell[3] += s.passengerCapacity[i];
+                    cell[4] += s.passengers[i];
+                }, (left, right) -> right.forEach((key, cell) -> left.merge(key, cell, (a, b) -> {
+                    for (int k = 0; k < a.length; k++) {
+                        a[k] += b[k];
+                    }
+                    return a;
+                })));
+
+        List<Long> keys = new ArrayList<>(cells.keySet());
+        Collections.sort(keys);
+        List<Cell> result = new ArrayList<>(keys.size());
+        long sailings = 0;
+        for (Long key : keys) {
+            long[] cell = cells.get(key);
+            sailings += cell[0];
+            int weekday = (int) (key >>> 5) & 0x1F;
+            int hour = (int) (key & 0x1F);
+            result.add(new Cell(byFerry ? key >>> 40 : null, byRoute ? (key >>> 10) & 0x3FFFFFFFL : null,
+                    weekday > 0 ? DayOfWeek.of(weekday) : null, hour > 0 ? hour - 1 : null, cell[0],
+                    cell[1], cell[2], ratio(cell[2], cell[1]), cell[3], cell[4], ratio(cell[4], cell[3])));
+        }
+        return new UtilizationReport(groupBy.isEmpty() ? EnumSet.noneOf(Dimension.class) : EnumSet.copyOf(groupBy),
+                sailings, result, s.takenAt, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    public Map<String, Object> getStatus() {
+        Snapshot s = snapshot;
+        Map<String, Object> status = new HashMap<>();
+        status.put("ready", s != null);
+        status.put("refreshing", refreshing.get());
+        status.put("sailings", s != null ? s.size : 0);
+        status.put("snapshotAt", s != null ? s.takenAt : null);
+        return status;
+    }
+
+    // ==================== SNAPSHOT ====================
+
+    private interface RowSink {
+        void add(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * One row per sailing: its ferry's capacity and the space held by its
+     * bookings, ordered by schedule id
+     */
+    private void readFacts(String scheduleFilter, String bookingFilter, List<Object> filterArgs, RowSink sink) {
+        // The booking filter comes first in the statement, then the schedule filter
+        List<Object> args = new ArrayList<>(filterArgs.size() * 2);
+        args.addAll(filterArgs);
+        args.addAll(filterArgs);
+        jdbcTemplate.query("SELECT s.id, s.ferry_id, s.route_id, s.departure_time, s.status = 'CANCELLED', "
+                + "f.capacity_vehicles, f.capacity_passengers, COALESCE(c.vehicles, 0), COALESCE(c.passengers, 0) "
+                + "FROM schedules s JOIN ferries f ON f.id = s.ferry_id "
+                + "LEFT JOIN (SELECT b.schedule_id, "
+                + "SUM((SELECT COALESCE(SUM(v.quantity), 0) FROM vehicles v WHERE v.booking_id = b.id)) vehicles, "
+                + "SUM(b.passenger_count) passengers FROM bookings b "
+                + "WHERE " + bookingFilter + " AND b.status NOT IN (" + RELEASED + ") "
+                + "GROUP BY b.schedule_id) c ON c.schedule_id = s.id "
+                + "WHERE " + scheduleFilter + " ORDER BY s.id",
+                rs -> {
+                    sink.add(rs);
+                },
+                args.toArray());
+    }
+
+    private static Snapshot merge(Snapshot current, Snapshot changed, int cutoff, LocalDateTime now) {
+        Builder merged = new Builder(current.size + changed.size);
+        int i = 0;
+        int j = 0;
+        while (i < current.size || j < changed.size) {
+            if (j == changed.size || (i < current.size && current.scheduleIds[i] < changed.scheduleIds[j])) {
+                if (current.epochHours[i] >= cutoff) {
+                    merged.copy(current, i);
+                }
+                i++;
+            } else {
+                if (i < current.size && current.scheduleIds[i] == changed.scheduleIds[j]) {
+                    i++;
+                }
+                if (changed.epochHours[j] >= cutoff) {
+                    merged.copy(changed, j);
+                }
+                j++;
+            }
+        }
+        return merged.build(now);
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : Math.round(part * 10000.0 / whole) / 10000.0;
+    }
+
+    private static int epochHour(LocalDateTime time) {
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+
+    private static final class Snapshot {
+        private final int size;
+        private final long[] scheduleIds;
+        private final int[] ferryIds;
+        private final int[] routeIds;
+        private final int[] epochHours;
+        private final boolean[] cancelled;
+        private final int[] vehicleCapacity;
+        private final int[] passengerCapacity;
+        private final int[] vehicles;
+        private final int[] passengers;
+        private final LocalDateTime takenAt;
+
+        private Snapshot(Builder builder, LocalDateTime takenAt) {
+            this.size = builder.size;
+            this.scheduleIds = Arrays.copyOf(builder.scheduleIds, size);
+            this.ferryIds = Arrays.copyOf(builder.ferryIds, size);
+            this.routeIds = Arrays.copyOf(builder.routeIds, size);
+            this.epochHours = Arrays.copyOf(builder.epochHours, size);
+            this.cancelled = Arrays.copyOf(builder.cancelled, size);
+            this.vehicleCapacity = Arrays.copyOf(builder.vehicleCapacity, size);
+            this.passengerCapacity = Arrays.copyOf(builder.passengerCapacity, size);
+            this.vehicles = Arrays.copyOf(builder.vehicles, size);
+            this.passengers = Arrays.copyOf(builder.passengers, size);
+            this.takenAt = takenAt;
+        }
+    }
+
+    /**
+     * Growable columns, appended in schedule id order
+     */
+    private static final class Builder {
+        private int size;
+        private long[] scheduleIds;
+        private int[] ferryIds;
+        private int[] routeIds;
+        private int[] epochHours;
+        private boolean[] cancelled;
+        private int[] vehicleCapacity;
+        private int[] passengerCapacity;
+        private int[] vehicles;
+        private int[] passengers;
+
+        private Builder(int capacity) {
+            int initial = Math.max(16, capacity);
+            scheduleIds = new long[initial];
+            ferryIds = new int[initial];
+            routeIds = new int[initial];
+            epochHours = new int[initial];
+            cancelled = new boolean[initial];
+            vehicleCapacity = new int[initial];
+            passengerCapacity = new int[initial];
+            vehicles = new int[initial];
+            passengers = new int[initial];
+        }
+
+        private void add(ResultSet rs) throws SQLException {
+            int i = next();
+            scheduleIds[i] = rs.getLong(1);
+            ferryIds[i] = (int) rs.getLong(2);
+            routeIds[i] = (int) rs.getLong(3);
+            epochHours[i] = epochHour(rs.getTimestamp(4).toLocalDateTime());
+            cancelled[i] = rs.getBoolean(5);
+            vehicleCapacity[i] = rs.getInt(6);
+            passengerCapacity[i] = rs.getInt(7);
+            vehicles[i] = rs.getInt(8);
+            passengers[i] = rs.getInt(9);
+        }
+
+        private void copy(Snapshot from, int row) {
+            int i = next();
+            scheduleIds[i] = from.scheduleIds[row];
+            ferryIds[i] = from.ferryIds[row];
+            routeIds[i] = from.routeIds[row];
+            epochHours[i] = from.epochHours[row];
+            cancelled[i] = from.cancelled[row];
+            vehicleCapacity[i] = from.vehicleCapacity[row];
+            passengerCapacity[i] = from.passengerCapacity[row];
+            vehicles[i] = from.vehicles[row];
+            passengers[i] = from.passengers[row];
+        }
+
+        private int next() {
+            if (size == scheduleIds.length) {
+                int grown = size + (size >> 1);
+                scheduleIds = Arrays.copyOf(scheduleIds, grown);
+                ferryIds = Arrays.copyOf(ferryIds, grown);
+                routeIds = Arrays.copyOf(routeIds, grown);
+                epochHours = Arrays.copyOf(epochHours, grown);
+                cancelled = Arrays.copyOf(cancelled, grown);
+                vehicleCapacity = Arrays.copyOf(vehicleCapacity, grown);
+                passengerCapacity = Arrays.copyOf(passengerCapacity, grown);
+                vehicles = Arrays.copyOf(vehicles, grown);
+                passengers = Arrays.copyOf(passengers, grown);
+            }
+            return size++;
+        }
+
+        private Snapshot build(LocalDateTime takenAt) {
+            return new Snapshot(this, takenAt);
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package org.vgu.backend.service.berth;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.exception.BusinessException;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Gives each sailing a berth at its departure port for boarding and at its
+ * arrival port for unloading. Slots on one berth never overlap, so each
+ * berth's timeline is a {@link TreeMap} keyed by slot start: the slot that
+ * starts last before a candidate's end is the only one that can overlap it,
+ * which makes a fit check O(log n). Timelines are loaded once per call for
+ * the ports involved, so a whole season is placed without a query per
+ * sailing. Ports without berths are not constrained.
+ */
+@Service
+public class BerthAllocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BerthAllocationService.class);
+
+    public enum SlotType {
+        DEPARTURE, ARRIVAL
+    }
+
+    /**
+     * A sailing to place; the schedule id is null until it is inserted
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Sailing {
+        @Setter
+        private Long scheduleId;
+        private final long departurePortId;
+        private final long arrivalPortId;
+        private final LocalDateTime departureTime;
+        private final LocalDateTime arrivalTime;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class BerthConflict {
+        private final Long scheduleId;
+        private final LocalDateTime departureTime;
+        private final long portId;
+        private final SlotType slotType;
+        private final LocalDateTime slotStart;
+        private final LocalDateTime slotEnd;
+        // Saved sailings holding the port's berths over the slot
+        private final List<Long> occupiedBy;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class FreeWindow {
+        private final Long berthId;
+        private final String berthCode;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        private final long minutes;
+    }
+
+    /**
+     * Sailings that fit, in request order, and the slots they were given
+     */
+    @Getter
+    public static class Plan {
+        private final List<Sailing> placed = new ArrayList<>();
+        private final List<BerthConflict> conflicts = new ArrayList<>();
+        private final List<Slot> slots = new ArrayList<>();
+
+        public boolean hasConflicts() {
+            return !conflicts.isEmpty();
+        }
+    }
+
+    @Getter
+    public static final class Slot {
+        private final long berthId;
+        private final SlotType type;
+        private final LocalDateTime start;
+        private final LocalDateTime end;
+        // Null for an unsaved sailing of the same plan
+        private final Sailing sailing;
+        private final Long scheduleId;
+
+        private Slot(long berthId, SlotType type, LocalDateTime start, LocalDateTime end, Sailing sailing,
+                Long scheduleId) {
+            this.berthId = berthId;
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.sailing = sailing;
+            this.scheduleId = scheduleId;
+        }
+
+        private Long owner() {
+            return sailing != null ? sailing.getScheduleId() : scheduleId;
+        }
+    }
+
+    private static final class BerthTimeline {
+        private final long id;
+        private final String code;
+        private final TreeMap<LocalDateTime, Slot> slots = new TreeMap<>();
+
+        private BerthTimeline(long id, String code) {
+            this.id = id;
+            this.code = code;
+        }
+
+        private Slot overlapping(LocalDateTime start, LocalDateTime end) {
+            Map.Entry<LocalDateTime, Slot> last = slots.lowerEntry(end);
+            return last != null && last.getValue().end.isAfter(start) ? last.getValue() : null;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Berth held for boarding before departure
+    @Value("${app.berth.departure-minutes:60}")
+    private int departureMinutes;
+
+    // Berth held for unloading after arrival
+    @Value("${app.berth.arrival-minutes:45}")
+    private int arrivalMinutes;
+
+    @Value("${app.berth.max-window-days:31}")
+    private int maxWindowDays;
+
+    public BerthAllocationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Places the sailings in order against the berths' current slots and
+     * each other. A sailing that misses a berth at either end is reported
+     * and takes no slot. Saved sailings in the list are placed ignoring
+     * their own current slots. With {@code lock} the berths of the ports
+     * involved are locked until the caller's transaction ends.
+     */
+    public Plan plan(List<Sailing> sailings, boolean lock) {
+        Plan plan = new Plan();
+        if (sailings.isEmpty()) {
+            return plan;
+        }
+        Set<Long> portIds = new TreeSet<>();
+        Set<Long> replanned = new HashSet<>();
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (Sailing sailing : sailings) {
+            portIds.add(sailing.getDeparturePortId());
+            portIds.add(sailing.getArrivalPortId());
+            if (sailing.getScheduleId() != null) {
+                replanned.add(sailing.getScheduleId());
+            }
+            LocalDateTime start = departureStart(sailing);
+            LocalDateTime end = arrivalEnd(sailing);
+            from = from == null || start.isBefore(from) ? start : from;
+            to = to == null || end.isAfter(to) ? end : to;
+        }
+        Map<Long, List<BerthTimeline>> timelines = load(portIds, from, to, replanned, lock);
+        Map<Long, BerthTimeline> berthsById = new HashMap<>();
+        timelines.values().forEach(berths -> berths.forEach(berth -> berthsById.put(berth.id, berth)));
+
+        for (Sailing sailing : sailings) {
+            List<BerthConflict> missed = new ArrayList<>(2);
+            Slot departure = fit(timelines, sailing, SlotType.DEPARTURE, sailing.getDeparturePortId(),
+                    departureStart(sailing), sailing.getDepartureTime(), missed);
+            Slot arrival = fit(timelines, sailing, SlotType.ARRIVAL, sailing.getArrivalPortId(),
+                    sailing.getArrivalTime(), arrivalEnd(sailing), missed);
+            if (!missed.isEmpty()) {
+                plan.conflicts.addAll(missed);
+                continue;
+            }
+            plan.placed.add(sailing);
+            for (Slot slot : new Slot[] { departure, arrival }) {
+                if (slot != null) {
+                    berthsById.get(slot.berthId).slots.put(slot.start, slot);
+                    plan.slots.add(slot);
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Writes the slots of a plan made with {@code lock} in the same
+     * transaction. Every placed sailing must have its schedule id by now.
+     */
+    public void persist(Plan plan) {
+        if (plan.slots.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(plan.slots.size());
+        for (Slot slot : plan.slots) {
+            if (slot.owner() == null) {
+                throw new IllegalStateException("Sailing departing " + slot.sailing.getDepartureTime()
+                        + " has no schedule id");
+            }
+            rows.add(new Object[] { slot.berthId, slot.owner(), slot.type.name(), Timestamp.valueOf(slot.start),
+                    Timestamp.valueOf(slot.end) });
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO berth_slots (berth_id, schedule_id, slot_type, start_time, end_time) "
+                + "VALUES (?, ?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * Replaces the slots of a saved sailing. Joins the caller's transaction
+     * when there is one.
+     *
+     * @return the ends that found no berth; the sailing then holds no slot
+     */
+    public List<BerthConflict> allocate(Sailing sailing) {
+        return transactionTemplate.execute(tx -> {
+            Plan plan = plan(List.of(sailing), true);
+            jdbcTemplate.update("DELETE FROM berth_slots WHERE schedule_id = ?", sailing.getScheduleId());
+            persist(plan);
+            if (plan.hasConflicts()) {
+                logger.warn("No berth for schedule {} at {} port(s)", sailing.getScheduleId(),
+                        plan.conflicts.size());
+            }
+            return plan.conflicts;
+        });
+    }
+
+    /**
+     * Re-places a saved sailing from its current times, e.g. after a delay
+     */
+    public List<BerthConflict> reallocate(Long scheduleId) {
+        List<Sailing> sailings = jdbcTemplate.query("SELECT s.id, r.departure_port_id, r.arrival_port_id, "
+                + "s.departure_time, s.arrival_time FROM schedules s JOIN routes r ON r.id = s.route_id "
+                + "WHERE s.id = ?",
+                (rs, rowNum) -> new Sailing(rs.getLong(1), rs.getLong(2), rs.getLong(3),
+                        rs.getTimestamp(4).toLocalDateTime(), rs.getTimestamp(5).toLocalDateTime()),
+                scheduleId);
+        return sailings.isEmpty() ? List.of() : allocate(sailings.get(0));
+    }
+
+    public int release(Long scheduleId) {
+        return jdbcTemplate.update("DELETE FROM berth_slots WHERE schedule_id = ?", scheduleId);
+    }
+
+    /**
+     * Gaps of at least {@code minMinutes} on the port's active berths within
+     * {@code [from, to)}, by start time
+     */
+    public List<FreeWindow> freeWindows(Long portId, LocalDateTime from, LocalDateTime to, int minMinutes) {
+        if (!to.isAfter(from)) {
+            throw new BusinessException("Window ends before it starts", "INVALID_WINDOW");
+        }
+        if (Duration.between(from, to).toDays() > maxWindowDays) {
+            throw new BusinessException("A window is limited to " + maxWindowDays + " days", "WINDOW_TOO_LARGE");
+        }
+        List<FreeWindow> windows = new ArrayList<>();
+        for (BerthTimeline berth : load(Set.of(portId), from, to, Set.of(), false)
+                .getOrDefault(portId, List.of())) {
+            LocalDateTime cursor = from;
+            for (Slot slot : berth.slots.values()) {
+                addWindow(windows, berth, cursor, slot.start, minMinutes);
+                if (slot.end.isAfter(cursor)) {
+                    cursor = slot.end;
+                }
+            }
+            addWindow(windows, berth, cursor, to, minMinutes);
+        }
+        windows.sort(Comparator.comparing(FreeWindow::getStart).thenComparing(FreeWindow::getBerthCode));
+        return windows;
+    }
+
+    private Slot fit(Map<Long, List<BerthTimeline>> timelines, Sailing sailing, SlotType type, long portId,
+            LocalDateTime start, LocalDateTime end, List<BerthConflict> missed) {
+        List<BerthTimeline> berths = timelines.get(portId);
+        if (berths == null) {
+            return null;
+        }
+        // Best fit: the berth whose previous slot ends closest before this
+        // one, so long free windows elsewhere stay whole
+        BerthTimeline best = null;
+        long bestGap = Long.MAX_VALUE;
+        Set<Long> occupiedBy = new LinkedHashSet<>();
+        for (BerthTimeline berth : berths) {
+            Slot clash = berth.overlapping(start, end);
+            if (clash != null) {
+                if (clash.owner() != null) {
+                    occupiedBy.add(clash.owner());
+                }
+                continue;
+            }
+            Map.Entry<LocalDateTime, Slot> previous = berth.slots.lowerEntry(start);
+            long gap = previous == null ? Long.MAX_VALUE - 1
+                    : Duration.between(previous.getValue().end, start).toMinutes();
+            if (gap < bestGap) {
+                best = berth;
+                bestGap = gap;
+            }
+        }
+        if (best == null) {
+            missed.add(new BerthConflict(sailing.getScheduleId(), sailing.getDepartureTime(), portId, type, start,
+                    end, new ArrayList<>(occupiedBy)));
+            return null;
+        }
+        return new Slot(best.id, type, start, end, sailing, null);
+    }
+
+    private Map<Long, List<BerthTimeline>> load(Collection<Long> portIds, LocalDateTime from, LocalDateTime to,
+            Set<Long> excluded, boolean lock) {
+        String ports = placeholders(portIds.size());
+        Map<Long, List<BerthTimeline>> byPort = new HashMap<>();
+        Map<Long, BerthTimeline> byId = new HashMap<>();
+        // In id order so concurrent allocations lock the same berths in the same order
+        jdbcTemplate.query("SELECT id, port_id, berth_code FROM berths WHERE port_id IN (" + ports + ") "
+                + "AND is_active = TRUE ORDER BY id" + (lock ? " FOR UPDATE" : ""),
+                rs -> {
+                    BerthTimeline berth = new BerthTimeline(rs.getLong(1), rs.getString(3));
+                    byPort.computeIfAbsent(rs.getLong(2), id -> new ArrayList<>()).add(berth);
+                    byId.put(berth.id, berth);
+                },
+                portIds.toArray());
+        if (byId.isEmpty()) {
+            return byPort;
+        }
+        List<Object> args = new ArrayList<>(byId.keySet());
+        args.add(Timestamp.valueOf(to));
+        args.add(Timestamp.valueOf(from));
+        jdbcTemplate.query("SELECT berth_id, schedule_id, slot_type, start_time, end_time FROM berth_slots "
+                + "WHERE berth_id IN (" + placeholders(byId.size()) + ") AND start_time < ? AND end_time > ?",
+                rs -> {
+                    long scheduleId = rs.getLong(2);
+                    if (excluded.contains(scheduleId)) {
+                        return;
+                    }
+                    Slot slot = new Slot(rs.getLong(1), SlotType.valueOf(rs.getString(3)),
+                            rs.getTimestamp(4).toLocalDateTime(), rs.getTimestamp(5).toLocalDateTime(), null,
+                            scheduleId);
+                    byId.get(slot.berthId).slots.put(slot.start, slot);
+                },
+                args.toArray());
+        return byPort;
+    }
+
+    private static void addWindow(List<FreeWindow> windows, BerthTimeline berth, LocalDateTime start,
+            LocalDateTime end, int minMinutes) {
+        long minutes = Duration.between(start, end).toMinutes();
+        if (minutes > 0 && minutes >= minMinutes) {
+            windows.add(new FreeWindow(berth.id, berth.code, start, end, minutes));
+        }
+    }
+
+    private LocalDateTime departureStart(Sailing sailing) {
+        return sailing.getDepartureTime().minusMinutes(departureMinutes);
+    }
+
+    private LocalDateTime arrivalEnd(Sailing sailing) {
+        return sailing.getArrivalTime().plusMinutes(arrivalMinutes);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,31 @@
+package org.vgu.backend.service.booking;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.vgu.backend.model.Approval;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA listener that hands every review deadline written through an
+ * {@link Approval} to {@link BookingReviewSchedulerService}, whichever code
+ * path started the review.
+ */
+@Component
+public class ApprovalDeadlineListener {
+
+    private final ObjectProvider<BookingReviewSchedulerService> reviewScheduler;
+
+    public ApprovalDeadlineListener(ObjectProvider<BookingReviewSchedulerService> reviewScheduler) {
+        this.reviewScheduler = reviewScheduler;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Approval approval) {
+        if (approval.isInReview() && approval.getReviewDeadline() != null) {
+            reviewScheduler.ifAvailable(scheduler -> scheduler.track(approval.getId(), approval.getReviewDeadline()));
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.vgu.backend.service.booking;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.model.Account;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Work queue over pending approvals for accountants.
+ * A reviewer claims the oldest unclaimed bookings with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so concurrent reviewers never
+ * wait on or receive the same rows. Claims expire after a TTL and the
+ * booking goes back to the queue. Each reviewer may hold at most a fair
+ * share of the backlog, split across active accountants and capped at
+ * {@code max-claims}.
+ */
+@Service
+public class ApprovalQueueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ApprovalQueueService.class);
+
+    private static final String PENDING = "a.status = 'PENDING' AND b.status = 'PENDING'";
+    private static final String CLAIM_SQL = "SELECT a.id, TIMESTAMPDIFF(MICROSECOND, a.created_at, NOW(3)) "
+            + "FROM approvals a JOIN bookings b ON b.id = a.booking_id "
+            + "WHERE " + PENDING + " AND (a.claimed_by IS NULL OR a.claim_expires_at <= NOW(3)) "
+            + "ORDER BY a.created_at, a.id LIMIT ? FOR UPDATE OF a SKIP LOCKED";
+    private static final String CLAIMS_SQL = "SELECT a.id, a.booking_id, a.claim_expires_at "
+            + "FROM approvals a JOIN bookings b ON b.id = a.booking_id "
+            + "WHERE " + PENDING + " AND a.claimed_by = ? AND a.claim_expires_at > NOW(3) ";
+    private static final String CLEAR_CLAIM = "claimed_by = NULL, claimed_at = NULL, claim_expires_at = NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final Timer waitTimer;
+
+    @Value("${app.approval-queue.claim-ttl-ms:600000}")
+    private long claimTtlMs;
+
+    @Value("${app.approval-queue.max-claims:10}")
+    private int maxClaims;
+
+    public ApprovalQueueService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.waitTimer = Timer.builder("app.approval.queue.wait")
+                .description("Time a pending booking waited before a reviewer claimed it")
+                .register(meterRegistry);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Claim {
+        private final Long approvalId;
+        private final Long bookingId;
+        private final LocalDateTime expiresAt;
+    }
+
+    /**
+     * Claim up to {@code requested} of the oldest unclaimed pending bookings,
+     * within the reviewer's fair share
+     *
+     * @return every claim the reviewer now holds, oldest first
+     */
+    public List<Claim> claim(Account reviewer, int requested) {
+        List<Claim> claims = transactionTemplate.execute(tx -> {
+            int limit = Math.min(requested, claimLimit(reviewer.getId()));
+            if (limit > 0) {
+                claimRows(reviewer, limit);
+            }
+            return findClaims(reviewer.getId());
+        });
+        return claims != null ? claims : List.of();
+    }
+
+    /**
+     * The reviewer's oldest open claim, or a newly claimed booking when they
+     * hold none
+     */
+    public Optional<Claim> next(Account reviewer) {
+        List<Claim> held = findClaims(reviewer.getId());
+        if (!held.isEmpty()) {
+            return Optional.of(held.get(0));
+        }
+        return claim(reviewer, 1).stream().findFirst();
+    }
+
+    public List<Claim> findClaims(Long reviewerId) {
+        return jdbcTemplate.query(CLAIMS_SQL + "ORDER BY a.created_at, a.id",
+                (rs, rowNum) -> new Claim(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime()),
+                reviewerId);
+    }
+
+    /**
+     * Hand a claimed booking back to the queue
+     *
+     * @return true if the reviewer held a claim on it
+     */
+    public boolean release(Long bookingId, Long reviewerId) {
+        return jdbcTemplate.update("UPDATE approvals SET " + CLEAR_CLAIM + " WHERE booking_id = ? AND claimed_by = ?",
+                bookingId, reviewerId) > 0;
+    }
+
+    /**
+     * Username of another reviewer holding a live claim on the booking
+     */
+    public Optional<String> findOtherClaimant(Long bookingId, Long reviewerId) {
+        List<String> claimants = jdbcTemplate.queryForList(
+                "SELECT acc.username FROM approvals a JOIN accounts acc ON acc.id = a.claimed_by "
+                        + "WHERE a.booking_id = ? AND a.claimed_by <> ? AND a.claim_expires_at > NOW(3)",
+                String.class, bookingId, reviewerId);
+        return claimants.stream().findFirst();
+    }
+
+    /**
+     * Record a reviewer's decision on a booking and clear its claim. Runs in
+     * the caller's transaction.
+     */
+    public void completed(Long bookingId, Account reviewer, String decision) {
+        List<Timestamp> claimedAt = jdbcTemplate.queryForList(
+                "SELECT claimed_at FROM approvals WHERE booking_id = ? AND claimed_by = ?",
+                Timestamp.class, bookingId, reviewer.getId());
+        jdbcTemplate.update("UPDATE approvals SET " + CLEAR_CLAIM + " WHERE booking_id = ? AND claimed_by IS NOT NULL",
+                bookingId);
+
+        recordDecisions(reviewer, decision, 1);
+        if (!claimedAt.isEmpty() && claimedAt.get(0) != null) {
+            Timer.builder("app.approval.queue.handling")
+                    .description("Time from claim to decision, per reviewer")
+                    .tag("reviewer", reviewer.getUsername())
+                    .register(meterRegistry)
+                    .record(Duration.between(claimedAt.get(0).toLocalDateTime(), LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Count decisions made outside {@link #completed}, e.g. by bulk actions
+     * that clear claims themselves
+     */
+    public void recordDecisions(Account reviewer, String decision, int count) {
+        Counter.builder("app.approval.queue.decisions")
+                .description("Pending bookings decided, per reviewer")
+                .tag("reviewer", reviewer.getUsername())
+                .tag("decision", decision)
+                .register(meterRegistry)
+                .increment(count);
+    }
+
+    /**
+     * Backlog size, active accountants and open claims per reviewer
+     */
+    public Map<String, Object> getQueueStatus() {
+        Map<String, Long> claimsByReviewer = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT acc.username, COUNT(*) FROM approvals a "
+                + "JOIN bookings b ON b.id = a.booking_id JOIN accounts acc ON acc.id = a.claimed_by "
+                + "WHERE " + PENDING + " AND a.claim_expires_at > NOW(3) GROUP BY acc.username ORDER BY acc.username",
+                rs -> {
+                    claimsByReviewer.put(rs.getString(1), rs.getLong(2));
+                });
+        long backlog = countBacklog();
+        long claimed = claimsByReviewer.values().stream().mapToLong(Long::longValue).sum();
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("backlog", backlog);
+        status.put("unclaimed", backlog - claimed);
+        status.put("activeAccountants", countActiveAccountants());
+        status.put("claimsByReviewer", claimsByReviewer);
+        status.put("maxClaimsPerReviewer", maxClaims);
+        status.put("claimTtlSeconds", TimeUnit.MILLISECONDS.toSeconds(claimTtlMs));
+        return status;
+    }
+
+    private void claimRows(Account reviewer, int limit) {
+        List<long[]> rows = jdbcTemplate.query(CLAIM_SQL,
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2) }, limit);
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<Object> args = new ArrayList<>(rows.size() + 2);
+        args.add(reviewer.getId());
+        args.add(claimTtlMs * 1000);
+        for (long[] row : rows) {
+            args.add(row[0]);
+            waitTimer.record(Math.max(0, row[1]), TimeUnit.MICROSECONDS);
+        }
+        jdbcTemplate.update("UPDATE approvals SET claimed_by = ?, claimed_at = NOW(3), "
+                + "claim_expires_at = DATE_ADD(NOW(3), INTERVAL ? MICROSECOND) "
+                + "WHERE id IN (" + String.join(",", Collections.nCopies(rows.size(), "?")) + ")", args.toArray());
+
+        Counter.builder("app.approval.queue.claimed")
+                .description("Pending bookings claimed, per reviewer")
+                .tag("reviewer", reviewer.getUsername())
+                .register(meterRegistry)
+                .increment(rows.size());
+        logger.debug("Reviewer {} claimed {} pending bookings", reviewer.getUsername(), rows.size());
+    }
+
+    /**
+     * How many more bookings the reviewer may claim: their share of the
+     * backlog across active accountants, capped at max-claims, minus what
+     * they already hold
+     */
+    private int claimLimit(Long reviewerId) {
+        Integer held = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM approvals a JOIN bookings b "
+                + "ON b.id = a.booking_id WHERE " + PENDING + " AND a.claimed_by = ? AND a.claim_expires_at > NOW(3)",
+                Integer.class, reviewerId);
+        long backlog = countBacklog();
+        long accountants = Math.max(1, countActiveAccountants());
+        long share = Math.max(1, (backlog + accountants - 1) / accountants);
+        return (int) Math.min(maxClaims, share) - (held != null ? held : 0);
+    }
+
+    private long countBacklog() {
+        Long backlog = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM approvals a JOIN bookings b ON b.id = a.booking_id WHERE " + PENDING,
+                Long.class);
+        return backlog != null ? backlog : 0;
+    }
+
+    private long countActiveAccountants() {
+        Long accountants = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM employees WHERE position = 'ACCOUNTANT' AND is_active = TRUE", Long.class);
+        return accountants != null ? accountants : 0;
+    }
+}
@@ -1,142 +1,350 @@
 package org.vgu.backend.service.booking;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.vgu.backend.dto.request.BookingUpdateRequest;
+import org.vgu.backend.enums.TypeAction;
 import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.BookingRecord;
 import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.service.bookingrecord.AuditChangeCodec;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
 
-import lombok.RequiredArgsConstructor;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class AsyncBookingUpdateService {
 
+    private static final String BATCH_UPDATE_SQL = "UPDATE bookings SET "
+            + "booking_code = COALESCE(?, booking_code), "
+            + "passenger_count = COALESCE(?, passenger_count), "
+            + "total_amount = COALESCE(?, total_amount), "
+            + "updated_at = ? "
+            + "WHERE id = ?";
+
     private final BookingRepository bookingRepository;
+    private final BookingUpdateJobRegistry jobRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor bookingUpdateExecutor;
+    private final BookingStatsService bookingStatsService;
+    private final IBookingRecordService bookingRecordService;
+
+    /** A booking's values before the chunk touches it */
+    @AllArgsConstructor
+    private static class Current {
+        private final LocalDateTime createdAt;
+        private final String bookingCode;
+        private final Integer passengerCount;
+        private final BigDecimal totalAmount;
+    }
+
+    @Value("${app.booking-update.chunk-size:500}")
+    private int chunkSize;
+
+    public AsyncBookingUpdateService(BookingRepository bookingRepository,
+            BookingUpdateJobRegistry jobRegistry,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("asyncBookingUpdateExecutor") AsyncTaskExecutor bookingUpdateExecutor,
+            BookingStatsService bookingStatsService,
+            IBookingRecordService bookingRecordService) {
+        this.bookingRepository = bookingRepository;
+        this.jobRegistry = jobRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookingUpdateExecutor = bookingUpdateExecutor;
+        this.bookingStatsService = bookingStatsService;
+        this.bookingRecordService = bookingRecordService;
+    }
 
     @Async("asyncBookingUpdateExecutor")
     @Transactional
     public CompletableFuture<Booking> updateBookingAsync(Long bookingId, BookingUpdateRequest request) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                log.info("Starting async booking update for ID: {}", bookingId);
+        try {
+            log.info("Starting async booking update for ID: {}", bookingId);
 
-                // Simulate some processing time
-                Thread.sleep(2000);
+            Booking booking = bookingRepository.findById(bookingId)
+                    .orElseThrow(() -> new RuntimeException("Booking not found with ID: " + bookingId));
 
-                Booking booking = bookingRepository.findById(bookingId)
-                        .orElseThrow(() -> new RuntimeException("Booking not found with ID: " + bookingId));
+            // Update booking fields
+            updateBookingFields(booking, request);
 
-                // Update booking fields
-                updateBookingFields(booking, request);
+            // Save the updated booking
+            Booking updatedBooking = bookingRepository.save(booking);
+            log.info("Successfully updated booking ID: {}", bookingId);
 
-                // Save the updated booking
-                Booking updatedBooking = bookingRepository.save(booking);
-                log.info("Successfully updated booking ID: {}", bookingId);
+            // Send notification if not skipped
+            if (!Boolean.TRUE.equals(request.getSkipAsyncNotification())) {
+                sendUpdateNotification(updatedBooking);
+            }
 
-                // Send notification if not skipped
-                if (!request.getSkipAsyncNotification()) {
-                    sendUpdateNotification(updatedBooking);
-                }
+            return CompletableFuture.completedFuture(updatedBooking);
 
-                return updatedBooking;
+        } catch (Exception e) {
+            log.error("Error updating booking ID: {}", bookingId, e);
+            throw new RuntimeException("Failed to update booking: " + e.getMessage(), e);
+        }
+    }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Async booking update interrupted for ID: {}", bookingId, e);
-                throw new RuntimeException("Booking update was interrupted", e);
-            } catch (Exception e) {
-                log.error("Error updating booking ID: {}", bookingId, e);
-                throw new RuntimeException("Failed to update booking: " + e.getMessage(), e);
-            }
-        });
+    /**
+     * Start a batch update and return immediately with the job handle.
+     * Poll progress through {@link #getJobStatus(String)} or
+     * {@link #getUpdateStatusAsync(Long)}.
+     *
+     * @throws TaskRejectedException when the update executor is saturated;
+     *                               the job is recorded as FAILED
+     */
+    public BookingUpdateJob submitBatchUpdate(List<BookingUpdateRequest> requests) {
+        List<Long> bookingIds = requests.stream().map(BookingUpdateRequest::getId).toList();
+        BookingUpdateJob job = jobRegistry.register(bookingIds);
+        log.info("Queued batch booking update job {} for {} requests", job.getJobId(), requests.size());
+
+        try {
+            bookingUpdateExecutor.execute(() -> runBatchUpdate(job, requests));
+        } catch (TaskRejectedException e) {
+            log.warn("Batch booking update job {} rejected: {}", job.getJobId(), e.getMessage());
+            job.markFailed(e);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Batch update that completes once every chunk has been committed
+     */
+    public CompletableFuture<BookingUpdateJob> batchUpdateBookingsAsync(List<BookingUpdateRequest> requests) {
+        return submitBatchUpdate(requests).getCompletion();
     }
 
     @Async("asyncBookingUpdateExecutor")
-    @Transactional
-    public CompletableFuture<List<Booking>> batchUpdateBookingsAsync(List<BookingUpdateRequest> requests) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                log.info("Starting batch async booking update for {} requests", requests.size());
+    public CompletableFuture<Map<String, Object>> getUpdateStatusAsync(Long bookingId) {
+        try {
+            log.info("Getting async update status for booking ID: {}", bookingId);
+
+            Booking booking = bookingRepository.findById(bookingId)
+                    .orElseThrow(() -> new RuntimeException("Booking not found with ID: " + bookingId));
+
+            Map<String, Object> status = new HashMap<>();
+            status.put("bookingId", bookingId);
+            status.put("bookingCode", booking.getBookingCode());
+            status.put("currentStatus", booking.getStatus().toString());
+            status.put("lastUpdated", booking.getUpdatedAt() != null ? booking.getUpdatedAt().toString() : null);
+
+            Optional<BookingUpdateJob> job = jobRegistry.getLatestJobForBooking(bookingId);
+            if (job.isPresent()) {
+                status.put("asyncStatus", job.get().getStatus().name());
+                status.put("job", job.get().toStatusMap());
+                status.put("message", "Booking update status retrieved successfully");
+            } else {
+                status.put("asyncStatus", "NONE");
+                status.put("message", "No batch update recorded for this booking");
+            }
 
-                List<Booking> updatedBookings = new ArrayList<>();
+            return CompletableFuture.completedFuture(status);
 
-                for (BookingUpdateRequest request : requests) {
-                    if (request.getId() != null) {
-                        Booking booking = bookingRepository.findById(request.getId())
-                                .orElseThrow(
-                                        () -> new RuntimeException("Booking not found with ID: " + request.getId()));
+        } catch (Exception e) {
+            log.error("Error getting status for booking ID: {}", bookingId, e);
+            throw new RuntimeException("Failed to get booking status: " + e.getMessage(), e);
+        }
+    }
 
-                        updateBookingFields(booking, request);
-                        updatedBookings.add(booking);
-                    }
-                }
+    /**
+     * Current progress of a batch update job
+     */
+    public Optional<Map<String, Object>> getJobStatus(String jobId) {
+        return jobRegistry.getJob(jobId).map(BookingUpdateJob::toStatusMap);
+    }
 
-                // Simulate batch processing time
-                Thread.sleep(1000 * requests.size());
+    private void runBatchUpdate(BookingUpdateJob job, List<BookingUpdateRequest> requests) {
+        job.markStarted();
+        long start = System.currentTimeMillis();
+        try {
+            for (int from = 0; from < requests.size(); from += chunkSize) {
+                List<BookingUpdateRequest> chunk = requests.subList(from, Math.min(from + chunkSize, requests.size()));
+                processChunk(job, chunk);
+            }
+            job.markFinished();
+            log.info("Batch booking update job {} finished in {} ms: {} updated, {} not found, {} failed",
+                    job.getJobId(), System.currentTimeMillis() - start, job.getUpdatedCount().get(),
+                    job.getNotFoundCount().get(), job.getFailedCount().get());
+
+            boolean notify = !requests.isEmpty() && !Boolean.TRUE.equals(requests.get(0).getSkipAsyncNotification());
+            if (notify) {
+                sendBatchUpdateNotification(job);
+            }
+        } catch (Exception e) {
+            log.error("Batch booking update job {} aborted", job.getJobId(), e);
+            job.markFailed(e);
+        }
+    }
 
-                List<Booking> savedBookings = bookingRepository.saveAll(updatedBookings);
-                log.info("Successfully updated {} bookings", savedBookings.size());
+    /**
+     * Apply one chunk in its own transaction as a single JDBC batch, with an
+     * audit record for every booking whose values changed. Requests for the
+     * same booking are merged first, later values winning, so each booking is
+     * written and counted once. A failing chunk is rolled back and counted;
+     * the job moves on.
+     */
+    private void processChunk(BookingUpdateJob job, List<BookingUpdateRequest> chunk) {
+        Map<Long, BookingUpdateRequest> merged = new LinkedHashMap<>();
+        // Requests per booking, so duplicates are still counted as requests
+        Map<Long, Integer> requestCounts = new HashMap<>();
+        int valid = 0;
+        for (BookingUpdateRequest request : chunk) {
+            if (request.getId() == null) {
+                job.getFailedCount().incrementAndGet();
+                job.addError("Update request without booking ID");
+            } else {
+                valid++;
+                merged.merge(request.getId(), request, AsyncBookingUpdateService::merge);
+                requestCounts.merge(request.getId(), 1, Integer::sum);
+            }
+        }
 
-                // Send batch notification if not skipped (checking first request)
-                if (!requests.isEmpty() && !requests.get(0).getSkipAsyncNotification()) {
-                    sendBatchUpdateNotification(savedBookings);
+        List<Long> missing = new ArrayList<>();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                Map<Long, Current> existing = loadCurrent(merged.keySet());
+                List<BookingUpdateRequest> applicable = new ArrayList<>(merged.size());
+                for (BookingUpdateRequest request : merged.values()) {
+                    if (existing.containsKey(request.getId())) {
+                        applicable.add(request);
+                    } else {
+                        missing.add(request.getId());
+                    }
                 }
 
-                return savedBookings;
+                LocalDateTime now = LocalDateTime.now();
+                Timestamp ts = Timestamp.valueOf(now);
+                jdbcTemplate.batchUpdate(BATCH_UPDATE_SQL, applicable, applicable.size(), (ps, request) -> {
+                    ps.setString(1, request.getBookingCode());
+                    if (request.getPassengerCount() != null) {
+                        ps.setInt(2, request.getPassengerCount());
+                    } else {
+                        ps.setNull(2, Types.INTEGER);
+                    }
+                    ps.setBigDecimal(3, request.getTotalAmount());
+                    ps.setTimestamp(4, ts);
+                    ps.setLong(5, request.getId());
+                });
+
+                // The JDBC batch bypasses the entity listener, so report re-pricing and
+                // write the audit trail here
+                List<BookingRecord> records = new ArrayList<>(applicable.size());
+                for (BookingUpdateRequest request : applicable) {
+                    Current current = existing.get(request.getId());
+                    List<AuditChangeCodec.Change> changes = changes(current, request);
+                    if (changes.isEmpty()) {
+                        continue;
+                    }
+                    if (request.getTotalAmount() != null && !sameAmount(current.totalAmount, request.getTotalAmount())) {
+                        bookingStatsService.amountChanged(current.createdAt, current.totalAmount,
+                                request.getTotalAmount());
+                    }
+                    records.add(BookingRecord.builder()
+                            .booking(bookingRepository.getReferenceById(request.getId()))
+                            .action(TypeAction.BOOKING_UPDATED)
+                            .description("Booking updated by batch update job " + job.getJobId())
+                            .currentValues(AuditChangeCodec.encode("Booking", false, changes))
+                            .createdAt(now)
+                            .build());
+                }
+                bookingRecordService.createRecords(records);
+            });
+
+            int notFound = missing.stream().mapToInt(requestCounts::get).sum();
+            job.getUpdatedCount().addAndGet(valid - notFound);
+            job.getNotFoundCount().addAndGet(notFound);
+            missing.forEach(id -> job.addError("Booking not found with ID: " + id));
+        } catch (Exception e) {
+            job.getFailedCount().addAndGet(valid);
+            job.addError("Chunk of " + valid + " updates rolled back: " + e.getMessage());
+            log.warn("Batch booking update job {} chunk failed: {}", job.getJobId(), e.getMessage());
+        } finally {
+            job.getProcessedCount().addAndGet(chunk.size());
+            job.getCompletedChunks().incrementAndGet();
+        }
+    }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Batch async booking update interrupted", e);
-                throw new RuntimeException("Batch booking update was interrupted", e);
-            } catch (Exception e) {
-                log.error("Error in batch booking update", e);
-                throw new RuntimeException("Failed to update bookings: " + e.getMessage(), e);
-            }
-        });
+    /**
+     * Apply {@code later} on top of {@code earlier}, as two updates in a row would
+     */
+    private static BookingUpdateRequest merge(BookingUpdateRequest earlier, BookingUpdateRequest later) {
+        return BookingUpdateRequest.builder()
+                .id(earlier.getId())
+                .bookingCode(later.getBookingCode() != null ? later.getBookingCode() : earlier.getBookingCode())
+                .passengerCount(later.getPassengerCount() != null ? later.getPassengerCount()
+                        : earlier.getPassengerCount())
+                .totalAmount(later.getTotalAmount() != null ? later.getTotalAmount() : earlier.getTotalAmount())
+                .skipAsyncNotification(earlier.getSkipAsyncNotification())
+                .build();
     }
 
-    @Async("asyncBookingUpdateExecutor")
-    public CompletableFuture<Map<String, Object>> getUpdateStatusAsync(Long bookingId) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                log.info("Getting async update status for booking ID: {}", bookingId);
-
-                Booking booking = bookingRepository.findById(bookingId)
-                        .orElseThrow(() -> new RuntimeException("Booking not found with ID: " + bookingId));
-
-                // Simulate checking async operation status
-                Thread.sleep(500);
-
-                Map<String, Object> status = new HashMap<>();
-                status.put("bookingId", bookingId);
-                status.put("bookingCode", booking.getBookingCode());
-                status.put("currentStatus", booking.getStatus().toString());
-                status.put("lastUpdated", booking.getUpdatedAt().toString());
-                status.put("asyncStatus", "COMPLETED");
-                status.put("message", "Booking update status retrieved successfully");
+    private static List<AuditChangeCodec.Change> changes(Current current, BookingUpdateRequest request) {
+        List<AuditChangeCodec.Change> changes = new ArrayList<>(3);
+        if (request.getBookingCode() != null && !request.getBookingCode().equals(current.bookingCode)) {
+            changes.add(new AuditChangeCodec.Change("bookingCode", current.bookingCode, request.getBookingCode()));
+        }
+        if (request.getPassengerCount() != null && !Objects.equals(request.getPassengerCount(),
+                current.passengerCount)) {
+            changes.add(new AuditChangeCodec.Change("passengerCount", current.passengerCount,
+                    request.getPassengerCount()));
+        }
+        if (request.getTotalAmount() != null && !sameAmount(current.totalAmount, request.getTotalAmount())) {
+            changes.add(new AuditChangeCodec.Change("totalAmount", current.totalAmount, request.getTotalAmount()));
+        }
+        return changes;
+    }
 
-                return status;
+    private static boolean sameAmount(BigDecimal a, BigDecimal b) {
+        return a != null && a.compareTo(b) == 0;
+    }
 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                log.error("Status check interrupted for booking ID: {}", bookingId, e);
-                throw new RuntimeException("Status check was interrupted", e);
-            } catch (Exception e) {
-                log.error("Error getting status for booking ID: {}", bookingId, e);
-                throw new RuntimeException("Failed to get booking status: " + e.getMessage(), e);
-            }
-        });
+    /**
+     * Current values of each existing booking, keyed by ID
+     */
+    private Map<Long, Current> loadCurrent(Set<Long> ids) {
+        Map<Long, Current> current = new HashMap<>();
+        if (ids.isEmpty()) {
+            return current;
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        jdbcTemplate.query("SELECT id, created_at, booking_code, passenger_count, total_amount FROM bookings "
+                + "WHERE id IN (" + placeholders + ")",
+                rs -> {
+                    Timestamp createdAt = rs.getTimestamp(2);
+                    int passengers = rs.getInt(4);
+                    Integer passengerCount = rs.wasNull() ? null : passengers;
+                    current.put(rs.getLong(1), new Current(createdAt != null ? createdAt.toLocalDateTime() : null,
+                            rs.getString(3), passengerCount, rs.getBigDecimal(5)));
+                }, ids.toArray());
+        return current;
     }
 
     private void updateBookingFields(Booking booking, BookingUpdateRequest request) {
@@ -180,7 +388,8 @@ public class AsyncBookingUpdateService {
         log.debug("Update notification removed for booking ID: {}", booking.getId());
     }
 
-    private void sendBatchUpdateNotification(List<Booking> bookings) {
-        log.debug("Batch update notification removed for {} bookings", bookings.size());
+    private void sendBatchUpdateNotification(BookingUpdateJob job) {
+        log.debug("Batch update notification removed for job {} ({} bookings)", job.getJobId(),
+                job.getUpdatedCount().get());
     }
 }
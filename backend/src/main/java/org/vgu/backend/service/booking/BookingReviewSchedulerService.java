@@ -1,166 +1,317 @@
 package org.vgu.backend.service.booking;
 
+import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.vgu.backend.enums.ApprovalStatus;
 import org.vgu.backend.enums.BookingStatus;
 import org.vgu.backend.enums.TypeAction;
-import org.vgu.backend.model.Approval;
-import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.BookingRecord;
 import org.vgu.backend.repository.ApprovalRepository;
 import org.vgu.backend.repository.BookingRepository;
-import org.vgu.backend.service.ApprovalService;
 import org.vgu.backend.service.bookingrecord.IBookingRecordService;
-
-import lombok.RequiredArgsConstructor;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
 
 /**
- * Scheduled service to automatically progress bookings from IN_REVIEW to
- * IN_PROGRESS
- * after 30 minutes timeout
+ * Automatically progresses bookings from IN_REVIEW to IN_PROGRESS once their
+ * 30-minute review window runs out.
+ * Review deadlines are kept in a {@link DelayQueue} loaded from
+ * approvals.review_deadline on start and fed by {@link ApprovalDeadlineListener}
+ * whenever a review starts, so each booking is released at its deadline.
+ * Deadlines that fall due together are expired with a few bulk statements in
+ * one transaction. A slow sweep picks up anything the queue could not see,
+ * such as rows written by another instance; in a cluster the sweep is split
+ * by approval ID across the nodes holding its lease partitions.
  */
 @Service
-@RequiredArgsConstructor
-public class BookingReviewSchedulerService {
+public class BookingReviewSchedulerService implements SmartLifecycle {
+
+    private static final String AUTO_APPROVE_NOTES = "Auto-approved due to 30-minute review timeout";
+    private static final long RETRY_DELAY_MS = 5000;
 
     private final BookingRepository bookingRepository;
     private final ApprovalRepository approvalRepository;
-    private final ApprovalService approvalService;
     private final IBookingRecordService bookingRecordService;
+    private final BookingStatsService bookingStatsService;
+    private final BookingStateMachine stateMachine;
+    private final JobLeaseService leaseService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     private final Logger logger = LoggerFactory.getLogger(BookingReviewSchedulerService.class);
 
+    @Value("${app.review-timeout.batch-size:500}")
+    private int batchSize;
+
+    private final DelayQueue<ReviewDeadline> deadlines = new DelayQueue<>();
+    // Latest known deadline per approval; queue entries that no longer match are stale
+    private final Map<Long, LocalDateTime> tracked = new ConcurrentHashMap<>();
+    private Thread timeoutThread;
+    private volatile boolean running;
+
+    public BookingReviewSchedulerService(BookingRepository bookingRepository,
+            ApprovalRepository approvalRepository, IBookingRecordService bookingRecordService,
+            BookingStatsService bookingStatsService, BookingStateMachine stateMachine, JobLeaseService leaseService,
+            JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.bookingRepository = bookingRepository;
+        this.approvalRepository = approvalRepository;
+        this.bookingRecordService = bookingRecordService;
+        this.bookingStatsService = bookingStatsService;
+        this.stateMachine = stateMachine;
+        this.leaseService = leaseService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
     /**
-     * Scheduled task that runs every 5 minutes to check for overdue review bookings
-     * and automatically moves them to IN_PROGRESS status
+     * Schedule the review timeout for an approval. Inside a transaction the
+     * deadline is only queued once it commits.
      */
-    @Scheduled(fixedRate = 300000) // Run every 5 minutes (300,000ms)
-    public void processOverdueReviewBookings() {
-        try {
-            LocalDateTime currentTime = LocalDateTime.now();
-
-            // Get overdue approvals
-            List<Approval> overdueApprovals = approvalService.getOverdueApprovals();
+    public void track(Long approvalId, LocalDateTime reviewDeadline) {
+        if (approvalId == null || reviewDeadline == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(approvalId, reviewDeadline);
+                }
+            });
+        } else {
+            enqueue(approvalId, reviewDeadline);
+        }
+    }
 
-            if (overdueApprovals.isEmpty()) {
-                logger.debug("No overdue review approvals found at {}", currentTime);
-                return;
-            }
+    private void enqueue(Long approvalId, LocalDateTime reviewDeadline) {
+        LocalDateTime previous = tracked.put(approvalId, reviewDeadline);
+        if (!reviewDeadline.equals(previous)) {
+            deadlines.offer(new ReviewDeadline(approvalId, reviewDeadline, dueMillis(reviewDeadline)));
+        }
+    }
 
-            logger.info("Found {} overdue review approvals at {}", overdueApprovals.size(), currentTime);
+    @Override
+    public void start() {
+        running = true;
+        timeoutThread = new Thread(this::timeoutLoop, "review-timeout");
+        timeoutThread.setDaemon(true);
+        timeoutThread.start();
+    }
 
-            int successCount = 0;
-            int failureCount = 0;
+    @Override
+    public void stop() {
+        running = false;
+        if (timeoutThread != null) {
+            timeoutThread.interrupt();
+        }
+    }
 
-            for (Approval approval : overdueApprovals) {
-                try {
-                    // Process each approval in its own transaction
-                    processIndividualOverdueBooking(approval);
-                    successCount++;
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
 
-                    logger.info("Automatically moved booking {} from IN_REVIEW to IN_PROGRESS due to timeout",
-                            approval.getBooking().getBookingCode());
+    private void timeoutLoop() {
+        while (running && !loadPendingDeadlines()) {
+            if (!sleep(RETRY_DELAY_MS)) {
+                return;
+            }
+        }
 
-                } catch (Exception e) {
-                    failureCount++;
-                    logger.error("Failed to auto-progress booking {} from review: {}",
-                            approval.getBooking().getBookingCode(), e.getMessage(), e);
+        List<ReviewDeadline> due = new ArrayList<>();
+        while (running) {
+            try {
+                due.add(deadlines.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            deadlines.drainTo(due);
+
+            List<ReviewDeadline> current = new ArrayList<>(due.size());
+            List<Long> approvalIds = new ArrayList<>(due.size());
+            for (ReviewDeadline deadline : due) {
+                if (tracked.remove(deadline.approvalId, deadline.reviewDeadline)) {
+                    current.add(deadline);
+                    approvalIds.add(deadline.approvalId);
                 }
             }
+            try {
+                expire(approvalIds, null);
+            } catch (Exception e) {
+                logger.error("Failed to expire {} review deadlines, retrying in {} ms: {}",
+                        approvalIds.size(), RETRY_DELAY_MS, e.getMessage(), e);
+                long retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+                for (ReviewDeadline deadline : current) {
+                    if (tracked.putIfAbsent(deadline.approvalId, deadline.reviewDeadline) == null) {
+                        deadlines.offer(new ReviewDeadline(deadline.approvalId, deadline.reviewDeadline, retryAt));
+                    }
+                }
+            }
+            due.clear();
+        }
+    }
 
-            logger.info("Successfully processed {} overdue review approvals ({} succeeded, {} failed)",
-                    overdueApprovals.size(), successCount, failureCount);
-
+    private boolean loadPendingDeadlines() {
+        try {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, review_deadline FROM approvals "
+                            + "WHERE status = 'IN_REVIEW' AND review_deadline IS NOT NULL",
+                    (rs, rowNum) -> new Object[] { rs.getLong(1), rs.getTimestamp(2).toLocalDateTime() });
+            rows.forEach(row -> enqueue((Long) row[0], (LocalDateTime) row[1]));
+            logger.info("Review timeout queue loaded with {} pending deadlines", rows.size());
+            return true;
         } catch (Exception e) {
-            logger.error("Error in scheduled review processing: {}", e.getMessage(), e);
+            logger.warn("Failed to load review deadlines, retrying in {} ms: {}", RETRY_DELAY_MS, e.getMessage());
+            return false;
         }
     }
 
     /**
-     * Process individual overdue approval in its own transaction
+     * Safety net for deadlines the queue never saw. Runs every 10 minutes by
+     * default; the queue itself handles the normal case.
      */
-    @Transactional(propagation = Propagation.REQUIRES_NEW)
-    public void processIndividualOverdueBooking(Approval approval) {
+    @Scheduled(fixedDelayString = "${app.review-timeout.sweep-ms:600000}",
+            initialDelayString = "${app.review-timeout.sweep-ms:600000}")
+    @LeasedJob(value = "review-sweep", partitions = 4)
+    public void processOverdueReviewBookings() {
         try {
-            Booking booking = approval.getBooking();
-
-            // Update approval to approved status (auto-approved due to timeout)
-            approval.setStatus(ApprovalStatus.APPROVED);
-            approval.setReviewedAt(LocalDateTime.now());
-            approval.setReviewedBy(null); // System action
-            approval.setReviewNotes("Auto-approved due to 30-minute review timeout");
-            approval.setApprovedAt(LocalDateTime.now());
-            approval.setApprovedBy(null); // System action
-            approval.setUpdatedAt(LocalDateTime.now());
-
-            // Move booking to IN_PROGRESS
-            booking.setStatus(BookingStatus.IN_PROGRESS);
-            booking.setUpdatedAt(LocalDateTime.now());
-
-            // Save both entities
-            approvalRepository.save(approval);
-            bookingRepository.save(booking);
-
-            // Record the automatic progression
-            bookingRecordService.createRecord(
-                    booking,
-                    TypeAction.BOOKING_UPDATED,
-                    null, // System action, no user
-                    String.format(
-                            "Booking automatically moved from IN_REVIEW to IN_PROGRESS due to 30-minute timeout. Review started: %s, Deadline: %s",
-                            approval.getReviewStartedAt(), approval.getReviewDeadline()));
-
-            logger.debug("Successfully auto-progressed booking {} to IN_PROGRESS", booking.getBookingCode());
-
+            int processed = processOverdueBookingsManually();
+            if (processed > 0) {
+                logger.info("Review sweep expired {} overdue approvals missed by the timeout queue", processed);
+            }
         } catch (Exception e) {
-            logger.error("Error processing individual overdue booking {}: {}",
-                    approval.getBooking().getBookingCode(), e.getMessage(), e);
-            throw e; // Re-throw to be caught by the caller
+            logger.error("Error in scheduled review processing: {}", e.getMessage(), e);
         }
     }
 
     /**
-     * Manual method to check and process overdue bookings
+     * Expire every overdue review now, or only this node's partitions when
+     * called from the leased sweep
      * Useful for testing or manual triggers
      */
-    @Transactional
     public int processOverdueBookingsManually() {
-        try {
-            LocalDateTime currentTime = LocalDateTime.now();
+        List<Long> overdue = jdbcTemplate.queryForList(
+                "SELECT id FROM approvals WHERE status = 'IN_REVIEW' AND review_deadline <= ?",
+                Long.class, Timestamp.valueOf(LocalDateTime.now()));
+        JobLease lease = JobLease.current();
+        if (lease != null && lease.isPartitioned()) {
+            overdue.removeIf(id -> !lease.owns(id));
+        }
+        return expire(overdue, lease);
+    }
 
-            // Find overdue approvals manually using repository query
-            List<Approval> overdueApprovals = approvalRepository.findByStatusAndReviewDeadlineBefore(
-                    ApprovalStatus.IN_REVIEW, currentTime);
+    /**
+     * Auto-approve the given approvals and move their bookings to
+     * IN_PROGRESS, batchSize at a time. Approvals that are no longer in review
+     * or whose deadline was pushed back are skipped. With a lease, each
+     * transaction first checks it still holds it under the same fencing token.
+     *
+     * @return number of approvals expired
+     */
+    private int expire(List<Long> approvalIds, JobLease lease) {
+        int expired = 0;
+        for (int from = 0; from < approvalIds.size(); from += batchSize) {
+            List<Long> chunk = approvalIds.subList(from, Math.min(from + batchSize, approvalIds.size()));
+            Integer count = transactionTemplate.execute(tx -> {
+                leaseService.verify(lease);
+                return expireChunk(chunk);
+            });
+            expired += count != null ? count : 0;
+        }
+        return expired;
+    }
 
-            logger.info("Manual processing: Found {} overdue approvals", overdueApprovals.size());
+    private int expireChunk(List<Long> approvalIds) {
+        if (approvalIds.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp nowTs = Timestamp.valueOf(now);
 
-            int processedCount = 0;
-            for (Approval approval : overdueApprovals) {
-                try {
-                    processIndividualOverdueBooking(approval);
-                    processedCount++;
+        Object[] selectArgs = new Object[approvalIds.size() + 1];
+        for (int i = 0; i < approvalIds.size(); i++) {
+            selectArgs[i] = approvalIds.get(i);
+        }
+        selectArgs[approvalIds.size()] = nowTs;
+        List<ExpiredReview> reviews = jdbcTemplate.query(
+                "SELECT a.id, a.booking_id, a.review_started_at, a.review_deadline, b.status, b.total_amount "
+                        + "FROM approvals a JOIN bookings b ON b.id = a.booking_id "
+                        + "WHERE a.id IN (" + placeholders(approvalIds.size()) + ") "
+                        + "AND a.status = 'IN_REVIEW' AND a.review_deadline <= ? FOR UPDATE",
+                (rs, rowNum) -> new ExpiredReview(rs.getLong(1), rs.getLong(2),
+                        toLocalDateTime(rs.getTimestamp(3)), toLocalDateTime(rs.getTimestamp(4)),
+                        BookingStatus.IN_REVIEW.name().equals(rs.getString(5)), rs.getBigDecimal(6)),
+                selectArgs);
+        if (reviews.isEmpty()) {
+            return 0;
+        }
 
-                    logger.info("Manually processed overdue booking: {}",
-                            approval.getBooking().getBookingCode());
-                } catch (Exception e) {
-                    logger.error("Failed to manually process overdue booking {}: {}",
-                            approval.getBooking().getBookingCode(), e.getMessage());
-                }
+        List<Object> approvalArgs = new ArrayList<>();
+        Collections.addAll(approvalArgs, nowTs, AUTO_APPROVE_NOTES, nowTs, nowTs);
+        List<Object> bookingArgs = new ArrayList<>();
+        bookingArgs.add(nowTs);
+        for (ExpiredReview review : reviews) {
+            approvalArgs.add(review.approvalId);
+            if (review.bookingInReview) {
+                bookingArgs.add(review.bookingId);
             }
+        }
 
-            logger.info("Manual processing completed: {} bookings processed", processedCount);
-            return processedCount;
+        jdbcTemplate.update("UPDATE approvals SET status = 'APPROVED', reviewed_at = ?, reviewed_by = NULL, "
+                + "review_notes = ?, approved_at = ?, approved_by = NULL, updated_at = ? "
+                + "WHERE id IN (" + placeholders(reviews.size()) + ")", approvalArgs.toArray());
+        if (bookingArgs.size() > 1) {
+            jdbcTemplate.update("UPDATE bookings SET status = 'IN_PROGRESS', updated_at = ? "
+                    + "WHERE status = 'IN_REVIEW' AND id IN (" + placeholders(bookingArgs.size() - 1) + ")",
+                    bookingArgs.toArray());
+        }
 
-        } catch (Exception e) {
-            logger.error("Error in manual overdue booking processing: {}", e.getMessage(), e);
-            return 0;
+        // Bulk updates skip the JPA listeners, so report the transitions directly
+        List<BookingRecord> records = new ArrayList<>();
+        for (ExpiredReview review : reviews) {
+            if (!review.bookingInReview) {
+                continue;
+            }
+            bookingStatsService.statusChanged(BookingStatus.IN_REVIEW, BookingStatus.IN_PROGRESS,
+                    review.totalAmount, now);
+            stateMachine.recordBulk(BookingStatus.IN_REVIEW, BookingStatus.IN_PROGRESS, 1);
+            records.add(BookingRecord.builder()
+                    .booking(bookingRepository.getReferenceById(review.bookingId))
+                    .action(TypeAction.BOOKING_UPDATED)
+                    .description(String.format(
+                            "Booking automatically moved from IN_REVIEW to IN_PROGRESS due to 30-minute timeout. Review started: %s, Deadline: %s",
+                            review.reviewStartedAt, review.reviewDeadline))
+                    .createdAt(now)
+                    .build());
         }
+        bookingRecordService.createRecords(records);
+
+        logger.info("Auto-approved {} reviews after timeout, {} bookings moved to IN_PROGRESS",
+                reviews.size(), records.size());
+        return reviews.size();
     }
 
     /**
@@ -184,6 +335,74 @@ public class BookingReviewSchedulerService {
         }
     }
 
+    /**
+     * Deadlines are stored as DATETIME, which MySQL rounds to the second, so
+     * fire on the next whole second to be sure the stored value has passed
+     */
+    private static long dueMillis(LocalDateTime reviewDeadline) {
+        LocalDateTime due = reviewDeadline.getNano() == 0 ? reviewDeadline
+                : reviewDeadline.truncatedTo(ChronoUnit.SECONDS).plusSeconds(1);
+        return due.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+
+    private static final class ReviewDeadline implements Delayed {
+        private final Long approvalId;
+        private final LocalDateTime reviewDeadline;
+        private final long dueMillis;
+
+        private ReviewDeadline(Long approvalId, LocalDateTime reviewDeadline, long dueMillis) {
+            this.approvalId = approvalId;
+            this.reviewDeadline = reviewDeadline;
+            this.dueMillis = dueMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueMillis, ((ReviewDeadline) other).dueMillis);
+        }
+    }
+
+    private static final class ExpiredReview {
+        private final long approvalId;
+        private final long bookingId;
+        private final LocalDateTime reviewStartedAt;
+        private final LocalDateTime reviewDeadline;
+        private final boolean bookingInReview;
+        private final BigDecimal totalAmount;
+
+        private ExpiredReview(long approvalId, long bookingId, LocalDateTime reviewStartedAt,
+                LocalDateTime reviewDeadline, boolean bookingInReview, BigDecimal totalAmount) {
+            this.approvalId = approvalId;
+            this.bookingId = bookingId;
+            this.reviewStartedAt = reviewStartedAt;
+            this.reviewDeadline = reviewDeadline;
+            this.bookingInReview = bookingInReview;
+            this.totalAmount = totalAmount;
+        }
+    }
+
     /**
      * Statistics class for review monitoring
      */
@@ -0,0 +1,302 @@
+package org.vgu.backend.service.booking;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.ScheduleStatus;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.exception.DataNotFoundException;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCodec;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+import org.vgu.backend.service.notification.NotificationService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Moves a booking to another sailing in one transaction, keeping its code
+ * and audit trail. Both schedules are locked in ascending id order before
+ * the booking, so two changes in opposite directions queue on the lower
+ * id instead of deadlocking. Space is taken on the new sailing and given
+ * back on the old one in the same transaction, so it is never free in
+ * between. The price difference comes from the two routes' base prices;
+ * vehicle charges do not depend on the sailing.
+ */
+@Service
+public class BookingSailingChangeService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingSailingChangeService.class);
+
+    @Getter
+    @AllArgsConstructor
+    public static class SailingChangeResult {
+        private final Long bookingId;
+        private final String bookingCode;
+        private final Long fromScheduleId;
+        private final Long toScheduleId;
+        private final LocalDateTime departureTime;
+        private final BigDecimal previousAmount;
+        private final BigDecimal totalAmount;
+        // Positive when the customer owes more
+        private final BigDecimal priceDifference;
+        private final int attempts;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookingRepository bookingRepository;
+    private final IBookingRecordService bookingRecordService;
+    private final NotificationService notificationService;
+    private final BookingStatsService bookingStatsService;
+    private final AllotmentService allotmentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.sailing-change.max-attempts:3}")
+    private int maxAttempts;
+
+    public BookingSailingChangeService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            BookingRepository bookingRepository, IBookingRecordService bookingRecordService,
+            NotificationService notificationService, BookingStatsService bookingStatsService,
+            AllotmentService allotmentService, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookingRepository = bookingRepository;
+        this.bookingRecordService = bookingRecordService;
+        this.notificationService = notificationService;
+        this.bookingStatsService = bookingStatsService;
+        this.allotmentService = allotmentService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Move a booking's passengers and vehicles to another sailing
+     *
+     * @throws DataNotFoundException if the booking or either schedule is missing
+     * @throws BusinessException     if the booking or sailing does not allow it
+     *                               or the new sailing is full
+     */
+    public SailingChangeResult changeSailing(Long bookingId, Long scheduleId, String reason, Account actor) {
+        long started = System.nanoTime();
+        String outcome = "failed";
+        try {
+            for (int attempt = 1;; attempt++) {
+                int current = attempt;
+                try {
+                    SailingChangeResult result = transactionTemplate
+                            .execute(tx -> apply(bookingId, scheduleId, reason, actor, current));
+                    outcome = "changed";
+                    logger.info("Booking {} moved from sailing {} to {} (price difference {}) after {} attempt(s)",
+                            result.getBookingCode(), result.getFromScheduleId(), scheduleId,
+                            result.getPriceDifference(), attempt);
+                    return result;
+                } catch (PessimisticLockingFailureException | SourceChanged e) {
+                    if (attempt >= maxAttempts) {
+                        throw new BusinessException("Booking " + bookingId
+                                + " is being changed concurrently, please try again", "CONCURRENT_CHANGE", e);
+                    }
+                    logger.debug("Retrying sailing change for booking {} (attempt {}): {}", bookingId, attempt,
+                            e.getMessage());
+                }
+            }
+        } catch (BusinessException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            Timer.builder("app.booking.sailing-change")
+                    .description("Time to move a booking to another sailing")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private SailingChangeResult apply(Long bookingId, Long scheduleId, String reason, Account actor, int attempt) {
+        List<Long> current = jdbcTemplate.queryForList("SELECT schedule_id FROM bookings WHERE id = ?", Long.class,
+                bookingId);
+        if (current.isEmpty()) {
+            throw new DataNotFoundException("Booking not found with id: " + bookingId);
+        }
+        Long fromId = current.get(0);
+        if (fromId.equals(scheduleId)) {
+            throw new BusinessException("Booking is already on sailing " + scheduleId, "SAME_SAILING");
+        }
+
+        // Global order: lower schedule id first, then the booking
+        Sailing first = lockSchedule(Math.min(fromId, scheduleId));
+        Sailing second = lockSchedule(Math.max(fromId, scheduleId));
+        Sailing from = first.id == fromId ? first : second;
+        Sailing to = first.id == fromId ? second : first;
+
+        Moving booking = lockBooking(bookingId);
+        if (booking.scheduleId != fromId) {
+            // Moved by someone else between the read and the locks
+            throw new SourceChanged("Booking " + bookingId + " left sailing " + fromId);
+        }
+        if (!booking.status.allowsSailingChange()) {
+            throw new BusinessException("A " + booking.status + " booking cannot change sailing",
+                    "INVALID_STATUS_TRANSITION");
+        }
+        if (from.status == ScheduleStatus.BOARDING || from.status == ScheduleStatus.DEPARTED
+                || from.status == ScheduleStatus.ARRIVED) {
+            throw new BusinessException("Sailing " + from.id + " is already " + from.status, "SAILING_CLOSED");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (to.status != ScheduleStatus.SCHEDULED || !to.departureTime.isAfter(now)
+                || (to.bookingDeadline != null && !to.bookingDeadline.isAfter(now))) {
+            throw new BusinessException("Booking is closed for sailing " + to.id, "BOOKING_CLOSED");
+        }
+        // Corporate bookings draw on the customer's allotment on the new sailing first.
+        // Check the public pool against what the block can cover before drawing on it.
+        AllotmentService.Remaining block = allotmentService.remaining(to.id, booking.customerId);
+        if (!fits(to, booking.vehicles - Math.min(booking.vehicles, block.getVehicleSpaces()),
+                booking.passengers - Math.min(booking.passengers, block.getPassengerSpaces()))) {
+            throw new BusinessException("Insufficient capacity on sailing " + to.id, "INSUFFICIENT_CAPACITY");
+        }
+        AllotmentService.Split allotted = allotmentService.consume(to.id, booking.customerId, booking.vehicles,
+                booking.passengers);
+        int takeVehicles = booking.vehicles - allotted.getVehicles();
+        int takePassengers = booking.passengers - allotted.getPassengers();
+        if (!fits(to, takeVehicles, takePassengers)) {
+            // The block was drawn down meanwhile; rolling back returns what was taken
+            throw new BusinessException("Insufficient capacity on sailing " + to.id, "INSUFFICIENT_CAPACITY");
+        }
+        int giveVehicles = booking.vehicles;
+        int givePassengers = booking.passengers;
+        if (allotmentService.giveBack(from.id, booking.customerId, booking.allottedVehicles,
+                booking.allottedPassengers)) {
+            giveVehicles = Math.max(0, giveVehicles - booking.allottedVehicles);
+            givePassengers = Math.max(0, givePassengers - booking.allottedPassengers);
+        }
+
+        BigDecimal difference = to.price.subtract(from.price);
+        BigDecimal total = booking.totalAmount.add(difference).max(BigDecimal.ZERO);
+        Timestamp ts = Timestamp.valueOf(now);
+
+        // Capacity rows are written in the same id order they were locked in
+        List<Object[]> capacity = new ArrayList<>(2);
+        for (Sailing sailing : List.of(first, second)) {
+            capacity.add(sailing == to ? new Object[] { takeVehicles, takePassengers, ts, sailing.id }
+                    : new Object[] { -giveVehicles, -givePassengers, ts, sailing.id });
+        }
+        jdbcTemplate.batchUpdate("UPDATE schedules SET "
+                + "available_vehicle_spaces = GREATEST(0, available_vehicle_spaces - ?), "
+                + "available_passenger_spaces = GREATEST(0, available_passenger_spaces - ?), "
+                + "updated_at = ? WHERE id = ?", capacity);
+        jdbcTemplate.update("UPDATE bookings SET schedule_id = ?, total_amount = ?, allotted_vehicles = ?, "
+                + "allotted_passengers = ?, updated_at = ? WHERE id = ?", to.id, total, allotted.getVehicles(),
+                allotted.getPassengers(), ts, bookingId);
+        bookingStatsService.amountChanged(booking.createdAt, booking.totalAmount, total);
+
+        String why = reason != null && !reason.isBlank() ? " Reason: " + reason : "";
+        List<AuditChangeCodec.Change> changes = new ArrayList<>(2);
+        changes.add(new AuditChangeCodec.Change("scheduleId", from.id, to.id));
+        if (total.compareTo(booking.totalAmount) != 0) {
+            changes.add(new AuditChangeCodec.Change("totalAmount", booking.totalAmount, total));
+        }
+        bookingRecordService.createRecords(List.of(BookingRecord.builder()
+                .booking(bookingRepository.getReferenceById(bookingId))
+                .action(TypeAction.BOOKING_UPDATED)
+                .performedBy(actor)
+                .description(String.format("Changed from sailing %d to sailing %d (departs %s), price difference %s.%s",
+                        from.id, to.id, to.departureTime, difference, why))
+                .currentValues(AuditChangeCodec.encode("Booking", false, changes))
+                .createdAt(now)
+                .build()));
+        notificationService.createNotifications(List.of(notificationService.buildStatusChangeNotification(
+                String.valueOf(booking.customerId), booking.bookingCode, "RESCHEDULED",
+                String.format("Your booking %s has been moved to the sailing departing at %s. New total: %s.",
+                        booking.bookingCode, to.departureTime, total))));
+
+        return new SailingChangeResult(bookingId, booking.bookingCode, from.id, to.id, to.departureTime,
+                booking.totalAmount, total, difference, attempt);
+    }
+
+    private static boolean fits(Sailing sailing, int vehicles, int passengers) {
+        return (sailing.vehicleSpaces == null || sailing.vehicleSpaces >= vehicles)
+                && (sailing.passengerSpaces == null || sailing.passengerSpaces >= passengers);
+    }
+
+    private Sailing lockSchedule(Long scheduleId) {
+        List<Sailing> rows = jdbcTemplate.query("SELECT s.id, s.departure_time, s.booking_deadline, s.status, "
+                + "s.available_vehicle_spaces, s.available_passenger_spaces, r.price "
+                + "FROM schedules s JOIN routes r ON r.id = s.route_id WHERE s.id = ? FOR UPDATE OF s",
+                (rs, rowNum) -> new Sailing(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(),
+                        rs.getTimestamp(3) != null ? rs.getTimestamp(3).toLocalDateTime() : null,
+                        ScheduleStatus.valueOf(rs.getString(4)), rs.getObject(5, Integer.class),
+                        rs.getObject(6, Integer.class), rs.getBigDecimal(7)),
+                scheduleId);
+        if (rows.isEmpty()) {
+            throw new DataNotFoundException("Schedule not found with id: " + scheduleId);
+        }
+        return rows.get(0);
+    }
+
+    private Moving lockBooking(Long bookingId) {
+        return jdbcTemplate.queryForObject("SELECT b.schedule_id, b.booking_code, b.status, b.total_amount, "
+                + "b.customer_id, COALESCE(b.passenger_count, 0), "
+                + "(SELECT COALESCE(SUM(v.quantity), 0) FROM vehicles v WHERE v.booking_id = b.id), b.created_at, "
+                + "b.allotted_vehicles, b.allotted_passengers "
+                + "FROM bookings b WHERE b.id = ? FOR UPDATE",
+                (rs, rowNum) -> new Moving(rs.getLong(1), rs.getString(2), BookingStatus.valueOf(rs.getString(3)),
+                        rs.getBigDecimal(4) != null ? rs.getBigDecimal(4) : BigDecimal.ZERO, rs.getLong(5),
+                        rs.getInt(6), rs.getInt(7),
+                        rs.getTimestamp(8) != null ? rs.getTimestamp(8).toLocalDateTime() : null, rs.getInt(9),
+                        rs.getInt(10)),
+                bookingId);
+    }
+
+    /**
+     * The booking moved between the unlocked read and the locks; retried
+     */
+    private static final class SourceChanged extends RuntimeException {
+        private SourceChanged(String message) {
+            super(message);
+        }
+    }
+
+    @AllArgsConstructor
+    private static final class Sailing {
+        private final long id;
+        private final LocalDateTime departureTime;
+        private final LocalDateTime bookingDeadline;
+        private final ScheduleStatus status;
+        // Null means the sailing does not track that capacity
+        private final Integer vehicleSpaces;
+        private final Integer passengerSpaces;
+        private final BigDecimal price;
+    }
+
+    @AllArgsConstructor
+    private static final class Moving {
+        private final long scheduleId;
+        private final String bookingCode;
+        private final BookingStatus status;
+        private final BigDecimal totalAmount;
+        private final long customerId;
+        private final int passengers;
+        private final int vehicles;
+        private final LocalDateTime createdAt;
+        private final int allottedVehicles;
+        private final int allottedPassengers;
+    }
+}
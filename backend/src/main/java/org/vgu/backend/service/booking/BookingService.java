@@ -34,6 +34,7 @@ import org.vgu.backend.repository.ScheduleRepository;
 import org.vgu.backend.repository.VehicleRepository;
 import org.vgu.backend.service.ApprovalService;
 import org.vgu.backend.service.account.IAccountService;
+import org.vgu.backend.service.allotment.AllotmentService;
 import org.vgu.backend.service.bookingrecord.IBookingRecordService;
 import org.vgu.backend.service.notification.NotificationService;
 import org.vgu.backend.service.validation.CapacityValidationService;
@@ -54,6 +55,7 @@ public class BookingService implements IBookingService {
     private final IAccountService accountService;
     private final NotificationService notificationService;
     private final EmployeeRepository employeeRepository;
+    private final AllotmentService allotmentService;
     private final Logger logger = LoggerFactory.getLogger(BookingService.class);
 
     @Override
@@ -109,8 +111,14 @@ public class BookingService implements IBookingService {
         int vehiclesToAdd = vehicles.stream().mapToInt(Vehicle::getQuantity).sum();
         int passengersToAdd = Objects.requireNonNullElse(request.getPassengerCount(), 1);
 
+        // Corporate customers draw on their allotment first, the rest comes from the public pool
+        AllotmentService.Split allotted = allotmentService.consume(schedule.getId(), customer.getId(),
+                vehiclesToAdd, passengersToAdd);
+        int publicVehicles = vehiclesToAdd - allotted.getVehicles();
+        int publicPassengers = passengersToAdd - allotted.getPassengers();
+
         // Check schedule capacity
-        if (!schedule.hasCapacityFor(vehiclesToAdd, passengersToAdd)) {
+        if (!schedule.hasCapacityFor(publicVehicles, publicPassengers)) {
             throw new BusinessException("Insufficient capacity on this schedule", "INSUFFICIENT_CAPACITY");
         }
 
@@ -136,6 +144,8 @@ public class BookingService implements IBookingService {
                 // Do not set single vehicle here, will set list after booking save
                 .passengerCount(passengersToAdd)
                 .totalAmount(totalAmount)
+                .allottedVehicles(allotted.getVehicles())
+                .allottedPassengers(allotted.getPassengers())
                 .status(BookingStatus.PENDING)
                 .build();
 
@@ -160,7 +170,7 @@ public class BookingService implements IBookingService {
         savedBooking.setVehicles(vehicles);
 
         // Update schedule capacity
-        schedule.reduceCapacity(vehiclesToAdd, passengersToAdd);
+        schedule.reduceCapacity(publicVehicles, publicPassengers);
         scheduleRepository.save(schedule);
 
         logger.info("Booking created successfully: {} for schedule: {}",
@@ -178,13 +188,12 @@ public class BookingService implements IBookingService {
                     schedule.getRoute().getDeparturePort().getPortName(),
                     schedule.getRoute().getArrivalPort().getPortName());
 
-            bookingRecordService.createRecordWithValues(
+            bookingRecordService.createChangeRecord(
                     savedBooking,
                     TypeAction.BOOKING_CREATED,
                     currentUser,
                     description,
-                    null, // No previous values for creation
-                    buildBookingSnapshot(savedBooking));
+                    null); // No previous state for creation
         } catch (Exception e) {
             logger.warn("Failed to record booking creation activity for {}: {}",
                     savedBooking.getBookingCode(), e.getMessage());
@@ -312,17 +321,4 @@ public class BookingService implements IBookingService {
         }
         throw new IllegalStateException("User not authenticated");
     }
-
-    private String buildBookingSnapshot(Booking booking) {
-        // Simplified snapshot for now
-        return String.format(
-                "{\"id\":%d, \"bookingCode\":\"%s\", \"status\":\"%s\", \"totalAmount\":%s, \"passengerCount\":%d, \"vehicleCount\":%d}",
-                booking.getId(),
-                booking.getBookingCode(),
-                booking.getStatus().toString(),
-                booking.getTotalAmount(),
-                booking.getPassengerCount(),
-                booking.getVehicles().size() // Get count from the list
-        );
-    }
 }
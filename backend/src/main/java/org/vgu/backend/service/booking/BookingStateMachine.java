@@ -0,0 +1,317 @@
+package org.vgu.backend.service.booking;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.Schedule;
+import org.vgu.backend.model.Vehicle;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCapture;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+import org.vgu.backend.service.notification.NotificationService;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Single entry point for booking status changes.
+ * Legality comes from the transition matrix on {@link BookingStatus}. Guards
+ * registered per target status can veto a transition. Hooks registered per
+ * (from, to) pair run in the caller's transaction right after the status
+ * changes, or after commit. Guards and hooks are kept in arrays indexed by
+ * ordinal, so validating a transition does not allocate.
+ * Built-in hooks release schedule capacity, write the audit record and
+ * notify the customer. Set-based callers that update many rows in SQL
+ * validate with {@link #canTransition(BookingStatus, BookingStatus)} and
+ * report with {@link #recordBulk}.
+ */
+@Service
+public class BookingStateMachine {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingStateMachine.class);
+
+    private static final BookingStatus[] STATUSES = BookingStatus.values();
+    private static final Guard[] NO_GUARDS = new Guard[0];
+    private static final Hook[] NO_HOOKS = new Hook[0];
+
+    /**
+     * Vetoes a transition
+     */
+    @FunctionalInterface
+    public interface Guard {
+        /**
+         * @return null to allow the transition, otherwise the reason it is refused
+         */
+        String check(Booking booking, BookingStatus from, BookingStatus to);
+    }
+
+    @FunctionalInterface
+    public interface Hook {
+        void apply(Transition transition);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Transition {
+        private final Booking booking;
+        private final Long customerId;
+        private final String bookingCode;
+        private final BookingStatus from;
+        private final BookingStatus to;
+        private final Account actor;
+        // Audit action and description; no audit record is written when null
+        private final TypeAction action;
+        private final String description;
+        private final AuditChangeCapture.Snapshot before;
+    }
+
+    private final IBookingRecordService bookingRecordService;
+    private final NotificationService notificationService;
+    private final MeterRegistry meterRegistry;
+    private final AllotmentService allotmentService;
+
+    private final Guard[][] guards = new Guard[STATUSES.length][];
+    private final Hook[][][] hooks = new Hook[STATUSES.length][STATUSES.length][];
+    private final Hook[][][] committedHooks = new Hook[STATUSES.length][STATUSES.length][];
+    private final Counter[][] applied = new Counter[STATUSES.length][STATUSES.length];
+    private final Counter[][] appliedBulk = new Counter[STATUSES.length][STATUSES.length];
+
+    public BookingStateMachine(IBookingRecordService bookingRecordService, NotificationService notificationService,
+            MeterRegistry meterRegistry, AllotmentService allotmentService) {
+        this.bookingRecordService = bookingRecordService;
+        this.notificationService = notificationService;
+        this.meterRegistry = meterRegistry;
+        this.allotmentService = allotmentService;
+
+        Arrays.fill(guards, NO_GUARDS);
+        for (BookingStatus from : STATUSES) {
+            Arrays.fill(hooks[from.ordinal()], NO_HOOKS);
+            Arrays.fill(committedHooks[from.ordinal()], NO_HOOKS);
+            for (BookingStatus to : STATUSES) {
+                if (from.canTransitionTo(to)) {
+                    applied[from.ordinal()][to.ordinal()] = transitionCounter(from, to, "single");
+                    appliedBulk[from.ordinal()][to.ordinal()] = transitionCounter(from, to, "bulk");
+                }
+            }
+        }
+    }
+
+    /**
+     * Register the built-in guard and hooks. Done after construction so the
+     * method references do not leak a half-built instance.
+     */
+    @PostConstruct
+    void registerBuiltIns() {
+        addGuard(BookingStatus.REFUNDED, (booking, from, to) -> from == BookingStatus.IN_REFUND
+                || booking.hasRefundRequested() ? null : "Booking has no approved refund request");
+        for (BookingStatus from : STATUSES) {
+            for (BookingStatus to : STATUSES) {
+                if (from.canTransitionTo(to)) {
+                    if (from.holdsCapacity() && !to.holdsCapacity()) {
+                        onTransition(from, to, this::releaseCapacity);
+                    }
+                    onTransition(from, to, this::audit);
+                    afterCommit(from, to, this::notifyCustomer);
+                }
+            }
+        }
+    }
+
+    /**
+     * Refuse transitions into {@code to} when the guard returns a reason
+     */
+    public synchronized void addGuard(BookingStatus to, Guard guard) {
+        guards[to.ordinal()] = append(guards[to.ordinal()], guard);
+    }
+
+    /**
+     * Run {@code hook} in the caller's transaction after {@code from -> to}
+     */
+    public synchronized void onTransition(BookingStatus from, BookingStatus to, Hook hook) {
+        requireLegal(from, to);
+        hooks[from.ordinal()][to.ordinal()] = append(hooks[from.ordinal()][to.ordinal()], hook);
+    }
+
+    /**
+     * Run {@code hook} once the transaction that made {@code from -> to}
+     * commits, or straight away outside a transaction
+     */
+    public synchronized void afterCommit(BookingStatus from, BookingStatus to, Hook hook) {
+        requireLegal(from, to);
+        committedHooks[from.ordinal()][to.ordinal()] = append(committedHooks[from.ordinal()][to.ordinal()], hook);
+    }
+
+    public boolean canTransition(BookingStatus from, BookingStatus to) {
+        return from != null && from.canTransitionTo(to);
+    }
+
+    public boolean canTransition(Booking booking, BookingStatus to) {
+        return check(booking, to) == null;
+    }
+
+    /**
+     * @return null if the booking may move to {@code to}, otherwise why not
+     */
+    public String check(Booking booking, BookingStatus to) {
+        BookingStatus from = booking.getStatus();
+        if (!canTransition(from, to)) {
+            return "Booking cannot move from " + from + " to " + to;
+        }
+        for (Guard guard : guards[to.ordinal()]) {
+            String reason = guard.check(booking, from, to);
+            if (reason != null) {
+                return reason;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move a booking to {@code to} and run the transition's hooks. Call it
+     * after setting the booking's other fields so the audit record sees
+     * them.
+     *
+     * @param action      audit action, or null to skip the audit record
+     * @param description audit description, also used in the customer notification
+     * @param before      snapshot taken before the booking was changed
+     * @throws BusinessException if the transition is illegal or a guard refuses it
+     */
+    public void transition(Booking booking, BookingStatus to, Account actor, TypeAction action,
+            String description, AuditChangeCapture.Snapshot before) {
+        BookingStatus from = booking.getStatus();
+        String reason = check(booking, to);
+        if (reason != null) {
+            meterRegistry.counter("app.booking.transition", "from", String.valueOf(from), "to", to.name(),
+                    "mode", "single", "outcome", "rejected").increment();
+            throw new BusinessException(reason, "INVALID_STATUS_TRANSITION");
+        }
+
+        booking.transitionTo(to);
+        booking.setUpdatedAt(LocalDateTime.now());
+        applied[from.ordinal()][to.ordinal()].increment();
+
+        Transition transition = new Transition(booking,
+                booking.getCustomer() != null ? booking.getCustomer().getId() : null,
+                booking.getBookingCode(), from, to, actor, action, description, before);
+        for (Hook hook : hooks[from.ordinal()][to.ordinal()]) {
+            hook.apply(transition);
+        }
+        Hook[] committed = committedHooks[from.ordinal()][to.ordinal()];
+        if (committed.length > 0) {
+            runAfterCommit(transition, committed);
+        }
+    }
+
+    /**
+     * Count transitions applied by set-based SQL, which skips the hooks
+     */
+    public void recordBulk(BookingStatus from, BookingStatus to, int count) {
+        Counter counter = appliedBulk[from.ordinal()][to.ordinal()];
+        if (counter != null) {
+            counter.increment(count);
+        }
+    }
+
+    private void runAfterCommit(Transition transition, Hook[] committed) {
+        Runnable run = () -> {
+            for (Hook hook : committed) {
+                try {
+                    hook.apply(transition);
+                } catch (Exception e) {
+                    logger.warn("After-commit hook failed for booking {} ({} -> {}): {}",
+                            transition.getBookingCode(), transition.getFrom(), transition.getTo(), e.getMessage());
+                }
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    run.run();
+                }
+            });
+        } else {
+            run.run();
+        }
+    }
+
+    private void releaseCapacity(Transition transition) {
+        Booking booking = transition.getBooking();
+        Schedule schedule = booking.getSchedule();
+        if (schedule == null) {
+            return;
+        }
+        int vehicles = booking.getVehicles().stream().mapToInt(Vehicle::getQuantity).sum();
+        int passengers = booking.getPassengerCount() != null ? booking.getPassengerCount() : 0;
+        // Allotted space goes back to the customer's block unless it was already released
+        int allottedVehicles = booking.getAllottedVehicles() != null ? booking.getAllottedVehicles() : 0;
+        int allottedPassengers = booking.getAllottedPassengers() != null ? booking.getAllottedPassengers() : 0;
+        if (allotmentService.giveBack(schedule.getId(), transition.getCustomerId(), allottedVehicles,
+                allottedPassengers)) {
+            vehicles = Math.max(0, vehicles - allottedVehicles);
+            passengers = Math.max(0, passengers - allottedPassengers);
+        }
+        schedule.increaseCapacity(vehicles, passengers);
+        logger.debug("Released {} vehicle and {} passenger spaces on schedule {} from booking {}",
+                vehicles, passengers, schedule.getId(), booking.getBookingCode());
+    }
+
+    private void audit(Transition transition) {
+        if (transition.getAction() == null || transition.getBefore() == null) {
+            return;
+        }
+        try {
+            bookingRecordService.createChangeRecord(transition.getBooking(), transition.getAction(),
+                    transition.getActor(), transition.getDescription(), transition.getBefore());
+        } catch (Exception e) {
+            logger.warn("Failed to record booking activity for {}: {}", transition.getBookingCode(), e.getMessage());
+        }
+    }
+
+    private void notifyCustomer(Transition transition) {
+        if (transition.getCustomerId() == null) {
+            return;
+        }
+        String message = transition.getDescription() != null
+                ? String.format("Your booking %s has been updated: %s", transition.getBookingCode(),
+                        transition.getDescription())
+                : String.format("Your booking %s is now %s", transition.getBookingCode(), transition.getTo());
+        notificationService.notifyCustomerOfStatusChange(String.valueOf(transition.getCustomerId()),
+                transition.getBookingCode(), transition.getTo().name(), message);
+    }
+
+    private Counter transitionCounter(BookingStatus from, BookingStatus to, String mode) {
+        return Counter.builder("app.booking.transition")
+                .description("Booking status transitions")
+                .tag("from", from.name())
+                .tag("to", to.name())
+                .tag("mode", mode)
+                .tag("outcome", "applied")
+                .register(meterRegistry);
+    }
+
+    private static void requireLegal(BookingStatus from, BookingStatus to) {
+        if (!from.canTransitionTo(to)) {
+            throw new IllegalArgumentException("No transition from " + from + " to " + to);
+        }
+    }
+
+    private static <T> T[] append(T[] array, T item) {
+        T[] copy = Arrays.copyOf(array, array.length + 1);
+        copy[array.length] = item;
+        return copy;
+    }
+}
@@ -0,0 +1,79 @@
+package org.vgu.backend.service.booking;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.model.Booking;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * JPA listener that reports booking inserts, status transitions and amount
+ * changes to {@link BookingStatsService}. The state seen at load time (or
+ * at the last flush) is kept on the entity so each flush reports only what
+ * it actually changed.
+ */
+@Component
+public class BookingStatsListener {
+
+    private final ObjectProvider<BookingStatsService> statsService;
+
+    public BookingStatsListener(ObjectProvider<BookingStatsService> statsService) {
+        this.statsService = statsService;
+    }
+
+    @PostLoad
+    public void loaded(Booking booking) {
+        remember(booking);
+    }
+
+    @PostPersist
+    public void persisted(Booking booking) {
+        statsService.ifAvailable(stats -> stats.bookingCreated(
+                booking.getStatus(), booking.getCreatedAt(), booking.getTotalAmount()));
+        remember(booking);
+    }
+
+    @PostUpdate
+    public void updated(Booking booking) {
+        statsService.ifAvailable(stats -> {
+            BookingStatus previous = booking.getLoadedStatus();
+            if (previous != booking.getStatus()) {
+                stats.statusChanged(previous, booking.getStatus(), booking.getTotalAmount(),
+                        transitionTime(booking));
+            }
+            if (!Objects.equals(booking.getLoadedTotalAmount(), booking.getTotalAmount())) {
+                stats.amountChanged(booking.getCreatedAt(), booking.getLoadedTotalAmount(),
+                        booking.getTotalAmount());
+            }
+        });
+        remember(booking);
+    }
+
+    @PostRemove
+    public void removed(Booking booking) {
+        statsService.ifAvailable(stats -> stats.bookingRemoved(
+                booking.getLoadedStatus() != null ? booking.getLoadedStatus() : booking.getStatus()));
+    }
+
+    private static void remember(Booking booking) {
+        booking.setLoadedStatus(booking.getStatus());
+        booking.setLoadedTotalAmount(booking.getTotalAmount());
+    }
+
+    private static LocalDateTime transitionTime(Booking booking) {
+        if (booking.getStatus() == BookingStatus.COMPLETED && booking.getCompletedAt() != null) {
+            return booking.getCompletedAt();
+        }
+        if (booking.getStatus() == BookingStatus.CANCELLED && booking.getCancelledAt() != null) {
+            return booking.getCancelledAt();
+        }
+        return LocalDateTime.now();
+    }
+}
@@ -0,0 +1,675 @@
+package org.vgu.backend.service.booking;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pre-aggregated booking statistics for the dashboards.
+ * Keeps the number of bookings in each status and hourly, daily and monthly
+ * buckets of bookings created, completed, cancelled and refunded together
+ * with created and completed revenue. {@link BookingStatsListener} feeds every
+ * booking insert, status transition and amount change in after commit, so
+ * reads never touch the bookings table.
+ * Each node only sees its own transitions, so it checkpoints them as deltas
+ * added to booking_stats_hourly / booking_status_counts and then reloads the
+ * shared totals. Reads therefore include other nodes' bookings up to one
+ * checkpoint late. The leased rebuild job recomputes the tables from
+ * bookings and bumps the generation in booking_stats_meta. Deltas a node
+ * recorded before the rebuild started are already in the recomputed totals,
+ * so they are dropped when it next checkpoints.
+ */
+@Slf4j
+@Service
+public class BookingStatsService {
+
+    private static final BookingStatus[] STATUSES = BookingStatus.values();
+
+    private static final String INSERT_HOUR_SQL = "INSERT INTO booking_stats_hourly (bucket_start, "
+            + "bookings_created, revenue_created, bookings_completed, revenue_completed, "
+            + "bookings_cancelled, bookings_refunded) VALUES (?, ?, ?, ?, ?, ?, ?)";
+    private static final String ADD_HOUR_SQL = INSERT_HOUR_SQL
+            + " ON DUPLICATE KEY UPDATE bookings_created = bookings_created + VALUES(bookings_created), "
+            + "revenue_created = revenue_created + VALUES(revenue_created), "
+            + "bookings_completed = bookings_completed + VALUES(bookings_completed), "
+            + "revenue_completed = revenue_completed + VALUES(revenue_completed), "
+            + "bookings_cancelled = bookings_cancelled + VALUES(bookings_cancelled), "
+            + "bookings_refunded = bookings_refunded + VALUES(bookings_refunded)";
+    private static final String INSERT_STATUS_SQL = "INSERT INTO booking_status_counts (status, booking_count) "
+            + "VALUES (?, ?)";
+    private static final String ADD_STATUS_SQL = INSERT_STATUS_SQL
+            + " ON DUPLICATE KEY UPDATE booking_count = booking_count + VALUES(booking_count)";
+    private static final String HOUR_EXPR = "DATE_FORMAT(%s, '%%Y-%%m-%%d %%H:00:00')";
+
+    public enum Granularity {
+        HOUR,
+        DAY,
+        MONTH
+    }
+
+    public enum Metric {
+        BOOKINGS_CREATED,
+        /** Total amount of bookings created in the bucket, in cents */
+        REVENUE_CREATED,
+        BOOKINGS_COMPLETED,
+        /** Total amount of bookings completed in the bucket, in cents */
+        REVENUE_COMPLETED,
+        BOOKINGS_CANCELLED,
+        BOOKINGS_REFUNDED
+    }
+
+    private static final Metric[] METRICS = Metric.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+    private final JobLeaseService leaseService;
+
+    // Changes not yet checkpointed, by the second they were recorded in
+    private final ConcurrentSkipListMap<Long, Delta> pending = new ConcurrentSkipListMap<>();
+    // Events hold the read lock; swapping the state or draining deltas takes the write lock
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Object persistLock = new Object();
+    private volatile State state = new State();
+    private volatile boolean ready;
+    private volatile long generation;
+    private volatile LocalDateTime lastRebuildAt;
+
+    public BookingStatsService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor, JobLeaseService leaseService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.leaseService = leaseService;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                jdbcTemplate.update("INSERT IGNORE INTO booking_stats_meta (id, generation) VALUES (1, 0)");
+                Integer stored = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booking_status_counts",
+                        Integer.class);
+                if (stored == null || stored == 0) {
+                    rebuild(null);
+                } else {
+                    load();
+                }
+            } catch (Exception e) {
+                log.error("Failed to initialize booking statistics: {}", e.getMessage(), e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    // ==================== EVENTS ====================
+
+    public void bookingCreated(BookingStatus status, LocalDateTime createdAt, BigDecimal totalAmount) {
+        afterCommit(() -> {
+            adjustStatus(status, 1);
+            LocalDateTime at = createdAt != null ? createdAt : LocalDateTime.now();
+            add(at, Metric.BOOKINGS_CREATED, 1);
+            add(at, Metric.REVENUE_CREATED, cents(totalAmount));
+        });
+    }
+
+    public void statusChanged(BookingStatus from, BookingStatus to, BigDecimal totalAmount, LocalDateTime at) {
+        afterCommit(() -> {
+            adjustStatus(from, -1);
+            adjustStatus(to, 1);
+            LocalDateTime when = at != null ? at : LocalDateTime.now();
+            if (to == BookingStatus.COMPLETED) {
+                add(when, Metric.BOOKINGS_COMPLETED, 1);
+                add(when, Metric.REVENUE_COMPLETED, cents(totalAmount));
+            } else if (to == BookingStatus.CANCELLED) {
+                add(when, Metric.BOOKINGS_CANCELLED, 1);
+            } else if (to == BookingStatus.REFUNDED) {
+                add(when, Metric.BOOKINGS_REFUNDED, 1);
+            }
+        });
+    }
+
+    /**
+     * Re-price a booking: created revenue stays attributed to the booking's
+     * creation hour
+     */
+    public void amountChanged(LocalDateTime createdAt, BigDecimal previous, BigDecimal current) {
+        long delta = cents(current) - cents(previous);
+        if (delta == 0 || createdAt == null) {
+            return;
+        }
+        afterCommit(() -> add(createdAt, Metric.REVENUE_CREATED, delta));
+    }
+
+    public void bookingRemoved(BookingStatus status) {
+        afterCommit(() -> adjustStatus(status, -1));
+    }
+
+    // ==================== READS ====================
+
+    public Map<BookingStatus, Long> getStatusCounts() {
+        State s = state;
+        Map<BookingStatus, Long> counts = new EnumMap<>(BookingStatus.class);
+        for (BookingStatus status : STATUSES) {
+            counts.put(status, s.statusCounts[status.ordinal()].sum());
+        }
+        return counts;
+    }
+
+    public long getStatusCount(BookingStatus status) {
+        return state.statusCounts[status.ordinal()].sum();
+    }
+
+    public long getTotalBookings() {
+        long total = 0;
+        for (LongAdder counter : state.statusCounts) {
+            total += counter.sum();
+        }
+        return total;
+    }
+
+    /**
+     * Value of one metric in the bucket containing {@code at}
+     */
+    public long get(Granularity granularity, LocalDateTime at, Metric metric) {
+        LongAdder[] bucket = buckets(state, granularity).get(bucketStart(granularity, at));
+        return bucket != null ? bucket[metric.ordinal()].sum() : 0;
+    }
+
+    public long getToday(Metric metric) {
+        return get(Granularity.DAY, LocalDateTime.now(), metric);
+    }
+
+    /**
+     * Sum over the current ISO week (Monday to today) from the day buckets
+     */
+    public long getThisWeek(Metric metric) {
+        LocalDate today = LocalDate.now();
+        long total = 0;
+        for (LocalDate day = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)); !day.isAfter(today);
+                day = day.plusDays(1)) {
+            total += get(Granularity.DAY, day.atStartOfDay(), metric);
+        }
+        return total;
+    }
+
+    public long getThisMonth(Metric metric) {
+        return get(Granularity.MONTH, LocalDateTime.now(), metric);
+    }
+
+    /**
+     * Every metric per bucket in [from, to), oldest first
+     */
+    public List<Map<String, Object>> getSeries(Granularity granularity, LocalDateTime from, LocalDateTime to) {
+        Map<LocalDateTime, LongAdder[]> buckets = buckets(state, granularity);
+        List<Map<String, Object>> series = new ArrayList<>();
+        for (LocalDateTime bucket = bucketStart(granularity, from); bucket.isBefore(to);
+                bucket = next(granularity, bucket)) {
+            LongAdder[] values = buckets.get(bucket);
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("bucket", bucket);
+            for (Metric metric : METRICS) {
+                long value = values != null ? values[metric.ordinal()].sum() : 0;
+                point.put(metricKey(metric), isRevenue(metric) ? BigDecimal.valueOf(value, 2) : value);
+            }
+            series.add(point);
+        }
+        return series;
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        status.put("rebuilding", rebuilding.get());
+        status.put("hourlyBuckets", state.hours.size());
+        status.put("pendingSeconds", pending.size());
+        status.put("generation", generation);
+        status.put("lastRebuildAt", lastRebuildAt);
+        return status;
+    }
+
+    // ==================== PERSISTENCE ====================
+
+    /**
+     * Recompute every counter from the bookings table in the background
+     *
+     * @return false if a rebuild is already running
+     */
+    public boolean rebuildAsync() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                rebuild(null);
+            } catch (Exception e) {
+                log.error("Booking statistics rebuild failed: {}", e.getMessage(), e);
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Nightly rebuild, run to completion while the lease is held
+     */
+    @Scheduled(cron = "${app.booking-stats.rebuild-cron:0 15 4 * * *}")
+    @LeasedJob("booking-stats-rebuild")
+    public void scheduledRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuild(JobLease.current());
+        } catch (Exception e) {
+            log.error("Booking statistics rebuild failed: {}", e.getMessage(), e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Add this node's changes to the shared tables and reload the totals
+     */
+    @Scheduled(fixedDelayString = "${app.booking-stats.checkpoint-ms:60000}")
+    public void checkpoint() {
+        if (!ready) {
+            return;
+        }
+        synchronized (persistLock) {
+            try {
+                flush();
+                reload();
+            } catch (Exception e) {
+                log.warn("Booking statistics checkpoint failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!ready) {
+            return;
+        }
+        synchronized (persistLock) {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.warn("Booking statistics checkpoint on shutdown failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        synchronized (persistLock) {
+            generation = jdbcTemplate.queryForObject("SELECT generation FROM booking_stats_meta WHERE id = 1",
+                    Long.class);
+            reload();
+        }
+        ready = true;
+        log.info("Loaded booking statistics in {} ms ({} hourly buckets)",
+                System.currentTimeMillis() - start, state.hours.size());
+    }
+
+    /**
+     * Add every pending delta to the tables. The generation row is locked
+     * first, so a rebuild cannot run in between; if one ran since the last
+     * checkpoint, deltas recorded before it started are dropped.
+     */
+    private void flush() {
+        List<Map.Entry<Long, Delta>> taken = new ArrayList<>();
+        swapLock.writeLock().lock();
+        try {
+            Map.Entry<Long, Delta> entry;
+            while ((entry = pending.pollFirstEntry()) != null) {
+                taken.add(entry);
+            }
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        try {
+            long[] applied = transactionTemplate.execute(tx -> {
+                long[] meta = jdbcTemplate.queryForObject("SELECT generation, "
+                        + "COALESCE(UNIX_TIMESTAMP(rebuilt_from), 0) FROM booking_stats_meta WHERE id = 1 FOR UPDATE",
+                        (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2) });
+                long keepFrom = meta[0] == generation ? Long.MIN_VALUE : meta[1];
+                Delta sum = new Delta();
+                for (Map.Entry<Long, Delta> entry : taken) {
+                    if (entry.getKey() >= keepFrom) {
+                        sum.addAll(entry.getValue());
+                    }
+                }
+                List<Object[]> hourRows = new ArrayList<>(sum.hours.size());
+                sum.hours.forEach((hour, values) -> hourRows.add(hourRow(hour, values)));
+                jdbcTemplate.batchUpdate(ADD_HOUR_SQL, hourRows);
+                jdbcTemplate.batchUpdate(ADD_STATUS_SQL, statusRows(sum.statusCounts));
+                if (meta[0] != generation) {
+                    log.info("Booking statistics rebuilt (generation {}), dropped {} seconds of earlier changes",
+                            meta[0], taken.stream().filter(e -> e.getKey() < keepFrom).count());
+                }
+                return meta;
+            });
+            generation = applied[0];
+        } catch (RuntimeException e) {
+            swapLock.readLock().lock();
+            try {
+                taken.forEach(entry -> pending.computeIfAbsent(entry.getKey(), k -> new Delta())
+                        .addAll(entry.getValue()));
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replace the live state with the shared totals plus the deltas not
+     * checkpointed yet
+     */
+    private void reload() {
+        State fresh = new State();
+        jdbcTemplate.query("SELECT status, booking_count FROM booking_status_counts", rs -> {
+            BookingStatus status = parseStatus(rs.getString(1));
+            if (status != null) {
+                fresh.statusCounts[status.ordinal()].add(rs.getLong(2));
+            }
+        });
+        jdbcTemplate.query("SELECT bucket_start, bookings_created, revenue_created, bookings_completed, "
+                + "revenue_completed, bookings_cancelled, bookings_refunded FROM booking_stats_hourly", rs -> {
+                    LocalDateTime hour = rs.getTimestamp(1).toLocalDateTime();
+                    for (Metric metric : METRICS) {
+                        long value = rs.getLong(metric.ordinal() + 2);
+                        if (value != 0) {
+                            addTo(fresh, hour, metric, value);
+                        }
+                    }
+                });
+        swapLock.writeLock().lock();
+        try {
+            pending.values().forEach(delta -> apply(fresh, delta));
+            state = fresh;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recompute the tables from bookings. The generation row stays locked
+     * while bookings are read, so no node adds deltas in between.
+     *
+     * @param lease lease of the scheduled job, checked before writing; null otherwise
+     */
+    private void rebuild(JobLease lease) {
+        long start = System.currentTimeMillis();
+        log.info("Rebuilding booking statistics from bookings");
+        State fresh = new State();
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            jdbcTemplate.queryForObject("SELECT generation FROM booking_stats_meta WHERE id = 1 FOR UPDATE",
+                    Long.class);
+            leaseService.verify(lease);
+            jdbcTemplate.update("UPDATE booking_stats_meta SET generation = generation + 1, rebuilt_from = NOW(3) "
+                    + "WHERE id = 1");
+
+            jdbcTemplate.query("SELECT status, COUNT(*) FROM bookings GROUP BY status", rs -> {
+                BookingStatus status = parseStatus(rs.getString(1));
+                if (status != null) {
+                    fresh.statusCounts[status.ordinal()].add(rs.getLong(2));
+                }
+            });
+            aggregate(fresh, "created_at", "1 = 1", Metric.BOOKINGS_CREATED, Metric.REVENUE_CREATED);
+            aggregate(fresh, "COALESCE(completed_at, updated_at)", "status = 'COMPLETED'",
+                    Metric.BOOKINGS_COMPLETED, Metric.REVENUE_COMPLETED);
+            aggregate(fresh, "COALESCE(cancelled_at, updated_at)", "status = 'CANCELLED'",
+                    Metric.BOOKINGS_CANCELLED, null);
+            aggregate(fresh, "COALESCE(refund_processed_at, updated_at)", "status = 'REFUNDED'",
+                    Metric.BOOKINGS_REFUNDED, null);
+
+            jdbcTemplate.update("DELETE FROM booking_stats_hourly");
+            jdbcTemplate.update("DELETE FROM booking_status_counts");
+            List<Object[]> hourRows = new ArrayList<>(fresh.hours.size());
+            fresh.hours.forEach((hour, values) -> hourRows.add(hourRow(hour, values)));
+            jdbcTemplate.batchUpdate(INSERT_HOUR_SQL, hourRows);
+            jdbcTemplate.batchUpdate(INSERT_STATUS_SQL, statusRows(fresh.statusCounts));
+        });
+
+        // Our own deltas go through the same generation check as everyone else's
+        synchronized (persistLock) {
+            flush();
+            reload();
+        }
+        ready = true;
+        lastRebuildAt = LocalDateTime.now();
+        log.info("Booking statistics rebuilt in {} ms ({} hourly buckets)",
+                System.currentTimeMillis() - start, fresh.hours.size());
+    }
+
+    private void aggregate(State target, String timeColumn, String condition, Metric countMetric,
+            Metric revenueMetric) {
+        String hour = String.format(HOUR_EXPR, timeColumn);
+        jdbcTemplate.query("SELECT " + hour + " AS bucket, COUNT(*), COALESCE(SUM(total_amount), 0) "
+                + "FROM bookings WHERE " + condition + " AND " + timeColumn + " IS NOT NULL GROUP BY bucket", rs -> {
+                    LocalDateTime bucket = LocalDateTime.parse(rs.getString(1).replace(' ', 'T'));
+                    addTo(target, bucket, countMetric, rs.getLong(2));
+                    if (revenueMetric != null) {
+                        addTo(target, bucket, revenueMetric, cents(rs.getBigDecimal(3)));
+                    }
+                });
+    }
+
+    // ==================== INTERNALS ====================
+
+    private static final class State {
+        private final LongAdder[] statusCounts = adders(STATUSES.length);
+        private final Map<LocalDateTime, LongAdder[]> hours = new ConcurrentHashMap<>();
+        private final Map<LocalDateTime, LongAdder[]> days = new ConcurrentHashMap<>();
+        private final Map<LocalDateTime, LongAdder[]> months = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Changes recorded by this node, by status and hour
+     */
+    private static final class Delta {
+        private final LongAdder[] statusCounts = adders(STATUSES.length);
+        private final Map<LocalDateTime, LongAdder[]> hours = new ConcurrentHashMap<>();
+
+        void addAll(Delta other) {
+            for (int i = 0; i < statusCounts.length; i++) {
+                statusCounts[i].add(other.statusCounts[i].sum());
+            }
+            other.hours.forEach((hour, values) -> {
+                LongAdder[] target = hours.computeIfAbsent(hour, h -> adders(METRICS.length));
+                for (int i = 0; i < values.length; i++) {
+                    target[i].add(values[i].sum());
+                }
+            });
+        }
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private void adjustStatus(BookingStatus status, long delta) {
+        if (status == null) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            state.statusCounts[status.ordinal()].add(delta);
+            currentDelta().statusCounts[status.ordinal()].add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private void add(LocalDateTime at, Metric metric, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        swapLock.readLock().lock();
+        try {
+            addTo(state, at, metric, delta);
+            currentDelta().hours.computeIfAbsent(at.truncatedTo(ChronoUnit.HOURS), h -> adders(METRICS.length))
+                    [metric.ordinal()].add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private Delta currentDelta() {
+        return pending.computeIfAbsent(System.currentTimeMillis() / 1000, second -> new Delta());
+    }
+
+    private static void apply(State s, Delta delta) {
+        for (int i = 0; i < STATUSES.length; i++) {
+            s.statusCounts[i].add(delta.statusCounts[i].sum());
+        }
+        delta.hours.forEach((hour, values) -> {
+            for (Metric metric : METRICS) {
+                long value = values[metric.ordinal()].sum();
+                if (value != 0) {
+                    addTo(s, hour, metric, value);
+                }
+            }
+        });
+    }
+
+    private static void addTo(State s, LocalDateTime at, Metric metric, long delta) {
+        for (Granularity granularity : Granularity.values()) {
+            buckets(s, granularity).computeIfAbsent(bucketStart(granularity, at), b -> adders(METRICS.length))
+                    [metric.ordinal()].add(delta);
+        }
+    }
+
+    private static Map<LocalDateTime, LongAdder[]> buckets(State s, Granularity granularity) {
+        return switch (granularity) {
+            case HOUR -> s.hours;
+            case DAY -> s.days;
+            case MONTH -> s.months;
+        };
+    }
+
+    private static LocalDateTime bucketStart(Granularity granularity, LocalDateTime at) {
+        return switch (granularity) {
+            case HOUR -> at.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> at.truncatedTo(ChronoUnit.DAYS);
+            case MONTH -> at.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        };
+    }
+
+    private static LocalDateTime next(Granularity granularity, LocalDateTime bucket) {
+        return switch (granularity) {
+            case HOUR -> bucket.plusHours(1);
+            case DAY -> bucket.plusDays(1);
+            case MONTH -> bucket.plusMonths(1);
+        };
+    }
+
+    private static Object[] hourRow(LocalDateTime hour, LongAdder[] values) {
+        Object[] row = new Object[METRICS.length + 1];
+        row[0] = Timestamp.valueOf(hour);
+        for (Metric metric : METRICS) {
+            row[metric.ordinal() + 1] = values[metric.ordinal()].sum();
+        }
+        return row;
+    }
+
+    private static List<Object[]> statusRows(LongAdder[] counts) {
+        List<Object[]> rows = new ArrayList<>(STATUSES.length);
+        for (BookingStatus status : STATUSES) {
+            rows.add(new Object[] { status.name(), counts[status.ordinal()].sum() });
+        }
+        return rows;
+    }
+
+    private static boolean isRevenue(Metric metric) {
+        return metric == Metric.REVENUE_CREATED || metric == Metric.REVENUE_COMPLETED;
+    }
+
+    private static String metricKey(Metric metric) {
+        StringBuilder key = new StringBuilder();
+        for (String part : metric.name().toLowerCase().split("_")) {
+            key.append(key.length() == 0 ? part : Character.toUpperCase(part.charAt(0)) + part.substring(1));
+        }
+        return key.toString();
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount != null ? amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValue() : 0;
+    }
+
+    private static BookingStatus parseStatus(String value) {
+        try {
+            return value != null ? BookingStatus.valueOf(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static LongAdder[] adders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
@@ -0,0 +1,94 @@
+package org.vgu.backend.service.booking;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.vgu.backend.enums.BookingUpdateJobStatus;
+
+import lombok.Getter;
+
+/**
+ * Progress of one batch booking update.
+ * Counters are updated by the worker thread and read by status polls.
+ */
+@Getter
+public class BookingUpdateJob {
+
+    private static final int MAX_ERRORS = 100;
+
+    private final String jobId;
+    private final int totalCount;
+    private final LocalDateTime createdAt = LocalDateTime.now();
+    private final AtomicInteger processedCount = new AtomicInteger();
+    private final AtomicInteger updatedCount = new AtomicInteger();
+    private final AtomicInteger notFoundCount = new AtomicInteger();
+    private final AtomicInteger failedCount = new AtomicInteger();
+    private final AtomicInteger completedChunks = new AtomicInteger();
+    private final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+    private final CompletableFuture<BookingUpdateJob> completion = new CompletableFuture<>();
+
+    private volatile BookingUpdateJobStatus status = BookingUpdateJobStatus.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public BookingUpdateJob(String jobId, int totalCount) {
+        this.jobId = jobId;
+        this.totalCount = totalCount;
+    }
+
+    public void markStarted() {
+        this.startedAt = LocalDateTime.now();
+        this.status = BookingUpdateJobStatus.RUNNING;
+    }
+
+    public void markFinished() {
+        this.finishedAt = LocalDateTime.now();
+        this.status = failedCount.get() > 0 || notFoundCount.get() > 0
+                ? BookingUpdateJobStatus.COMPLETED_WITH_ERRORS
+                : BookingUpdateJobStatus.COMPLETED;
+        completion.complete(this);
+    }
+
+    public void markFailed(Throwable cause) {
+        this.finishedAt = LocalDateTime.now();
+        this.status = BookingUpdateJobStatus.FAILED;
+        addError("Job aborted: " + cause.getMessage());
+        completion.completeExceptionally(cause);
+    }
+
+    public void addError(String error) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(error);
+        }
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public Map<String, Object> toStatusMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", jobId);
+        map.put("status", status.name());
+        map.put("totalCount", totalCount);
+        map.put("processedCount", processedCount.get());
+        map.put("updatedCount", updatedCount.get());
+        map.put("notFoundCount", notFoundCount.get());
+        map.put("failedCount", failedCount.get());
+        map.put("completedChunks", completedChunks.get());
+        map.put("progressPercent", totalCount == 0 ? 100.0 : processedCount.get() * 100.0 / totalCount);
+        map.put("createdAt", createdAt.toString());
+        map.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        map.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+        synchronized (errors) {
+            map.put("errors", new ArrayList<>(errors));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,62 @@
+package org.vgu.backend.service.booking;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory registry of batch booking update jobs.
+ * Also remembers the latest job per booking so status can be polled by
+ * booking ID. Finished jobs are evicted after the configured retention.
+ */
+@Slf4j
+@Component
+public class BookingUpdateJobRegistry {
+
+    private final Map<String, BookingUpdateJob> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, String> latestJobByBooking = new ConcurrentHashMap<>();
+
+    @Value("${app.booking-update.job-retention-minutes:60}")
+    private long retentionMinutes;
+
+    public BookingUpdateJob register(Collection<Long> bookingIds) {
+        String jobId = UUID.randomUUID().toString();
+        BookingUpdateJob job = new BookingUpdateJob(jobId, bookingIds.size());
+        jobs.put(jobId, job);
+        for (Long bookingId : bookingIds) {
+            if (bookingId != null) {
+                latestJobByBooking.put(bookingId, jobId);
+            }
+        }
+        return job;
+    }
+
+    public Optional<BookingUpdateJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId));
+    }
+
+    public Optional<BookingUpdateJob> getLatestJobForBooking(Long bookingId) {
+        String jobId = latestJobByBooking.get(bookingId);
+        return jobId == null ? Optional.empty() : getJob(jobId);
+    }
+
+    @Scheduled(fixedRate = 600000)
+    public void evictFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(retentionMinutes);
+        int before = jobs.size();
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+        latestJobByBooking.values().removeIf(jobId -> !jobs.containsKey(jobId));
+        if (before != jobs.size()) {
+            log.info("Evicted {} finished booking update jobs", before - jobs.size());
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package org.vgu.backend.service.booking;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.model.Notification;
+import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCodec;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+import org.vgu.backend.service.notification.NotificationService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Bulk variants of the booking workflow transitions.
+ * Each chunk of bookings is locked and loaded with one query, and the
+ * transition is checked in memory for each booking. Valid bookings are then
+ * moved with set-based UPDATEs. Audit records and customer notifications for
+ * the chunk are inserted as JDBC batches in the same transaction. Invalid
+ * bookings get an outcome in the result but do not stop the rest.
+ */
+@Service
+public class BookingWorkflowBulkService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BookingWorkflowBulkService.class);
+
+    private static final String CLEAR_CLAIM = "claimed_by = NULL, claimed_at = NULL, claim_expires_at = NULL";
+
+    public enum Action {
+        APPROVE, REJECT, APPROVE_REVIEW, CONFIRM_ARRIVAL, COMPLETE;
+
+        public String tag() {
+            return name().toLowerCase().replace('_', '-');
+        }
+    }
+
+    public enum Outcome {
+        UPDATED, NOT_FOUND, INVALID_STATUS, FORBIDDEN, CONFLICT
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ItemResult {
+        private final Long bookingId;
+        private final String bookingCode;
+        private final Outcome outcome;
+        private final String message;
+    }
+
+    private final BookingRepository bookingRepository;
+    private final IBookingRecordService bookingRecordService;
+    private final NotificationService notificationService;
+    private final BookingStatsService bookingStatsService;
+    private final BookingStateMachine stateMachine;
+    private final BookingReviewSchedulerService reviewScheduler;
+    private final ApprovalQueueService approvalQueueService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AllotmentService allotmentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.workflow-bulk.chunk-size:500}")
+    private int chunkSize;
+
+    public BookingWorkflowBulkService(BookingRepository bookingRepository,
+            IBookingRecordService bookingRecordService, NotificationService notificationService,
+            BookingStatsService bookingStatsService, BookingStateMachine stateMachine,
+            BookingReviewSchedulerService reviewScheduler,
+            ApprovalQueueService approvalQueueService, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            AllotmentService allotmentService) {
+        this.bookingRepository = bookingRepository;
+        this.bookingRecordService = bookingRecordService;
+        this.notificationService = notificationService;
+        this.bookingStatsService = bookingStatsService;
+        this.stateMachine = stateMachine;
+        this.reviewScheduler = reviewScheduler;
+        this.approvalQueueService = approvalQueueService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.allotmentService = allotmentService;
+    }
+
+    /**
+     * Apply one workflow action to many bookings, a chunk per transaction
+     *
+     * @param notes review notes, or the rejection reason for REJECT
+     * @return one result per distinct booking ID, in request order
+     */
+    public List<ItemResult> apply(Action action, List<Long> bookingIds, Account actor, String notes) {
+        long started = System.nanoTime();
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(bookingIds));
+        List<ItemResult> results = new ArrayList<>(ids.size());
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + chunkSize, ids.size()));
+            List<ItemResult> chunkResults = transactionTemplate.execute(tx -> applyChunk(action, chunk, actor, notes));
+            if (chunkResults != null) {
+                results.addAll(chunkResults);
+            }
+        }
+        recordThroughput(action, "bulk", started, ids.size());
+
+        long updated = results.stream().filter(r -> r.getOutcome() == Outcome.UPDATED).count();
+        logger.info("Bulk {} by {}: {} of {} bookings updated in {} ms", action.tag(), actor.getUsername(),
+                updated, ids.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return results;
+    }
+
+    /**
+     * Time a workflow request and count the bookings it handled, so the
+     * single and bulk paths can be compared per booking
+     */
+    public void recordThroughput(Action action, String mode, long startedNanos, int items) {
+        Timer.builder("app.workflow.action")
+                .description("Workflow action request time")
+                .tag("action", action.tag())
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("app.workflow.items", "action", action.tag(), "mode", mode).increment(items);
+    }
+
+    private List<ItemResult> applyChunk(Action action, List<Long> ids, Account actor, String notes) {
+        Map<Long, Row> rows = loadForUpdate(ids);
+        LocalDateTime now = LocalDateTime.now();
+
+        List<ItemResult> results = new ArrayList<>(ids.size());
+        List<Row> valid = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Row row = rows.get(id);
+            ItemResult rejected = validate(action, id, row, actor);
+            if (rejected != null) {
+                results.add(rejected);
+            } else {
+                valid.add(row);
+                results.add(new ItemResult(id, row.bookingCode, Outcome.UPDATED, null));
+            }
+        }
+        if (valid.isEmpty()) {
+            return results;
+        }
+
+        switch (action) {
+            case APPROVE -> approve(valid, now);
+            case REJECT -> reject(valid, actor, notes, now);
+            case APPROVE_REVIEW -> approveReview(valid, actor, notes, now);
+            case CONFIRM_ARRIVAL -> confirmArrival(valid, actor, now);
+            case COMPLETE -> complete(valid, now);
+        }
+
+        BookingStatus target = targetStatus(action);
+        BookingStatus via = viaStatus(action);
+        if (target != null) {
+            releaseCapacity(valid, target);
+        }
+        List<BookingRecord> records = new ArrayList<>(valid.size());
+        List<Notification> notifications = new ArrayList<>(valid.size());
+        for (Row row : valid) {
+            if (target != null) {
+                bookingStatsService.statusChanged(row.status, target, row.totalAmount, now);
+                if (via != null) {
+                    stateMachine.recordBulk(row.status, via, 1);
+                    stateMachine.recordBulk(via, target, 1);
+                } else {
+                    stateMachine.recordBulk(row.status, target, 1);
+                }
+            }
+            records.add(BookingRecord.builder()
+                    .booking(bookingRepository.getReferenceById(row.id))
+                    .action(auditAction(action))
+                    .performedBy(actor)
+                    .description(describe(action, actor, notes))
+                    .currentValues(encodeChanges(action, row, target, actor, notes, now))
+                    .createdAt(now)
+                    .build());
+            notifications.add(notificationService.buildStatusChangeNotification(String.valueOf(row.customerId),
+                    row.bookingCode, notificationStatus(action),
+                    String.format("Your booking %s has been updated: %s", row.bookingCode,
+                            describe(action, actor, notes))));
+        }
+        bookingRecordService.createRecords(records);
+        notificationService.createNotifications(notifications);
+        if (action == Action.APPROVE || action == Action.REJECT) {
+            approvalQueueService.recordDecisions(actor, action == Action.APPROVE ? "approved" : "rejected",
+                    valid.size());
+        }
+        return results;
+    }
+
+    private ItemResult validate(Action action, Long id, Row row, Account actor) {
+        if (row == null) {
+            return new ItemResult(id, null, Outcome.NOT_FOUND, "Booking not found: " + id);
+        }
+        BookingStatus required = switch (action) {
+            case APPROVE, REJECT -> BookingStatus.PENDING;
+            case APPROVE_REVIEW -> BookingStatus.IN_REVIEW;
+            case CONFIRM_ARRIVAL, COMPLETE -> BookingStatus.IN_PROGRESS;
+        };
+        BookingStatus target = targetStatus(action);
+        BookingStatus via = viaStatus(action);
+        boolean legal = target == null || (via != null
+                ? stateMachine.canTransition(row.status, via) && stateMachine.canTransition(via, target)
+                : stateMachine.canTransition(row.status, target));
+        if (row.status != required || !legal) {
+            return new ItemResult(id, row.bookingCode, Outcome.INVALID_STATUS,
+                    "Booking must be " + required + " but is " + row.status);
+        }
+        if ((action == Action.APPROVE || action == Action.REJECT) && row.claimedByOther(actor.getId())) {
+            return new ItemResult(id, row.bookingCode, Outcome.CONFLICT, "Booking is claimed by another reviewer");
+        }
+        if (action == Action.COMPLETE && row.customerAccountId != actor.getId()) {
+            return new ItemResult(id, row.bookingCode, Outcome.FORBIDDEN, "You can only complete your own bookings");
+        }
+        return null;
+    }
+
+    private void approve(List<Row> rows, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        LocalDateTime deadline = now.plusMinutes(30);
+        Timestamp deadlineTs = Timestamp.valueOf(deadline);
+
+        updateBookings("status = 'IN_REVIEW', updated_at = ?", List.of(ts), rows);
+        List<Object> existing = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.approvalId != null) {
+                existing.add(row.approvalId);
+            } else {
+                missing.add(row.id);
+            }
+        }
+        if (!existing.isEmpty()) {
+            List<Object> args = new ArrayList<>(List.of(ts, deadlineTs, ts));
+            args.addAll(existing);
+            jdbcTemplate.update("UPDATE approvals SET status = 'IN_REVIEW', review_started_at = ?, "
+                    + "review_deadline = ?, " + CLEAR_CLAIM + ", updated_at = ? "
+                    + "WHERE id IN (" + placeholders(existing.size()) + ")", args.toArray());
+        }
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO approvals (booking_id, status, review_started_at, review_deadline, "
+                    + "created_at, updated_at) VALUES (?, 'IN_REVIEW', ?, ?, ?, ?)", missing, missing.size(),
+                    (ps, bookingId) -> {
+                        ps.setLong(1, bookingId);
+                        ps.setTimestamp(2, ts);
+                        ps.setTimestamp(3, deadlineTs);
+                        ps.setTimestamp(4, ts);
+                        ps.setTimestamp(5, ts);
+                    });
+        }
+        // Bulk statements skip the approval listener, so queue the deadlines here
+        List<Object> bookingIds = new ArrayList<>(rows.size());
+        rows.forEach(row -> bookingIds.add(row.id));
+        jdbcTemplate.queryForList("SELECT id FROM approvals WHERE booking_id IN (" + placeholders(rows.size()) + ")",
+                Long.class, bookingIds.toArray())
+                .forEach(approvalId -> reviewScheduler.track(approvalId, deadline));
+    }
+
+    private void reject(List<Row> rows, Account actor, String reason, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        updateBookings("status = 'CANCELLED', cancelled_at = ?, cancelled_by = ?, cancellation_reason = ?, updated_at = ?",
+                List.of(ts, actor.getId(), reason, ts), rows);
+        List<Object> bookingIds = new ArrayList<>(rows.size());
+        rows.forEach(row -> bookingIds.add(row.id));
+        jdbcTemplate.update("UPDATE approvals SET " + CLEAR_CLAIM + " WHERE booking_id IN ("
+                + placeholders(rows.size()) + ") AND claimed_by IS NOT NULL", bookingIds.toArray());
+    }
+
+    private void approveReview(List<Row> rows, Account actor, String notes, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        updateBookings("status = 'IN_PROGRESS', updated_at = ?", List.of(ts), rows);
+        List<Object> args = new ArrayList<>();
+        Collections.addAll(args, actor.getId(), ts, notes, actor.getId(), ts, ts);
+        rows.forEach(row -> args.add(row.id));
+        jdbcTemplate.update("UPDATE approvals SET status = 'APPROVED', reviewed_by = ?, reviewed_at = ?, "
+                + "review_notes = ?, approved_by = ?, approved_at = ?, updated_at = ? "
+                + "WHERE booking_id IN (" + placeholders(rows.size()) + ")", args.toArray());
+    }
+
+    private void confirmArrival(List<Row> rows, Account actor, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        updateBookings("confirmed_arrival_by = ?, confirmed_arrival_at = ?, updated_at = ?",
+                List.of(actor.getId(), ts, ts), rows);
+    }
+
+    private void complete(List<Row> rows, LocalDateTime now) {
+        Timestamp ts = Timestamp.valueOf(now);
+        updateBookings("status = 'COMPLETED', completed_at = ?, updated_at = ?", List.of(ts, ts), rows);
+    }
+
+    /**
+     * Give schedule space back for bookings leaving a capacity-holding status,
+     * as the state machine's capacity hook does for single bookings: the
+     * allotted share goes back to the customer's block unless it was
+     * released, the rest to the public pool
+     */
+    private void releaseCapacity(List<Row> rows, BookingStatus target) {
+        // Sorted so schedule rows are locked in ascending id order, as everywhere else
+        Map<Long, int[]> released = new TreeMap<>();
+        for (Row row : rows) {
+            if (row.scheduleId != null && row.status.holdsCapacity() && !target.holdsCapacity()) {
+                int vehicles = row.vehicles;
+                int passengers = row.passengers;
+                if (allotmentService.giveBack(row.scheduleId, row.customerId, row.allottedVehicles,
+                        row.allottedPassengers)) {
+                    vehicles = Math.max(0, vehicles - row.allottedVehicles);
+                    passengers = Math.max(0, passengers - row.allottedPassengers);
+                }
+                int[] spaces = released.computeIfAbsent(row.scheduleId, id -> new int[2]);
+                spaces[0] += vehicles;
+                spaces[1] += passengers;
+            }
+        }
+        if (released.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<>(released.size());
+        released.forEach((scheduleId, spaces) -> args.add(new Object[] { spaces[0], spaces[1], scheduleId }));
+        jdbcTemplate.batchUpdate("UPDATE schedules SET available_vehicle_spaces = available_vehicle_spaces + ?, "
+                + "available_passenger_spaces = available_passenger_spaces + ? WHERE id = ?", args);
+    }
+
+    private void updateBookings(String assignments, List<Object> values, List<Row> rows) {
+        List<Object> args = new ArrayList<>(values);
+        rows.forEach(row -> args.add(row.id));
+        jdbcTemplate.update("UPDATE bookings SET " + assignments + " WHERE id IN (" + placeholders(rows.size()) + ")",
+                args.toArray());
+    }
+
+    private Map<Long, Row> loadForUpdate(List<Long> ids) {
+        Map<Long, Row> rows = new HashMap<>();
+        jdbcTemplate.query("SELECT b.id, b.booking_code, b.status, b.total_amount, b.customer_id, c.account_id, "
+                + "b.confirmed_arrival_at, b.confirmed_arrival_by, a.id, a.claimed_by, a.claim_expires_at > NOW(3), "
+                + "b.schedule_id, COALESCE(b.passenger_count, 0), "
+                + "(SELECT COALESCE(SUM(v.quantity), 0) FROM vehicles v WHERE v.booking_id = b.id), "
+                + "b.allotted_vehicles, b.allotted_passengers "
+                + "FROM bookings b JOIN customers c ON c.id = b.customer_id "
+                + "LEFT JOIN approvals a ON a.booking_id = b.id "
+                + "WHERE b.id IN (" + placeholders(ids.size()) + ") FOR UPDATE OF b, a", rs -> {
+                    Timestamp arrivedAt = rs.getTimestamp(7);
+                    Row row = new Row(rs.getLong(1), rs.getString(2), BookingStatus.valueOf(rs.getString(3)),
+                            rs.getBigDecimal(4), rs.getLong(5), rs.getLong(6),
+                            arrivedAt != null ? arrivedAt.toLocalDateTime() : null,
+                            rs.getObject(8, Long.class), rs.getObject(9, Long.class),
+                            rs.getObject(10, Long.class), rs.getBoolean(11), rs.getObject(12, Long.class),
+                            rs.getInt(14), rs.getInt(13), rs.getInt(15), rs.getInt(16));
+                    rows.put(row.id, row);
+                }, ids.toArray());
+        return rows;
+    }
+
+    /**
+     * The fields each action changes, in the same encoding as single-item
+     * change records
+     */
+    private static String encodeChanges(Action action, Row row, BookingStatus target, Account actor, String notes,
+            LocalDateTime now) {
+        List<AuditChangeCodec.Change> changes = new ArrayList<>();
+        if (target != null) {
+            changes.add(new AuditChangeCodec.Change("status", row.status.name(), target.name()));
+        }
+        switch (action) {
+            case REJECT -> {
+                changes.add(new AuditChangeCodec.Change("cancelledAt", null, now));
+                changes.add(new AuditChangeCodec.Change("cancelledById", null, actor.getId()));
+                changes.add(new AuditChangeCodec.Change("cancellationReason", null, notes));
+            }
+            case CONFIRM_ARRIVAL -> {
+                changes.add(new AuditChangeCodec.Change("confirmedArrivalAt", row.confirmedArrivalAt, now));
+                changes.add(new AuditChangeCodec.Change("confirmedArrivalById", row.confirmedArrivalBy,
+                        actor.getId()));
+            }
+            case COMPLETE -> changes.add(new AuditChangeCodec.Change("completedAt", null, now));
+            default -> {
+            }
+        }
+        return AuditChangeCodec.encode("Booking", false, changes);
+    }
+
+    private static BookingStatus targetStatus(Action action) {
+        return switch (action) {
+            case APPROVE -> BookingStatus.IN_REVIEW;
+            case REJECT -> BookingStatus.CANCELLED;
+            case APPROVE_REVIEW -> BookingStatus.IN_PROGRESS;
+            case CONFIRM_ARRIVAL -> null;
+            case COMPLETE -> BookingStatus.COMPLETED;
+        };
+    }
+
+    /**
+     * Status an action passes through on its way to the target; approval
+     * confirms the booking before it goes to review
+     */
+    private static BookingStatus viaStatus(Action action) {
+        return action == Action.APPROVE ? BookingStatus.CONFIRMED : null;
+    }
+
+    private static TypeAction auditAction(Action action) {
+        return switch (action) {
+            case APPROVE -> TypeAction.BOOKING_CONFIRMED;
+            case REJECT -> TypeAction.BOOKING_CANCELLED;
+            case COMPLETE -> TypeAction.BOOKING_COMPLETED;
+            default -> TypeAction.BOOKING_UPDATED;
+        };
+    }
+
+    private static String notificationStatus(Action action) {
+        return switch (action) {
+            case APPROVE -> "APPROVED";
+            case REJECT -> "REJECTED";
+            case APPROVE_REVIEW -> "IN_PROGRESS";
+            case CONFIRM_ARRIVAL -> "ARRIVAL_CONFIRMED";
+            case COMPLETE -> "COMPLETED";
+        };
+    }
+
+    private static String describe(Action action, Account actor, String notes) {
+        String text = notes != null ? notes : "No notes provided";
+        return switch (action) {
+            case APPROVE -> String.format("Booking approved by accountant %s. Notes: %s", actor.getUsername(), text);
+            case REJECT -> String.format("Booking rejected by accountant %s. Reason: %s", actor.getUsername(), notes);
+            case APPROVE_REVIEW -> String.format("Review approved by %s and moved to progress. Notes: %s",
+                    actor.getUsername(), text);
+            case CONFIRM_ARRIVAL -> String.format("Arrival confirmed by %s", actor.getUsername());
+            case COMPLETE -> "Booking completed by customer";
+        };
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Row {
+        private final long id;
+        private final String bookingCode;
+        private final BookingStatus status;
+        private final BigDecimal totalAmount;
+        private final long customerId;
+        private final long customerAccountId;
+        private final LocalDateTime confirmedArrivalAt;
+        private final Long confirmedArrivalBy;
+        private final Long approvalId;
+        private final Long claimedBy;
+        private final boolean claimLive;
+        private final Long scheduleId;
+        private final int vehicles;
+        private final int passengers;
+        // Share of the above drawn from the customer's allotment block
+        private final int allottedVehicles;
+        private final int allottedPassengers;
+
+        private Row(long id, String bookingCode, BookingStatus status, BigDecimal totalAmount, long customerId,
+                long customerAccountId, LocalDateTime confirmedArrivalAt, Long confirmedArrivalBy, Long approvalId,
+                Long claimedBy, boolean claimLive, Long scheduleId, int vehicles, int passengers,
+                int allottedVehicles, int allottedPassengers) {
+            this.id = id;
+            this.bookingCode = bookingCode;
+            this.status = status;
+            this.totalAmount = totalAmount;
+            this.customerId = customerId;
+            this.customerAccountId = customerAccountId;
+            this.confirmedArrivalAt = confirmedArrivalAt;
+            this.confirmedArrivalBy = confirmedArrivalBy;
+            this.approvalId = approvalId;
+            this.claimedBy = claimedBy;
+            this.claimLive = claimLive;
+            this.scheduleId = scheduleId;
+            this.vehicles = vehicles;
+            this.passengers = passengers;
+            this.allottedVehicles = allottedVehicles;
+            this.allottedPassengers = allottedPassengers;
+        }
+
+        private boolean claimedByOther(Long reviewerId) {
+            return claimLive && claimedBy != null && !claimedBy.equals(reviewerId);
+        }
+    }
+}
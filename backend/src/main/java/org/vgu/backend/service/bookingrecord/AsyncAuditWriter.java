@@ -0,0 +1,394 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.AuditDurability;
+import org.vgu.backend.model.BookingRecord;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Asynchronous writer for booking audit records.
+ * Callers hand records off once their transaction commits; rows go into a
+ * pre-allocated ring buffer drained by a single consumer thread that inserts
+ * them into booking_records in JDBC batches. With AFTER_COMMIT_WAL every row is
+ * also appended to a spill file first and replayed on the next start if the
+ * process dies before the batch is written.
+ * Rows that cannot take that path (writer stopped, ring saturated, spill
+ * file failing) are inserted directly in a transaction of their own, since
+ * the caller's transaction has already committed by then.
+ */
+@Component
+public class AsyncAuditWriter implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncAuditWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO booking_records "
+            + "(booking_id, action, performed_by, description, previous_values, current_values, "
+            + "ip_address, user_agent, session_id, created_at, additional_data) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final long MAX_BACKOFF_MS = 5000;
+    private static final int SHUTDOWN_RETRIES = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Write-through runs from afterCommit, where REQUIRED would join the finished transaction
+    private final TransactionTemplate writeThroughTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.audit.durability:AFTER_COMMIT}")
+    private AuditDurability durability;
+
+    @Value("${app.audit.ring-size:65536}")
+    private int ringSize;
+
+    @Value("${app.audit.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.audit.publish-timeout-ms:50}")
+    private long publishTimeoutMs;
+
+    @Value("${app.audit.wal.directory:data/audit-wal}")
+    private String walDirectory;
+
+    @Value("${app.audit.wal.segment-bytes:67108864}")
+    private long walSegmentBytes;
+
+    @Value("${app.audit.wal.fsync:false}")
+    private boolean walFsync;
+
+    private AuditRingBuffer ringBuffer;
+    private AuditWriteAheadLog writeAheadLog;
+    private List<AuditRow> recoveredRows = List.of();
+    private Thread consumerThread;
+    private volatile boolean running;
+    private volatile boolean consumerIdle;
+
+    private final Counter publishedCounter;
+    private final Counter persistedCounter;
+    private final Counter writeThroughCounter;
+    private final Counter droppedCounter;
+    private final Timer batchTimer;
+
+    public AsyncAuditWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.writeThroughTemplate = new TransactionTemplate(transactionManager);
+        this.writeThroughTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.publishedCounter = meterRegistry.counter("app.audit.records.published");
+        this.persistedCounter = meterRegistry.counter("app.audit.records.persisted");
+        this.writeThroughCounter = meterRegistry.counter("app.audit.records.write_through");
+        this.droppedCounter = meterRegistry.counter("app.audit.records.dropped");
+        this.batchTimer = Timer.builder("app.audit.batch.insert")
+                .description("Time to insert one audit batch")
+                .register(meterRegistry);
+    }
+
+    public boolean isAsync() {
+        return durability != AuditDurability.SYNC && running;
+    }
+
+    /**
+     * Queue a record for insertion once the current transaction commits.
+     * Outside a transaction it is queued immediately; if the caller's
+     * transaction rolls back, nothing is written.
+     */
+    public void submit(BookingRecord record) {
+        AuditRow row = toRow(record);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(row);
+                }
+            });
+        } else {
+            publish(row);
+        }
+    }
+
+    /**
+     * Insert records as one JDBC batch in the caller's transaction, bypassing
+     * the ring buffer, so they commit or roll back with the caller's changes
+     */
+    public void insertNow(List<BookingRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<AuditRow> rows = new ArrayList<>(records.size());
+        records.forEach(record -> rows.add(toRow(record)));
+        insertBatch(rows);
+    }
+
+    @Override
+    public void start() {
+        if (durability == AuditDurability.SYNC) {
+            logger.info("Audit writer disabled, booking records are written synchronously");
+            return;
+        }
+
+        long startSequence = 0;
+        if (durability == AuditDurability.AFTER_COMMIT_WAL) {
+            writeAheadLog = new AuditWriteAheadLog(Path.of(walDirectory), walSegmentBytes, walFsync, objectMapper);
+            AuditWriteAheadLog.Recovery recovery = writeAheadLog.open();
+            recoveredRows = recovery.getPendingRows();
+            startSequence = recovery.getNextSequence();
+        }
+
+        ringBuffer = new AuditRingBuffer(ringSize, startSequence);
+        Gauge.builder("app.audit.ring.depth", ringBuffer, AuditRingBuffer::size)
+                .description("Audit records waiting in the ring buffer")
+                .register(meterRegistry);
+
+        running = true;
+        consumerThread = new Thread(this::consumeLoop, "audit-writer");
+        consumerThread.setDaemon(true);
+        consumerThread.start();
+        logger.info("Audit writer started ({}, ring size {}, batch size {})", durability, ringSize, batchSize);
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(consumerThread);
+        try {
+            consumerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (ringBuffer.size() > 0) {
+            logger.warn("Audit writer stopped with {} records still buffered{}", ringBuffer.size(),
+                    writeAheadLog != null ? " (kept in WAL for replay)" : "");
+        }
+        if (writeAheadLog != null) {
+            writeAheadLog.close();
+        }
+        logger.info("Audit writer stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stop after the web server has stopped taking requests, but before the
+     * DataSource is closed
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void publish(AuditRow row) {
+        if (!running) {
+            writeThrough(row);
+            return;
+        }
+        boolean published = ringBuffer.publish(row, TimeUnit.MILLISECONDS.toNanos(publishTimeoutMs),
+                writeAheadLog != null ? this::appendToWal : null);
+        if (!published) {
+            // Buffer saturated for the whole timeout: fall back to a direct insert
+            writeThrough(row);
+            return;
+        }
+        publishedCounter.increment();
+        if (consumerIdle) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    /**
+     * Spill a claimed row to the WAL. If the spill fails the row is written
+     * through instead and marked so the consumer skips it.
+     */
+    private void appendToWal(AuditRow row) {
+        try {
+            writeAheadLog.append(row);
+        } catch (Exception e) {
+            logger.error("Failed to spill audit record seq {} to WAL, writing it through: {}", row.getSeq(),
+                    e.getMessage());
+            row.setWrittenThrough(writeThrough(row));
+        }
+    }
+
+    /**
+     * @return false if the row could not be written and was dropped
+     */
+    private boolean writeThrough(AuditRow row) {
+        try {
+            writeThroughTemplate.executeWithoutResult(tx -> insertRows(List.of(row)));
+            writeThroughCounter.increment();
+            return true;
+        } catch (Exception e) {
+            droppedCounter.increment();
+            logger.error("Failed to write audit record for booking {} ({}): {}",
+                    row.getBookingId(), row.getAction(), e.getMessage());
+            return false;
+        }
+    }
+
+    private void consumeLoop() {
+        if (!recoveredRows.isEmpty()) {
+            replayRecovered();
+        }
+
+        List<AuditRow> batch = new ArrayList<>(batchSize);
+        while (true) {
+            batch.clear();
+            int drained = ringBuffer.drainTo(batch, batchSize);
+            if (drained == 0) {
+                if (!running) {
+                    break;
+                }
+                consumerIdle = true;
+                if (ringBuffer.size() == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+                }
+                consumerIdle = false;
+                continue;
+            }
+            long lastSeq = batch.get(batch.size() - 1).getSeq();
+            batch.removeIf(AuditRow::isWrittenThrough);
+            if ((batch.isEmpty() || persistWithRetry(batch)) && writeAheadLog != null) {
+                writeAheadLog.checkpoint(lastSeq);
+            }
+        }
+    }
+
+    private void replayRecovered() {
+        logger.info("Replaying {} audit records from WAL", recoveredRows.size());
+        long lastSeq = -1;
+        for (int from = 0; from < recoveredRows.size(); from += batchSize) {
+            List<AuditRow> batch = recoveredRows.subList(from, Math.min(from + batchSize, recoveredRows.size()));
+            if (!persistWithRetry(batch)) {
+                return;
+            }
+            lastSeq = batch.get(batch.size() - 1).getSeq();
+        }
+        writeAheadLog.checkpoint(lastSeq);
+        recoveredRows = List.of();
+    }
+
+    /**
+     * Insert a batch, retrying while the database is unavailable. Rows that
+     * violate constraints are isolated and dropped individually so one bad
+     * row cannot block the pipeline.
+     *
+     * @return false if the batch was given up during shutdown
+     */
+    private boolean persistWithRetry(List<AuditRow> batch) {
+        int attempt = 0;
+        while (true) {
+            try {
+                batchTimer.record(() -> insertBatch(batch));
+                persistedCounter.increment(batch.size());
+                return true;
+            } catch (DataIntegrityViolationException e) {
+                persistIndividually(batch);
+                return true;
+            } catch (DataAccessException e) {
+                attempt++;
+                if (!running && attempt >= SHUTDOWN_RETRIES) {
+                    logger.error("Giving up on {} audit records during shutdown: {}", batch.size(), e.getMessage());
+                    return false;
+                }
+                long backoff = Math.min(MAX_BACKOFF_MS, 100L * (1L << Math.min(attempt, 6)));
+                logger.warn("Audit batch insert failed (attempt {}), retrying in {} ms: {}",
+                        attempt, backoff, e.getMessage());
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(backoff));
+            }
+        }
+    }
+
+    private void persistIndividually(List<AuditRow> batch) {
+        for (AuditRow row : batch) {
+            try {
+                insertBatch(List.of(row));
+                persistedCounter.increment();
+            } catch (DataAccessException e) {
+                droppedCounter.increment();
+                logger.error("Dropping audit record seq {} for booking {} ({}): {}",
+                        row.getSeq(), row.getBookingId(), row.getAction(), e.getMessage());
+            }
+        }
+    }
+
+    private void insertBatch(List<AuditRow> rows) {
+        transactionTemplate.executeWithoutResult(tx -> insertRows(rows));
+    }
+
+    private void insertRows(List<AuditRow> rows) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows, rows.size(),
+                (PreparedStatement ps, AuditRow row) -> bind(ps, row));
+    }
+
+    private static void bind(PreparedStatement ps, AuditRow row) throws SQLException {
+        ps.setLong(1, row.getBookingId());
+        ps.setString(2, row.getAction().name());
+        if (row.getPerformedById() != null) {
+            ps.setLong(3, row.getPerformedById());
+        } else {
+            ps.setNull(3, Types.BIGINT);
+        }
+        ps.setString(4, row.getDescription());
+        ps.setString(5, row.getPreviousValues());
+        ps.setString(6, row.getCurrentValues());
+        ps.setString(7, row.getIpAddress());
+        ps.setString(8, row.getUserAgent());
+        ps.setString(9, row.getSessionId());
+        ps.setTimestamp(10, Timestamp.valueOf(row.getCreatedAt()));
+        ps.setString(11, row.getAdditionalData());
+    }
+
+    private static AuditRow toRow(BookingRecord record) {
+        return AuditRow.builder()
+                .bookingId(record.getBooking().getId())
+                .action(record.getAction())
+                .performedById(record.getPerformedBy() != null ? record.getPerformedBy().getId() : null)
+                .description(record.getDescription())
+                .previousValues(record.getPreviousValues())
+                .currentValues(record.getCurrentValues())
+                .ipAddress(record.getIpAddress())
+                .userAgent(record.getUserAgent())
+                .sessionId(record.getSessionId())
+                .additionalData(record.getAdditionalData())
+                .createdAt(record.getCreatedAt() != null ? record.getCreatedAt() : LocalDateTime.now())
+                .build();
+    }
+}
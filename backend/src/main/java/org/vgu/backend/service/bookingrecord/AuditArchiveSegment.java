@@ -0,0 +1,487 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.BookingRecord;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+/**
+ * Immutable archive file holding booking audit records moved out of MySQL.
+ *
+ * <pre>
+ * header  (64 bytes)  magic, version, record count, block size,
+ *                     min/max created_at, min/max booking_id, footer offset
+ * records             sorted by (created_at, id); each is
+ *                     [int length][long id][long bookingId][long createdAt]
+ *                     [long performedById][10 length-prefixed UTF-8 strings]
+ * footer              one entry per block of BLOCK_SIZE records:
+ *                     offset, min/max created_at, min/max booking_id, count;
+ *                     then a bloom filter over booking IDs
+ * </pre>
+ *
+ * The block table is a sparse index: time lookups binary-search it, booking
+ * lookups skip blocks whose booking ID range cannot match. Reads go through
+ * a read-only memory mapping of the whole file.
+ */
+public class AuditArchiveSegment {
+
+    private static final int MAGIC = 0x52415544; // "RAUD"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int BLOCK_SIZE = 128;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_HASHES = 3;
+
+    /** One row as written to / read from a segment */
+    @Getter
+    @Builder
+    @AllArgsConstructor
+    public static class ArchivedRow {
+        private final long id;
+        private final long bookingId;
+        private final LocalDateTime createdAt;
+        private final Long performedById;
+        private final String action;
+        private final String bookingCode;
+        private final String performer;
+        private final String description;
+        private final String previousValues;
+        private final String currentValues;
+        private final String ipAddress;
+        private final String userAgent;
+        private final String sessionId;
+        private final String additionalData;
+
+        /**
+         * Detached entity view so archived rows flow through the same
+         * response mapping as live ones
+         */
+        public BookingRecord toBookingRecord() {
+            Booking booking = new Booking();
+            booking.setId(bookingId);
+            booking.setBookingCode(bookingCode);
+            Account account = null;
+            if (performedById != null) {
+                account = new Account();
+                account.setId(performedById);
+                account.setUsername(performer);
+            }
+            return BookingRecord.builder()
+                    .id(id)
+                    .booking(booking)
+                    .action(TypeAction.valueOf(action))
+                    .performedBy(account)
+                    .description(description)
+                    .previousValues(previousValues)
+                    .currentValues(currentValues)
+                    .ipAddress(ipAddress)
+                    .userAgent(userAgent)
+                    .sessionId(sessionId)
+                    .createdAt(createdAt)
+                    .additionalData(additionalData)
+                    .build();
+        }
+    }
+
+    /** Position of a record inside the segment, with just enough to order it */
+    @Getter
+    @AllArgsConstructor
+    public static class Entry {
+        private final long createdAtMillis;
+        private final long id;
+        private final int offset;
+    }
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int recordCount;
+    private final long minCreatedAt;
+    private final long maxCreatedAt;
+    private final long minBookingId;
+    private final long maxBookingId;
+    private final int[] blockOffsets;
+    private final long[] blockMinTime;
+    private final long[] blockMaxTime;
+    private final long[] blockMinBooking;
+    private final long[] blockMaxBooking;
+    private final int[] blockCounts;
+    private final long[] bloom;
+
+    private AuditArchiveSegment(Path path, MappedByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        ByteBuffer b = buffer.duplicate();
+        if (b.getInt(0) != MAGIC || b.getInt(4) != VERSION) {
+            throw new IOException("Not an audit archive segment: " + path);
+        }
+        this.recordCount = b.getInt(8);
+        this.minCreatedAt = b.getLong(16);
+        this.maxCreatedAt = b.getLong(24);
+        this.minBookingId = b.getLong(32);
+        this.maxBookingId = b.getLong(40);
+        int footer = (int) b.getLong(48);
+
+        b.position(footer);
+        int blocks = b.getInt();
+        blockOffsets = new int[blocks];
+        blockMinTime = new long[blocks];
+        blockMaxTime = new long[blocks];
+        blockMinBooking = new long[blocks];
+        blockMaxBooking = new long[blocks];
+        blockCounts = new int[blocks];
+        for (int i = 0; i < blocks; i++) {
+            blockOffsets[i] = b.getInt();
+            blockMinTime[i] = b.getLong();
+            blockMaxTime[i] = b.getLong();
+            blockMinBooking[i] = b.getLong();
+            blockMaxBooking[i] = b.getLong();
+            blockCounts[i] = b.getInt();
+        }
+        bloom = new long[b.getInt()];
+        for (int i = 0; i < bloom.length; i++) {
+            bloom[i] = b.getLong();
+        }
+    }
+
+    public static AuditArchiveSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new AuditArchiveSegment(path, buffer);
+        }
+    }
+
+    /**
+     * Write rows to a new segment file. Rows are sorted here; the file is
+     * forced to disk before this returns.
+     */
+    public static void write(Path path, List<ArchivedRow> rows) throws IOException {
+        List<ArchivedRow> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(ArchivedRow::getCreatedAt).thenComparingLong(ArchivedRow::getId));
+
+        int blocks = (sorted.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] offsets = new int[blocks];
+        long[] minTime = new long[blocks];
+        long[] maxTime = new long[blocks];
+        long[] minBooking = new long[blocks];
+        long[] maxBooking = new long[blocks];
+        int[] counts = new int[blocks];
+        long[] bloom = new long[Math.max(1, (sorted.size() * BLOOM_BITS_PER_KEY + 63) / 64)];
+        long segMinBooking = Long.MAX_VALUE;
+        long segMaxBooking = Long.MIN_VALUE;
+
+        long footerOffset;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.write(new byte[HEADER_SIZE]);
+            for (int i = 0; i < sorted.size(); i++) {
+                ArchivedRow row = sorted.get(i);
+                int block = i / BLOCK_SIZE;
+                long time = toMillis(row.getCreatedAt());
+                if (i % BLOCK_SIZE == 0) {
+                    offsets[block] = out.size();
+                    minTime[block] = time;
+                    minBooking[block] = Long.MAX_VALUE;
+                    maxBooking[block] = Long.MIN_VALUE;
+                }
+                maxTime[block] = time;
+                minBooking[block] = Math.min(minBooking[block], row.getBookingId());
+                maxBooking[block] = Math.max(maxBooking[block], row.getBookingId());
+                counts[block]++;
+                segMinBooking = Math.min(segMinBooking, row.getBookingId());
+                segMaxBooking = Math.max(segMaxBooking, row.getBookingId());
+                addToBloom(bloom, row.getBookingId());
+                writeRow(out, row, time);
+            }
+
+            footerOffset = out.size();
+            out.writeInt(blocks);
+            for (int i = 0; i < blocks; i++) {
+                out.writeInt(offsets[i]);
+                out.writeLong(minTime[i]);
+                out.writeLong(maxTime[i]);
+                out.writeLong(minBooking[i]);
+                out.writeLong(maxBooking[i]);
+                out.writeInt(counts[i]);
+            }
+            out.writeInt(bloom.length);
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.writeInt(MAGIC);
+            file.writeInt(VERSION);
+            file.writeInt(sorted.size());
+            file.writeInt(BLOCK_SIZE);
+            file.writeLong(sorted.isEmpty() ? 0 : toMillis(sorted.get(0).getCreatedAt()));
+            file.writeLong(sorted.isEmpty() ? 0 : toMillis(sorted.get(sorted.size() - 1).getCreatedAt()));
+            file.writeLong(segMinBooking);
+            file.writeLong(segMaxBooking);
+            file.writeLong(footerOffset);
+            file.getFD().sync();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    public LocalDateTime getMinCreatedAt() {
+        return fromMillis(minCreatedAt);
+    }
+
+    public LocalDateTime getMaxCreatedAt() {
+        return fromMillis(maxCreatedAt);
+    }
+
+    public boolean overlaps(long fromMillis, long toMillis) {
+        return recordCount > 0 && maxCreatedAt >= fromMillis && minCreatedAt <= toMillis;
+    }
+
+    /**
+     * All records of one booking, oldest first
+     */
+    public List<ArchivedRow> findByBookingId(long bookingId) {
+        List<ArchivedRow> rows = new ArrayList<>();
+        if (recordCount == 0 || bookingId < minBookingId || bookingId > maxBookingId || !mightContain(bookingId)) {
+            return rows;
+        }
+        ByteBuffer b = buffer.duplicate();
+        for (int block = 0; block < blockOffsets.length; block++) {
+            if (bookingId < blockMinBooking[block] || bookingId > blockMaxBooking[block]) {
+                continue;
+            }
+            int offset = blockOffsets[block];
+            for (int i = 0; i < blockCounts[block]; i++) {
+                int length = b.getInt(offset);
+                if (b.getLong(offset + 12) == bookingId) {
+                    rows.add(readRow(b, offset));
+                }
+                offset += 4 + length;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Number of records with created_at in [fromMillis, toMillis]. Whole
+     * blocks inside the range are counted from the block table; only the
+     * edge blocks are scanned.
+     */
+    public int countInRange(long fromMillis, long toMillis) {
+        if (!overlaps(fromMillis, toMillis)) {
+            return 0;
+        }
+        ByteBuffer b = buffer.duplicate();
+        int count = 0;
+        for (int block = firstBlockFrom(fromMillis); block < blockOffsets.length; block++) {
+            if (blockMinTime[block] > toMillis) {
+                break;
+            }
+            if (blockMinTime[block] >= fromMillis && blockMaxTime[block] <= toMillis) {
+                count += blockCounts[block];
+                continue;
+            }
+            int offset = blockOffsets[block];
+            for (int i = 0; i < blockCounts[block]; i++) {
+                long time = b.getLong(offset + 20);
+                if (time >= fromMillis && time <= toMillis) {
+                    count++;
+                }
+                offset += 4 + b.getInt(offset);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Entries with created_at in [fromMillis, toMillis], newest first
+     */
+    public List<Entry> entriesInRangeDesc(long fromMillis, long toMillis) {
+        List<Entry> entries = new ArrayList<>();
+        if (!overlaps(fromMillis, toMillis)) {
+            return entries;
+        }
+        ByteBuffer b = buffer.duplicate();
+        int first = firstBlockFrom(fromMillis);
+        for (int block = blockOffsets.length - 1; block >= first; block--) {
+            if (blockMinTime[block] > toMillis) {
+                continue;
+            }
+            if (blockMaxTime[block] < fromMillis) {
+                break;
+            }
+            List<Entry> inBlock = new ArrayList<>(blockCounts[block]);
+            int offset = blockOffsets[block];
+            for (int i = 0; i < blockCounts[block]; i++) {
+                long time = b.getLong(offset + 20);
+                if (time >= fromMillis && time <= toMillis) {
+                    inBlock.add(new Entry(time, b.getLong(offset + 4), offset));
+                }
+                offset += 4 + b.getInt(offset);
+            }
+            for (int i = inBlock.size() - 1; i >= 0; i--) {
+                entries.add(inBlock.get(i));
+            }
+        }
+        return entries;
+    }
+
+    public ArchivedRow read(Entry entry) {
+        return readRow(buffer.duplicate(), entry.getOffset());
+    }
+
+    /**
+     * IDs of every record in the segment
+     */
+    public List<Long> ids() {
+        List<Long> ids = new ArrayList<>(recordCount);
+        ByteBuffer b = buffer.duplicate();
+        int offset = HEADER_SIZE;
+        for (int i = 0; i < recordCount; i++) {
+            ids.add(b.getLong(offset + 4));
+            offset += 4 + b.getInt(offset);
+        }
+        return ids;
+    }
+
+    public static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    private int firstBlockFrom(long fromMillis) {
+        // Last block whose max time is before the range start, plus one
+        int lo = 0;
+        int hi = blockOffsets.length - 1;
+        int result = blockOffsets.length;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (blockMaxTime[mid] >= fromMillis) {
+                result = mid;
+                hi = mid - 1;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return result;
+    }
+
+    private boolean mightContain(long bookingId) {
+        long bits = (long) bloom.length * 64;
+        long h = mix(bookingId);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h + i * (h >>> 32 | 1), bits);
+            if ((bloom[(int) (bit >>> 6)] & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addToBloom(long[] bloom, long bookingId) {
+        long bits = (long) bloom.length * 64;
+        long h = mix(bookingId);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = Math.floorMod(h + i * (h >>> 32 | 1), bits);
+            bloom[(int) (bit >>> 6)] |= 1L << (bit & 63);
+        }
+    }
+
+    private static long mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    private static void writeRow(DataOutputStream out, ArchivedRow row, long time) throws IOException {
+        String[] strings = {
+                row.getAction(), row.getBookingCode(), row.getPerformer(), row.getDescription(),
+                row.getPreviousValues(), row.getCurrentValues(), row.getIpAddress(), row.getUserAgent(),
+                row.getSessionId(), row.getAdditionalData()
+        };
+        byte[][] encoded = new byte[strings.length][];
+        int length = 32;
+        for (int i = 0; i < strings.length; i++) {
+            encoded[i] = strings[i] != null ? strings[i].getBytes(StandardCharsets.UTF_8) : null;
+            length += 4 + (encoded[i] != null ? encoded[i].length : 0);
+        }
+        out.writeInt(length);
+        out.writeLong(row.getId());
+        out.writeLong(row.getBookingId());
+        out.writeLong(time);
+        out.writeLong(row.getPerformedById() != null ? row.getPerformedById() : -1L);
+        for (byte[] value : encoded) {
+            if (value == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(value.length);
+                out.write(value);
+            }
+        }
+    }
+
+    private static ArchivedRow readRow(ByteBuffer b, int offset) {
+        b.position(offset + 4);
+        long id = b.getLong();
+        long bookingId = b.getLong();
+        long time = b.getLong();
+        long performedById = b.getLong();
+        String[] strings = new String[10];
+        for (int i = 0; i < strings.length; i++) {
+            int length = b.getInt();
+            if (length >= 0) {
+                byte[] bytes = new byte[length];
+                b.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return ArchivedRow.builder()
+                .id(id)
+                .bookingId(bookingId)
+                .createdAt(fromMillis(time))
+                .performedById(performedById >= 0 ? performedById : null)
+                .action(strings[0])
+                .bookingCode(strings[1])
+                .performer(strings[2])
+                .description(strings[3])
+                .previousValues(strings[4])
+                .currentValues(strings[5])
+                .ipAddress(strings[6])
+                .userAgent(strings[7])
+                .sessionId(strings[8])
+                .additionalData(strings[9])
+                .build();
+    }
+}
@@ -0,0 +1,633 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+
+/**
+ * Cold tier for booking audit records.
+ * Records older than {@code app.audit.archive.max-age-days} are copied into
+ * immutable {@link AuditArchiveSegment} files in
+ * {@code app.audit.archive.directory}, which every node must mount from
+ * shared storage. Segments are catalogued in audit_archive_segments, and
+ * every node records in audit_archive_segment_readers which ones it could
+ * open. A new segment stays PENDING, and its rows stay in booking_records,
+ * until every live reader has opened it. Then it is marked SEALED and its
+ * rows are deleted in chunks, each in its own transaction; purged_at is set
+ * once the last chunk is gone. Reads serve SEALED segments only and pick up
+ * newly sealed ones before they run, so no node loses history, and a node
+ * that cannot reach the directory keeps the rows in the table. While a
+ * segment is being purged, a record can show up in both tiers.
+ * Runs hold the audit-archive lease and check its fencing token in every
+ * write transaction. Segments still waiting for readers are sealed by a
+ * periodic pass on the lease holder, so no run waits for other nodes.
+ */
+@Service
+public class AuditArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiveService.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SELECT_SQL = "SELECT r.id, r.booking_id, b.booking_code, r.action, r.performed_by, "
+            + "a.username, r.description, r.previous_values, r.current_values, r.ip_address, r.user_agent, "
+            + "r.session_id, r.created_at, r.additional_data "
+            + "FROM booking_records r "
+            + "JOIN bookings b ON b.id = r.booking_id "
+            + "LEFT JOIN accounts a ON a.id = r.performed_by "
+            + "WHERE r.created_at < ? AND r.id > ? "
+            + "ORDER BY r.id LIMIT ?";
+    private static final String LEASE = "audit-archive";
+    private static final String MISSING_READERS_SQL = "SELECT COUNT(*) FROM audit_archive_readers r "
+            + "WHERE r.heartbeat_at > DATE_SUB(NOW(3), INTERVAL ? MICROSECOND) AND NOT EXISTS ("
+            + "SELECT 1 FROM audit_archive_segment_readers s WHERE s.segment_name = ? AND s.node_id = r.node_id)";
+
+    public enum JobStatus {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * Archive run started over REST, polled by its ID
+     */
+    @Getter
+    public static class ArchiveJob {
+        private final String id;
+        private final LocalDateTime cutoff;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile LocalDateTime finishedAt;
+        private volatile long archived;
+        private volatile String error;
+
+        private ArchiveJob(String id, LocalDateTime cutoff) {
+            this.id = id;
+            this.cutoff = cutoff;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService leaseService;
+    private final AsyncTaskExecutor taskExecutor;
+    private final Map<String, ArchiveJob> jobs = new ConcurrentHashMap<>();
+
+    // Every catalogued segment this node could open, by name
+    private final Map<String, AuditArchiveSegment> opened = new ConcurrentHashMap<>();
+    // The SEALED ones, which reads use
+    private volatile List<AuditArchiveSegment> segments = List.of();
+    private volatile int sealedInCatalog;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunArchived;
+
+    @Value("${app.audit.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.audit.archive.directory:data/audit-archive}")
+    private String directory;
+
+    @Value("${app.audit.archive.max-age-days:365}")
+    private int maxAgeDays;
+
+    @Value("${app.audit.archive.segment-records:200000}")
+    private int segmentRecords;
+
+    @Value("${app.audit.archive.delete-chunk-size:1000}")
+    private int deleteChunkSize;
+
+    // Nodes that have not refreshed for this long no longer hold back sealing
+    @Value("${app.audit.archive.reader-ttl-ms:120000}")
+    private long readerTtlMs;
+
+    @Value("${app.audit.archive.job-retention-hours:24}")
+    private int jobRetentionHours;
+
+    public AuditArchiveService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            JobLeaseService leaseService, @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseService = leaseService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void loadSegments() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(Path.of(directory));
+            refresh();
+            logger.info("Loaded {} audit archive segments from {}", segments.size(),
+                    Path.of(directory).toAbsolutePath());
+        } catch (Exception e) {
+            logger.error("Failed to load audit archive segments from {}: {}", directory, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Open segments other nodes have added and tell the archiving node this
+     * one can read them
+     */
+    @Scheduled(fixedDelayString = "${app.audit.archive.refresh-ms:30000}",
+            initialDelayString = "${app.audit.archive.refresh-ms:30000}")
+    public void refreshSegments() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Audit archive refresh failed: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void refresh() {
+        String nodeId = leaseService.getNodeId();
+        jdbcTemplate.update("INSERT INTO audit_archive_readers (node_id, heartbeat_at) VALUES (?, NOW(3)) "
+                + "ON DUPLICATE KEY UPDATE heartbeat_at = NOW(3)", nodeId);
+        jdbcTemplate.update("DELETE FROM audit_archive_readers WHERE heartbeat_at < DATE_SUB(NOW(3), INTERVAL 1 DAY)");
+        Map<String, Boolean> catalog = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT name, status FROM audit_archive_segments ORDER BY name",
+                rs -> {
+                    catalog.put(rs.getString(1), "SEALED".equals(rs.getString(2)));
+                });
+
+        Path dir = Path.of(directory);
+        for (String name : catalog.keySet()) {
+            if (opened.containsKey(name)) {
+                continue;
+            }
+            try {
+                opened.put(name, AuditArchiveSegment.open(dir.resolve(name)));
+                jdbcTemplate.update("INSERT IGNORE INTO audit_archive_segment_readers "
+                        + "(segment_name, node_id, opened_at) VALUES (?, ?, NOW(3))", name, nodeId);
+            } catch (IOException e) {
+                logger.error("Cannot open audit archive segment {} in {}: {}", name, dir.toAbsolutePath(),
+                        e.getMessage());
+            }
+        }
+        opened.keySet().retainAll(catalog.keySet());
+
+        List<AuditArchiveSegment> sealed = new ArrayList<>();
+        int sealedCount = 0;
+        for (Map.Entry<String, Boolean> entry : catalog.entrySet()) {
+            if (entry.getValue()) {
+                sealedCount++;
+                AuditArchiveSegment segment = opened.get(entry.getKey());
+                if (segment != null) {
+                    sealed.add(segment);
+                }
+            }
+        }
+        segments = List.copyOf(sealed);
+        sealedInCatalog = sealedCount;
+    }
+
+    /**
+     * Sealed segments as of the last refresh. Their records have left, or are
+     * about to leave, booking_records.
+     */
+    public List<AuditArchiveSegment> getSealedSegments() {
+        return segments;
+    }
+
+    /**
+     * Sealed segments, after picking up any sealed since the last refresh
+     */
+    private List<AuditArchiveSegment> readable() {
+        if (!enabled) {
+            return segments;
+        }
+        Integer sealed = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM audit_archive_segments WHERE status = 'SEALED'", Integer.class);
+        if (sealed != null && sealed != sealedInCatalog) {
+            refresh();
+        }
+        return segments;
+    }
+
+    /**
+     * Nightly move of expired records into the archive
+     */
+    @Scheduled(cron = "${app.audit.archive.cron:0 30 3 * * *}")
+    @LeasedJob(LEASE)
+    public void archiveExpiredRecords() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            run(LocalDateTime.now().minusDays(maxAgeDays), JobLease.current());
+        } catch (Exception e) {
+            logger.error("Audit archive run failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Seal the PENDING segments every live node has opened by now, and
+     * finish purging sealed ones an interrupted run left behind
+     */
+    @Scheduled(fixedDelayString = "${app.audit.archive.refresh-ms:30000}",
+            initialDelayString = "${app.audit.archive.refresh-ms:30000}")
+    @LeasedJob(LEASE)
+    public void sealPendingSegments() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refresh();
+            sealReadable(pendingSegments(), JobLease.current());
+            purgeSealed(JobLease.current());
+        } catch (Exception e) {
+            logger.warn("Audit archive seal pass failed: {}", e.getMessage());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Start an archive run in the background under the archive lease
+     *
+     * @throws BusinessException if a run is already queued or running
+     */
+    public ArchiveJob submit(LocalDateTime cutoff) {
+        if (!enabled) {
+            throw new BusinessException("The audit archive is disabled", "ARCHIVE_DISABLED");
+        }
+        LocalDateTime expired = LocalDateTime.now().minusHours(jobRetentionHours);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(expired));
+        synchronized (jobs) {
+            if (jobs.values().stream().anyMatch(job -> job.status == JobStatus.QUEUED
+                    || job.status == JobStatus.RUNNING)) {
+                throw new BusinessException("An audit archive run is already in progress", "ARCHIVE_RUNNING");
+            }
+            ArchiveJob job = new ArchiveJob(UUID.randomUUID().toString(), cutoff);
+            jobs.put(job.id, job);
+            taskExecutor.execute(() -> runJob(job));
+            return job;
+        }
+    }
+
+    public ArchiveJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    private void runJob(ArchiveJob job) {
+        job.status = JobStatus.RUNNING;
+        try {
+            long archived = archiveBefore(job.cutoff);
+            if (archived < 0) {
+                throw new IllegalStateException("An audit archive run is already in progress");
+            }
+            job.archived = archived;
+            job.status = JobStatus.DONE;
+        } catch (Exception e) {
+            logger.error("Audit archive job {} failed: {}", job.id, e.getMessage(), e);
+            job.error = e.getMessage();
+            job.status = JobStatus.FAILED;
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Archive every record created before the cutoff, taking the archive
+     * lease first
+     *
+     * @return number of records sealed into the archive, or -1 if a run is
+     *         already in progress on this node
+     * @throws BusinessException if another node holds the lease
+     */
+    public long archiveBefore(LocalDateTime cutoff) throws IOException {
+        JobLease lease = leaseService.acquire(LEASE, 1);
+        if (lease == null) {
+            throw new BusinessException("The audit archive lease is held by another node", "ARCHIVE_LEASE_HELD");
+        }
+        return run(cutoff, lease);
+    }
+
+    /**
+     * Write every record created before the cutoff to segments and seal
+     * those every node can read already; the rest are sealed by
+     * {@link #sealPendingSegments}. Segments left PENDING by an earlier run
+     * are finished first; while any remain, no new ones are written, since
+     * their rows are still in the table.
+     */
+    private long run(LocalDateTime cutoff, JobLease lease) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            return -1;
+        }
+        long start = System.currentTimeMillis();
+        long archived = 0;
+        try {
+            Path dir = Path.of(directory);
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> leftovers = Files.newDirectoryStream(dir, "*.tmp")) {
+                for (Path file : leftovers) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            refresh();
+            purgeSealed(lease);
+
+            List<String> pending = pendingSegments();
+            for (Iterator<String> it = pending.iterator(); it.hasNext();) {
+                String name = it.next();
+                if (!opened.containsKey(name) && !Files.exists(dir.resolve(name))) {
+                    // Catalogued but never written: the rows were not touched
+                    jdbcTemplate.update("DELETE FROM audit_archive_segment_readers WHERE segment_name = ?", name);
+                    jdbcTemplate.update("DELETE FROM audit_archive_segments WHERE name = ?", name);
+                    it.remove();
+                }
+            }
+            archived += sealReadable(pending, lease);
+            if (!pending.isEmpty()) {
+                logger.warn("Audit archive run stopped: {} segments are not readable by every node yet",
+                        pending.size());
+                return archived;
+            }
+
+            long lastId = 0;
+            List<String> written = new ArrayList<>();
+            while (true) {
+                List<AuditArchiveSegment.ArchivedRow> rows = jdbcTemplate.query(SELECT_SQL,
+                        (rs, i) -> readRow(rs), Timestamp.valueOf(cutoff), lastId, segmentRecords);
+                if (rows.isEmpty()) {
+                    break;
+                }
+                long firstId = rows.get(0).getId();
+                lastId = rows.get(rows.size() - 1).getId();
+
+                String name = String.format("audit-%020d-%020d", firstId, lastId) + SEGMENT_SUFFIX;
+                Path tmp = dir.resolve(name + ".tmp");
+                AuditArchiveSegment.write(tmp, rows);
+                // Catalogued before the file appears, so a crash leaves either nothing or a PENDING entry
+                long first = firstId;
+                long last = lastId;
+                int count = rows.size();
+                transactionTemplate.executeWithoutResult(tx -> {
+                    leaseService.verify(lease);
+                    jdbcTemplate.update("INSERT INTO audit_archive_segments (name, first_id, last_id, "
+                            + "record_count, status, created_at) VALUES (?, ?, ?, ?, 'PENDING', NOW(3))",
+                            name, first, last, count);
+                });
+                Files.move(tmp, dir.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+                written.add(name);
+                logger.info("Wrote {} booking records (ids {}..{}) to {}", rows.size(), firstId, lastId, name);
+
+                if (rows.size() < segmentRecords) {
+                    break;
+                }
+            }
+            refresh();
+            archived += sealReadable(written, lease);
+            if (!written.isEmpty()) {
+                logger.info("{} audit archive segments left PENDING until every node can read them",
+                        written.size());
+            }
+
+            lastRunAt = LocalDateTime.now();
+            lastRunArchived = archived;
+            logger.info("Audit archive run finished: {} records before {} in {} ms",
+                    archived, cutoff, System.currentTimeMillis() - start);
+            return archived;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private List<String> pendingSegments() {
+        return new ArrayList<>(jdbcTemplate.queryForList(
+                "SELECT name FROM audit_archive_segments WHERE status = 'PENDING' ORDER BY name", String.class));
+    }
+
+    /**
+     * Seal the named segments that every live node can read now. Sealed
+     * names are removed from the list.
+     *
+     * @return number of records sealed
+     */
+    private long sealReadable(List<String> names, JobLease lease) {
+        long sealed = 0;
+        for (Iterator<String> it = names.iterator(); it.hasNext();) {
+            String name = it.next();
+            Integer missing = jdbcTemplate.queryForObject(MISSING_READERS_SQL, Integer.class,
+                    readerTtlMs * 1000, name);
+            if (missing != null && missing == 0) {
+                sealed += seal(name, lease);
+                it.remove();
+            }
+        }
+        return sealed;
+    }
+
+    /**
+     * Mark a segment SEALED, so reads start serving it, then delete its rows
+     */
+    private long seal(String name, JobLease lease) {
+        AuditArchiveSegment segment = opened.get(name);
+        if (segment == null) {
+            throw new IllegalStateException("Audit archive segment " + name + " is not open on this node");
+        }
+        transactionTemplate.executeWithoutResult(tx -> {
+            leaseService.verify(lease);
+            jdbcTemplate.update("UPDATE audit_archive_segments SET status = 'SEALED', sealed_at = NOW(3) "
+                    + "WHERE name = ? AND status = 'PENDING'", name);
+        });
+        refresh();
+        purge(segment, lease);
+        logger.info("Sealed audit archive segment {} ({} records)", name, segment.getRecordCount());
+        return segment.getRecordCount();
+    }
+
+    /**
+     * Finish deleting the rows of sealed segments whose purge was cut short
+     */
+    private void purgeSealed(JobLease lease) {
+        for (String name : jdbcTemplate.queryForList("SELECT name FROM audit_archive_segments "
+                + "WHERE status = 'SEALED' AND purged_at IS NULL ORDER BY name", String.class)) {
+            AuditArchiveSegment segment = opened.get(name);
+            if (segment == null) {
+                logger.warn("Cannot purge audit archive segment {}: it is not open on this node", name);
+                continue;
+            }
+            purge(segment, lease);
+        }
+    }
+
+    /**
+     * Delete a sealed segment's rows from booking_records, one committed
+     * chunk at a time so no transaction holds more than a chunk of row locks
+     */
+    private void purge(AuditArchiveSegment segment, JobLease lease) {
+        List<Long> ids = segment.ids();
+        for (int from = 0; from < ids.size(); from += deleteChunkSize) {
+            List<Long> chunk = ids.subList(from, Math.min(from + deleteChunkSize, ids.size()));
+            String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+            transactionTemplate.executeWithoutResult(tx -> {
+                leaseService.verify(lease);
+                jdbcTemplate.update("DELETE FROM booking_records WHERE id IN (" + placeholders + ")",
+                        chunk.toArray());
+            });
+        }
+        String name = segment.getPath().getFileName().toString();
+        transactionTemplate.executeWithoutResult(tx -> {
+            leaseService.verify(lease);
+            jdbcTemplate.update("UPDATE audit_archive_segments SET purged_at = NOW(3) WHERE name = ?", name);
+        });
+    }
+
+    /**
+     * Archived records of one booking, newest first
+     */
+    public List<BookingRecord> findByBookingId(Long bookingId) {
+        List<AuditArchiveSegment.ArchivedRow> rows = new ArrayList<>();
+        for (AuditArchiveSegment segment : readable()) {
+            rows.addAll(segment.findByBookingId(bookingId));
+        }
+        rows.sort(Comparator.comparing(AuditArchiveSegment.ArchivedRow::getCreatedAt)
+                .thenComparingLong(AuditArchiveSegment.ArchivedRow::getId)
+                .reversed());
+        return rows.stream().map(AuditArchiveSegment.ArchivedRow::toBookingRecord).toList();
+    }
+
+    public long countByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        long from = AuditArchiveSegment.toMillis(startDate);
+        long to = AuditArchiveSegment.toMillis(endDate);
+        long count = 0;
+        for (AuditArchiveSegment segment : readable()) {
+            count += segment.countInRange(from, to);
+        }
+        return count;
+    }
+
+    /**
+     * Archived records in the date range, newest first, after skipping
+     * {@code offset} of them. Segments can overlap in time, so their entries
+     * are merged; only the returned rows are fully decoded.
+     */
+    public List<BookingRecord> findByCreatedAtBetween(LocalDateTime startDate, LocalDateTime endDate,
+            long offset, int limit) {
+        long from = AuditArchiveSegment.toMillis(startDate);
+        long to = AuditArchiveSegment.toMillis(endDate);
+
+        PriorityQueue<Cursor> queue = new PriorityQueue<>(Comparator
+                .comparingLong((Cursor c) -> c.current().getCreatedAtMillis())
+                .thenComparingLong(c -> c.current().getId())
+                .reversed());
+        for (AuditArchiveSegment segment : readable()) {
+            List<AuditArchiveSegment.Entry> entries = segment.entriesInRangeDesc(from, to);
+            if (!entries.isEmpty()) {
+                queue.add(new Cursor(segment, entries));
+            }
+        }
+
+        List<BookingRecord> result = new ArrayList<>(Math.max(0, limit));
+        long skipped = 0;
+        while (!queue.isEmpty() && result.size() < limit) {
+            Cursor cursor = queue.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(cursor.segment.read(cursor.current()).toBookingRecord());
+            }
+            if (cursor.advance()) {
+                queue.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("running", running.get());
+        status.put("maxAgeDays", maxAgeDays);
+        status.put("segments", segments.size());
+        status.put("pendingSegments", opened.size() - segments.size());
+        status.put("archivedRecords", segments.stream().mapToLong(AuditArchiveSegment::getRecordCount).sum());
+        status.put("oldestRecord", segments.stream().filter(s -> s.getRecordCount() > 0)
+                .map(AuditArchiveSegment::getMinCreatedAt).min(Comparator.naturalOrder()).orElse(null));
+        status.put("lastRunAt", lastRunAt);
+        status.put("lastRunArchived", lastRunArchived);
+        return status;
+    }
+
+    private static AuditArchiveSegment.ArchivedRow readRow(ResultSet rs) throws SQLException {
+        long performedBy = rs.getLong("performed_by");
+        return AuditArchiveSegment.ArchivedRow.builder()
+                .id(rs.getLong("id"))
+                .bookingId(rs.getLong("booking_id"))
+                .bookingCode(rs.getString("booking_code"))
+                .action(rs.getString("action"))
+                .performedById(rs.wasNull() ? null : performedBy)
+                .performer(rs.getString("username"))
+                .description(rs.getString("description"))
+                .previousValues(rs.getString("previous_values"))
+                .currentValues(rs.getString("current_values"))
+                .ipAddress(rs.getString("ip_address"))
+                .userAgent(rs.getString("user_agent"))
+                .sessionId(rs.getString("session_id"))
+                .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+                .additionalData(rs.getString("additional_data"))
+                .build();
+    }
+
+    private static class Cursor {
+        private final AuditArchiveSegment segment;
+        private final List<AuditArchiveSegment.Entry> entries;
+        private int position;
+
+        Cursor(AuditArchiveSegment segment, List<AuditArchiveSegment.Entry> entries) {
+            this.segment = segment;
+            this.entries = entries;
+        }
+
+        AuditArchiveSegment.Entry current() {
+            return entries.get(position);
+        }
+
+        boolean advance() {
+            return ++position < entries.size();
+        }
+    }
+}
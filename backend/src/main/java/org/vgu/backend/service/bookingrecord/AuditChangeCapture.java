@@ -0,0 +1,257 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.OneToOne;
+import jakarta.persistence.Transient;
+
+/**
+ * Field-level change capture for audited entities.
+ * Each entity class is inspected once and turned into a list of method
+ * handles for its scalar columns and the IDs of its to-one associations;
+ * collections, inverse one-to-ones and {@code @UpdateTimestamp} columns are
+ * left out. A {@link Snapshot} is just the values those handles return, and
+ * {@link #encodeChanges} keeps only the fields that differ.
+ */
+@Component
+public class AuditChangeCapture {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditChangeCapture.class);
+
+    private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final ObjectMapper objectMapper;
+
+    private final ClassValue<Schema> schemas = new ClassValue<>() {
+        @Override
+        protected Schema computeValue(Class<?> type) {
+            return buildSchema(type);
+        }
+    };
+
+    public AuditChangeCapture(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /** Values of an entity's captured fields at one point in time */
+    public static final class Snapshot {
+        private final Schema schema;
+        private final Object[] values;
+
+        private Snapshot(Schema schema, Object[] values) {
+            this.schema = schema;
+            this.values = values;
+        }
+    }
+
+    public Snapshot snapshot(Object entity) {
+        if (entity == null) {
+            return null;
+        }
+        Schema schema = schemas.get(Hibernate.getClass(entity));
+        Object[] values = new Object[schema.fields.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = schema.fields[i].read(entity);
+        }
+        return new Snapshot(schema, values);
+    }
+
+    /**
+     * Encode the fields that changed between {@code before} and the current
+     * state of {@code after}. With no {@code before} the record is treated as
+     * a creation and every non-null field is kept.
+     *
+     * @return the encoded change set, or null when nothing changed
+     */
+    public String encodeChanges(Snapshot before, Object after) {
+        Snapshot current = snapshot(after);
+        if (current == null) {
+            return null;
+        }
+        Schema schema = current.schema;
+        boolean created = before == null || before.schema != schema;
+        List<AuditChangeCodec.Change> changes = new ArrayList<>();
+        for (int i = 0; i < schema.fields.length; i++) {
+            Object oldValue = created ? null : before.values[i];
+            Object newValue = current.values[i];
+            if (!sameValue(oldValue, newValue)) {
+                changes.add(new AuditChangeCodec.Change(schema.fields[i].name, oldValue, newValue));
+            }
+        }
+        if (changes.isEmpty()) {
+            return null;
+        }
+        return AuditChangeCodec.encode(schema.entity, created, changes);
+    }
+
+    /**
+     * JSON of the changed fields' old values; legacy JSON values pass through
+     */
+    public String renderPrevious(String previousValues, String currentValues) {
+        if (!AuditChangeCodec.isEncoded(currentValues)) {
+            return previousValues;
+        }
+        AuditChangeCodec.Decoded decoded = decodeQuietly(currentValues);
+        if (decoded == null || decoded.isCreated()) {
+            return null;
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        decoded.getChanges().forEach(change -> values.put(change.getField(), change.getOldValue()));
+        return toJson(values);
+    }
+
+    /**
+     * JSON of the changed fields' new values; legacy JSON values pass through
+     */
+    public String renderCurrent(String currentValues) {
+        if (!AuditChangeCodec.isEncoded(currentValues)) {
+            return currentValues;
+        }
+        AuditChangeCodec.Decoded decoded = decodeQuietly(currentValues);
+        if (decoded == null) {
+            return null;
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        decoded.getChanges().forEach(change -> values.put(change.getField(), change.getNewValue()));
+        return toJson(values);
+    }
+
+    private AuditChangeCodec.Decoded decodeQuietly(String value) {
+        try {
+            return AuditChangeCodec.decode(value);
+        } catch (RuntimeException e) {
+            logger.warn("Unreadable audit change set: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private String toJson(Map<String, Object> values) {
+        try {
+            return objectMapper.writeValueAsString(values);
+        } catch (JsonProcessingException e) {
+            logger.warn("Failed to render audit change set: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean sameValue(Object a, Object b) {
+        if (a instanceof BigDecimal x && b instanceof BigDecimal y) {
+            return x.compareTo(y) == 0;
+        }
+        return Objects.equals(a, b);
+    }
+
+    private static Schema buildSchema(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        List<FieldAccessor> fields = new ArrayList<>();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())
+                        || field.isAnnotationPresent(Transient.class)
+                        || field.isAnnotationPresent(UpdateTimestamp.class)) {
+                    continue;
+                }
+                OneToOne oneToOne = field.getAnnotation(OneToOne.class);
+                if (oneToOne != null && !oneToOne.mappedBy().isEmpty()) {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                try {
+                    MethodHandle getter = getter(lookup, c, field);
+                    if (getter == null) {
+                        continue;
+                    }
+                    if (isScalar(fieldType)) {
+                        fields.add(new FieldAccessor(field.getName(), getter, null));
+                    } else if (fieldType.isAnnotationPresent(Entity.class)) {
+                        // Only the reference's ID; a proxy answers getId without loading
+                        MethodHandle idGetter = lookup.findVirtual(fieldType, "getId",
+                                MethodType.methodType(Long.class)).asType(ACCESSOR_TYPE);
+                        fields.add(new FieldAccessor(field.getName() + "Id", getter, idGetter));
+                    }
+                } catch (ReflectiveOperationException e) {
+                    logger.debug("Skipping {}.{} in audit change capture: {}",
+                            c.getSimpleName(), field.getName(), e.getMessage());
+                }
+            }
+        }
+        logger.debug("Audit change capture schema for {}: {} fields", type.getSimpleName(), fields.size());
+        return new Schema(type.getSimpleName(), fields.toArray(new FieldAccessor[0]));
+    }
+
+    private static MethodHandle getter(MethodHandles.Lookup lookup, Class<?> owner, Field field)
+            throws IllegalAccessException {
+        String suffix = Character.toUpperCase(field.getName().charAt(0)) + field.getName().substring(1);
+        for (String name : new String[] { "get" + suffix, "is" + suffix }) {
+            try {
+                Method method = owner.getMethod(name);
+                return lookup.unreflect(method).asType(ACCESSOR_TYPE);
+            } catch (NoSuchMethodException e) {
+                // try the next naming convention
+            }
+        }
+        return null;
+    }
+
+    private static boolean isScalar(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class
+                || Number.class.isAssignableFrom(type) || type == LocalDateTime.class || type == LocalDate.class;
+    }
+
+    private static final class Schema {
+        private final String entity;
+        private final FieldAccessor[] fields;
+
+        private Schema(String entity, FieldAccessor[] fields) {
+            this.entity = entity;
+            this.fields = fields;
+        }
+    }
+
+    private static final class FieldAccessor {
+        private final String name;
+        private final MethodHandle getter;
+        private final MethodHandle idGetter;
+
+        private FieldAccessor(String name, MethodHandle getter, MethodHandle idGetter) {
+            this.name = name;
+            this.getter = getter;
+            this.idGetter = idGetter;
+        }
+
+        Object read(Object entity) {
+            try {
+                Object value = (Object) getter.invokeExact(entity);
+                if (idGetter != null && value != null) {
+                    value = (Object) idGetter.invokeExact(value);
+                }
+                return value;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to read " + name + " for audit", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Compact encoding for field-level audit changes, stored as text in
+ * booking_records.current_values.
+ *
+ * <pre>
+ * "cc:" + base64url( header | body )
+ * header  1 byte: format version in the low bits, FLAG_CREATED when the
+ *         record has no previous state, FLAG_DEFLATED when body is deflated
+ * body    string entity, varint change count,
+ *         then per change: string field, value old, value new
+ * value   1 tag byte + payload (varints are zigzag for signed numbers)
+ * </pre>
+ *
+ * Unknown versions are rejected rather than guessed at, so the layout can
+ * evolve by bumping {@link #VERSION} and keeping the old reader.
+ */
+public final class AuditChangeCodec {
+
+    public static final String PREFIX = "cc:";
+
+    private static final int VERSION = 1;
+    private static final int VERSION_MASK = 0x0F;
+    private static final int FLAG_CREATED = 0x40;
+    private static final int FLAG_DEFLATED = 0x80;
+    private static final int DEFLATE_THRESHOLD = 256;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_LONG = 2;
+    private static final byte TAG_DECIMAL = 3;
+    private static final byte TAG_TRUE = 4;
+    private static final byte TAG_FALSE = 5;
+    private static final byte TAG_DATE_TIME = 6;
+    private static final byte TAG_DATE = 7;
+    private static final byte TAG_DOUBLE = 8;
+
+    @Getter
+    @AllArgsConstructor
+    public static class Change {
+        private final String field;
+        private final Object oldValue;
+        private final Object newValue;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Decoded {
+        private final String entity;
+        private final boolean created;
+        private final List<Change> changes;
+    }
+
+    private AuditChangeCodec() {
+    }
+
+    public static boolean isEncoded(String value) {
+        return value != null && value.startsWith(PREFIX);
+    }
+
+    public static String encode(String entity, boolean created, List<Change> changes) {
+        Buffer body = new Buffer();
+        body.writeString(entity);
+        body.writeVarint(changes.size());
+        for (Change change : changes) {
+            body.writeString(change.getField());
+            body.writeValue(change.getOldValue());
+            body.writeValue(change.getNewValue());
+        }
+
+        byte[] payload = body.toByteArray();
+        int header = VERSION | (created ? FLAG_CREATED : 0);
+        if (payload.length > DEFLATE_THRESHOLD) {
+            byte[] deflated = deflate(payload);
+            if (deflated.length < payload.length) {
+                payload = deflated;
+                header |= FLAG_DEFLATED;
+            }
+        }
+
+        byte[] out = new byte[payload.length + 1];
+        out[0] = (byte) header;
+        System.arraycopy(payload, 0, out, 1, payload.length);
+        return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(out);
+    }
+
+    public static Decoded decode(String value) {
+        if (!isEncoded(value)) {
+            throw new IllegalArgumentException("Not an encoded change set");
+        }
+        byte[] bytes = Base64.getUrlDecoder().decode(value.substring(PREFIX.length()));
+        int header = bytes[0] & 0xFF;
+        if ((header & VERSION_MASK) != VERSION) {
+            throw new IllegalArgumentException("Unsupported change set version " + (header & VERSION_MASK));
+        }
+        byte[] payload = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 1, payload, 0, payload.length);
+        if ((header & FLAG_DEFLATED) != 0) {
+            payload = inflate(payload);
+        }
+
+        Reader in = new Reader(payload);
+        String entity = in.readString();
+        int count = (int) in.readVarint();
+        List<Change> changes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            changes.add(new Change(in.readString(), in.readValue(), in.readValue()));
+        }
+        return new Decoded(entity, (header & FLAG_CREATED) != 0, changes);
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+            byte[] chunk = new byte[512];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+            byte[] chunk = new byte[512];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalArgumentException("Truncated change set");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt change set", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+
+        Buffer() {
+            super(128);
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeSigned(long value) {
+            writeVarint((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        void writeValue(Object value) {
+            if (value == null) {
+                write(TAG_NULL);
+            } else if (value instanceof Boolean b) {
+                write(b ? TAG_TRUE : TAG_FALSE);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short
+                    || value instanceof Byte) {
+                write(TAG_LONG);
+                writeSigned(((Number) value).longValue());
+            } else if (value instanceof BigDecimal d) {
+                write(TAG_DECIMAL);
+                writeSigned(d.scale());
+                byte[] unscaled = d.unscaledValue().toByteArray();
+                writeVarint(unscaled.length);
+                write(unscaled, 0, unscaled.length);
+            } else if (value instanceof Double || value instanceof Float) {
+                write(TAG_DOUBLE);
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    write((int) (bits >>> shift));
+                }
+            } else if (value instanceof LocalDateTime t) {
+                write(TAG_DATE_TIME);
+                writeSigned(t.toEpochSecond(ZoneOffset.UTC));
+                writeVarint(t.getNano());
+            } else if (value instanceof LocalDate d) {
+                write(TAG_DATE);
+                writeSigned(d.toEpochDay());
+            } else if (value instanceof Enum<?> e) {
+                write(TAG_STRING);
+                writeString(e.name());
+            } else {
+                write(TAG_STRING);
+                writeString(value.toString());
+            }
+        }
+    }
+
+    private static class Reader {
+        private final byte[] data;
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        long readSigned() {
+            long raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString() {
+            int length = (int) readVarint();
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        Object readValue() {
+            byte tag = data[position++];
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_TRUE:
+                    return Boolean.TRUE;
+                case TAG_FALSE:
+                    return Boolean.FALSE;
+                case TAG_LONG:
+                    return readSigned();
+                case TAG_DECIMAL: {
+                    int scale = (int) readSigned();
+                    int length = (int) readVarint();
+                    byte[] unscaled = new byte[length];
+                    System.arraycopy(data, position, unscaled, 0, length);
+                    position += length;
+                    return new BigDecimal(new BigInteger(unscaled), scale);
+                }
+                case TAG_DOUBLE: {
+                    long bits = 0;
+                    for (int i = 0; i < 8; i++) {
+                        bits = (bits << 8) | (data[position++] & 0xFF);
+                    }
+                    return Double.longBitsToDouble(bits);
+                }
+                case TAG_DATE_TIME: {
+                    long seconds = readSigned();
+                    int nanos = (int) readVarint();
+                    return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+                }
+                case TAG_DATE:
+                    return LocalDate.ofEpochDay(readSigned());
+                case TAG_STRING:
+                    return readString();
+                default:
+                    throw new IllegalArgumentException("Unknown value tag " + tag);
+            }
+        }
+    }
+}
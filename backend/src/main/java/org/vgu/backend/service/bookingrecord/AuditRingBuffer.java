@@ -0,0 +1,109 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Pre-allocated multi-producer / single-consumer ring buffer for audit rows.
+ * Producers claim a sequence, copy their row into the slot and publish it;
+ * the single consumer drains published slots in sequence order. Slots are
+ * reused, so steady-state publishing does not allocate.
+ */
+public class AuditRingBuffer {
+
+    private static final class Slot {
+        private final AuditRow row = new AuditRow();
+        private volatile long sequence = -1;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimSequence;
+    private volatile long consumedSequence;
+
+    public AuditRingBuffer(int capacity, long startSequence) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring buffer capacity must be a power of two: " + capacity);
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = capacity - 1;
+        this.claimSequence = new AtomicLong(startSequence);
+        this.consumedSequence = startSequence;
+    }
+
+    /**
+     * Publish a row, waiting up to {@code timeoutNanos} for a free slot.
+     * The filled slot (with its sequence) is handed to {@code beforePublish},
+     * e.g. for the write-ahead log, before it becomes visible to the consumer.
+     *
+     * @return false if the buffer stayed full for the whole timeout
+     */
+    public boolean publish(AuditRow source, long timeoutNanos, Consumer<AuditRow> beforePublish) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        long seq;
+        while (true) {
+            seq = claimSequence.get();
+            if (seq - consumedSequence >= slots.length) {
+                if (System.nanoTime() >= deadline) {
+                    return false;
+                }
+                LockSupport.parkNanos(10_000);
+                continue;
+            }
+            if (claimSequence.compareAndSet(seq, seq + 1)) {
+                break;
+            }
+        }
+
+        Slot slot = slots[(int) (seq & mask)];
+        slot.row.copyFrom(source);
+        slot.row.setSeq(seq);
+        try {
+            if (beforePublish != null) {
+                beforePublish.accept(slot.row);
+            }
+        } finally {
+            // A claimed slot must always be published or the consumer stalls
+            slot.sequence = seq;
+        }
+        return true;
+    }
+
+    /**
+     * Copy up to {@code max} consecutive published rows into {@code out} and
+     * release their slots. Only the consumer thread may call this.
+     */
+    public int drainTo(List<AuditRow> out, int max) {
+        long next = consumedSequence;
+        int drained = 0;
+        while (drained < max) {
+            Slot slot = slots[(int) (next & mask)];
+            if (slot.sequence != next) {
+                break;
+            }
+            out.add(slot.row.copy());
+            next++;
+            drained++;
+        }
+        if (drained > 0) {
+            consumedSequence = next;
+        }
+        return drained;
+    }
+
+    /**
+     * Rows claimed but not yet drained
+     */
+    public long size() {
+        return claimSequence.get() - consumedSequence;
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,61 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.time.LocalDateTime;
+
+import org.vgu.backend.enums.TypeAction;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Flat, ID-only form of a {@link org.vgu.backend.model.BookingRecord} as it
+ * travels through the audit ring buffer and the write-ahead log
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditRow {
+
+    private long seq;
+    private Long bookingId;
+    private TypeAction action;
+    private Long performedById;
+    private String description;
+    private String previousValues;
+    private String currentValues;
+    private String ipAddress;
+    private String userAgent;
+    private String sessionId;
+    private String additionalData;
+    private LocalDateTime createdAt;
+    // Already inserted directly because the WAL append failed; never spilled
+    @JsonIgnore
+    private boolean writtenThrough;
+
+    public void copyFrom(AuditRow other) {
+        this.seq = other.seq;
+        this.bookingId = other.bookingId;
+        this.action = other.action;
+        this.performedById = other.performedById;
+        this.description = other.description;
+        this.previousValues = other.previousValues;
+        this.currentValues = other.currentValues;
+        this.ipAddress = other.ipAddress;
+        this.userAgent = other.userAgent;
+        this.sessionId = other.sessionId;
+        this.additionalData = other.additionalData;
+        this.createdAt = other.createdAt;
+        this.writtenThrough = other.writtenThrough;
+    }
+
+    public AuditRow copy() {
+        AuditRow row = new AuditRow();
+        row.copyFrom(this);
+        return row;
+    }
+}
@@ -0,0 +1,438 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * In-memory inverted index over booking audit records.
+ * Documents are addressed by a dense ordinal assigned in insertion order, so
+ * every posting list is sorted and intersections are linear merges. Results are ranked with BM25 using
+ * per-field weights. Removed records are masked out rather than dropped from
+ * their posting lists, which only shrink on the next rebuild. Not thread-safe;
+ * {@link AuditSearchService} guards it with a read/write lock.
+ */
+public class AuditSearchIndex {
+
+    private static final int FORMAT_VERSION = 2;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    static final int WEIGHT_BOOKING_CODE = 3;
+    static final int WEIGHT_ACTION = 2;
+    static final int WEIGHT_PERFORMER = 2;
+    static final int WEIGHT_DESCRIPTION = 1;
+
+    private static final class PostingList {
+        private int[] docs = new int[4];
+        private byte[] freqs = new byte[4];
+        private int size;
+
+        void add(int doc, int freq) {
+            if (size > 0 && docs[size - 1] == doc) {
+                freqs[size - 1] = (byte) Math.min(255, (freqs[size - 1] & 0xFF) + freq);
+                return;
+            }
+            if (size == docs.length) {
+                int capacity = size + (size >> 1) + 1;
+                docs = Arrays.copyOf(docs, capacity);
+                freqs = Arrays.copyOf(freqs, capacity);
+            }
+            docs[size] = doc;
+            freqs[size] = (byte) Math.min(255, freq);
+            size++;
+        }
+    }
+
+    /** Doc IDs with accumulated scores, sorted by doc ID */
+    private static final class Scored {
+        private final int[] docs;
+        private final float[] scores;
+        private final int size;
+
+        Scored(int[] docs, float[] scores, int size) {
+            this.docs = docs;
+            this.scores = scores;
+            this.size = size;
+        }
+    }
+
+    /** A ranked hit: the record ID and its relevance score */
+    @Getter
+    @AllArgsConstructor
+    public static class Hit {
+        private final long recordId;
+        private final float score;
+    }
+
+    /** One page of ranked hits plus the total number of matches */
+    @Getter
+    @AllArgsConstructor
+    public static class Result {
+        private final List<Hit> hits;
+        private final long totalHits;
+    }
+
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    private long[] recordIds = new long[1024];
+    private short[] docLengths = new short[1024];
+    private BitSet removed = new BitSet();
+    private int docCount;
+    private int removedCount;
+    private long totalLength;
+    private long lastRecordId;
+
+    /**
+     * Records currently searchable
+     */
+    public int getDocCount() {
+        return docCount - removedCount;
+    }
+
+    public int getTermCount() {
+        return terms.size();
+    }
+
+    /**
+     * Highest record ID fed into the index so far
+     */
+    public long getLastRecordId() {
+        return lastRecordId;
+    }
+
+    /**
+     * Index one record. Callers must not add the same record twice.
+     */
+    public void add(long recordId, String bookingCode, String action, String performer, String description) {
+        int doc = docCount;
+        Map<String, Integer> freqs = new HashMap<>();
+        addField(freqs, bookingCode, WEIGHT_BOOKING_CODE, true);
+        addField(freqs, action, WEIGHT_ACTION, true);
+        addField(freqs, performer, WEIGHT_PERFORMER, true);
+        addField(freqs, description, WEIGHT_DESCRIPTION, false);
+
+        int length = 0;
+        for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), k -> new PostingList()).add(doc, entry.getValue());
+            length += entry.getValue();
+        }
+
+        if (doc == recordIds.length) {
+            recordIds = Arrays.copyOf(recordIds, doc * 2);
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+        }
+        recordIds[doc] = recordId;
+        docLengths[doc] = (short) Math.min(Short.MAX_VALUE, length);
+        totalLength += length;
+        docCount++;
+        lastRecordId = Math.max(lastRecordId, recordId);
+    }
+
+    /**
+     * Stop matching the given records, e.g. once they have been archived.
+     * IDs that are not indexed or already removed are ignored.
+     *
+     * @return the number of records removed
+     */
+    public int removeAll(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Set<Long> wanted = ids instanceof Set<Long> set ? set : new HashSet<>(ids);
+        int count = 0;
+        for (int doc = 0; doc < docCount; doc++) {
+            if (!removed.get(doc) && wanted.contains(recordIds[doc])) {
+                removed.set(doc);
+                totalLength -= docLengths[doc];
+                count++;
+            }
+        }
+        removedCount += count;
+        return count;
+    }
+
+    /**
+     * Ranked search. Every query term must match (exactly or, for terms of
+     * three or more characters, as a prefix). Ties go to the most recently indexed record.
+     */
+    public Result search(String query, int offset, int limit) {
+        List<String> queryTerms = tokenize(query);
+        if (queryTerms.isEmpty() || getDocCount() == 0) {
+            return new Result(List.of(), 0);
+        }
+
+        List<Scored> perTerm = new ArrayList<>(queryTerms.size());
+        for (String term : queryTerms) {
+            Scored scored = scoreTerm(term);
+            if (scored.size == 0) {
+                return new Result(List.of(), 0);
+            }
+            perTerm.add(scored);
+        }
+        perTerm.sort((x, y) -> Integer.compare(x.size, y.size));
+
+        Scored intersection = perTerm.get(0);
+        for (int i = 1; i < perTerm.size() && intersection.size > 0; i++) {
+            intersection = intersect(intersection, perTerm.get(i));
+        }
+        Scored matches = intersection;
+
+        int wanted = offset + limit;
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.max(1, wanted), (x, y) -> compareHits(matches, x, y));
+        for (int i = 0; i < matches.size; i++) {
+            top.offer(i);
+            if (top.size() > wanted) {
+                top.poll();
+            }
+        }
+        List<Integer> ranked = new ArrayList<>(top);
+        ranked.sort((x, y) -> compareHits(matches, y, x));
+
+        List<Hit> hits = new ArrayList<>(limit);
+        for (int i = offset; i < ranked.size(); i++) {
+            int idx = ranked.get(i);
+            hits.add(new Hit(recordIds[matches.docs[idx]], matches.scores[idx]));
+        }
+        return new Result(hits, matches.size);
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(lastRecordId);
+        out.writeLong(totalLength);
+        out.writeInt(docCount);
+        for (int i = 0; i < docCount; i++) {
+            out.writeLong(recordIds[i]);
+            out.writeShort(docLengths[i]);
+        }
+        out.writeInt(removedCount);
+        int previousRemoved = 0;
+        for (int doc = removed.nextSetBit(0); doc >= 0; doc = removed.nextSetBit(doc + 1)) {
+            writeVarInt(out, doc - previousRemoved);
+            previousRemoved = doc;
+        }
+        out.writeInt(terms.size());
+        for (Map.Entry<String, PostingList> entry : terms.entrySet()) {
+            PostingList postings = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeInt(postings.size);
+            int previous = 0;
+            for (int i = 0; i < postings.size; i++) {
+                writeVarInt(out, postings.docs[i] - previous);
+                previous = postings.docs[i];
+            }
+            out.write(postings.freqs, 0, postings.size);
+        }
+    }
+
+    public static AuditSearchIndex readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported audit index format " + version);
+        }
+        AuditSearchIndex index = new AuditSearchIndex();
+        index.lastRecordId = in.readLong();
+        index.totalLength = in.readLong();
+        index.docCount = in.readInt();
+        int capacity = Math.max(1024, index.docCount);
+        index.recordIds = new long[capacity];
+        index.docLengths = new short[capacity];
+        for (int i = 0; i < index.docCount; i++) {
+            index.recordIds[i] = in.readLong();
+            index.docLengths[i] = in.readShort();
+        }
+        index.removedCount = in.readInt();
+        int removedDoc = 0;
+        for (int i = 0; i < index.removedCount; i++) {
+            removedDoc += readVarInt(in);
+            index.removed.set(removedDoc);
+        }
+        int termCount = in.readInt();
+        for (int t = 0; t < termCount; t++) {
+            String term = in.readUTF();
+            PostingList postings = new PostingList();
+            int size = in.readInt();
+            postings.docs = new int[Math.max(4, size)];
+            postings.freqs = new byte[Math.max(4, size)];
+            int doc = 0;
+            for (int i = 0; i < size; i++) {
+                doc += readVarInt(in);
+                postings.docs[i] = doc;
+            }
+            in.readFully(postings.freqs, 0, size);
+            postings.size = size;
+            index.terms.put(term, postings);
+        }
+        return index;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private static void addField(Map<String, Integer> freqs, String value, int weight, boolean keepWhole) {
+        if (value == null || value.isBlank()) {
+            return;
+        }
+        List<String> tokens = tokenize(value);
+        for (String token : tokens) {
+            freqs.merge(token, weight, Integer::sum);
+        }
+        // Identifiers such as booking codes are also searchable with their
+        // separators left out, so "bk0005" finds BK-0005. The joined token is
+        // itself a single query token, unlike the raw value.
+        if (keepWhole && tokens.size() > 1) {
+            freqs.merge(String.join("", tokens), weight, Integer::sum);
+        }
+    }
+
+    private Scored scoreTerm(String term) {
+        List<PostingList> lists = new ArrayList<>();
+        PostingList exact = terms.get(term);
+        if (exact != null) {
+            lists.add(exact);
+        }
+        if (term.length() >= MIN_PREFIX_LENGTH) {
+            NavigableMap<String, PostingList> range = terms.subMap(term, false, term + Character.MAX_VALUE, false);
+            for (PostingList postings : range.values()) {
+                if (lists.size() > MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+                lists.add(postings);
+            }
+        }
+
+        int liveDocs = getDocCount();
+        float avgLength = liveDocs == 0 ? 1f : (float) totalLength / liveDocs;
+        int total = 0;
+        for (PostingList postings : lists) {
+            total += postings.size;
+        }
+        int[] docs = new int[total];
+        float[] scores = new float[total];
+        int n = 0;
+        for (int l = 0; l < lists.size(); l++) {
+            PostingList postings = lists.get(l);
+            // Prefix expansions rank slightly below exact matches
+            float boost = (l == 0 && exact != null) ? 1f : 0.8f;
+            double idf = Math.log(1 + (liveDocs - postings.size + 0.5) / (postings.size + 0.5));
+            for (int i = 0; i < postings.size; i++) {
+                int doc = postings.docs[i];
+                if (removed.get(doc)) {
+                    continue;
+                }
+                int tf = postings.freqs[i] & 0xFF;
+                float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+                docs[n] = doc;
+                scores[n] = (float) (boost * idf * tf * (K1 + 1) / (tf + norm));
+                n++;
+            }
+        }
+        if (lists.size() <= 1) {
+            return new Scored(docs, scores, n);
+        }
+        return mergeByDoc(docs, scores, n);
+    }
+
+    /**
+     * Sort (doc, score) pairs by doc and sum duplicates
+     */
+    private static Scored mergeByDoc(int[] docs, float[] scores, int n) {
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = ((long) docs[i] << 32) | (i & 0xFFFFFFFFL);
+        }
+        Arrays.sort(packed);
+        int[] outDocs = new int[n];
+        float[] outScores = new float[n];
+        int size = 0;
+        for (long p : packed) {
+            int doc = (int) (p >>> 32);
+            float score = scores[(int) p];
+            if (size > 0 && outDocs[size - 1] == doc) {
+                outScores[size - 1] += score;
+            } else {
+                outDocs[size] = doc;
+                outScores[size] = score;
+                size++;
+            }
+        }
+        return new Scored(outDocs, outScores, size);
+    }
+
+    private static Scored intersect(Scored a, Scored b) {
+        int[] docs = new int[Math.min(a.size, b.size)];
+        float[] scores = new float[docs.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.size && j < b.size) {
+            int da = a.docs[i];
+            int db = b.docs[j];
+            if (da == db) {
+                docs[n] = da;
+                scores[n] = a.scores[i] + b.scores[j];
+                n++;
+                i++;
+                j++;
+            } else if (da < db) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return new Scored(docs, scores, n);
+    }
+
+    private static int compareHits(Scored matches, int x, int y) {
+        int byScore = Float.compare(matches.scores[x], matches.scores[y]);
+        return byScore != 0 ? byScore : Integer.compare(matches.docs[x], matches.docs[y]);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,362 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.repository.BookingRecordRepository;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Full-text search over booking audit records backed by
+ * {@link AuditSearchIndex}.
+ * The index is loaded from its on-disk snapshot (or built from the table) at
+ * startup, then tails booking_records by ID so newly written records become
+ * searchable within a refresh interval. IDs skipped by the tail (transactions
+ * that committed out of order) are re-checked for a short while. Records in
+ * sealed archive segments are removed so they stop matching once archived.
+ */
+@Service
+public class AuditSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditSearchService.class);
+
+    private static final String SELECT_COLUMNS = "SELECT r.id, b.booking_code, r.action, a.username, r.description "
+            + "FROM booking_records r "
+            + "JOIN bookings b ON b.id = r.booking_id "
+            + "LEFT JOIN accounts a ON a.id = r.performed_by ";
+    private static final String TAIL_SQL = SELECT_COLUMNS + "WHERE r.id > ? ORDER BY r.id LIMIT ?";
+    private static final String FULL_SCAN_SQL = SELECT_COLUMNS + "ORDER BY r.id";
+    private static final int MAX_TRACKED_GAP = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BookingRecordRepository bookingRecordRepository;
+    private final AsyncTaskExecutor taskExecutor;
+    private final AuditArchiveService auditArchiveService;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Map<Long, Long> pendingGaps = new ConcurrentHashMap<>();
+    // Archive segments whose records the current index no longer holds
+    private final Set<Path> prunedSegments = ConcurrentHashMap.newKeySet();
+    private volatile AuditSearchIndex index;
+    private volatile boolean dirty;
+
+    @Value("${app.audit.search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.audit.search.index-file:data/audit-index/audit-index.bin}")
+    private String indexFile;
+
+    @Value("${app.audit.search.tail-batch-size:5000}")
+    private int tailBatchSize;
+
+    @Value("${app.audit.search.gap-retention-ms:60000}")
+    private long gapRetentionMs;
+
+    public AuditSearchService(JdbcTemplate jdbcTemplate, BookingRecordRepository bookingRecordRepository,
+            @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor, AuditArchiveService auditArchiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.bookingRecordRepository = bookingRecordRepository;
+        this.taskExecutor = taskExecutor;
+        this.auditArchiveService = auditArchiveService;
+    }
+
+    public boolean isReady() {
+        return enabled && index != null && !rebuilding.get();
+    }
+
+    /**
+     * Ranked search; empty when the index is not available yet so callers can
+     * fall back to the database
+     */
+    public Optional<Page<BookingRecord>> search(String query, Pageable pageable) {
+        if (!isReady()) {
+            return Optional.empty();
+        }
+
+        AuditSearchIndex.Result result;
+        lock.readLock().lock();
+        try {
+            result = index.search(query, (int) pageable.getOffset(), pageable.getPageSize());
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Long> ids = result.getHits().stream().map(AuditSearchIndex.Hit::getRecordId).toList();
+        Map<Long, BookingRecord> byId = bookingRecordRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(BookingRecord::getId, Function.identity()));
+        // Keep rank order; records deleted since indexing are skipped
+        List<BookingRecord> records = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            BookingRecord record = byId.get(id);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return Optional.of(new PageImpl<>(records, pageable, result.getTotalHits()));
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("ready", isReady());
+        status.put("rebuilding", rebuilding.get());
+        AuditSearchIndex current = index;
+        status.put("documents", current != null ? current.getDocCount() : 0);
+        status.put("terms", current != null ? current.getTermCount() : 0);
+        status.put("lastIndexedRecordId", current != null ? current.getLastRecordId() : 0);
+        status.put("pendingGaps", pendingGaps.size());
+        return status;
+    }
+
+    /**
+     * Rebuild the index from booking_records in the background
+     *
+     * @return false if a rebuild is already running
+     */
+    public boolean rebuildAsync() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                rebuild();
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        taskExecutor.execute(() -> {
+            try {
+                Path path = Path.of(indexFile);
+                if (Files.exists(path)) {
+                    try (DataInputStream in = new DataInputStream(
+                            new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+                        index = AuditSearchIndex.readFrom(in);
+                        prunedSegments.clear();
+                        logger.info("Loaded audit search index: {} records, {} terms",
+                                index.getDocCount(), index.getTermCount());
+                        return;
+                    } catch (IOException e) {
+                        logger.warn("Audit search index snapshot unreadable, rebuilding: {}", e.getMessage());
+                    }
+                }
+                rebuild();
+            } finally {
+                rebuilding.set(false);
+            }
+        });
+    }
+
+    /**
+     * Pull records written since the last refresh into the index and drop
+     * those archived since
+     */
+    @Scheduled(fixedDelayString = "${app.audit.search.refresh-ms:2000}")
+    public void refresh() {
+        if (!isReady()) {
+            return;
+        }
+        try {
+            pruneArchived();
+            retryGaps();
+            int fetched;
+            do {
+                long lastId = index.getLastRecordId();
+                List<Object[]> rows = jdbcTemplate.query(TAIL_SQL, (rs, i) -> readRow(rs), lastId, tailBatchSize);
+                trackGaps(lastId, rows);
+                addRows(rows, false);
+                fetched = rows.size();
+            } while (fetched == tailBatchSize);
+        } catch (Exception e) {
+            logger.warn("Audit search index refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.audit.search.snapshot-ms:300000}")
+    public void snapshot() {
+        if (!enabled || index == null || !dirty) {
+            return;
+        }
+        Path path = Path.of(indexFile);
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(path.toAbsolutePath().getParent());
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+                index.writeTo(out);
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            logger.debug("Wrote audit search index snapshot ({} records)", index.getDocCount());
+        } catch (IOException e) {
+            logger.warn("Failed to write audit search index snapshot: {}", e.getMessage());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private void rebuild() {
+        long start = System.currentTimeMillis();
+        logger.info("Building audit search index from booking_records");
+        AuditSearchIndex fresh = new AuditSearchIndex();
+        try {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(FULL_SCAN_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Integer.MIN_VALUE);
+                return ps;
+            }, (ResultSet rs) -> {
+                Object[] row = readRow(rs);
+                fresh.add((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+            });
+        } catch (Exception e) {
+            logger.error("Audit search index build failed: {}", e.getMessage(), e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+            pendingGaps.clear();
+            // The scan may have read rows purged meanwhile; prune them again
+            prunedSegments.clear();
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Audit search index built: {} records, {} terms in {} ms",
+                fresh.getDocCount(), fresh.getTermCount(), System.currentTimeMillis() - start);
+        snapshot();
+    }
+
+    private void pruneArchived() {
+        for (AuditArchiveSegment segment : auditArchiveService.getSealedSegments()) {
+            if (prunedSegments.contains(segment.getPath())) {
+                continue;
+            }
+            List<Long> ids = segment.ids();
+            lock.writeLock().lock();
+            try {
+                if (index.removeAll(ids) > 0) {
+                    dirty = true;
+                }
+                prunedSegments.add(segment.getPath());
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void addRows(List<Object[]> rows, boolean gapFill) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long lastId = index.getLastRecordId();
+            for (Object[] row : rows) {
+                // Guards against a tail batch racing a rebuild that already covers it
+                if (!gapFill && (Long) row[0] <= lastId) {
+                    continue;
+                }
+                index.add((Long) row[0], (String) row[1], (String) row[2], (String) row[3], (String) row[4]);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void trackGaps(long lastId, List<Object[]> rows) {
+        long now = System.currentTimeMillis();
+        long previous = lastId;
+        for (Object[] row : rows) {
+            long id = (Long) row[0];
+            if (id - previous > 1 && id - previous <= MAX_TRACKED_GAP && previous > 0) {
+                for (long missing = previous + 1; missing < id; missing++) {
+                    pendingGaps.putIfAbsent(missing, now);
+                }
+            }
+            previous = id;
+        }
+    }
+
+    private void retryGaps() {
+        if (pendingGaps.isEmpty()) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - gapRetentionMs;
+        pendingGaps.values().removeIf(firstSeen -> firstSeen < cutoff);
+        List<Long> ids = new ArrayList<>(pendingGaps.keySet());
+        if (ids.isEmpty()) {
+            return;
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        List<Object[]> rows = jdbcTemplate.query(SELECT_COLUMNS + "WHERE r.id IN (" + placeholders + ") ORDER BY r.id",
+                (rs, i) -> readRow(rs), ids.toArray());
+        rows.forEach(row -> pendingGaps.remove((Long) row[0]));
+        addRows(rows, true);
+    }
+
+    private static Object[] readRow(ResultSet rs) throws SQLException {
+        String performer = rs.getString(4);
+        return new Object[] {
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getString(3),
+                performer != null ? performer : "SYSTEM",
+                rs.getString(5)
+        };
+    }
+}
@@ -0,0 +1,530 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.BookingRecord;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory audit counters per action and per hour, plus per-booking action
+ * summaries.
+ * Hourly buckets are seeded once at startup from the booking_record_rollups
+ * table and a single GROUP BY over the recent part of booking_records, then
+ * incremented as records commit. Each node only sees its own records, so it
+ * checkpoints them as deltas added to the rollup table and then reloads the
+ * shared counts. Once an hour it touched is closed, the node re-counts that
+ * hour from booking_records and writes it whole instead, so drift from
+ * records written during seeding or deltas lost in a crash does not persist.
+ */
+@Service
+public class AuditStatisticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditStatisticsService.class);
+
+    private static final TypeAction[] ACTIONS = TypeAction.values();
+    private static final String HOURLY_COUNTS_SQL = "SELECT action, "
+            + "DATE_FORMAT(created_at, '%Y-%m-%d %H:00:00') AS bucket, COUNT(*) "
+            + "FROM booking_records WHERE created_at >= ? AND created_at < ? "
+            + "GROUP BY action, bucket";
+    private static final String LOAD_ROLLUPS_SQL = "SELECT bucket_start, action, record_count "
+            + "FROM booking_record_rollups";
+    private static final String ADD_ROLLUP_SQL = "INSERT INTO booking_record_rollups "
+            + "(bucket_start, action, record_count) VALUES (?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE record_count = record_count + VALUES(record_count)";
+    private static final String DELETE_ROLLUP_HOUR_SQL = "DELETE FROM booking_record_rollups WHERE bucket_start = ?";
+    private static final String INSERT_ROLLUP_SQL = "INSERT INTO booking_record_rollups "
+            + "(bucket_start, action, record_count) VALUES (?, ?, ?)";
+
+    public enum Granularity {
+        HOUR,
+        DAY
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditArchiveService auditArchiveService;
+    private final AsyncTaskExecutor taskExecutor;
+
+    // Shared counts plus this node's deltas not checkpointed yet
+    private volatile Counts counts = new Counts();
+    // Deltas not checkpointed yet, per hour
+    private final Map<LocalDateTime, LongAdder[]> pending = new ConcurrentHashMap<>();
+    // Hours to re-count from booking_records once they are closed
+    private final Set<LocalDateTime> unreconciled = ConcurrentHashMap.newKeySet();
+    // Increments hold the read lock; draining deltas or swapping the counts takes the write lock
+    private final ReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Map<Long, BookingCounts> bookingCounts = new ConcurrentHashMap<>();
+    private final AtomicBoolean seeding = new AtomicBoolean();
+    private volatile boolean ready;
+
+    @Value("${app.audit.statistics.reconcile-grace-minutes:60}")
+    private long reconcileGraceMinutes;
+
+    @Value("${app.audit.statistics.booking-cache-size:10000}")
+    private int bookingCacheSize;
+
+    @Value("${app.audit.statistics.booking-cache-ttl-ms:600000}")
+    private long bookingCacheTtlMs;
+
+    public AuditStatisticsService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            AuditArchiveService auditArchiveService, @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditArchiveService = auditArchiveService;
+        this.taskExecutor = taskExecutor;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (seeding.compareAndSet(false, true)) {
+            taskExecutor.execute(this::seed);
+        }
+    }
+
+    /**
+     * Count a new record once its transaction commits
+     */
+    public void recordCreated(BookingRecord record) {
+        TypeAction action = record.getAction();
+        Long bookingId = record.getBooking() != null ? record.getBooking().getId() : null;
+        LocalDateTime createdAt = record.getCreatedAt() != null ? record.getCreatedAt() : LocalDateTime.now();
+        if (action == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(action, bookingId, createdAt);
+                }
+            });
+        } else {
+            increment(action, bookingId, createdAt);
+        }
+    }
+
+    /**
+     * Totals per action across all time; null while the counters are still
+     * being seeded
+     */
+    public Map<TypeAction, Long> getActionTotals() {
+        if (!ready) {
+            return null;
+        }
+        LongAdder[] totals = counts.totals;
+        Map<TypeAction, Long> result = new EnumMap<>(TypeAction.class);
+        for (TypeAction action : ACTIONS) {
+            long count = totals[action.ordinal()].sum();
+            if (count > 0) {
+                result.put(action, count);
+            }
+        }
+        return result;
+    }
+
+    public long getActionTotal(TypeAction action) {
+        return counts.totals[action.ordinal()].sum();
+    }
+
+    /**
+     * Action counts for one booking, hot and archived records together.
+     * Loaded with one GROUP BY on first use, then kept current by
+     * {@link #recordCreated}; entries expire so any drift heals.
+     */
+    public Map<TypeAction, Long> getBookingSummary(Long bookingId) {
+        long now = System.currentTimeMillis();
+        BookingCounts counts = bookingCounts.get(bookingId);
+        if (counts == null || now - counts.loadedAt > bookingCacheTtlMs) {
+            counts = loadBookingCounts(bookingId, now);
+            if (bookingCounts.size() >= bookingCacheSize) {
+                bookingCounts.values().removeIf(c -> now - c.loadedAt > bookingCacheTtlMs);
+                if (bookingCounts.size() >= bookingCacheSize) {
+                    bookingCounts.clear();
+                }
+            }
+            bookingCounts.put(bookingId, counts);
+        }
+        Map<TypeAction, Long> result = new EnumMap<>(TypeAction.class);
+        for (TypeAction action : ACTIONS) {
+            long count = counts.counters[action.ordinal()].sum();
+            if (count > 0) {
+                result.put(action, count);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Record counts per hour or day in [from, to), oldest first. Buckets with
+     * no records are included as zero so the series is continuous.
+     *
+     * @param action only count this action, or every action when null
+     */
+    public List<Map<String, Object>> getSeries(Granularity granularity, LocalDateTime from, LocalDateTime to,
+            TypeAction action) {
+        ChronoUnit unit = granularity == Granularity.DAY ? ChronoUnit.DAYS : ChronoUnit.HOURS;
+        LocalDateTime start = from.truncatedTo(unit);
+        Map<LocalDateTime, long[]> buckets = new LinkedHashMap<>();
+        for (LocalDateTime bucket = start; bucket.isBefore(to); bucket = bucket.plus(1, unit)) {
+            buckets.put(bucket, new long[ACTIONS.length]);
+        }
+
+        NavigableMap<LocalDateTime, LongAdder[]> range = counts.hourly.subMap(start, true, to, false);
+        for (Map.Entry<LocalDateTime, LongAdder[]> entry : range.entrySet()) {
+            long[] target = buckets.get(entry.getKey().truncatedTo(unit));
+            if (target == null) {
+                continue;
+            }
+            LongAdder[] counters = entry.getValue();
+            for (int i = 0; i < counters.length; i++) {
+                target[i] += counters[i].sum();
+            }
+        }
+
+        List<Map<String, Object>> series = new ArrayList<>(buckets.size());
+        for (Map.Entry<LocalDateTime, long[]> entry : buckets.entrySet()) {
+            Map<String, Object> point = new LinkedHashMap<>();
+            point.put("bucket", entry.getKey());
+            long[] counts = entry.getValue();
+            if (action != null) {
+                point.put("count", counts[action.ordinal()]);
+            } else {
+                long total = 0;
+                Map<TypeAction, Long> byAction = new EnumMap<>(TypeAction.class);
+                for (TypeAction a : ACTIONS) {
+                    if (counts[a.ordinal()] > 0) {
+                        byAction.put(a, counts[a.ordinal()]);
+                        total += counts[a.ordinal()];
+                    }
+                }
+                point.put("count", total);
+                point.put("actions", byAction);
+            }
+            series.add(point);
+        }
+        return series;
+    }
+
+    /**
+     * Drop every counter and seed again from booking_records, e.g. after rows
+     * were purged outright
+     */
+    public void reseed() {
+        if (!seeding.compareAndSet(false, true)) {
+            return;
+        }
+        ready = false;
+        jdbcTemplate.update("DELETE FROM booking_record_rollups");
+        swapLock.writeLock().lock();
+        try {
+            counts = new Counts();
+            pending.clear();
+            unreconciled.clear();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        bookingCounts.clear();
+        taskExecutor.execute(this::seed);
+    }
+
+    /**
+     * Add this node's deltas to the rollup table, write closed hours
+     * re-counted from booking_records, and reload the shared counts
+     */
+    @Scheduled(fixedDelayString = "${app.audit.statistics.checkpoint-ms:60000}")
+    public void checkpoint() {
+        if (!ready) {
+            return;
+        }
+        try {
+            flush();
+            reload();
+        } catch (Exception e) {
+            logger.warn("Audit statistics checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        checkpoint();
+    }
+
+    private void seed() {
+        long start = System.currentTimeMillis();
+        try {
+            Counts loaded = load();
+            // Everything after the last checkpoint (minus the grace window for
+            // late commits) is counted from the table itself
+            LocalDateTime latestRollup = loaded.hourly.isEmpty() ? null : loaded.hourly.lastKey();
+            LocalDateTime countFrom = latestRollup != null
+                    ? latestRollup.minusMinutes(reconcileGraceMinutes).truncatedTo(ChronoUnit.HOURS)
+                    : LocalDateTime.of(1970, 1, 1, 0, 0);
+            Map<LocalDateTime, long[]> counted = recount(countFrom, LocalDateTime.now().plusYears(1));
+            loaded.hourly.subMap(countFrom, true, LocalDateTime.MAX, false).keySet()
+                    .forEach(hour -> counted.computeIfAbsent(hour, h -> new long[ACTIONS.length]));
+            unreconciled.addAll(counted.keySet());
+            swapLock.writeLock().lock();
+            try {
+                counted.forEach((hour, values) -> loaded.set(hour, values));
+                // Records committed while seeding are already in the re-counted hours
+                pending.forEach((hour, deltas) -> {
+                    if (!counted.containsKey(hour)) {
+                        loaded.add(hour, deltas);
+                    }
+                });
+                counts = loaded;
+            } finally {
+                swapLock.writeLock().unlock();
+            }
+            ready = true;
+            logger.info("Audit statistics seeded in {} ms ({} hourly buckets, {} recounted)",
+                    System.currentTimeMillis() - start, loaded.hourly.size(), counted.size());
+        } catch (Exception e) {
+            logger.error("Audit statistics seeding failed: {}", e.getMessage(), e);
+        } finally {
+            seeding.set(false);
+        }
+    }
+
+    /**
+     * Add the pending deltas of open hours to the rollup table and replace
+     * closed hours with their count from booking_records. Closed hours are
+     * never added to, so a late delta cannot count a record the re-count
+     * already includes.
+     */
+    private void flush() {
+        LocalDateTime closedBefore = LocalDateTime.now().minusMinutes(reconcileGraceMinutes)
+                .truncatedTo(ChronoUnit.HOURS);
+        Map<LocalDateTime, long[]> taken = new LinkedHashMap<>();
+        swapLock.writeLock().lock();
+        try {
+            pending.forEach((hour, deltas) -> taken.put(hour, sums(deltas)));
+            pending.clear();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        List<LocalDateTime> closed = unreconciled.stream().filter(hour -> hour.isBefore(closedBefore)).sorted()
+                .toList();
+        try {
+            transactionTemplate.executeWithoutResult(tx -> {
+                List<Object[]> added = new ArrayList<>();
+                taken.forEach((hour, deltas) -> {
+                    if (!hour.isBefore(closedBefore)) {
+                        rows(hour, deltas, added);
+                    }
+                });
+                jdbcTemplate.batchUpdate(ADD_ROLLUP_SQL, added);
+                if (!closed.isEmpty()) {
+                    Map<LocalDateTime, long[]> counted = recount(closed.get(0), closed.get(closed.size() - 1)
+                            .plusHours(1));
+                    List<Object[]> hours = new ArrayList<>(closed.size());
+                    List<Object[]> replaced = new ArrayList<>();
+                    for (LocalDateTime hour : closed) {
+                        hours.add(new Object[] { Timestamp.valueOf(hour) });
+                        rows(hour, counted.getOrDefault(hour, new long[ACTIONS.length]), replaced);
+                    }
+                    jdbcTemplate.batchUpdate(DELETE_ROLLUP_HOUR_SQL, hours);
+                    jdbcTemplate.batchUpdate(INSERT_ROLLUP_SQL, replaced);
+                }
+                logger.debug("Checkpointed {} audit rollup deltas and re-counted {} closed hours", added.size(),
+                        closed.size());
+            });
+            unreconciled.removeAll(closed);
+        } catch (RuntimeException e) {
+            swapLock.readLock().lock();
+            try {
+                taken.forEach((hour, deltas) -> {
+                    LongAdder[] counters = pending.computeIfAbsent(hour, h -> newCounters());
+                    for (int i = 0; i < deltas.length; i++) {
+                        counters[i].add(deltas[i]);
+                    }
+                });
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Replace the counts with the shared rollups plus the deltas not
+     * checkpointed yet
+     */
+    private void reload() {
+        Counts loaded = load();
+        swapLock.writeLock().lock();
+        try {
+            pending.forEach((hour, deltas) -> loaded.add(hour, deltas));
+            counts = loaded;
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+    }
+
+    private Counts load() {
+        Counts loaded = new Counts();
+        jdbcTemplate.query(LOAD_ROLLUPS_SQL, rs -> {
+            TypeAction action = parseAction(rs.getString(2));
+            if (action != null) {
+                loaded.add(rs.getTimestamp(1).toLocalDateTime(), action, rs.getLong(3));
+            }
+        });
+        return loaded;
+    }
+
+    /**
+     * Counts per hour and action in [from, to) from booking_records
+     */
+    private Map<LocalDateTime, long[]> recount(LocalDateTime from, LocalDateTime to) {
+        Map<LocalDateTime, long[]> counted = new LinkedHashMap<>();
+        jdbcTemplate.query(HOURLY_COUNTS_SQL, rs -> {
+            TypeAction action = parseAction(rs.getString(1));
+            if (action != null) {
+                LocalDateTime hour = LocalDateTime.parse(rs.getString(2).replace(' ', 'T'));
+                counted.computeIfAbsent(hour, h -> new long[ACTIONS.length])[action.ordinal()] = rs.getLong(3);
+            }
+        }, Timestamp.valueOf(from), Timestamp.valueOf(to));
+        return counted;
+    }
+
+    private void increment(TypeAction action, Long bookingId, LocalDateTime createdAt) {
+        LocalDateTime hour = createdAt.truncatedTo(ChronoUnit.HOURS);
+        swapLock.readLock().lock();
+        try {
+            counts.add(hour, action, 1);
+            pending.computeIfAbsent(hour, h -> newCounters())[action.ordinal()].increment();
+            unreconciled.add(hour);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+        if (bookingId != null) {
+            BookingCounts counts = bookingCounts.get(bookingId);
+            if (counts != null) {
+                counts.counters[action.ordinal()].increment();
+            }
+        }
+    }
+
+    private static void rows(LocalDateTime hour, long[] values, List<Object[]> rows) {
+        for (TypeAction action : ACTIONS) {
+            long count = values[action.ordinal()];
+            if (count != 0) {
+                rows.add(new Object[] { Timestamp.valueOf(hour), action.name(), count });
+            }
+        }
+    }
+
+    private static long[] sums(LongAdder[] counters) {
+        long[] values = new long[counters.length];
+        for (int i = 0; i < counters.length; i++) {
+            values[i] = counters[i].sum();
+        }
+        return values;
+    }
+
+    private BookingCounts loadBookingCounts(Long bookingId, long now) {
+        BookingCounts counts = new BookingCounts(now);
+        jdbcTemplate.query("SELECT action, COUNT(*) FROM booking_records WHERE booking_id = ? GROUP BY action",
+                rs -> {
+                    TypeAction action = parseAction(rs.getString(1));
+                    if (action != null) {
+                        counts.counters[action.ordinal()].add(rs.getLong(2));
+                    }
+                }, bookingId);
+        for (BookingRecord archived : auditArchiveService.findByBookingId(bookingId)) {
+            counts.counters[archived.getAction().ordinal()].increment();
+        }
+        return counts;
+    }
+
+    private static TypeAction parseAction(String value) {
+        try {
+            return value != null ? TypeAction.valueOf(value) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[ACTIONS.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * Totals per action and per hour and action
+     */
+    private static final class Counts {
+        private final LongAdder[] totals = newCounters();
+        private final ConcurrentSkipListMap<LocalDateTime, LongAdder[]> hourly = new ConcurrentSkipListMap<>();
+
+        void add(LocalDateTime hour, TypeAction action, long count) {
+            hourly.computeIfAbsent(hour, h -> newCounters())[action.ordinal()].add(count);
+            totals[action.ordinal()].add(count);
+        }
+
+        void add(LocalDateTime hour, LongAdder[] deltas) {
+            for (TypeAction action : ACTIONS) {
+                long delta = deltas[action.ordinal()].sum();
+                if (delta != 0) {
+                    add(hour, action, delta);
+                }
+            }
+        }
+
+        void set(LocalDateTime hour, long[] values) {
+            LongAdder[] counters = hourly.computeIfAbsent(hour, h -> newCounters());
+            for (TypeAction action : ACTIONS) {
+                long previous = counters[action.ordinal()].sumThenReset();
+                counters[action.ordinal()].add(values[action.ordinal()]);
+                totals[action.ordinal()].add(values[action.ordinal()] - previous);
+            }
+        }
+    }
+
+    private static class BookingCounts {
+        private final long loadedAt;
+        private final LongAdder[] counters = newCounters();
+
+        BookingCounts(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+    }
+}
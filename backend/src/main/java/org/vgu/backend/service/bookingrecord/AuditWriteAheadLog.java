@@ -0,0 +1,215 @@
+package org.vgu.backend.service.bookingrecord;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Write-ahead spill file for the audit pipeline.
+ * Each published row is appended as one JSON line to the current segment
+ * before the consumer can see it. The consumer checkpoints the highest
+ * sequence it has persisted; segments entirely at or below the checkpoint are
+ * deleted. On startup, rows above the checkpoint are handed back for replay.
+ */
+public class AuditWriteAheadLog implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditWriteAheadLog.class);
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final boolean fsync;
+    private final ObjectMapper objectMapper;
+
+    /** Sealed segment path -> highest sequence it contains */
+    private final Map<Path, Long> sealedSegments = new LinkedHashMap<>();
+    private FileChannel currentChannel;
+    private Path currentSegment;
+    private long currentSegmentMaxSeq = -1;
+    private long lastCheckpoint = -1;
+
+    public AuditWriteAheadLog(Path directory, long maxSegmentBytes, boolean fsync, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.fsync = fsync;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Result of opening the log: rows that were never checkpointed, and the
+     * sequence the ring buffer should continue from
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Recovery {
+        private final List<AuditRow> pendingRows;
+        private final long nextSequence;
+    }
+
+    /**
+     * Read existing segments, collect un-checkpointed rows and open a fresh
+     * segment for new appends
+     */
+    public synchronized Recovery open() {
+        try {
+            Files.createDirectories(directory);
+            Path checkpointPath = directory.resolve(CHECKPOINT_FILE);
+            if (Files.exists(checkpointPath)) {
+                lastCheckpoint = Long.parseLong(Files.readString(checkpointPath).trim());
+            }
+
+            List<AuditRow> pending = new ArrayList<>();
+            long maxSeq = lastCheckpoint;
+            for (Path segment : listSegments()) {
+                long segmentMax = -1;
+                try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        try {
+                            AuditRow row = objectMapper.readValue(line, AuditRow.class);
+                            segmentMax = Math.max(segmentMax, row.getSeq());
+                            if (row.getSeq() > lastCheckpoint) {
+                                pending.add(row);
+                            }
+                        } catch (IOException e) {
+                            // A torn last line from a crash mid-write
+                            logger.warn("Skipping unreadable audit WAL entry in {}: {}", segment, e.getMessage());
+                        }
+                    }
+                }
+                if (segmentMax < 0) {
+                    Files.deleteIfExists(segment);
+                    continue;
+                }
+                sealedSegments.put(segment, segmentMax);
+                maxSeq = Math.max(maxSeq, segmentMax);
+            }
+            pending.sort(Comparator.comparingLong(AuditRow::getSeq));
+
+            long nextSequence = maxSeq + 1;
+            openSegment(nextSequence);
+            if (!pending.isEmpty()) {
+                logger.info("Audit WAL holds {} un-persisted records (seq {}..{})",
+                        pending.size(), pending.get(0).getSeq(), pending.get(pending.size() - 1).getSeq());
+            }
+            return new Recovery(pending, nextSequence);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open audit WAL in " + directory, e);
+        }
+    }
+
+    /**
+     * Append one row; rotates to a new segment when the current one is full
+     */
+    public synchronized void append(AuditRow row) {
+        try {
+            byte[] line = (objectMapper.writeValueAsString(row) + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(line);
+            while (buffer.hasRemaining()) {
+                currentChannel.write(buffer);
+            }
+            if (fsync) {
+                currentChannel.force(false);
+            }
+            currentSegmentMaxSeq = Math.max(currentSegmentMaxSeq, row.getSeq());
+            if (currentChannel.size() >= maxSegmentBytes) {
+                sealedSegments.put(currentSegment, currentSegmentMaxSeq);
+                currentChannel.close();
+                openSegment(row.getSeq() + 1);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to audit WAL", e);
+        }
+    }
+
+    /**
+     * Record that every row up to and including {@code seq} is in the database
+     * and drop segments that are no longer needed
+     */
+    public synchronized void checkpoint(long seq) {
+        if (seq <= lastCheckpoint) {
+            return;
+        }
+        try {
+            Path tmp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+            Files.writeString(tmp, Long.toString(seq), StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve(CHECKPOINT_FILE),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastCheckpoint = seq;
+
+            Iterator<Map.Entry<Path, Long>> it = sealedSegments.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Path, Long> entry = it.next();
+                if (entry.getValue() <= seq) {
+                    Files.deleteIfExists(entry.getKey());
+                    it.remove();
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to checkpoint audit WAL at seq {}: {}", seq, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (currentChannel == null) {
+            return;
+        }
+        try {
+            currentChannel.force(false);
+            currentChannel.close();
+            // An empty current segment carries nothing worth replaying
+            if (currentSegmentMaxSeq < 0 || currentSegmentMaxSeq <= lastCheckpoint) {
+                Files.deleteIfExists(currentSegment);
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to close audit WAL: {}", e.getMessage());
+        }
+    }
+
+    private void openSegment(long startSequence) throws IOException {
+        currentSegment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, startSequence, SEGMENT_SUFFIX));
+        currentChannel = FileChannel.open(currentSegment,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        currentSegmentMaxSeq = -1;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -1,15 +1,32 @@
 package org.vgu.backend.service.bookingrecord;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.vgu.backend.enums.TypeAction;
 import org.vgu.backend.model.Account;
@@ -29,8 +46,40 @@ public class BookingRecordService implements IBookingRecordService {
 
     private static final Logger logger = LoggerFactory.getLogger(BookingRecordService.class);
     
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    private static final String EXPORT_SQL = "SELECT r.id, b.booking_code, r.action, a.username, r.description, "
+            + "r.created_at, r.ip_address "
+            + "FROM booking_records r "
+            + "JOIN bookings b ON b.id = r.booking_id "
+            + "LEFT JOIN accounts a ON a.id = r.performed_by "
+            + "WHERE r.created_at BETWEEN ? AND ? "
+            + "ORDER BY r.created_at, r.id";
+
+    private static final TypeAction[] BOOKING_ACTIONS = {
+            TypeAction.BOOKING_CREATED,
+            TypeAction.BOOKING_UPDATED,
+            TypeAction.BOOKING_CANCELLED,
+            TypeAction.BOOKING_CONFIRMED,
+            TypeAction.BOOKING_COMPLETED
+    };
+
     private final BookingRecordRepository bookingRecordRepository;
     private final ObjectMapper objectMapper;
+    private final AsyncAuditWriter auditWriter;
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditSearchService auditSearchService;
+    private final AuditArchiveService auditArchiveService;
+    private final AuditStatisticsService auditStatisticsService;
+    private final AuditChangeCapture changeCapture;
+
+    /**
+     * Integer.MIN_VALUE makes MySQL Connector/J stream rows one at a time
+     */
+    @Value("${app.audit.export.fetch-size:-2147483648}")
+    private int exportFetchSize;
+
+    @Value("${app.audit.archive.delete-chunk-size:1000}")
+    private int deleteChunkSize;
 
     @Override
     public BookingRecord createRecord(Booking booking, TypeAction action, Account performedBy, String description) {
@@ -40,13 +89,10 @@ public class BookingRecordService implements IBookingRecordService {
                     .action(action)
                     .performedBy(performedBy)
                     .description(description)
+                    .createdAt(LocalDateTime.now())
                     .build();
 
-            BookingRecord savedRecord = bookingRecordRepository.save(record);
-            
-            logger.info("Created booking record: {}", savedRecord.getLogFormat());
-            
-            return savedRecord;
+            return persist(record);
         } catch (Exception e) {
             logger.error("Error creating booking record for booking {}: {}", 
                         booking != null ? booking.getBookingCode() : "null", e.getMessage(), e);
@@ -67,13 +113,10 @@ public class BookingRecordService implements IBookingRecordService {
                     .previousValues(previousValues)
                     .currentValues(currentValues)
                     .additionalData(additionalData)
+                    .createdAt(LocalDateTime.now())
                     .build();
 
-            BookingRecord savedRecord = bookingRecordRepository.save(record);
-            
-            logger.info("Created detailed booking record: {}", savedRecord.getLogFormat());
-            
-            return savedRecord;
+            return persist(record);
         } catch (Exception e) {
             logger.error("Error creating detailed booking record for booking {}: {}", 
                         booking != null ? booking.getBookingCode() : "null", e.getMessage(), e);
@@ -81,6 +124,25 @@ public class BookingRecordService implements IBookingRecordService {
         }
     }
 
+    /**
+     * Hand the record to the async audit writer, or insert it in the current
+     * transaction when the writer is off (app.audit.durability=SYNC) or the
+     * booking has not been saved yet. Async records are returned unsaved.
+     */
+    private BookingRecord persist(BookingRecord record) {
+        auditStatisticsService.recordCreated(record);
+        if (auditWriter.isAsync() && record.getBooking() != null && record.getBooking().getId() != null) {
+            auditWriter.submit(record);
+            return record;
+        }
+
+        BookingRecord savedRecord = bookingRecordRepository.save(record);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Created booking record: {}", savedRecord.getLogFormat());
+        }
+        return savedRecord;
+    }
+
     @Override
     public BookingRecord createSystemRecord(Booking booking, TypeAction action, String description) {
         return createRecord(booking, action, null, description);
@@ -90,7 +152,10 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public List<BookingRecord> getRecordsForBooking(Long bookingId) {
         try {
-            return bookingRecordRepository.findByBookingIdOrderByCreatedAtDesc(bookingId);
+            List<BookingRecord> records = new ArrayList<>(
+                    bookingRecordRepository.findByBookingIdOrderByCreatedAtDesc(bookingId));
+            records.addAll(auditArchiveService.findByBookingId(bookingId));
+            return records;
         } catch (Exception e) {
             logger.error("Error retrieving records for booking {}: {}", bookingId, e.getMessage(), e);
             throw new RuntimeException("Failed to retrieve booking records", e);
@@ -101,7 +166,15 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public Page<BookingRecord> getRecordsForBooking(Long bookingId, Pageable pageable) {
         try {
-            return bookingRecordRepository.findByBookingId(bookingId, pageable);
+            Page<BookingRecord> hot = bookingRecordRepository.findByBookingId(bookingId, pageable);
+            List<BookingRecord> archived = auditArchiveService.findByBookingId(bookingId);
+            if (archived.isEmpty()) {
+                return hot;
+            }
+            int skip = (int) Math.max(0, pageable.getOffset() - hot.getTotalElements());
+            List<BookingRecord> archivedPage = archived.subList(Math.min(skip, archived.size()),
+                    Math.min(skip + pageable.getPageSize() - hot.getNumberOfElements(), archived.size()));
+            return mergeWithArchive(hot, archivedPage, pageable, archived.size());
         } catch (Exception e) {
             logger.error("Error retrieving paginated records for booking {}: {}", bookingId, e.getMessage(), e);
             throw new RuntimeException("Failed to retrieve booking records", e);
@@ -145,7 +218,18 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public Page<BookingRecord> getRecordsByDateRange(LocalDateTime startDate, LocalDateTime endDate, Pageable pageable) {
         try {
-            return bookingRecordRepository.findByCreatedAtBetween(startDate, endDate, pageable);
+            Page<BookingRecord> hot = bookingRecordRepository.findByCreatedAtBetween(startDate, endDate, pageable);
+            long archivedTotal = auditArchiveService.countByCreatedAtBetween(startDate, endDate);
+            if (archivedTotal == 0) {
+                return hot;
+            }
+            List<BookingRecord> archivedPage = List.of();
+            int remaining = pageable.getPageSize() - hot.getNumberOfElements();
+            if (remaining > 0) {
+                long skip = Math.max(0, pageable.getOffset() - hot.getTotalElements());
+                archivedPage = auditArchiveService.findByCreatedAtBetween(startDate, endDate, skip, remaining);
+            }
+            return mergeWithArchive(hot, archivedPage, pageable, archivedTotal);
         } catch (Exception e) {
             logger.error("Error retrieving records for date range {} to {}: {}", startDate, endDate, e.getMessage(), e);
             throw new RuntimeException("Failed to retrieve booking records", e);
@@ -179,6 +263,11 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public Page<BookingRecord> searchRecordsByDescription(String keyword, Pageable pageable) {
         try {
+            Optional<Page<BookingRecord>> ranked = auditSearchService.search(keyword, pageable);
+            if (ranked.isPresent()) {
+                return ranked.get();
+            }
+            // Index still loading or disabled: fall back to the LIKE scan
             return bookingRecordRepository.findByDescriptionContaining(keyword, pageable);
         } catch (Exception e) {
             logger.error("Error searching records with keyword {}: {}", keyword, e.getMessage(), e);
@@ -190,16 +279,7 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public Map<TypeAction, Long> getAuditSummary(Long bookingId) {
         try {
-            List<Object[]> results = bookingRecordRepository.getAuditSummaryForBooking(bookingId);
-            Map<TypeAction, Long> summary = new HashMap<>();
-            
-            for (Object[] result : results) {
-                TypeAction action = (TypeAction) result[0];
-                Long count = (Long) result[1];
-                summary.put(action, count);
-            }
-            
-            return summary;
+            return auditStatisticsService.getBookingSummary(bookingId);
         } catch (Exception e) {
             logger.error("Error retrieving audit summary for booking {}: {}", bookingId, e.getMessage(), e);
             throw new RuntimeException("Failed to retrieve audit summary", e);
@@ -210,22 +290,19 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public Map<TypeAction, Long> getActionStatistics() {
         try {
+            Map<TypeAction, Long> totals = auditStatisticsService.getActionTotals();
+            if (totals == null) {
+                // Counters still seeding: one grouped query instead of one per action
+                totals = new HashMap<>();
+                for (Object[] row : bookingRecordRepository.countGroupedByAction()) {
+                    totals.put((TypeAction) row[0], (Long) row[1]);
+                }
+            }
+
             Map<TypeAction, Long> statistics = new HashMap<>();
-            
-            // Get counts for all booking-related actions
-            TypeAction[] bookingActions = {
-                TypeAction.BOOKING_CREATED,
-                TypeAction.BOOKING_UPDATED,
-                TypeAction.BOOKING_CANCELLED,
-                TypeAction.BOOKING_CONFIRMED,
-                TypeAction.BOOKING_COMPLETED
-            };
-            
-            for (TypeAction action : bookingActions) {
-                Long count = bookingRecordRepository.countByAction(action);
-                statistics.put(action, count);
+            for (TypeAction action : BOOKING_ACTIONS) {
+                statistics.put(action, totals.getOrDefault(action, 0L));
             }
-            
             return statistics;
         } catch (Exception e) {
             logger.error("Error retrieving action statistics: {}", e.getMessage(), e);
@@ -259,7 +336,8 @@ public class BookingRecordService implements IBookingRecordService {
     @Transactional(readOnly = true)
     public Long countRecordsForBooking(Long bookingId) {
         try {
-            return bookingRecordRepository.countByBookingId(bookingId);
+            return auditStatisticsService.getBookingSummary(bookingId).values().stream()
+                    .mapToLong(Long::longValue).sum();
         } catch (Exception e) {
             logger.error("Error counting records for booking {}: {}", bookingId, e.getMessage(), e);
             throw new RuntimeException("Failed to count booking records", e);
@@ -267,16 +345,33 @@ public class BookingRecordService implements IBookingRecordService {
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Long deleteOldRecords(LocalDateTime beforeDate) {
         try {
-            List<BookingRecord> oldRecords = bookingRecordRepository.findByCreatedAtBetween(
-                LocalDateTime.of(2000, 1, 1, 0, 0), beforeDate, Pageable.unpaged()).getContent();
-            
-            Long count = (long) oldRecords.size();
-            bookingRecordRepository.deleteAll(oldRecords);
-            
+            if (auditArchiveService.isEnabled()) {
+                long archived = auditArchiveService.archiveBefore(beforeDate);
+                if (archived < 0) {
+                    throw new IllegalStateException("An audit archive run is already in progress");
+                }
+                return archived;
+            }
+
+            // No archive tier: purge in bounded chunks, each committed on its own
+            long count = 0;
+            int deleted;
+            do {
+                deleted = jdbcTemplate.update("DELETE FROM booking_records WHERE created_at < ? LIMIT ?",
+                        Timestamp.valueOf(beforeDate), deleteChunkSize);
+                count += deleted;
+            } while (deleted == deleteChunkSize);
+
             logger.info("Deleted {} old booking records created before {}", count, beforeDate);
-            
+            if (count > 0) {
+                auditStatisticsService.reseed();
+                // The index cannot tell which records were old enough; rebuild it
+                auditSearchService.rebuildAsync();
+            }
+
             return count;
         } catch (Exception e) {
             logger.error("Error deleting old records before {}: {}", beforeDate, e.getMessage(), e);
@@ -284,33 +379,91 @@ public class BookingRecordService implements IBookingRecordService {
         }
     }
 
+    /**
+     * Archived rows are always older than live ones, so in newest-first order
+     * they follow the hot rows
+     */
+    private static Page<BookingRecord> mergeWithArchive(Page<BookingRecord> hot, List<BookingRecord> archivedPage,
+            Pageable pageable, long archivedTotal) {
+        List<BookingRecord> content = new ArrayList<>(hot.getContent());
+        content.addAll(archivedPage);
+        return new PageImpl<>(content, pageable, hot.getTotalElements() + archivedTotal);
+    }
+
     @Override
     @Transactional(readOnly = true)
-    public String exportRecordsToCsv(LocalDateTime startDate, LocalDateTime endDate) {
+    public long exportRecordsToCsv(LocalDateTime startDate, LocalDateTime endDate, OutputStream out, boolean gzip)
+            throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, EXPORT_BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(gzip ? gzipStream : out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+        writer.write("ID,Booking Code,Action,Performed By,Description,Created At,IP Address\n");
+
+        // One row buffer reused for the whole export; the writer blocks when the
+        // client reads slowly, which throttles the cursor
+        StringBuilder line = new StringBuilder(512);
+        long[] rows = { 0 };
         try {
-            List<BookingRecord> records = bookingRecordRepository.findByCreatedAtBetween(
-                startDate, endDate, Pageable.unpaged()).getContent();
-            
-            StringBuilder csv = new StringBuilder();
-            csv.append("ID,Booking Code,Action,Performed By,Description,Created At,IP Address\n");
-            
-            for (BookingRecord record : records) {
-                csv.append(String.format("%d,%s,%s,%s,\"%s\",%s,%s\n",
-                    record.getId(),
-                    record.getBookingCode() != null ? record.getBookingCode() : "",
-                    record.getAction(),
-                    record.getPerformerUsername(),
-                    record.getDescription() != null ? record.getDescription().replace("\"", "\"\"") : "",
-                    record.getCreatedAt(),
-                    record.getIpAddress() != null ? record.getIpAddress() : ""
-                ));
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(EXPORT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(exportFetchSize);
+                ps.setTimestamp(1, Timestamp.valueOf(startDate));
+                ps.setTimestamp(2, Timestamp.valueOf(endDate));
+                return ps;
+            }, (ResultSet rs) -> {
+                line.setLength(0);
+                line.append(rs.getLong(1)).append(',');
+                appendCsvField(line, rs.getString(2)).append(',');
+                line.append(rs.getString(3)).append(',');
+                String performer = rs.getString(4);
+                appendCsvField(line, performer != null ? performer : "SYSTEM").append(',');
+                appendCsvField(line, rs.getString(5)).append(',');
+                Timestamp createdAt = rs.getTimestamp(6);
+                line.append(createdAt != null ? createdAt.toLocalDateTime() : "").append(',');
+                appendCsvField(line, rs.getString(7)).append('\n');
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+        } catch (UncheckedIOException e) {
+            // Client went away mid-download
+            logger.warn("CSV export aborted after {} rows: {}", rows[0], e.getCause().getMessage());
+            throw e.getCause();
+        }
+
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        logger.info("Exported {} booking records between {} and {}", rows[0], startDate, endDate);
+        return rows[0];
+    }
+
+    private static StringBuilder appendCsvField(StringBuilder line, String value) {
+        if (value == null || value.isEmpty()) {
+            return line;
+        }
+        boolean needsQuoting = false;
+        for (int i = 0; i < value.length() && !needsQuoting; i++) {
+            char c = value.charAt(i);
+            needsQuoting = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuoting) {
+            return line.append(value);
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
             }
-            
-            return csv.toString();
-        } catch (Exception e) {
-            logger.error("Error exporting records to CSV: {}", e.getMessage(), e);
-            throw new RuntimeException("Failed to export records", e);
+            line.append(c);
         }
+        return line.append('"');
     }
 
     /**
@@ -335,4 +488,17 @@ public class BookingRecordService implements IBookingRecordService {
         
         return createDetailedRecord(booking, action, performedBy, description, prevJson, currJson, null);
     }
+
+    @Override
+    public BookingRecord createChangeRecord(Booking booking, TypeAction action, Account performedBy,
+                                            String description, AuditChangeCapture.Snapshot before) {
+        String changes = changeCapture.encodeChanges(before, booking);
+        return createDetailedRecord(booking, action, performedBy, description, null, changes, null);
+    }
+
+    @Override
+    public void createRecords(List<BookingRecord> records) {
+        records.forEach(auditStatisticsService::recordCreated);
+        auditWriter.insertNow(records);
+    }
 }
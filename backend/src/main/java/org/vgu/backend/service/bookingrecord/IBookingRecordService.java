@@ -1,5 +1,7 @@
 package org.vgu.backend.service.bookingrecord;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
@@ -153,19 +155,24 @@ public interface IBookingRecordService {
     Long countRecordsForBooking(Long bookingId);
 
     /**
-     * Delete old records (for cleanup)
+     * Remove old records from booking_records (for cleanup). When the audit
+     * archive is enabled they are moved to archive segments instead of being
+     * dropped, and stay readable through the booking and date-range queries.
      * @param beforeDate Delete records created before this date
      * @return Number of records deleted
      */
     Long deleteOldRecords(LocalDateTime beforeDate);
 
     /**
-     * Export records to CSV format
+     * Stream records in the range as CSV straight to the given output
      * @param startDate Start date
      * @param endDate End date
-     * @return CSV content as string
+     * @param out Destination stream, not closed by this method
+     * @param gzip Whether to gzip-compress the output
+     * @return Number of rows written
      */
-    String exportRecordsToCsv(LocalDateTime startDate, LocalDateTime endDate);
+    long exportRecordsToCsv(LocalDateTime startDate, LocalDateTime endDate, OutputStream out, boolean gzip)
+            throws IOException;
 
     /**
      * Create a booking record with automatic JSON serialization of previous/current values
@@ -179,4 +186,24 @@ public interface IBookingRecordService {
      */
     BookingRecord createRecordWithValues(Booking booking, TypeAction action, Account performedBy, 
                                        String description, Object previousValues, Object currentValues);
+
+    /**
+     * Create a booking record holding only the booking fields that changed,
+     * in the compact encoding of {@link AuditChangeCodec}
+     * @param booking The booking in its new state
+     * @param action The action that was performed
+     * @param performedBy The account that performed the action
+     * @param description Description of what happened
+     * @param before Snapshot taken before the change, or null for a new booking
+     * @return The created booking record
+     */
+    BookingRecord createChangeRecord(Booking booking, TypeAction action, Account performedBy,
+                                     String description, AuditChangeCapture.Snapshot before);
+
+    /**
+     * Write several already-built records as one batch in the current
+     * transaction, for bulk system actions
+     * @param records Records whose booking has been saved
+     */
+    void createRecords(List<BookingRecord> records);
 }
@@ -145,10 +145,13 @@ public class CustomerService implements ICustomerService {
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new DataNotFoundException("Customer not found with id: " + customerId));
 
-        // Update customer fields (only companyName is stored on Customer)
+        // Update customer fields (only companyName and type are stored on Customer)
         if (request.getCompanyName() != null) {
             customer.setCompanyName(request.getCompanyName());
         }
+        if (request.getCustomerType() != null) {
+            customer.setCustomerType(request.getCustomerType());
+        }
 
         // Update account fields if provided
         Account account = customer.getAccount();
@@ -0,0 +1,60 @@
+package org.vgu.backend.service.lease;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * Leases held by this node for the job currently running on this thread.
+ * Partition {@code p} of a job covers the keys where {@code key % partitionCount == p}.
+ */
+@Getter
+public class JobLease {
+
+    private static final ThreadLocal<JobLease> CURRENT = new ThreadLocal<>();
+
+    private final String name;
+    private final int partitionCount;
+    // Partition -> fencing token it was acquired with
+    private final Map<Integer, Long> tokens;
+
+    JobLease(String name, int partitionCount, Map<Integer, Long> tokens) {
+        this.name = name;
+        this.partitionCount = partitionCount;
+        this.tokens = Collections.unmodifiableMap(tokens);
+    }
+
+    /** The lease of the {@link LeasedJob} running on this thread, or null */
+    public static JobLease current() {
+        return CURRENT.get();
+    }
+
+    static void bind(JobLease lease) {
+        CURRENT.set(lease);
+    }
+
+    static void unbind() {
+        CURRENT.remove();
+    }
+
+    public boolean isPartitioned() {
+        return partitionCount > 1;
+    }
+
+    public List<Integer> getPartitions() {
+        List<Integer> partitions = new ArrayList<>(tokens.keySet());
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    public boolean owns(long key) {
+        return tokens.containsKey((int) Math.floorMod(key, (long) partitionCount));
+    }
+
+    String leaseName(int partition) {
+        return isPartitioned() ? name + "#" + partition : name;
+    }
+}
@@ -0,0 +1,342 @@
+package org.vgu.backend.service.lease;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Database-backed leases so that scheduled jobs run on one node of a
+ * cluster. Each lease is a row in job_leases with an owner, an expiry kept
+ * alive by heartbeats, and a fencing token that grows by one on every change
+ * of owner. All times come from the database clock, so node clock skew does
+ * not matter.
+ * Partitioned jobs also keep a membership lease per node
+ * ({@code name@node}) and each node takes its fair share of partitions.
+ * Heartbeats run on their own thread, so a long job on the scheduler
+ * cannot hold up renewal and let its lease expire while it still runs.
+ */
+@Service
+public class JobLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private static final String SELECT_SQL = "SELECT owner, fencing_token, expires_at, NOW(3) FROM job_leases WHERE name = ?";
+    private static final String INSERT_SQL = "INSERT IGNORE INTO job_leases "
+            + "(name, owner, fencing_token, acquired_at, heartbeat_at, expires_at) "
+            + "VALUES (?, ?, 1, NOW(3), NOW(3), DATE_ADD(NOW(3), INTERVAL ? MICROSECOND))";
+    private static final String TAKE_OVER_SQL = "UPDATE job_leases SET owner = ?, fencing_token = fencing_token + 1, "
+            + "acquired_at = NOW(3), heartbeat_at = NOW(3), expires_at = DATE_ADD(NOW(3), INTERVAL ? MICROSECOND) "
+            + "WHERE name = ? AND fencing_token = ?";
+    private static final String RENEW_SQL = "UPDATE job_leases SET heartbeat_at = NOW(3), "
+            + "expires_at = DATE_ADD(NOW(3), INTERVAL ? MICROSECOND) "
+            + "WHERE name = ? AND owner = ? AND fencing_token = ? AND expires_at > NOW(3)";
+    private static final String RELEASE_SQL = "UPDATE job_leases SET expires_at = NOW(3) "
+            + "WHERE name = ? AND owner = ? AND fencing_token = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.lease.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.lease.ttl-ms:30000}")
+    private long ttlMs;
+
+    @Value("${app.lease.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    @Value("${app.lease.node-id:}")
+    private String configuredNodeId;
+
+    private final ScheduledExecutorService heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-lease-heartbeat");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private String nodeId;
+    // Lease name -> fencing token this node holds it with
+    private final Map<String, Long> held = new ConcurrentHashMap<>();
+    private final Set<String> singleJobs = ConcurrentHashMap.newKeySet();
+    private final Map<String, Integer> partitionedJobs = new ConcurrentHashMap<>();
+    private final Counter lostCounter;
+
+    public JobLeaseService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+        this.lostCounter = meterRegistry.counter("app.lease.lost");
+    }
+
+    @PostConstruct
+    void init() {
+        nodeId = configuredNodeId != null && !configuredNodeId.isBlank() ? configuredNodeId : defaultNodeId();
+        Gauge.builder("app.lease.held", held, Map::size)
+                .description("Job leases held by this node")
+                .register(meterRegistry);
+        logger.info("Job leases {} for node {}", enabled ? "enabled" : "disabled", nodeId);
+        if (enabled) {
+            heartbeats.scheduleWithFixedDelay(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Acquire (or renew) the lease for a job. For partitioned jobs this also
+     * rebalances partitions against the other live nodes.
+     *
+     * @return the leases held for the job, or null if this node holds none
+     */
+    public JobLease acquire(String name, int partitions) {
+        if (partitions <= 1) {
+            singleJobs.add(name);
+            Long token = enabled ? tryAcquire(name) : Long.valueOf(0);
+            return token != null ? new JobLease(name, 1, Map.of(0, token)) : null;
+        }
+        partitionedJobs.put(name, partitions);
+        Map<Integer, Long> tokens = new TreeMap<>();
+        if (enabled) {
+            tokens.putAll(balancePartitions(name, partitions));
+        } else {
+            for (int p = 0; p < partitions; p++) {
+                tokens.put(p, 0L);
+            }
+        }
+        return tokens.isEmpty() ? null : new JobLease(name, partitions, tokens);
+    }
+
+    /**
+     * Check, inside the caller's transaction, that every lease the job ran
+     * with is still held under the same fencing token. The lease rows stay
+     * share-locked until the transaction ends, so no other node can take
+     * them over before these writes commit.
+     */
+    public void verify(JobLease lease) {
+        if (!enabled || lease == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Long> entry : lease.getTokens().entrySet()) {
+            String name = lease.leaseName(entry.getKey());
+            Integer current = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM job_leases WHERE name = ? AND owner = ? AND fencing_token = ? FOR SHARE",
+                    Integer.class, name, nodeId, entry.getValue());
+            if (current == null || current == 0) {
+                throw new IllegalStateException("Lease " + name + " is no longer held by this node");
+            }
+        }
+    }
+
+    /**
+     * Renew held leases and try to take over the ones this node wants, so a
+     * job moves to a surviving node within one TTL plus one heartbeat
+     */
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            renewAll();
+        } catch (RuntimeException e) {
+            logger.warn("Lease heartbeat failed: {}", e.getMessage());
+        }
+    }
+
+    private void renewAll() {
+        singleJobs.forEach(this::tryAcquire);
+        partitionedJobs.forEach((name, partitions) -> {
+            balancePartitions(name, partitions);
+            try {
+                jdbcTemplate.update("DELETE FROM job_leases WHERE name LIKE ? AND expires_at < DATE_SUB(NOW(3), INTERVAL 1 DAY)",
+                        name + "@%");
+            } catch (DataAccessException e) {
+                logger.debug("Failed to purge stale members of {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Hand every lease back on shutdown so another node can pick it up
+     * without waiting for it to expire
+     */
+    @PreDestroy
+    void releaseAll() {
+        heartbeats.shutdownNow();
+        if (!enabled) {
+            return;
+        }
+        new ArrayList<>(held.keySet()).forEach(this::release);
+    }
+
+    private Map<Integer, Long> balancePartitions(String name, int partitions) {
+        TreeMap<Integer, Long> owned = new TreeMap<>();
+        if (tryAcquire(name + "@" + nodeId) == null) {
+            return owned;
+        }
+        int members;
+        try {
+            Integer live = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM job_leases WHERE name LIKE ? AND expires_at > NOW(3)",
+                    Integer.class, name + "@%");
+            members = Math.max(1, live != null ? live : 1);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to count members of {}: {}", name, e.getMessage());
+            return owned;
+        }
+        int share = (partitions + members - 1) / members;
+
+        for (int p = 0; p < partitions; p++) {
+            String lease = name + "#" + p;
+            if (held.containsKey(lease)) {
+                Long token = tryAcquire(lease);
+                if (token != null) {
+                    owned.put(p, token);
+                }
+            }
+        }
+        // Give back partitions above our share so newly joined nodes can take them
+        while (owned.size() > share) {
+            int last = owned.lastKey();
+            release(name + "#" + last);
+            owned.remove(last);
+        }
+        for (int p = 0; p < partitions && owned.size() < share; p++) {
+            if (!owned.containsKey(p)) {
+                Long token = tryAcquire(name + "#" + p);
+                if (token != null) {
+                    owned.put(p, token);
+                }
+            }
+        }
+        return owned;
+    }
+
+    private Long tryAcquire(String name) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "busy";
+        try {
+            Long token = held.get(name);
+            if (token != null) {
+                if (jdbcTemplate.update(RENEW_SQL, ttlMs * 1000, name, nodeId, token) == 1) {
+                    outcome = "renewed";
+                    return token;
+                }
+                held.remove(name, token);
+                lostCounter.increment();
+                logger.warn("Lost lease {} (token {})", name, token);
+            }
+            token = takeOver(name);
+            if (token != null) {
+                outcome = "acquired";
+            }
+            return token;
+        } catch (DataAccessException e) {
+            outcome = "error";
+            logger.warn("Failed to acquire lease {}: {}", name, e.getMessage());
+            return null;
+        } finally {
+            sample.stop(Timer.builder("app.lease.acquire")
+                    .description("Time to acquire or renew a job lease")
+                    .tag("lease", jobName(name))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private Long takeOver(String name) {
+        List<Object[]> rows = jdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Object[] {
+                rs.getString(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(),
+                rs.getTimestamp(4).toLocalDateTime() }, name);
+        if (rows.isEmpty()) {
+            if (jdbcTemplate.update(INSERT_SQL, name, nodeId, ttlMs * 1000) != 1) {
+                return null;
+            }
+            held.put(name, 1L);
+            logger.info("Acquired new lease {} (token 1)", name);
+            return 1L;
+        }
+
+        String owner = (String) rows.get(0)[0];
+        long token = (Long) rows.get(0)[1];
+        LocalDateTime expiresAt = (LocalDateTime) rows.get(0)[2];
+        LocalDateTime now = (LocalDateTime) rows.get(0)[3];
+        if (expiresAt.isAfter(now) && !nodeId.equals(owner)) {
+            return null;
+        }
+        // Compare-and-set on the token: only one node can move it forward
+        if (jdbcTemplate.update(TAKE_OVER_SQL, nodeId, ttlMs * 1000, name, token) != 1) {
+            return null;
+        }
+        long newToken = token + 1;
+        held.put(name, newToken);
+        if (owner != null && !nodeId.equals(owner)) {
+            Duration handoff = Duration.between(expiresAt, now);
+            Timer.builder("app.lease.handoff")
+                    .description("Time a lease sat expired or released before another node took it over")
+                    .tag("lease", jobName(name))
+                    .register(meterRegistry)
+                    .record(handoff.isNegative() ? Duration.ZERO : handoff);
+            logger.info("Took over lease {} from {} (token {}, {} ms after expiry)", name, owner, newToken,
+                    handoff.toMillis());
+        } else {
+            logger.info("Acquired lease {} (token {})", name, newToken);
+        }
+        return newToken;
+    }
+
+    private void release(String name) {
+        Long token = held.remove(name);
+        if (token == null) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(RELEASE_SQL, name, nodeId, token);
+            logger.info("Released lease {} (token {})", name, token);
+        } catch (DataAccessException e) {
+            logger.warn("Failed to release lease {}: {}", name, e.getMessage());
+        }
+    }
+
+    private static String jobName(String lease) {
+        int end = lease.indexOf('#');
+        if (end < 0) {
+            end = lease.indexOf('@');
+        }
+        return end < 0 ? lease : lease.substring(0, end);
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        return host + ":" + ProcessHandle.current().pid();
+    }
+}
@@ -0,0 +1,26 @@
+package org.vgu.backend.service.lease;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a scheduled method that must only run on the node holding the named
+ * lease. Invocations on other nodes are skipped.
+ * With {@link #partitions()} above 1 the job is split into that many leases
+ * ({@code name#0 .. name#n-1}) spread across the live nodes, and the method
+ * runs on every node that holds at least one; {@link JobLease#current()}
+ * tells it which partitions are its own.
+ */
+@Documented
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface LeasedJob {
+
+    /** Lease name, shared by every node running the job */
+    String value();
+
+    int partitions() default 1;
+}
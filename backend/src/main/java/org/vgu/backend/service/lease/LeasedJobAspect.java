@@ -0,0 +1,45 @@
+package org.vgu.backend.service.lease;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs {@link LeasedJob} methods only while this node holds their lease
+ */
+@Aspect
+@Component
+public class LeasedJobAspect {
+
+    private static final Logger logger = LoggerFactory.getLogger(LeasedJobAspect.class);
+
+    private final JobLeaseService leaseService;
+
+    public LeasedJobAspect(JobLeaseService leaseService) {
+        this.leaseService = leaseService;
+    }
+
+    @Around("@annotation(leasedJob)")
+    public Object runLeased(ProceedingJoinPoint joinPoint, LeasedJob leasedJob) throws Throwable {
+        JobLease lease = leaseService.acquire(leasedJob.value(), Math.max(1, leasedJob.partitions()));
+        if (lease == null) {
+            logger.debug("Skipping {}: lease {} is held by another node",
+                    joinPoint.getSignature().toShortString(), leasedJob.value());
+            return null;
+        }
+        JobLease outer = JobLease.current();
+        JobLease.bind(lease);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            if (outer != null) {
+                JobLease.bind(outer);
+            } else {
+                JobLease.unbind();
+            }
+        }
+    }
+}
@@ -1,17 +1,24 @@
 package org.vgu.backend.service.notification;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.util.List;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.vgu.backend.model.Notification;
 import org.vgu.backend.repository.NotificationRepository;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -32,6 +39,15 @@ public class NotificationService {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private JobLeaseService leaseService;
+
+    @Value("${app.notification.retention-days:90}")
+    private int retentionDays;
+
     /**
      * Create a new notification for a user
      */
@@ -60,6 +76,29 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Insert several notifications as one JDBC batch in the current
+     * transaction
+     */
+    public void createNotifications(List<Notification> notifications) {
+        if (notifications.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate("INSERT INTO notifications (recipient_id, recipient_type, title, message, priority, "
+                + "channel, status, is_read, created_at, metadata) VALUES (?, ?, ?, ?, ?, 'IN_APP', 'UNREAD', FALSE, ?, ?)",
+                notifications, notifications.size(), (ps, notification) -> {
+                    ps.setString(1, notification.getRecipientId());
+                    ps.setString(2, notification.getRecipientType());
+                    ps.setString(3, notification.getTitle());
+                    ps.setString(4, notification.getMessage());
+                    ps.setString(5, notification.getPriority());
+                    ps.setTimestamp(6, now);
+                    ps.setString(7, notification.getMetadata());
+                });
+        log.info("Created {} notifications in one batch", notifications.size());
+    }
+
     /**
      * Get notifications for a specific user with pagination (excluding welcome
      * messages)
@@ -189,6 +228,22 @@ public class NotificationService {
         }
     }
 
+    /**
+     * Nightly removal of read notifications past the retention period
+     */
+    @Scheduled(cron = "${app.notification.cleanup-cron:0 0 3 * * *}")
+    @LeasedJob("notification-cleanup")
+    public void cleanupReadNotifications() {
+        try {
+            leaseService.verify(JobLease.current());
+            int deleted = notificationRepository
+                    .deleteOldReadNotifications(LocalDateTime.now().minusDays(retentionDays));
+            log.info("Removed {} read notifications older than {} days", deleted, retentionDays);
+        } catch (Exception e) {
+            log.error("Failed to clean up read notifications: {}", e.getMessage());
+        }
+    }
+
     // Booking-specific notification methods
 
     /**
@@ -240,29 +295,46 @@ public class NotificationService {
     public void notifyCustomerOfStatusChange(String customerId, String bookingCode,
             String status, String message) {
         try {
-            String metadata = String.format("{\"type\":\"BOOKING_%s\",\"bookingCode\":\"%s\"}", status, bookingCode);
-
-            String title = switch (status) {
-                case "APPROVED" -> "Booking Approved";
-                case "REJECTED" -> "Booking Rejected";
-                case "COMPLETED" -> "Journey Completed";
-                default -> "Booking Status Updated";
-            };
-
-            String priority = status.equals("REJECTED") ? "HIGH" : "NORMAL";
-
+            Notification notification = buildStatusChangeNotification(customerId, bookingCode, status, message);
             createNotification(
-                    customerId,
-                    "CUSTOMER",
-                    title,
-                    message,
-                    priority,
-                    metadata);
+                    notification.getRecipientId(),
+                    notification.getRecipientType(),
+                    notification.getTitle(),
+                    notification.getMessage(),
+                    notification.getPriority(),
+                    notification.getMetadata());
         } catch (Exception e) {
             log.error("Failed to notify customer {} of status change: {}", customerId, e.getMessage());
         }
     }
 
+    /**
+     * Status change notification for a customer, unsaved, for
+     * {@link #createNotifications}
+     */
+    public Notification buildStatusChangeNotification(String customerId, String bookingCode,
+            String status, String message) {
+        String metadata = String.format("{\"type\":\"BOOKING_%s\",\"bookingCode\":\"%s\"}", status, bookingCode);
+
+        String title = switch (status) {
+            case "APPROVED" -> "Booking Approved";
+            case "REJECTED" -> "Booking Rejected";
+            case "COMPLETED" -> "Journey Completed";
+            default -> "Booking Status Updated";
+        };
+
+        String priority = status.equals("REJECTED") ? "HIGH" : "NORMAL";
+
+        return Notification.builder()
+                .recipientId(customerId)
+                .recipientType("CUSTOMER")
+                .title(title)
+                .message(message)
+                .priority(priority)
+                .metadata(metadata)
+                .build();
+    }
+
     /**
      * Notify customer of payment confirmation
      */
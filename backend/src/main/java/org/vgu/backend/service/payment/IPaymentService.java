@@ -1,22 +1,26 @@
 package org.vgu.backend.service.payment;
 
 import org.vgu.backend.dto.request.PaymentRequest;
+import org.vgu.backend.dto.response.PaymentHistoryItem;
 import org.vgu.backend.dto.response.PaymentResponse;
+import org.vgu.backend.dto.response.PaymentStatementResponse;
 import org.vgu.backend.enums.PaymentMethod;
 import org.vgu.backend.model.Payment;
 import org.vgu.backend.model.Account;
 
+import java.time.LocalDate;
 import java.util.List;
 
 public interface IPaymentService {
 
     /**
-     * Process a payment for a booking
+     * Submit a payment for a booking to the payment gateway. The payment is
+     * returned PROCESSING and completed when the gateway answers.
      */
     PaymentResponse processPayment(PaymentRequest request, Account processedBy);
 
     /**
-     * Simulate payment processing (for demo purposes)
+     * Pay the booking total through the gateway (for demo purposes)
      */
     PaymentResponse simulatePayment(Long bookingId, PaymentMethod method, Account processedBy);
 
@@ -36,9 +40,16 @@ public interface IPaymentService {
     PaymentResponse refundPayment(Long paymentId, String reason, Account processedBy);
 
     /**
-     * Get payment history for a customer
+     * One page of a customer's payment history, newest first
+     *
+     * @param beforeId id of the last payment of the previous page, or null
      */
-    List<PaymentResponse> getPaymentHistory(String customerUsername);
+    List<PaymentHistoryItem> getPaymentHistory(Long customerId, Long beforeId, int limit);
+
+    /**
+     * Totals, refunds and balance of a customer's payments over a period
+     */
+    PaymentStatementResponse getStatement(Long customerId, LocalDate from, LocalDate to);
 
     /**
      * Validate payment status
@@ -0,0 +1,302 @@
+package org.vgu.backend.service.payment;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.PaymentMethod;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.Payment;
+import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.repository.PaymentRepository;
+import org.vgu.backend.service.booking.BookingStateMachine;
+import org.vgu.backend.service.bookingrecord.AuditChangeCapture;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
+import org.vgu.backend.service.payment.gateway.GatewayCharge;
+import org.vgu.backend.service.payment.gateway.GatewayResult;
+import org.vgu.backend.service.payment.gateway.PaymentGateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Hands PROCESSING payments to the {@link PaymentGateway} once they are
+ * committed and applies the answers. The gateway's callback completes the
+ * payment on the task executor; charges whose callback never came are
+ * looked up by a polling sweep, submitted again if the gateway does not
+ * know them, and failed once they are older than
+ * {@code app.payment-gateway.expire-after-ms}. A payment leaves PROCESSING
+ * through a conditional update, so the callback and the sweep cannot both
+ * apply it. An approved payment that covers the booking total moves the
+ * booking to PAID.
+ */
+@Service
+public class PaymentGatewayService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PaymentGatewayService.class);
+
+    private final PaymentGateway gateway;
+    private final PaymentRepository paymentRepository;
+    private final BookingRepository bookingRepository;
+    private final BookingStateMachine stateMachine;
+    private final AuditChangeCapture changeCapture;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final JobLeaseService leaseService;
+
+    // Wait for the callback this long before leaving the charge to the sweep
+    @Value("${app.payment-gateway.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Value("${app.payment-gateway.poll-after-ms:60000}")
+    private long pollAfterMs;
+
+    @Value("${app.payment-gateway.expire-after-ms:900000}")
+    private long expireAfterMs;
+
+    @Value("${app.payment-gateway.poll-batch-size:100}")
+    private int pollBatchSize;
+
+    @Getter
+    @AllArgsConstructor
+    private static class Outstanding {
+        private final long id;
+        private final GatewayCharge charge;
+        private final LocalDateTime createdAt;
+    }
+
+    public PaymentGatewayService(PaymentGateway gateway, PaymentRepository paymentRepository,
+            BookingRepository bookingRepository, BookingStateMachine stateMachine,
+            AuditChangeCapture changeCapture, JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor, MeterRegistry meterRegistry,
+            JobLeaseService leaseService) {
+        this.gateway = gateway;
+        this.paymentRepository = paymentRepository;
+        this.bookingRepository = bookingRepository;
+        this.stateMachine = stateMachine;
+        this.changeCapture = changeCapture;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.taskExecutor = taskExecutor;
+        this.meterRegistry = meterRegistry;
+        this.leaseService = leaseService;
+    }
+
+    /**
+     * Charge a PROCESSING payment. Inside a transaction the charge is sent
+     * after commit, so the answer always finds the payment row.
+     */
+    public void submit(Payment payment) {
+        GatewayCharge charge = new GatewayCharge(payment.getPaymentNumber(), payment.getAmount(),
+                payment.getPaymentMethod(), payment.getBooking().getBookingCode());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(charge);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                send(charge);
+            }
+        });
+    }
+
+    private void send(GatewayCharge charge) {
+        long started = System.nanoTime();
+        CompletableFuture<GatewayResult> answer;
+        try {
+            answer = gateway.charge(charge);
+        } catch (RuntimeException e) {
+            answer = CompletableFuture.failedFuture(e);
+        }
+        answer.orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .whenCompleteAsync((result, error) -> onAnswer(charge.getReference(), result, error, started),
+                        taskExecutor);
+    }
+
+    private void onAnswer(String reference, GatewayResult result, Throwable error, long started) {
+        String outcome;
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            outcome = cause instanceof TimeoutException ? "timeout" : "error";
+            logger.warn("No answer from payment gateway for {} ({}), left to status polling", reference,
+                    cause instanceof TimeoutException ? "timed out" : cause.getMessage());
+        } else {
+            outcome = result.getOutcome().name().toLowerCase();
+            if (result.getOutcome().isFinal()) {
+                try {
+                    apply(result);
+                } catch (Exception e) {
+                    outcome = "error";
+                    logger.error("Could not apply gateway answer for {}: {}", reference, e.getMessage(), e);
+                }
+            }
+        }
+        Timer.builder("app.payment.gateway")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Complete or fail a PROCESSING payment with a final gateway answer
+     *
+     * @return false if the payment had already left PROCESSING
+     */
+    public boolean apply(GatewayResult result) {
+        return apply(result, null);
+    }
+
+    // With a lease, the update only commits while this node still holds it
+    private boolean apply(GatewayResult result, JobLease lease) {
+        boolean approved = result.getOutcome() == GatewayResult.Outcome.APPROVED;
+        Boolean applied = transactionTemplate.execute(tx -> {
+            leaseService.verify(lease);
+            LocalDateTime now = LocalDateTime.now();
+            int updated = jdbcTemplate.update("UPDATE payments SET status = ?, transaction_id = ?, "
+                    + "gateway_response = ?, failure_reason = ?, payment_date = ?, updated_at = ? "
+                    + "WHERE payment_number = ? AND status = 'PROCESSING'",
+                    approved ? "COMPLETED" : "FAILED", result.getTransactionId(), result.getMessage(),
+                    approved ? null : result.getMessage(), approved ? Timestamp.valueOf(now) : null,
+                    Timestamp.valueOf(now), result.getReference());
+            if (updated == 0) {
+                return false;
+            }
+            if (approved) {
+                markBookingPaid(result.getReference());
+            }
+            return true;
+        });
+        if (Boolean.TRUE.equals(applied)) {
+            logger.info("Payment {} {} by gateway", result.getReference(), approved ? "completed" : "failed");
+        }
+        return Boolean.TRUE.equals(applied);
+    }
+
+    private void markBookingPaid(String paymentNumber) {
+        Payment payment = paymentRepository.findByPaymentNumber(paymentNumber).orElse(null);
+        if (payment == null) {
+            return;
+        }
+        Booking booking = payment.getBooking();
+        BigDecimal paid = paymentRepository.findByBookingId(booking.getId()).stream()
+                .filter(Payment::isSuccessful)
+                .map(Payment::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        if (booking.getTotalAmount() != null && paid.compareTo(booking.getTotalAmount()) < 0) {
+            logger.info("Booking {} partly paid: {} of {}", booking.getBookingCode(), paid,
+                    booking.getTotalAmount());
+            return;
+        }
+        if (!stateMachine.canTransition(booking, BookingStatus.PAID)) {
+            logger.info("Payment {} completed, booking {} stays {}", paymentNumber, booking.getBookingCode(),
+                    booking.getStatus());
+            return;
+        }
+        AuditChangeCapture.Snapshot before = changeCapture.snapshot(booking);
+        stateMachine.transition(booking, BookingStatus.PAID, payment.getProcessedBy(), TypeAction.PAYMENT_PROCESSED,
+                String.format("Payment %s of %s completed", paymentNumber, payment.getAmount()), before);
+        bookingRepository.save(booking);
+    }
+
+    /**
+     * Resolve payments that have been PROCESSING longer than
+     * app.payment-gateway.poll-after-ms
+     */
+    @Scheduled(fixedDelayString = "${app.payment-gateway.poll-ms:30000}",
+            initialDelayString = "${app.payment-gateway.poll-ms:30000}")
+    @LeasedJob("payment-gateway-poll")
+    public void pollProcessing() {
+        JobLease lease = JobLease.current();
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime expiry = now.minusNanos(TimeUnit.MILLISECONDS.toNanos(expireAfterMs));
+            Timestamp cutoff = Timestamp.valueOf(now.minusNanos(TimeUnit.MILLISECONDS.toNanos(pollAfterMs)));
+            int resolved = 0;
+            int resubmitted = 0;
+            int expired = 0;
+            long afterId = 0;
+            while (true) {
+                List<Outstanding> page = jdbcTemplate.query("SELECT p.id, p.payment_number, p.amount, "
+                        + "p.payment_method, b.booking_code, p.created_at FROM payments p "
+                        + "JOIN bookings b ON b.id = p.booking_id "
+                        + "WHERE p.status = 'PROCESSING' AND p.created_at < ? AND p.id > ? ORDER BY p.id LIMIT ?",
+                        (rs, rowNum) -> new Outstanding(rs.getLong(1),
+                                new GatewayCharge(rs.getString(2), rs.getBigDecimal(3),
+                                        rs.getString(4) != null ? PaymentMethod.valueOf(rs.getString(4)) : null,
+                                        rs.getString(5)),
+                                rs.getTimestamp(6).toLocalDateTime()),
+                        cutoff, afterId, pollBatchSize);
+                for (Outstanding payment : page) {
+                    afterId = payment.getId();
+                    String reference = payment.getCharge().getReference();
+                    GatewayResult status;
+                    try {
+                        status = gateway.status(reference).get(timeoutMs, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        logger.warn("Gateway status lookup failed for {}: {}", reference, e.getMessage());
+                        continue;
+                    }
+                    if (status.getOutcome().isFinal()) {
+                        resolved += apply(status, lease) ? 1 : 0;
+                    } else if (payment.getCreatedAt().isBefore(expiry)) {
+                        if (status.getOutcome() == GatewayResult.Outcome.UNKNOWN) {
+                            GatewayResult declined = GatewayResult.declined(reference,
+                                    "No answer from payment gateway");
+                            expired += apply(declined, lease) ? 1 : 0;
+                        } else {
+                            logger.warn("Payment {} still pending at the gateway since {}", reference,
+                                    payment.getCreatedAt());
+                        }
+                    } else if (status.getOutcome() == GatewayResult.Outcome.UNKNOWN) {
+                        // Never reached the gateway; charges are idempotent by reference
+                        send(payment.getCharge());
+                        resubmitted++;
+                    }
+                }
+                if (page.size() < pollBatchSize) {
+                    break;
+                }
+            }
+            meterRegistry.counter("app.payment.gateway.poll", "action", "resolved").increment(resolved);
+            meterRegistry.counter("app.payment.gateway.poll", "action", "resubmitted").increment(resubmitted);
+            meterRegistry.counter("app.payment.gateway.poll", "action", "expired").increment(expired);
+            if (resolved + resubmitted + expired > 0) {
+                logger.info("Payment gateway poll: {} resolved, {} resubmitted, {} expired", resolved,
+                        resubmitted, expired);
+            }
+        } catch (Exception e) {
+            logger.error("Payment gateway poll failed: {}", e.getMessage(), e);
+        }
+    }
+}
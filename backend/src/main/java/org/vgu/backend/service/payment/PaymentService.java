@@ -1,10 +1,13 @@
 package org.vgu.backend.service.payment;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.vgu.backend.dto.request.PaymentRequest;
+import org.vgu.backend.dto.response.PaymentHistoryItem;
 import org.vgu.backend.dto.response.PaymentResponse;
+import org.vgu.backend.dto.response.PaymentStatementResponse;
 import org.vgu.backend.enums.PaymentMethod;
 import org.vgu.backend.enums.PaymentStatus;
 import org.vgu.backend.exception.DataNotFoundException;
@@ -18,11 +21,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Random;
-import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -37,6 +41,14 @@ public class PaymentService implements IPaymentService {
     @Autowired
     private BookingRepository bookingRepository;
 
+    @Autowired
+    private PaymentGatewayService paymentGatewayService;
+
+    // Payments whose amount was received, refunded or not
+    private static final List<PaymentStatus> SETTLED = List.of(PaymentStatus.COMPLETED, PaymentStatus.REFUNDED,
+            PaymentStatus.PARTIALLY_REFUNDED);
+    private static final List<PaymentStatus> OPEN = List.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING);
+
     private final Random random = new Random();
 
     @Override
@@ -57,11 +69,7 @@ public class PaymentService implements IPaymentService {
                 .processedBy(processedBy)
                 .build();
 
-        if (request.isSimulation()) {
-            return simulatePaymentProcessing(payment);
-        } else {
-            return processRealPayment(payment, request);
-        }
+        return submitToGateway(payment);
     }
 
     @Override
@@ -81,64 +89,21 @@ public class PaymentService implements IPaymentService {
                 .processedBy(processedBy)
                 .build();
 
-        return simulatePaymentProcessing(payment);
-    }
-
-    private PaymentResponse simulatePaymentProcessing(Payment payment) {
-        // Simulate payment gateway processing time
-        try {
-            Thread.sleep(1000 + random.nextInt(2000)); // 1-3 seconds delay
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-
-        // Simulate payment success/failure (90% success rate)
-        boolean isSuccess = random.nextDouble() < 0.9;
-
-        if (isSuccess) {
-            payment.setStatus(PaymentStatus.COMPLETED);
-            payment.setTransactionId("TXN-SIM-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-            payment.setPaymentDate(LocalDateTime.now());
-            payment.setGatewayResponse("Payment processed successfully via simulation");
-        } else {
-            payment.setStatus(PaymentStatus.FAILED);
-            payment.setFailureReason("Simulated payment failure - insufficient funds");
-            payment.setGatewayResponse("Payment failed via simulation");
-        }
-
-        Payment savedPayment = paymentRepository.save(payment);
-        logger.info("Simulated payment {} with status: {}", savedPayment.getPaymentNumber(), savedPayment.getStatus());
-
-        return convertToResponse(savedPayment);
+        return submitToGateway(payment);
     }
 
-    private PaymentResponse processRealPayment(Payment payment, PaymentRequest request) {
-        // This would integrate with real payment gateways
-        // For now, we'll simulate it as well
+    /**
+     * Save the payment as PROCESSING and hand it to the gateway once this
+     * transaction commits; the gateway's answer completes it later
+     */
+    private PaymentResponse submitToGateway(Payment payment) {
         payment.setStatus(PaymentStatus.PROCESSING);
-        payment.setTransactionId("TXN-REAL-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase());
-        payment.setGatewayResponse("Processing payment through gateway...");
+        payment.setGatewayResponse("Submitted to payment gateway");
 
         Payment savedPayment = paymentRepository.save(payment);
+        paymentGatewayService.submit(savedPayment);
+        logger.info("Payment {} submitted to gateway", savedPayment.getPaymentNumber());
 
-        // Simulate gateway processing
-        try {
-            Thread.sleep(2000); // 2 seconds processing time
-            
-            // Update with final status
-            savedPayment.setStatus(PaymentStatus.COMPLETED);
-            savedPayment.setPaymentDate(LocalDateTime.now());
-            savedPayment.setGatewayResponse("Payment completed successfully");
-            savedPayment = paymentRepository.save(savedPayment);
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            savedPayment.setStatus(PaymentStatus.FAILED);
-            savedPayment.setFailureReason("Payment processing interrupted");
-            savedPayment = paymentRepository.save(savedPayment);
-        }
-
-        logger.info("Processed real payment {} with status: {}", savedPayment.getPaymentNumber(), savedPayment.getStatus());
         return convertToResponse(savedPayment);
     }
 
@@ -183,18 +148,37 @@ public class PaymentService implements IPaymentService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getPaymentHistory(String customerUsername) {
-        // Get all payments for bookings made by this customer
-        List<Payment> payments = paymentRepository.findAll().stream()
-                .filter(payment -> {
-                    Customer customer = payment.getBooking().getCustomer();
-                    return customer != null && customer.getAccount().getUsername().equals(customerUsername);
-                })
-                .collect(Collectors.toList());
+    public List<PaymentHistoryItem> getPaymentHistory(Long customerId, Long beforeId, int limit) {
+        return paymentRepository.findHistoryPage(customerId, beforeId, Limit.of(limit));
+    }
 
-        return payments.stream()
-                .map(this::convertToResponse)
-                .collect(Collectors.toList());
+    @Override
+    @Transactional(readOnly = true)
+    public PaymentStatementResponse getStatement(Long customerId, LocalDate from, LocalDate to) {
+        PaymentRepository.StatementTotals totals = paymentRepository.getStatementTotals(customerId,
+                from.atStartOfDay(), to.plusDays(1).atStartOfDay(), SETTLED, OPEN, PaymentStatus.FAILED);
+        BigDecimal opening = amount(totals.getPaidBefore()).subtract(amount(totals.getRefundedBefore()));
+        BigDecimal paid = amount(totals.getPaid());
+        BigDecimal refunded = amount(totals.getRefunded());
+        BigDecimal net = paid.subtract(refunded);
+        return PaymentStatementResponse.builder()
+                .customerId(customerId)
+                .from(from)
+                .to(to)
+                .openingBalance(opening)
+                .payments(totals.getPayments().longValue())
+                .totalPaid(paid)
+                .refunds(totals.getRefunds().longValue())
+                .totalRefunded(refunded)
+                .netPaid(net)
+                .closingBalance(opening.add(net))
+                .pendingAmount(amount(totals.getPending()))
+                .failedPayments(totals.getFailed().longValue())
+                .build();
+    }
+
+    private static BigDecimal amount(Number value) {
+        return new BigDecimal(value.toString()).setScale(2, RoundingMode.HALF_UP);
     }
 
     @Override
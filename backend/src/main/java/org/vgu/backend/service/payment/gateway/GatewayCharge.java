@@ -0,0 +1,21 @@
+package org.vgu.backend.service.payment.gateway;
+
+import java.math.BigDecimal;
+
+import org.vgu.backend.enums.PaymentMethod;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Charge sent to the payment gateway
+ */
+@Getter
+@AllArgsConstructor
+public class GatewayCharge {
+    // Payment number, used by the gateway as idempotency key
+    private final String reference;
+    private final BigDecimal amount;
+    private final PaymentMethod method;
+    private final String bookingCode;
+}
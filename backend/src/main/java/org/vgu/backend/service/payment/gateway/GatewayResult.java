@@ -0,0 +1,44 @@
+package org.vgu.backend.service.payment.gateway;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Answer of the payment gateway for one charge
+ */
+@Getter
+@AllArgsConstructor
+public class GatewayResult {
+
+    public enum Outcome {
+        APPROVED,
+        DECLINED,
+        PENDING,
+        UNKNOWN;
+
+        public boolean isFinal() {
+            return this == APPROVED || this == DECLINED;
+        }
+    }
+
+    private final String reference;
+    private final Outcome outcome;
+    private final String transactionId;
+    private final String message;
+
+    public static GatewayResult approved(String reference, String transactionId, String message) {
+        return new GatewayResult(reference, Outcome.APPROVED, transactionId, message);
+    }
+
+    public static GatewayResult declined(String reference, String message) {
+        return new GatewayResult(reference, Outcome.DECLINED, null, message);
+    }
+
+    public static GatewayResult pending(String reference) {
+        return new GatewayResult(reference, Outcome.PENDING, null, "Charge is being processed");
+    }
+
+    public static GatewayResult unknown(String reference) {
+        return new GatewayResult(reference, Outcome.UNKNOWN, null, "Charge not known to the gateway");
+    }
+}
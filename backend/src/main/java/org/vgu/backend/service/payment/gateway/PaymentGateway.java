@@ -0,0 +1,26 @@
+package org.vgu.backend.service.payment.gateway;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous client for a payment provider. Calls return at once; the
+ * future completes when the provider answers. Charges are identified by the
+ * payment number, so submitting the same reference twice must not charge
+ * twice.
+ */
+public interface PaymentGateway {
+
+    /**
+     * Submit a charge. The future completes with an APPROVED or DECLINED
+     * result, or exceptionally when the provider cannot be reached.
+     */
+    CompletableFuture<GatewayResult> charge(GatewayCharge charge);
+
+    /**
+     * Look up a charge the callback was not received for
+     *
+     * @return PENDING while the provider is still working on it, UNKNOWN if
+     *         it never received the charge
+     */
+    CompletableFuture<GatewayResult> status(String reference);
+}
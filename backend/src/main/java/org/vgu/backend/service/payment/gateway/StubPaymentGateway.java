@@ -0,0 +1,107 @@
+package org.vgu.backend.service.payment.gateway;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-process stand-in for a payment provider, for demos and load tests.
+ * Each charge is answered after a random latency between
+ * {@code latency-min-ms} and {@code latency-max-ms}, declined with
+ * {@code failure-rate}; with {@code lost-callback-rate} the answer is kept
+ * but never delivered, so only the status lookup finds it. Answers come from
+ * one scheduler thread, so no thread waits out the latency.
+ */
+@Component
+public class StubPaymentGateway implements PaymentGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubPaymentGateway.class);
+
+    private final Map<String, GatewayResult> charges = new ConcurrentHashMap<>();
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    @Value("${app.payment-gateway.stub.latency-min-ms:1000}")
+    private long latencyMinMs;
+
+    @Value("${app.payment-gateway.stub.latency-max-ms:3000}")
+    private long latencyMaxMs;
+
+    @Value("${app.payment-gateway.stub.failure-rate:0.1}")
+    private double failureRate;
+
+    @Value("${app.payment-gateway.stub.lost-callback-rate:0.0}")
+    private double lostCallbackRate;
+
+    // How long answered charges stay available to status lookups
+    @Value("${app.payment-gateway.stub.retention-minutes:60}")
+    private long retentionMinutes;
+
+    public StubPaymentGateway() {
+        scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "payment-gateway-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public CompletableFuture<GatewayResult> charge(GatewayCharge charge) {
+        String reference = charge.getReference();
+        GatewayResult known = charges.putIfAbsent(reference, GatewayResult.pending(reference));
+        if (known != null && known.getOutcome().isFinal()) {
+            return CompletableFuture.completedFuture(known);
+        }
+
+        CompletableFuture<GatewayResult> answer = new CompletableFuture<>();
+        long latency = latencyMaxMs > latencyMinMs
+                ? ThreadLocalRandom.current().nextLong(latencyMinMs, latencyMaxMs + 1)
+                : latencyMinMs;
+        scheduler.schedule(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            GatewayResult result = charges.computeIfPresent(reference, (key, current) -> current.getOutcome()
+                    .isFinal() ? current : decide(reference, random.nextDouble() < failureRate));
+            if (result == null) {
+                result = GatewayResult.unknown(reference);
+            }
+            scheduler.schedule(() -> charges.remove(reference), retentionMinutes, TimeUnit.MINUTES);
+            if (random.nextDouble() < lostCallbackRate) {
+                logger.debug("Stub gateway dropped the answer for {}", reference);
+                return;
+            }
+            answer.complete(result);
+        }, latency, TimeUnit.MILLISECONDS);
+        return answer;
+    }
+
+    @Override
+    public CompletableFuture<GatewayResult> status(String reference) {
+        GatewayResult result = charges.get(reference);
+        return CompletableFuture.completedFuture(result != null ? result : GatewayResult.unknown(reference));
+    }
+
+    private static GatewayResult decide(String reference, boolean declined) {
+        if (declined) {
+            return GatewayResult.declined(reference, "Declined by stub gateway - insufficient funds");
+        }
+        return GatewayResult.approved(reference,
+                "TXN-STUB-" + UUID.randomUUID().toString().substring(0, 8).toUpperCase(),
+                "Approved by stub gateway");
+    }
+}
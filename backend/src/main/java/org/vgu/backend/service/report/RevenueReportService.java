@@ -0,0 +1,451 @@
+package org.vgu.backend.service.report;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.vgu.backend.exception.BusinessException;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Getter;
+
+/**
+ * Revenue, refunds and net by any of day, route, ferry and payment method.
+ * Settled payments in the range are read with a forward-only cursor joined
+ * to their booking's sailing, and summed in cents into long accumulators
+ * keyed by a packed long, so memory grows with the number of groups rather
+ * than payments. Reports are written as CSV or JSON straight to the output.
+ * Ranges above {@code app.revenue-report.sync-max-days} run as background
+ * jobs that write a report file to disk, which is then downloaded.
+ */
+@Service
+public class RevenueReportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevenueReportService.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SETTLED = "'COMPLETED', 'REFUNDED', 'PARTIALLY_REFUNDED'";
+    private static final String REPORT_SQL = "SELECT COALESCE(DATEDIFF(p.payment_date, ?), 0), s.route_id, "
+            + "s.ferry_id, p.payment_method, CAST(ROUND(p.amount * 100) AS SIGNED), "
+            + "CAST(ROUND(COALESCE(p.refund_amount, 0) * 100) AS SIGNED) "
+            + "FROM payments p JOIN bookings b ON b.id = p.booking_id JOIN schedules s ON s.id = b.schedule_id "
+            + "WHERE p.payment_date >= ? AND p.payment_date < ? AND p.status IN (" + SETTLED + ")";
+
+    // Packed group key: route (23 bits) | ferry (20) | method (4) | day offset (16)
+    private static final int DAY_BITS = 16;
+    private static final int METHOD_BITS = 4;
+    private static final int FERRY_BITS = 20;
+    private static final int ROUTE_BITS = 23;
+
+    public enum Dimension {
+        DAY, ROUTE, FERRY, METHOD
+    }
+
+    public enum Format {
+        CSV, JSON
+    }
+
+    public enum JobStatus {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    @Getter
+    public static class ReportJob {
+        private final String id;
+        private final LocalDate from;
+        private final LocalDate to;
+        private final Set<Dimension> groupBy;
+        private final Format format;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile JobStatus status = JobStatus.QUEUED;
+        private volatile LocalDateTime finishedAt;
+        private volatile long rows;
+        private volatile long bytes;
+        private volatile String error;
+        @JsonIgnore
+        private volatile Path file;
+
+        private ReportJob(String id, LocalDate from, LocalDate to, Set<Dimension> groupBy, Format format) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+            this.groupBy = groupBy;
+            this.format = format;
+        }
+
+        public String getFilename() {
+            return String.format("revenue_%s_to_%s.%s", from, to, format.name().toLowerCase());
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor taskExecutor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${app.revenue-report.sync-max-days:92}")
+    private int syncMaxDays;
+
+    @Value("${app.revenue-report.max-days:1100}")
+    private int maxDays;
+
+    @Value("${app.revenue-report.max-running-jobs:2}")
+    private int maxRunningJobs;
+
+    @Value("${app.revenue-report.directory:data/reports}")
+    private String directory;
+
+    @Value("${app.revenue-report.retention-hours:24}")
+    private int retentionHours;
+
+    // Integer.MIN_VALUE streams rows one by one on MySQL Connector/J
+    @Value("${app.revenue-report.fetch-size:-2147483648}")
+    private int fetchSize;
+
+    public RevenueReportService(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper,
+            @Qualifier("taskExecutor") AsyncTaskExecutor taskExecutor, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.taskExecutor = taskExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Checks the range; false when it is too large to stream in a request
+     */
+    public boolean fitsRequest(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new BusinessException("Report ends before it starts", "INVALID_RANGE");
+        }
+        long days = ChronoUnit.DAYS.between(from, to) + 1;
+        if (days > maxDays) {
+            throw new BusinessException("A report is limited to " + maxDays + " days", "RANGE_TOO_LARGE");
+        }
+        return days <= syncMaxDays;
+    }
+
+    /**
+     * Aggregate the range and write the report to {@code out}
+     *
+     * @return number of report rows
+     */
+    public long write(LocalDate from, LocalDate to, Set<Dimension> groupBy, Format format, OutputStream out)
+            throws IOException {
+        long started = System.nanoTime();
+        String outcome = "failed";
+        try {
+            Aggregate aggregate = aggregate(from, to, groupBy);
+            long rows = format == Format.CSV ? writeCsv(aggregate, from, groupBy, out)
+                    : writeJson(aggregate, from, to, groupBy, out);
+            outcome = "ok";
+            logger.info("Revenue report {} to {} by {}: {} payments, {} rows", from, to, groupBy,
+                    aggregate.payments, rows);
+            return rows;
+        } finally {
+            Timer.builder("app.report.revenue")
+                    .description("Time to aggregate and write a revenue report")
+                    .tag("format", format.name())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // ==================== JOBS ====================
+
+    public ReportJob submit(LocalDate from, LocalDate to, Set<Dimension> groupBy, Format format) {
+        fitsRequest(from, to);
+        long running = jobs.values().stream()
+                .filter(job -> job.status == JobStatus.QUEUED || job.status == JobStatus.RUNNING)
+                .count();
+        if (running >= maxRunningJobs) {
+            throw new BusinessException("Too many report jobs running; try again later", "TOO_MANY_JOBS");
+        }
+        ReportJob job = new ReportJob(UUID.randomUUID().toString(), from, to, groupBy, format);
+        jobs.put(job.id, job);
+        taskExecutor.execute(() -> run(job));
+        return job;
+    }
+
+    public ReportJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    private void run(ReportJob job) {
+        job.status = JobStatus.RUNNING;
+        Path dir = Path.of(directory);
+        Path tmp = dir.resolve(job.id + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                job.rows = write(job.from, job.to, job.groupBy, job.format, out);
+            }
+            Path file = dir.resolve(job.id + "." + job.format.name().toLowerCase());
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            job.bytes = Files.size(file);
+            job.file = file;
+            job.status = JobStatus.DONE;
+        } catch (Exception e) {
+            logger.error("Revenue report job {} failed: {}", job.id, e.getMessage(), e);
+            job.error = e.getMessage();
+            job.status = JobStatus.FAILED;
+            try {
+                Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {
+                // Swept with the other files
+            }
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * Drops finished jobs and their files after the retention period, and
+     * files left by a previous run of the application
+     */
+    @Scheduled(fixedDelayString = "${app.revenue-report.cleanup-ms:3600000}")
+    public void cleanup() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(cutoff)) {
+                return false;
+            }
+            deleteQuietly(job.file);
+            return true;
+        });
+        Path dir = Path.of(directory);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(0, Math.max(0, name.indexOf('.')));
+                if (!jobs.containsKey(id)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Failed to sweep report directory {}: {}", dir, e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Failed to delete report file {}: {}", file, e.getMessage());
+        }
+    }
+
+    // ==================== AGGREGATION ====================
+
+    private Aggregate aggregate(LocalDate from, LocalDate to, Set<Dimension> groupBy) {
+        boolean byDay = groupBy.contains(Dimension.DAY);
+        boolean byRoute = groupBy.contains(Dimension.ROUTE);
+        boolean byFerry = groupBy.contains(Dimension.FERRY);
+        boolean byMethod = groupBy.contains(Dimension.METHOD);
+        Aggregate aggregate = new Aggregate();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(REPORT_SQL, ResultSet.TYPE_FORWARD_ONLY,
+                    ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(3, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            return ps;
+        }, (ResultSet rs) -> {
+            long key = 0;
+            if (byRoute) {
+                key |= checked(rs.getLong(2), ROUTE_BITS, "route") << (FERRY_BITS + METHOD_BITS + DAY_BITS);
+            }
+            if (byFerry) {
+                key |= checked(rs.getLong(3), FERRY_BITS, "ferry") << (METHOD_BITS + DAY_BITS);
+            }
+            if (byMethod) {
+                key |= (long) aggregate.method(rs.getString(4)) << DAY_BITS;
+            }
+            if (byDay) {
+                key |= rs.getInt(1);
+            }
+            long[] cell = aggregate.cells.computeIfAbsent(key, k -> new long[3]);
+            long amount = rs.getLong(5);
+            long refund = rs.getLong(6);
+            cell[0]++;
+            cell[1] += amount;
+            cell[2] += refund;
+            aggregate.payments++;
+            aggregate.revenue += amount;
+            aggregate.refunds += refund;
+        });
+        return aggregate;
+    }
+
+    private static long checked(long id, int bits, String name) {
+        if (id >= 1L << bits) {
+            throw new IllegalStateException("The " + name + " id " + id + " does not fit the report key");
+        }
+        return id;
+    }
+
+    private static final class Aggregate {
+        private final Map<Long, long[]> cells = new HashMap<>();
+        private final Map<String, Integer> methodIds = new HashMap<>();
+        private final List<String> methods = new ArrayList<>();
+        private long payments;
+        private long revenue;
+        private long refunds;
+
+        private int method(String name) {
+            return methodIds.computeIfAbsent(name, n -> {
+                if (methods.size() == (1 << METHOD_BITS)) {
+                    throw new IllegalStateException("Too many payment methods for the report key");
+                }
+                methods.add(n);
+                return methods.size() - 1;
+            });
+        }
+
+        private List<Long> sortedKeys() {
+            List<Long> keys = new ArrayList<>(cells.keySet());
+            Collections.sort(keys);
+            return keys;
+        }
+    }
+
+    // ==================== OUTPUT ====================
+
+    private long writeCsv(Aggregate aggregate, LocalDate from, Set<Dimension> groupBy, OutputStream out)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        List<Dimension> columns = columns(groupBy);
+        StringBuilder line = new StringBuilder(128);
+        for (Dimension column : columns) {
+            line.append(column.name().toLowerCase()).append(',');
+        }
+        writer.append(line.append("payments,revenue,refunds,net\n"));
+        long rows = 0;
+        for (Long key : aggregate.sortedKeys()) {
+            long[] cell = aggregate.cells.get(key);
+            line.setLength(0);
+            for (Dimension column : columns) {
+                line.append(value(column, key, from, aggregate)).append(',');
+            }
+            line.append(cell[0]).append(',').append(amount(cell[1])).append(',').append(amount(cell[2]))
+                    .append(',').append(amount(cell[1] - cell[2])).append('\n');
+            writer.append(line);
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private long writeJson(Aggregate aggregate, LocalDate from, LocalDate to, Set<Dimension> groupBy,
+            OutputStream out) throws IOException {
+        List<Dimension> columns = columns(groupBy);
+        long rows = 0;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.writeStartObject();
+            json.writeStringField("from", from.toString());
+            json.writeStringField("to", to.toString());
+            json.writeArrayFieldStart("groupBy");
+            for (Dimension column : columns) {
+                json.writeString(column.name());
+            }
+            json.writeEndArray();
+            json.writeArrayFieldStart("rows");
+            for (Long key : aggregate.sortedKeys()) {
+                long[] cell = aggregate.cells.get(key);
+                json.writeStartObject();
+                for (Dimension column : columns) {
+                    Object value = value(column, key, from, aggregate);
+                    if (value instanceof Long id) {
+                        json.writeNumberField(column.name().toLowerCase() + "Id", id);
+                    } else {
+                        json.writeStringField(column.name().toLowerCase(), value.toString());
+                    }
+                }
+                writeAmounts(json, cell[0], cell[1], cell[2]);
+                json.writeEndObject();
+                rows++;
+            }
+            json.writeEndArray();
+            json.writeObjectFieldStart("totals");
+            writeAmounts(json, aggregate.payments, aggregate.revenue, aggregate.refunds);
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return rows;
+    }
+
+    private static void writeAmounts(JsonGenerator json, long payments, long revenue, long refunds)
+            throws IOException {
+        json.writeNumberField("payments", payments);
+        json.writeNumberField("revenue", amount(revenue));
+        json.writeNumberField("refunds", amount(refunds));
+        json.writeNumberField("net", amount(revenue - refunds));
+    }
+
+    private static List<Dimension> columns(Set<Dimension> groupBy) {
+        return new ArrayList<>(groupBy.isEmpty() ? EnumSet.noneOf(Dimension.class) : EnumSet.copyOf(groupBy));
+    }
+
+    private static Object value(Dimension column, long key, LocalDate from, Aggregate aggregate) {
+        switch (column) {
+            case DAY:
+                return from.plusDays(key & ((1L << DAY_BITS) - 1));
+            case METHOD:
+                return aggregate.methods.get((int) ((key >>> DAY_BITS) & ((1L << METHOD_BITS) - 1)));
+            case FERRY:
+                return (key >>> (METHOD_BITS + DAY_BITS)) & ((1L << FERRY_BITS) - 1);
+            default:
+                return key >>> (FERRY_BITS + METHOD_BITS + DAY_BITS);
+        }
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
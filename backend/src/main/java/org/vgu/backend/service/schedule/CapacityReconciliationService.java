@@ -0,0 +1,306 @@
+package org.vgu.backend.service.schedule;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.service.lease.JobLease;
+import org.vgu.backend.service.lease.JobLeaseService;
+import org.vgu.backend.service.lease.LeasedJob;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Recomputes the remaining capacity of upcoming sailings from their bookings
+ * and reports where the stored counters drifted. A sailing should have its
+ * ferry's capacity minus the vehicles and passengers of bookings still
+ * holding space, minus the unused part of unreleased allotment blocks.
+ * Schedule ids are streamed and cut into partitions; each partition is
+ * checked with one grouped query, and partitions run in parallel on a
+ * dedicated fork-join pool. Corrections are conditional on the counters
+ * being unchanged since they were read, so a booking committed meanwhile
+ * is never overwritten; that sailing is left for the next run.
+ */
+@Service
+public class CapacityReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapacityReconciliationService.class);
+
+    private static final String RELEASED = "'CANCELLED', 'REFUNDED', 'REJECTED'";
+
+    @Getter
+    @AllArgsConstructor
+    public static class Drift {
+        private final Long scheduleId;
+        private final LocalDateTime departureTime;
+        private final int recordedVehicleSpaces;
+        private final int expectedVehicleSpaces;
+        private final int recordedPassengerSpaces;
+        private final int expectedPassengerSpaces;
+        private final boolean corrected;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class ReconciliationReport {
+        private final int checked;
+        private final int drifted;
+        private final int corrected;
+        // Counters that moved between the check and the correction
+        private final int changedConcurrently;
+        private final int partitions;
+        // Largest drifts first, capped at app.capacity-reconciliation.max-reported
+        private final List<Drift> drifts;
+        private final long durationMs;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobLeaseService leaseService;
+    private final MeterRegistry meterRegistry;
+    private final ForkJoinPool pool;
+
+    @Value("${app.capacity-reconciliation.partition-size:500}")
+    private int partitionSize;
+
+    @Value("${app.capacity-reconciliation.auto-correct:false}")
+    private boolean autoCorrect;
+
+    @Value("${app.capacity-reconciliation.max-reported:200}")
+    private int maxReported;
+
+    public CapacityReconciliationService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            JobLeaseService leaseService, MeterRegistry meterRegistry,
+            @Value("${app.capacity-reconciliation.parallelism:4}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseService = leaseService;
+        this.meterRegistry = meterRegistry;
+        // Own pool so a long run never starves the common pool
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Hourly by default; corrects only when auto-correct is enabled
+     */
+    @Scheduled(fixedDelayString = "${app.capacity-reconciliation.sweep-ms:3600000}",
+            initialDelayString = "${app.capacity-reconciliation.sweep-ms:3600000}")
+    @LeasedJob(value = "capacity-reconciliation", partitions = 4)
+    public void reconcileUpcoming() {
+        try {
+            reconcile(autoCorrect);
+        } catch (Exception e) {
+            logger.error("Capacity reconciliation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Check every upcoming sailing, or only this node's partitions when
+     * called from the leased job
+     *
+     * @param correct also write the expected counters back
+     */
+    public ReconciliationReport reconcile(boolean correct) {
+        long started = System.nanoTime();
+        String outcome = "failed";
+        JobLease lease = JobLease.current();
+        try {
+            List<List<Long>> partitions = new ArrayList<>();
+            List<Long> partition = new ArrayList<>(partitionSize);
+            try (Stream<Long> ids = jdbcTemplate.queryForStream("SELECT id FROM schedules WHERE departure_time > ? "
+                    + "AND status NOT IN ('CANCELLED', 'DEPARTED', 'ARRIVED') ORDER BY id",
+                    (rs, rowNum) -> rs.getLong(1), Timestamp.valueOf(LocalDateTime.now()))) {
+                for (Long id : (Iterable<Long>) ids::iterator) {
+                    if (lease != null && lease.isPartitioned() && !lease.owns(id)) {
+                        continue;
+                    }
+                    partition.add(id);
+                    if (partition.size() == partitionSize) {
+                        partitions.add(partition);
+                        partition = new ArrayList<>(partitionSize);
+                    }
+                }
+            }
+            if (!partition.isEmpty()) {
+                partitions.add(partition);
+            }
+
+            Tally tally = partitions.isEmpty() ? new Tally()
+                    : pool.invoke(new PartitionTask(partitions, 0, partitions.size(), correct, lease));
+            tally.drifts.sort((a, b) -> Integer.compare(distance(b), distance(a)));
+            List<Drift> reported = tally.drifts.size() > maxReported
+                    ? new ArrayList<>(tally.drifts.subList(0, maxReported)) : tally.drifts;
+            ReconciliationReport report = new ReconciliationReport(tally.checked, tally.drifts.size(),
+                    tally.corrected, tally.changed, partitions.size(), reported,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+            outcome = report.getDrifted() == 0 ? "clean" : "drift";
+            if (report.getDrifted() > 0) {
+                logger.warn("Capacity drift on {} of {} upcoming sailings, {} corrected, {} changed meanwhile ({} ms)",
+                        report.getDrifted(), report.getChecked(), report.getCorrected(),
+                        report.getChangedConcurrently(), report.getDurationMs());
+            } else {
+                logger.info("Capacity of {} upcoming sailings matches their bookings ({} ms)", report.getChecked(),
+                        report.getDurationMs());
+            }
+            return report;
+        } finally {
+            Timer.builder("app.capacity.reconcile")
+                    .description("Time to recompute the capacity of all upcoming sailings")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Tally check(List<Long> scheduleIds, boolean correct, JobLease lease) {
+        String in = String.join(", ", Collections.nCopies(scheduleIds.size(), "?"));
+        Object[] args = new Object[scheduleIds.size() * 3];
+        for (int i = 0; i < scheduleIds.size(); i++) {
+            args[i] = scheduleIds.get(i);
+            args[scheduleIds.size() + i] = scheduleIds.get(i);
+            args[scheduleIds.size() * 2 + i] = scheduleIds.get(i);
+        }
+        Tally tally = new Tally();
+        List<Drift> drifts = jdbcTemplate.query("SELECT s.id, s.departure_time, "
+                + "COALESCE(s.available_vehicle_spaces, 0), COALESCE(s.available_passenger_spaces, 0), "
+                + "f.capacity_vehicles - COALESCE(c.vehicles, 0) - COALESCE(a.vehicles, 0), "
+                + "f.capacity_passengers - COALESCE(c.passengers, 0) - COALESCE(a.passengers, 0) "
+                + "FROM schedules s JOIN ferries f ON f.id = s.ferry_id "
+                + "LEFT JOIN (SELECT b.schedule_id, "
+                + "SUM((SELECT COALESCE(SUM(v.quantity), 0) FROM vehicles v WHERE v.booking_id = b.id)) vehicles, "
+                + "SUM(b.passenger_count) passengers FROM bookings b "
+                + "WHERE b.schedule_id IN (" + in + ") AND b.status NOT IN (" + RELEASED + ") "
+                + "GROUP BY b.schedule_id) c ON c.schedule_id = s.id "
+                + "LEFT JOIN (SELECT schedule_id, "
+                + "SUM(GREATEST(0, vehicle_spaces - used_vehicle_spaces)) vehicles, "
+                + "SUM(GREATEST(0, passenger_spaces - used_passenger_spaces)) passengers FROM schedule_allotments "
+                + "WHERE schedule_id IN (" + in + ") AND released_at IS NULL "
+                + "GROUP BY schedule_id) a ON a.schedule_id = s.id "
+                + "WHERE s.id IN (" + in + ")",
+                (rs, rowNum) -> {
+                    tally.checked++;
+                    int recordedVehicles = rs.getInt(3);
+                    int recordedPassengers = rs.getInt(4);
+                    // Overbooked sailings are stored at zero, never negative
+                    int expectedVehicles = (int) Math.max(0, rs.getLong(5));
+                    int expectedPassengers = (int) Math.max(0, rs.getLong(6));
+                    if (recordedVehicles == expectedVehicles && recordedPassengers == expectedPassengers) {
+                        return null;
+                    }
+                    return new Drift(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(), recordedVehicles,
+                            expectedVehicles, recordedPassengers, expectedPassengers, false);
+                },
+                args);
+        drifts.removeIf(drift -> drift == null);
+        if (drifts.isEmpty()) {
+            return tally;
+        }
+        if (!correct) {
+            tally.drifts.addAll(drifts);
+            return tally;
+        }
+
+        int[][] updated = transactionTemplate.execute(tx -> {
+            leaseService.verify(lease);
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            return jdbcTemplate.batchUpdate("UPDATE schedules SET available_vehicle_spaces = ?, "
+                    + "available_passenger_spaces = ?, updated_at = ? WHERE id = ? "
+                    + "AND COALESCE(available_vehicle_spaces, 0) = ? AND COALESCE(available_passenger_spaces, 0) = ?",
+                    drifts, drifts.size(), (ps, drift) -> {
+                        ps.setInt(1, drift.getExpectedVehicleSpaces());
+                        ps.setInt(2, drift.getExpectedPassengerSpaces());
+                        ps.setTimestamp(3, now);
+                        ps.setLong(4, drift.getScheduleId());
+                        ps.setInt(5, drift.getRecordedVehicleSpaces());
+                        ps.setInt(6, drift.getRecordedPassengerSpaces());
+                    });
+        });
+        for (int i = 0; i < drifts.size(); i++) {
+            Drift drift = drifts.get(i);
+            boolean corrected = updated != null && updated[0][i] != 0;
+            if (corrected) {
+                tally.corrected++;
+            } else {
+                tally.changed++;
+            }
+            tally.drifts.add(new Drift(drift.getScheduleId(), drift.getDepartureTime(),
+                    drift.getRecordedVehicleSpaces(), drift.getExpectedVehicleSpaces(),
+                    drift.getRecordedPassengerSpaces(), drift.getExpectedPassengerSpaces(), corrected));
+        }
+        return tally;
+    }
+
+    private static int distance(Drift drift) {
+        return Math.abs(drift.getRecordedVehicleSpaces() - drift.getExpectedVehicleSpaces())
+                + Math.abs(drift.getRecordedPassengerSpaces() - drift.getExpectedPassengerSpaces());
+    }
+
+    private static final class Tally {
+        private int checked;
+        private int corrected;
+        private int changed;
+        private final List<Drift> drifts = new ArrayList<>();
+
+        private Tally merge(Tally other) {
+            checked += other.checked;
+            corrected += other.corrected;
+            changed += other.changed;
+            drifts.addAll(other.drifts);
+            return this;
+        }
+    }
+
+    /**
+     * Splits the partitions in halves until one is left, then checks it
+     */
+    private final class PartitionTask extends RecursiveTask<Tally> {
+        private final List<List<Long>> partitions;
+        private final int from;
+        private final int to;
+        private final boolean correct;
+        private final JobLease lease;
+
+        private PartitionTask(List<List<Long>> partitions, int from, int to, boolean correct, JobLease lease) {
+            this.partitions = partitions;
+            this.from = from;
+            this.to = to;
+            this.correct = correct;
+            this.lease = lease;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from == 1) {
+                return check(partitions.get(from), correct, lease);
+            }
+            int mid = (from + to) >>> 1;
+            PartitionTask right = new PartitionTask(partitions, mid, to, correct, lease);
+            right.fork();
+            Tally left = new PartitionTask(partitions, from, mid, correct, lease).compute();
+            return left.merge(right.join());
+        }
+    }
+}
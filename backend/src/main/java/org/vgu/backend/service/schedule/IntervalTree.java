@@ -0,0 +1,81 @@
+package org.vgu.backend.service.schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Static interval tree over half-open {@code [start, end)} intervals of
+ * epoch minutes. The intervals are sorted by start and read as an implicit
+ * balanced tree, with the middle of each range as its root. Each node
+ * keeps the largest end in its subtree, which lets overlap queries skip
+ * whole subtrees: O(log n + k) for k matches. Built once, never modified.
+ */
+final class IntervalTree<T> {
+
+    static final class Interval<T> {
+        final long start;
+        final long end;
+        final T value;
+
+        Interval(long start, long end, T value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    private final List<Interval<T>> intervals;
+    private final long[] maxEnd;
+
+    IntervalTree(List<Interval<T>> intervals) {
+        this.intervals = new ArrayList<>(intervals);
+        this.intervals.sort(Comparator.comparingLong(interval -> interval.start));
+        this.maxEnd = new long[this.intervals.size()];
+        build(0, this.intervals.size() - 1);
+    }
+
+    int size() {
+        return intervals.size();
+    }
+
+    /**
+     * Intervals overlapping {@code [start, end)}, by start
+     */
+    List<Interval<T>> overlapping(long start, long end) {
+        List<Interval<T>> found = new ArrayList<>(2);
+        collect(0, intervals.size() - 1, start, end, found);
+        return found;
+    }
+
+    private long build(int lo, int hi) {
+        if (lo > hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(intervals.get(mid).end, Math.max(build(lo, mid - 1), build(mid + 1, hi)));
+        maxEnd[mid] = max;
+        return max;
+    }
+
+    private void collect(int lo, int hi, long start, long end, List<Interval<T>> found) {
+        if (lo > hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        // Nothing in this subtree ends after the query starts
+        if (maxEnd[mid] <= start) {
+            return;
+        }
+        collect(lo, mid - 1, start, end, found);
+        Interval<T> interval = intervals.get(mid);
+        // Everything to the right starts at or after this one
+        if (interval.start >= end) {
+            return;
+        }
+        if (interval.end > start) {
+            found.add(interval);
+        }
+        collect(mid + 1, hi, start, end, found);
+    }
+}
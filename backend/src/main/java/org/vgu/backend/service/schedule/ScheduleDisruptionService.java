@@ -0,0 +1,708 @@
+package org.vgu.backend.service.schedule;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.ScheduleStatus;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.exception.DataNotFoundException;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.model.Notification;
+import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.berth.BerthAllocationService;
+import org.vgu.backend.service.booking.BookingStateMachine;
+import org.vgu.backend.service.booking.BookingStatsService;
+import org.vgu.backend.service.bookingrecord.AuditChangeCodec;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+import org.vgu.backend.service.notification.NotificationService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Cancels or delays a sailing and re-accommodates its bookings.
+ * The disrupted schedule, its active bookings and the next sailings on the
+ * same route are locked together. Bookings are then placed greedily, oldest
+ * booking first, on the earliest sailing with enough vehicle and passenger
+ * space, counting the customer's allotment block on that sailing first. Allotted
+ * space goes back to the block it came from. All moves are applied with one UPDATE per target sailing and one
+ * capacity adjustment per schedule. Audit records and customer
+ * notifications are inserted as JDBC batches.
+ * Bookings that fit nowhere stay on a delayed sailing. On a cancelled
+ * sailing they are cancelled, or sent to refund if already paid.
+ */
+@Service
+public class ScheduleDisruptionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleDisruptionService.class);
+
+    private static final String INACTIVE = "'CANCELLED', 'REFUNDED', 'REJECTED', 'COMPLETED', 'IN_REFUND'";
+    // Statuses that no longer hold space on the sailing
+    private static final String RELEASED = "'CANCELLED', 'REFUNDED', 'REJECTED'";
+
+    public enum Type {
+        CANCELLED, DELAYED
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class DisruptionResult {
+        private final Long scheduleId;
+        private final Type type;
+        private final LocalDateTime departureTime;
+        private final int affectedBookings;
+        private final int movedBookings;
+        private final int cancelledBookings;
+        private final int unchangedBookings;
+        // Target schedule ID -> bookings moved onto it
+        private final Map<Long, Integer> movedTo;
+        private final List<Long> unplacedBookingIds;
+        // Ports where the delayed sailing found no berth
+        private final List<BerthAllocationService.BerthConflict> berthConflicts;
+        private final long durationMs;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class PlanItem {
+        private final Long bookingId;
+        private final String bookingCode;
+        private final BookingStatus status;
+        // Null when no alternative sailing has room and the booking is cancelled
+        private final Long targetScheduleId;
+        private final LocalDateTime targetDepartureTime;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class VesselSwapResult {
+        private final Long scheduleId;
+        private final Long previousFerryId;
+        private final Long ferryId;
+        private final boolean applied;
+        private final int vehicleCapacity;
+        private final int passengerCapacity;
+        private final long committedVehicles;
+        private final long committedPassengers;
+        private final int availableVehicleSpaces;
+        private final int availablePassengerSpaces;
+        // Bookings that cannot be bumped still exceed the new vessel
+        private final boolean overCapacity;
+        private final List<PlanItem> bumped;
+        private final long durationMs;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BookingRepository bookingRepository;
+    private final IBookingRecordService bookingRecordService;
+    private final NotificationService notificationService;
+    private final BookingStatsService bookingStatsService;
+    private final BookingStateMachine stateMachine;
+    private final BerthAllocationService berthAllocationService;
+    private final AllotmentService allotmentService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.disruption.max-alternatives:10}")
+    private int maxAlternatives;
+
+    @Value("${app.disruption.lookahead-hours:72}")
+    private int lookaheadHours;
+
+    @Value("${app.disruption.chunk-size:500}")
+    private int chunkSize;
+
+    public ScheduleDisruptionService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            BookingRepository bookingRepository, IBookingRecordService bookingRecordService,
+            NotificationService notificationService, BookingStatsService bookingStatsService,
+            BookingStateMachine stateMachine, BerthAllocationService berthAllocationService,
+            AllotmentService allotmentService, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.bookingRepository = bookingRepository;
+        this.bookingRecordService = bookingRecordService;
+        this.notificationService = notificationService;
+        this.bookingStatsService = bookingStatsService;
+        this.stateMachine = stateMachine;
+        this.berthAllocationService = berthAllocationService;
+        this.allotmentService = allotmentService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Cancel or delay a sailing and move its bookings to alternative
+     * sailings, in one transaction
+     *
+     * @param delayMinutes  required for DELAYED
+     * @param reaccommodate for DELAYED, also move bookings; always true for CANCELLED
+     */
+    public DisruptionResult disrupt(Long scheduleId, Type type, Integer delayMinutes, String reason,
+            boolean reaccommodate, Account actor) {
+        if (type == Type.DELAYED && (delayMinutes == null || delayMinutes <= 0)) {
+            throw new BusinessException("Delay in minutes is required for a delayed sailing", "INVALID_DISRUPTION");
+        }
+        long started = System.nanoTime();
+        DisruptionResult result = transactionTemplate.execute(tx -> apply(scheduleId, type,
+                delayMinutes, reason, type == Type.CANCELLED || reaccommodate, actor, started));
+
+        Timer.builder("app.disruption.duration")
+                .description("Time to apply a sailing disruption and re-accommodate its bookings")
+                .tag("type", type.name().toLowerCase())
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        meterRegistry.counter("app.disruption.bookings", "outcome", "moved").increment(result.getMovedBookings());
+        meterRegistry.counter("app.disruption.bookings", "outcome", "cancelled")
+                .increment(result.getCancelledBookings());
+        logger.info("Sailing {} {}: {} bookings, {} moved, {} cancelled, {} unchanged in {} ms", scheduleId,
+                type.name().toLowerCase(), result.getAffectedBookings(), result.getMovedBookings(),
+                result.getCancelledBookings(), result.getUnchangedBookings(), result.getDurationMs());
+        return result;
+    }
+
+    private DisruptionResult apply(Long scheduleId, Type type, Integer delayMinutes, String reason,
+            boolean reaccommodate, Account actor, long started) {
+        Sailing disrupted = lockSchedule(scheduleId);
+        ScheduleStatus status = disrupted.status;
+        if (status == ScheduleStatus.CANCELLED || status == ScheduleStatus.DEPARTED
+                || status == ScheduleStatus.ARRIVED) {
+            throw new BusinessException("Sailing " + scheduleId + " is already " + status, "INVALID_DISRUPTION");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime departure = disrupted.departureTime;
+
+        List<BerthAllocationService.BerthConflict> berthConflicts = List.of();
+        if (type == Type.DELAYED) {
+            departure = departure.plusMinutes(delayMinutes);
+            jdbcTemplate.update("UPDATE schedules SET status = 'DELAYED', "
+                    + "departure_time = DATE_ADD(departure_time, INTERVAL ? MINUTE), "
+                    + "arrival_time = DATE_ADD(arrival_time, INTERVAL ? MINUTE), "
+                    + "booking_deadline = DATE_ADD(booking_deadline, INTERVAL ? MINUTE), updated_at = ? WHERE id = ?",
+                    delayMinutes, delayMinutes, delayMinutes, Timestamp.valueOf(now), scheduleId);
+            // The delay stands even without a berth; the planner gets the conflicts
+            berthConflicts = berthAllocationService.reallocate(scheduleId);
+        } else {
+            jdbcTemplate.update("UPDATE schedules SET status = 'CANCELLED', updated_at = ? WHERE id = ?",
+                    Timestamp.valueOf(now), scheduleId);
+            berthAllocationService.release(scheduleId);
+        }
+
+        List<Affected> bookings = lockBookings(scheduleId, INACTIVE);
+        Map<Sailing, List<Affected>> moves = new LinkedHashMap<>();
+        List<Affected> unplaced = new ArrayList<>();
+        if (reaccommodate && !bookings.isEmpty()) {
+            place(bookings, lockAlternatives(disrupted, type == Type.DELAYED ? departure : null, now), moves,
+                    unplaced);
+        } else {
+            unplaced.addAll(bookings);
+        }
+
+        List<BookingRecord> records = new ArrayList<>(bookings.size());
+        List<Notification> notifications = new ArrayList<>(bookings.size());
+        Map<Long, Integer> movedTo = new LinkedHashMap<>();
+        int moved = applyMoves(disrupted, moves, reason, actor, now, records, notifications, movedTo);
+        int cancelled = 0;
+        if (type == Type.CANCELLED) {
+            cancelled = cancelUnplaced(disrupted, unplaced, "was cancelled", reason, actor, now, records,
+                    notifications);
+        } else {
+            String delayedTo = departure.toString();
+            for (Affected booking : unplaced) {
+                notifications.add(notificationService.buildStatusChangeNotification(
+                        String.valueOf(booking.customerId), booking.bookingCode, "DELAYED",
+                        String.format("Your sailing for booking %s is delayed by %d minutes and now departs at %s. "
+                                + "Reason: %s", booking.bookingCode, delayMinutes, delayedTo, reason)));
+            }
+        }
+
+        bookingRecordService.createRecords(records);
+        notificationService.createNotifications(notifications);
+
+        List<Long> unplacedIds = new ArrayList<>();
+        if (type == Type.CANCELLED) {
+            unplaced.forEach(booking -> unplacedIds.add(booking.id));
+        }
+        return new DisruptionResult(scheduleId, type, departure, bookings.size(), moved, cancelled,
+                bookings.size() - moved - cancelled, movedTo, unplacedIds, berthConflicts,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Put another ferry on a sailing and recompute its remaining capacity
+     * from the new ferry minus the bookings already committed. If those no
+     * longer fit, bookings are bumped in priority order:
+     * <ul>
+     * <li>Least advanced status first (pending before paid before in progress).</li>
+     * <li>Then newest first.</li>
+     * <li>Completed and refunding bookings are never bumped.</li>
+     * </ul>
+     * Bumped bookings are re-accommodated like a cancelled sailing's.
+     *
+     * @param dryRun only return the plan, change nothing
+     */
+    public VesselSwapResult swapVessel(Long scheduleId, Long ferryId, String reason, boolean dryRun, Account actor) {
+        long started = System.nanoTime();
+        VesselSwapResult result = transactionTemplate.execute(tx -> applySwap(scheduleId, ferryId, reason, dryRun,
+                actor, started));
+
+        Timer.builder("app.disruption.duration")
+                .description("Time to apply a sailing disruption and re-accommodate its bookings")
+                .tag("type", dryRun ? "vessel-swap-plan" : "vessel-swap")
+                .register(meterRegistry)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        logger.info("Vessel swap on sailing {} from ferry {} to {}{}: {} bookings bumped in {} ms", scheduleId,
+                result.getPreviousFerryId(), ferryId, dryRun ? " (plan only)" : "", result.getBumped().size(),
+                result.getDurationMs());
+        return result;
+    }
+
+    private VesselSwapResult applySwap(Long scheduleId, Long ferryId, String reason, boolean dryRun, Account actor,
+            long started) {
+        Sailing sailing = lockSchedule(scheduleId);
+        if (sailing.status == ScheduleStatus.CANCELLED || sailing.status == ScheduleStatus.DEPARTED
+                || sailing.status == ScheduleStatus.ARRIVED) {
+            throw new BusinessException("Sailing " + scheduleId + " is already " + sailing.status, "INVALID_DISRUPTION");
+        }
+        Map<String, Object> current = jdbcTemplate.queryForMap(
+                "SELECT ferry_id, arrival_time FROM schedules WHERE id = ?", scheduleId);
+        long previousFerryId = ((Number) current.get("ferry_id")).longValue();
+        if (previousFerryId == ferryId) {
+            throw new BusinessException("Sailing " + scheduleId + " already uses ferry " + ferryId, "INVALID_DISRUPTION");
+        }
+
+        List<int[]> ferries = jdbcTemplate.query("SELECT capacity_vehicles, capacity_passengers, "
+                + "status = 'ACTIVE' FROM ferries WHERE id = ? FOR SHARE",
+                (rs, rowNum) -> new int[] { rs.getInt(1), rs.getInt(2), rs.getBoolean(3) ? 1 : 0 }, ferryId);
+        if (ferries.isEmpty()) {
+            throw new DataNotFoundException("Ferry not found with id: " + ferryId);
+        }
+        if (ferries.get(0)[2] == 0) {
+            throw new BusinessException("Ferry " + ferryId + " is not active", "FERRY_UNAVAILABLE");
+        }
+        Integer overlapping = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM schedules WHERE ferry_id = ? "
+                + "AND id <> ? AND status NOT IN ('CANCELLED', 'ARRIVED') AND departure_time < ? AND arrival_time > ?",
+                Integer.class, ferryId, scheduleId, current.get("arrival_time"), Timestamp.valueOf(sailing.departureTime));
+        if (overlapping != null && overlapping > 0) {
+            throw new BusinessException("Ferry " + ferryId + " is already scheduled during this sailing",
+                    "FERRY_DOUBLE_BOOKED");
+        }
+        int vehicleCapacity = ferries.get(0)[0];
+        int passengerCapacity = ferries.get(0)[1];
+
+        // One aggregate pass over the committed bookings
+        long[] committed = jdbcTemplate.queryForObject("SELECT COALESCE(SUM((SELECT COALESCE(SUM(v.quantity), 0) "
+                + "FROM vehicles v WHERE v.booking_id = b.id)), 0), COALESCE(SUM(b.passenger_count), 0) "
+                + "FROM bookings b WHERE b.schedule_id = ? AND b.status NOT IN (" + RELEASED + ")",
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2) }, scheduleId);
+        long keptVehicles = committed[0];
+        long keptPassengers = committed[1];
+
+        Map<Sailing, List<Affected>> moves = new LinkedHashMap<>();
+        List<Affected> unplaced = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        if (keptVehicles > vehicleCapacity || keptPassengers > passengerCapacity) {
+            List<Affected> bookings = new ArrayList<>(lockBookings(scheduleId, RELEASED));
+            // Stable sort keeps the oldest first within each priority
+            bookings.sort((a, b) -> Integer.compare(bumpPriority(b.status), bumpPriority(a.status)));
+            keptVehicles = 0;
+            keptPassengers = 0;
+            List<Affected> bumped = new ArrayList<>();
+            for (Affected booking : bookings) {
+                boolean fits = keptVehicles + booking.vehicles <= vehicleCapacity
+                        && keptPassengers + booking.passengers <= passengerCapacity;
+                if (fits || bumpPriority(booking.status) == Integer.MAX_VALUE) {
+                    keptVehicles += booking.vehicles;
+                    keptPassengers += booking.passengers;
+                } else {
+                    bumped.add(booking);
+                }
+            }
+            if (!bumped.isEmpty()) {
+                place(bumped, lockAlternatives(sailing, null, now), moves, unplaced);
+            }
+            // Bumped bookings that cannot be cancelled, or only go to refund, keep their space
+            for (Affected booking : unplaced) {
+                BookingStatus target = cancelTarget(booking);
+                if (target == null || target.holdsCapacity()) {
+                    keptVehicles += booking.vehicles;
+                    keptPassengers += booking.passengers;
+                }
+            }
+        }
+        int availableVehicles = (int) Math.max(0, vehicleCapacity - keptVehicles);
+        int availablePassengers = (int) Math.max(0, passengerCapacity - keptPassengers);
+
+        List<PlanItem> plan = new ArrayList<>();
+        moves.forEach((target, bookings) -> bookings.forEach(booking -> plan.add(new PlanItem(booking.id,
+                booking.bookingCode, booking.status, target.id, target.departureTime))));
+        unplaced.forEach(booking -> plan.add(new PlanItem(booking.id, booking.bookingCode, booking.status,
+                null, null)));
+
+        if (!dryRun) {
+            String why = "Vessel swap: " + reason;
+            List<BookingRecord> records = new ArrayList<>(plan.size());
+            List<Notification> notifications = new ArrayList<>(plan.size());
+            applyMoves(sailing, moves, why, actor, now, records, notifications, new LinkedHashMap<>());
+            cancelUnplaced(sailing, unplaced, "moved to a smaller vessel", reason, actor, now, records, notifications);
+            // Set last, over the adjustments made for the moved and cancelled bookings
+            jdbcTemplate.update("UPDATE schedules SET ferry_id = ?, available_vehicle_spaces = ?, "
+                    + "available_passenger_spaces = ?, updated_at = ? WHERE id = ?", ferryId, availableVehicles,
+                    availablePassengers, Timestamp.valueOf(now), scheduleId);
+            bookingRecordService.createRecords(records);
+            notificationService.createNotifications(notifications);
+        }
+        return new VesselSwapResult(scheduleId, previousFerryId, ferryId, !dryRun, vehicleCapacity,
+                passengerCapacity, keptVehicles, keptPassengers, availableVehicles, availablePassengers,
+                keptVehicles > vehicleCapacity || keptPassengers > passengerCapacity, plan,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+    }
+
+    /**
+     * Higher keeps its place on a smaller vessel; MAX_VALUE is never bumped
+     */
+    private static int bumpPriority(BookingStatus status) {
+        return switch (status) {
+            case COMPLETED, IN_REFUND -> Integer.MAX_VALUE;
+            case IN_PROGRESS -> 5;
+            case IN_REVIEW -> 4;
+            case PAID -> 3;
+            case WAITING_FOR_PAYMENT -> 2;
+            case CONFIRMED -> 1;
+            default -> 0;
+        };
+    }
+
+    /**
+     * Greedy first fit: bookings in the given order, each onto the earliest
+     * sailing with room. The customer's block on a sailing covers what it
+     * can before the public pool is counted.
+     */
+    private void place(List<Affected> bookings, List<Sailing> alternatives,
+            Map<Sailing, List<Affected>> moves, List<Affected> unplaced) {
+        for (Affected booking : bookings) {
+            Sailing target = null;
+            int[] block = null;
+            for (Sailing sailing : alternatives) {
+                block = sailing.blocks.computeIfAbsent(booking.customerId, customerId -> {
+                    AllotmentService.Remaining remaining = allotmentService.remaining(sailing.id, customerId);
+                    return new int[] { remaining.getVehicleSpaces(), remaining.getPassengerSpaces() };
+                });
+                if (sailing.fits(booking.vehicles - Math.min(booking.vehicles, block[0]),
+                        booking.passengers - Math.min(booking.passengers, block[1]))) {
+                    target = sailing;
+                    break;
+                }
+            }
+            if (target != null) {
+                int blockVehicles = Math.min(booking.vehicles, block[0]);
+                int blockPassengers = Math.min(booking.passengers, block[1]);
+                block[0] -= blockVehicles;
+                block[1] -= blockPassengers;
+                target.take(booking.vehicles - blockVehicles, booking.passengers - blockPassengers);
+                moves.computeIfAbsent(target, s -> new ArrayList<>()).add(booking);
+            } else {
+                unplaced.add(booking);
+            }
+        }
+    }
+
+    private int applyMoves(Sailing from, Map<Sailing, List<Affected>> moves, String reason, Account actor,
+            LocalDateTime now, List<BookingRecord> records, List<Notification> notifications,
+            Map<Long, Integer> movedTo) {
+        if (moves.isEmpty()) {
+            return 0;
+        }
+        Timestamp ts = Timestamp.valueOf(now);
+        List<Object[]> capacity = new ArrayList<>();
+        int releasedVehicles = 0;
+        int releasedPassengers = 0;
+        int moved = 0;
+        // Allotted vehicles and passengers on the new sailing, per booking that drew on a block
+        List<Object[]> allotted = new ArrayList<>();
+        for (Map.Entry<Sailing, List<Affected>> entry : moves.entrySet()) {
+            Sailing target = entry.getKey();
+            List<Affected> bookings = entry.getValue();
+            int vehicles = 0;
+            int passengers = 0;
+            for (int i = 0; i < bookings.size(); i += chunkSize) {
+                List<Affected> chunk = bookings.subList(i, Math.min(i + chunkSize, bookings.size()));
+                List<Object> args = new ArrayList<>(chunk.size() + 2);
+                args.add(target.id);
+                args.add(ts);
+                chunk.forEach(booking -> args.add(booking.id));
+                jdbcTemplate.update("UPDATE bookings SET schedule_id = ?, allotted_vehicles = 0, "
+                        + "allotted_passengers = 0, updated_at = ? WHERE id IN (" + placeholders(chunk.size()) + ")",
+                        args.toArray());
+            }
+            String departs = target.departureTime.toString();
+            for (Affected booking : bookings) {
+                // Placement counted the same block, so it only falls short of the plan
+                // if the block was drawn down meanwhile; the public pool covers the rest
+                AllotmentService.Split split = allotmentService.consume(target.id, booking.customerId,
+                        booking.vehicles, booking.passengers);
+                if (!split.isEmpty()) {
+                    allotted.add(new Object[] { split.getVehicles(), split.getPassengers(), booking.id });
+                }
+                vehicles += booking.vehicles - split.getVehicles();
+                passengers += booking.passengers - split.getPassengers();
+                // Allotted space goes back to the customer's block, unless it was released
+                if (allotmentService.giveBack(from.id, booking.customerId, booking.allottedVehicles,
+                        booking.allottedPassengers)) {
+                    releasedVehicles += Math.max(0, booking.vehicles - booking.allottedVehicles);
+                    releasedPassengers += Math.max(0, booking.passengers - booking.allottedPassengers);
+                } else {
+                    releasedVehicles += booking.vehicles;
+                    releasedPassengers += booking.passengers;
+                }
+                records.add(BookingRecord.builder()
+                        .booking(bookingRepository.getReferenceById(booking.id))
+                        .action(TypeAction.BOOKING_UPDATED)
+                        .performedBy(actor)
+                        .description(String.format("Re-accommodated from sailing %d to sailing %d (departs %s). "
+                                + "Reason: %s", from.id, target.id, departs, reason))
+                        .currentValues(AuditChangeCodec.encode("Booking", false,
+                                List.of(new AuditChangeCodec.Change("scheduleId", from.id, target.id))))
+                        .createdAt(now)
+                        .build());
+                notifications.add(notificationService.buildStatusChangeNotification(
+                        String.valueOf(booking.customerId), booking.bookingCode, "RESCHEDULED",
+                        String.format("Your booking %s has been moved to the sailing departing at %s. Reason: %s",
+                                booking.bookingCode, departs, reason)));
+            }
+            capacity.add(new Object[] { vehicles, passengers, target.id });
+            movedTo.put(target.id, bookings.size());
+            moved += bookings.size();
+        }
+        if (!allotted.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE bookings SET allotted_vehicles = ?, allotted_passengers = ? "
+                    + "WHERE id = ?", allotted);
+        }
+        // Negative amounts give the moved public space back to the disrupted sailing
+        capacity.add(new Object[] { -releasedVehicles, -releasedPassengers, from.id });
+        jdbcTemplate.batchUpdate("UPDATE schedules SET "
+                + "available_vehicle_spaces = GREATEST(0, available_vehicle_spaces - ?), "
+                + "available_passenger_spaces = GREATEST(0, available_passenger_spaces - ?) WHERE id = ?", capacity);
+        return moved;
+    }
+
+    /**
+     * @param cause what happened to the sailing, e.g. "was cancelled"
+     */
+    private int cancelUnplaced(Sailing from, List<Affected> unplaced, String cause, String reason, Account actor,
+            LocalDateTime now, List<BookingRecord> records, List<Notification> notifications) {
+        if (unplaced.isEmpty()) {
+            return 0;
+        }
+        Timestamp ts = Timestamp.valueOf(now);
+        String cancellationReason = "Sailing " + cause + ": " + reason;
+        Long actorId = actor != null ? actor.getId() : null;
+        Map<BookingStatus, List<Affected>> byTarget = new LinkedHashMap<>();
+        for (Affected booking : unplaced) {
+            BookingStatus target = cancelTarget(booking);
+            if (target != null) {
+                byTarget.computeIfAbsent(target, t -> new ArrayList<>()).add(booking);
+            }
+        }
+
+        int cancelled = 0;
+        int vehicles = 0;
+        int passengers = 0;
+        for (Map.Entry<BookingStatus, List<Affected>> entry : byTarget.entrySet()) {
+            BookingStatus target = entry.getKey();
+            List<Affected> bookings = entry.getValue();
+            for (int i = 0; i < bookings.size(); i += chunkSize) {
+                List<Affected> chunk = bookings.subList(i, Math.min(i + chunkSize, bookings.size()));
+                List<Object> args = new ArrayList<>(chunk.size() + 5);
+                Collections.addAll(args, target.name(), ts, actorId, cancellationReason, ts);
+                chunk.forEach(booking -> args.add(booking.id));
+                jdbcTemplate.update("UPDATE bookings SET status = ?, cancelled_at = ?, cancelled_by = ?, "
+                        + "cancellation_reason = ?, updated_at = ? WHERE id IN (" + placeholders(chunk.size()) + ")",
+                        args.toArray());
+            }
+            for (Affected booking : bookings) {
+                bookingStatsService.statusChanged(booking.status, target, booking.totalAmount, now);
+                stateMachine.recordBulk(booking.status, target, 1);
+                if (!target.holdsCapacity()) {
+                    vehicles += booking.vehicles;
+                    passengers += booking.passengers;
+                    // Allotted space goes back to the customer's block, unless it was released
+                    if (allotmentService.giveBack(from.id, booking.customerId, booking.allottedVehicles,
+                            booking.allottedPassengers)) {
+                        vehicles -= Math.min(booking.vehicles, booking.allottedVehicles);
+                        passengers -= Math.min(booking.passengers, booking.allottedPassengers);
+                    }
+                }
+                records.add(BookingRecord.builder()
+                        .booking(bookingRepository.getReferenceById(booking.id))
+                        .action(TypeAction.BOOKING_CANCELLED)
+                        .performedBy(actor)
+                        .description(String.format("No alternative sailing with room after sailing %d %s. "
+                                + "Reason: %s", from.id, cause, reason))
+                        .currentValues(AuditChangeCodec.encode("Booking", false, List.of(
+                                new AuditChangeCodec.Change("status", booking.status.name(), target.name()),
+                                new AuditChangeCodec.Change("cancelledAt", null, now),
+                                new AuditChangeCodec.Change("cancelledById", null, actorId),
+                                new AuditChangeCodec.Change("cancellationReason", null, cancellationReason))))
+                        .createdAt(now)
+                        .build());
+                notifications.add(notificationService.buildStatusChangeNotification(
+                        String.valueOf(booking.customerId), booking.bookingCode,
+                        target == BookingStatus.IN_REFUND ? "IN_REFUND" : "CANCELLED",
+                        String.format("Your sailing for booking %s %s and no alternative sailing had "
+                                + "room.%s Reason: %s", booking.bookingCode, cause,
+                                target == BookingStatus.IN_REFUND ? " A refund has been started." : "", reason)));
+            }
+            cancelled += bookings.size();
+        }
+        if (vehicles > 0 || passengers > 0) {
+            jdbcTemplate.update("UPDATE schedules SET available_vehicle_spaces = available_vehicle_spaces + ?, "
+                    + "available_passenger_spaces = available_passenger_spaces + ? WHERE id = ?",
+                    vehicles, passengers, from.id);
+        }
+        return cancelled;
+    }
+
+    /**
+     * Status an unplaced booking is cancelled to: paid money goes to refund.
+     * Null when the booking cannot leave its current status.
+     */
+    private BookingStatus cancelTarget(Affected booking) {
+        BookingStatus target = booking.status == BookingStatus.PAID || booking.status == BookingStatus.IN_REVIEW
+                || booking.status == BookingStatus.IN_PROGRESS ? BookingStatus.IN_REFUND : BookingStatus.CANCELLED;
+        return stateMachine.canTransition(booking.status, target) ? target : null;
+    }
+
+    private Sailing lockSchedule(Long scheduleId) {
+        List<Sailing> rows = jdbcTemplate.query("SELECT id, route_id, departure_time, status, "
+                + "available_vehicle_spaces, available_passenger_spaces FROM schedules WHERE id = ? FOR UPDATE",
+                (rs, rowNum) -> new Sailing(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(),
+                        ScheduleStatus.valueOf(rs.getString(4)), rs.getObject(5, Integer.class),
+                        rs.getObject(6, Integer.class)),
+                scheduleId);
+        if (rows.isEmpty()) {
+            throw new DataNotFoundException("Schedule not found with id: " + scheduleId);
+        }
+        return rows.get(0);
+    }
+
+    private List<Affected> lockBookings(Long scheduleId, String excludedStatuses) {
+        return jdbcTemplate.query("SELECT b.id, b.booking_code, b.status, b.total_amount, b.customer_id, "
+                + "COALESCE(b.passenger_count, 0), "
+                + "(SELECT COALESCE(SUM(v.quantity), 0) FROM vehicles v WHERE v.booking_id = b.id), "
+                + "b.allotted_vehicles, b.allotted_passengers "
+                + "FROM bookings b WHERE b.schedule_id = ? AND b.status NOT IN (" + excludedStatuses + ") "
+                + "ORDER BY b.created_at, b.id FOR UPDATE",
+                (rs, rowNum) -> new Affected(rs.getLong(1), rs.getString(2), BookingStatus.valueOf(rs.getString(3)),
+                        rs.getBigDecimal(4), rs.getLong(5), rs.getInt(6), rs.getInt(7), rs.getInt(8), rs.getInt(9)),
+                scheduleId);
+    }
+
+    /**
+     * The next open sailings on the same route, soonest first
+     *
+     * @param before for a delay, only sailings departing before the new
+     *               departure time are worth moving to
+     */
+    private List<Sailing> lockAlternatives(Sailing disrupted, LocalDateTime before, LocalDateTime now) {
+        LocalDateTime until = disrupted.departureTime.plusHours(lookaheadHours);
+        if (before != null && before.isBefore(until)) {
+            until = before;
+        }
+        return jdbcTemplate.query("SELECT id, route_id, departure_time, status, available_vehicle_spaces, "
+                + "available_passenger_spaces FROM schedules WHERE route_id = ? AND id <> ? AND status = 'SCHEDULED' "
+                + "AND departure_time > ? AND departure_time < ? AND (booking_deadline IS NULL OR booking_deadline > ?) "
+                + "ORDER BY departure_time, id LIMIT ? FOR UPDATE",
+                (rs, rowNum) -> new Sailing(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(),
+                        ScheduleStatus.valueOf(rs.getString(4)), rs.getObject(5, Integer.class),
+                        rs.getObject(6, Integer.class)),
+                disrupted.routeId, disrupted.id, Timestamp.valueOf(now.isAfter(disrupted.departureTime)
+                        ? now : disrupted.departureTime),
+                Timestamp.valueOf(until), Timestamp.valueOf(now), maxAlternatives);
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static final class Sailing {
+        private final long id;
+        private final long routeId;
+        private final LocalDateTime departureTime;
+        private final ScheduleStatus status;
+        // Null means the sailing does not track that capacity
+        private Integer vehicleSpaces;
+        private Integer passengerSpaces;
+        // Customer ID -> allotment block left on this sailing during placement
+        private final Map<Long, int[]> blocks = new HashMap<>();
+
+        private Sailing(long id, long routeId, LocalDateTime departureTime, ScheduleStatus status,
+                Integer vehicleSpaces, Integer passengerSpaces) {
+            this.id = id;
+            this.routeId = routeId;
+            this.departureTime = departureTime;
+            this.status = status;
+            this.vehicleSpaces = vehicleSpaces;
+            this.passengerSpaces = passengerSpaces;
+        }
+
+        private boolean fits(int vehicles, int passengers) {
+            return (vehicleSpaces == null || vehicleSpaces >= vehicles)
+                    && (passengerSpaces == null || passengerSpaces >= passengers);
+        }
+
+        private void take(int vehicles, int passengers) {
+            if (vehicleSpaces != null) {
+                vehicleSpaces -= vehicles;
+            }
+            if (passengerSpaces != null) {
+                passengerSpaces -= passengers;
+            }
+        }
+    }
+
+    private static final class Affected {
+        private final long id;
+        private final String bookingCode;
+        private final BookingStatus status;
+        private final BigDecimal totalAmount;
+        private final long customerId;
+        private final int passengers;
+        private final int vehicles;
+        // Share of the above drawn from the customer's allotment block
+        private final int allottedVehicles;
+        private final int allottedPassengers;
+
+        private Affected(long id, String bookingCode, BookingStatus status, BigDecimal totalAmount, long customerId,
+                int passengers, int vehicles, int allottedVehicles, int allottedPassengers) {
+            this.id = id;
+            this.bookingCode = bookingCode;
+            this.status = status;
+            this.totalAmount = totalAmount;
+            this.customerId = customerId;
+            this.passengers = passengers;
+            this.vehicles = vehicles;
+            this.allottedVehicles = allottedVehicles;
+            this.allottedPassengers = allottedPassengers;
+        }
+    }
+}
@@ -0,0 +1,366 @@
+package org.vgu.backend.service.schedule;
+
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.dto.request.ScheduleGenerationRequest;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.exception.DataNotFoundException;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.berth.BerthAllocationService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Expands a recurrence rule (days of week x departure times over a date
+ * range) into a season of sailings for one ferry and route.
+ * The ferry row is locked and its existing sailings around the season are
+ * loaded once into an {@link IntervalTree}, so each generated sailing is
+ * checked in O(log n) without a query. Sailings within the season are
+ * checked against each other with a sweep in departure order. Both checks
+ * pad each sailing with the turnaround time. The remaining sailings are
+ * then given berths at both ports in one pass. The season is inserted with
+ * JDBC batches in the same transaction; with conflicts it is refused and
+ * the report returned, unless the planner asks to skip them.
+ */
+@Service
+public class ScheduleGeneratorService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleGeneratorService.class);
+
+    public enum ConflictType {
+        // The ferry would be on two sailings at once
+        DOUBLE_BOOKED,
+        // Less than the turnaround time in port between two sailings
+        TURNAROUND,
+        // No berth free at the departure or arrival port; the conflicting
+        // times are the berth slot that was needed
+        BERTH
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Conflict {
+        private final LocalDateTime departureTime;
+        private final LocalDateTime arrivalTime;
+        private final ConflictType type;
+        // Null when the other sailing is part of the same season
+        private final Long conflictingScheduleId;
+        private final LocalDateTime conflictingDepartureTime;
+        private final LocalDateTime conflictingArrivalTime;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class GenerationResult {
+        private final Long routeId;
+        private final Long ferryId;
+        private final int sailings;
+        private final int created;
+        // Departures in the past
+        private final int skipped;
+        private final List<Conflict> conflicts;
+        private final boolean applied;
+        // Sailings that got corporate allotment blocks
+        private final int allottedSailings;
+        private final long durationMs;
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AllotmentService allotmentService;
+    private final BerthAllocationService berthAllocationService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.schedule-generator.max-sailings:5000}")
+    private int maxSailings;
+
+    @Value("${app.schedule-generator.turnaround-minutes:60}")
+    private int defaultTurnaroundMinutes;
+
+    @Value("${app.schedule-generator.booking-deadline-minutes:60}")
+    private int defaultBookingDeadlineMinutes;
+
+    @Value("${app.schedule-generator.batch-size:500}")
+    private int batchSize;
+
+    public ScheduleGeneratorService(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            AllotmentService allotmentService, BerthAllocationService berthAllocationService,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.allotmentService = allotmentService;
+        this.berthAllocationService = berthAllocationService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public GenerationResult generate(ScheduleGenerationRequest request) {
+        if (request.getEndDate().isBefore(request.getStartDate())) {
+            throw new BusinessException("Season ends before it starts", "INVALID_SEASON");
+        }
+        long started = System.nanoTime();
+        String outcome = "failed";
+        try {
+            GenerationResult result = transactionTemplate.execute(tx -> {
+                GenerationResult generated = apply(request, started);
+                if (!generated.isApplied()) {
+                    tx.setRollbackOnly();
+                }
+                return generated;
+            });
+            outcome = result.isApplied() ? "created" : request.isDryRun() ? "planned" : "conflicts";
+            logger.info("Season for ferry {} on route {}: {} sailings, {} created, {} conflicts, {} in the past "
+                    + "({} ms)", request.getFerryId(), request.getRouteId(), result.getSailings(),
+                    result.getCreated(), result.getConflicts().size(), result.getSkipped(), result.getDurationMs());
+            return result;
+        } catch (BusinessException e) {
+            outcome = "rejected";
+            throw e;
+        } finally {
+            Timer.builder("app.schedule.generate")
+                    .description("Time to expand, check and insert a season of sailings")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private GenerationResult apply(ScheduleGenerationRequest request, long started) {
+        // Serialises seasons and vessel swaps for the same ferry
+        List<int[]> ferries = jdbcTemplate.query("SELECT capacity_vehicles, capacity_passengers, "
+                + "status = 'ACTIVE' FROM ferries WHERE id = ? FOR UPDATE",
+                (rs, rowNum) -> new int[] { rs.getInt(1), rs.getInt(2), rs.getBoolean(3) ? 1 : 0 },
+                request.getFerryId());
+        if (ferries.isEmpty()) {
+            throw new DataNotFoundException("Ferry not found with id: " + request.getFerryId());
+        }
+        if (ferries.get(0)[2] == 0) {
+            throw new BusinessException("Ferry " + request.getFerryId() + " is not active", "FERRY_UNAVAILABLE");
+        }
+        List<long[]> routes = jdbcTemplate.query("SELECT COALESCE(duration_hours, 0), departure_port_id, "
+                + "arrival_port_id FROM routes WHERE id = ? AND is_active = TRUE",
+                (rs, rowNum) -> new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) }, request.getRouteId());
+        if (routes.isEmpty()) {
+            throw new DataNotFoundException("Active route not found with id: " + request.getRouteId());
+        }
+        long[] route = routes.get(0);
+        int duration = request.getDurationMinutes() != null ? request.getDurationMinutes() : (int) route[0] * 60;
+        if (duration <= 0) {
+            throw new BusinessException("Route " + request.getRouteId() + " has no duration; set durationMinutes",
+                    "INVALID_SEASON");
+        }
+        int turnaround = request.getTurnaroundMinutes() != null ? request.getTurnaroundMinutes()
+                : defaultTurnaroundMinutes;
+
+        // Expand the rule, in departure order
+        LocalDateTime now = LocalDateTime.now();
+        Set<DayOfWeek> days = EnumSet.copyOf(request.getDaysOfWeek());
+        Set<LocalTime> times = new TreeSet<>(request.getDepartureTimes());
+        List<LocalDateTime> departures = new ArrayList<>();
+        int skipped = 0;
+        for (LocalDate date = request.getStartDate(); !date.isAfter(request.getEndDate()); date = date.plusDays(1)) {
+            if (!days.contains(date.getDayOfWeek())) {
+                continue;
+            }
+            for (LocalTime time : times) {
+                LocalDateTime departure = date.atTime(time);
+                if (departure.isAfter(now)) {
+                    departures.add(departure);
+                } else {
+                    skipped++;
+                }
+            }
+            if (departures.size() > maxSailings) {
+                throw new BusinessException("A season is limited to " + maxSailings + " sailings", "SEASON_TOO_LARGE");
+            }
+        }
+        if (departures.isEmpty()) {
+            return new GenerationResult(request.getRouteId(), request.getFerryId(), 0, 0, skipped, List.of(),
+                    false, 0, elapsedMs(started));
+        }
+
+        // Load the ferry's sailings around the season once
+        LocalDateTime first = departures.get(0);
+        LocalDateTime last = departures.get(departures.size() - 1).plusMinutes(duration);
+        List<IntervalTree.Interval<Existing>> loaded = jdbcTemplate.query("SELECT id, departure_time, arrival_time "
+                + "FROM schedules WHERE ferry_id = ? AND status <> 'CANCELLED' AND departure_time < ? "
+                + "AND arrival_time > ?",
+                (rs, rowNum) -> {
+                    Existing existing = new Existing(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(),
+                            rs.getTimestamp(3).toLocalDateTime());
+                    return new IntervalTree.Interval<>(minutes(existing.departureTime),
+                            minutes(existing.arrivalTime) + turnaround, existing);
+                },
+                request.getFerryId(), Timestamp.valueOf(last.plusMinutes(turnaround)),
+                Timestamp.valueOf(first.minusMinutes(turnaround)));
+        IntervalTree<Existing> existing = new IntervalTree<>(loaded);
+
+        List<Conflict> conflicts = new ArrayList<>();
+        List<LocalDateTime> accepted = new ArrayList<>(departures.size());
+        // Latest padded end among accepted season sailings, and its departure
+        long seasonEnd = Long.MIN_VALUE;
+        LocalDateTime seasonEndDeparture = null;
+        for (LocalDateTime departure : departures) {
+            LocalDateTime arrival = departure.plusMinutes(duration);
+            long start = minutes(departure);
+            long end = minutes(arrival) + turnaround;
+
+            List<IntervalTree.Interval<Existing>> clashes = existing.overlapping(start, end);
+            if (!clashes.isEmpty()) {
+                Existing other = clashes.get(0).value;
+                conflicts.add(new Conflict(departure, arrival,
+                        overlaps(departure, arrival, other.departureTime, other.arrivalTime)
+                                ? ConflictType.DOUBLE_BOOKED : ConflictType.TURNAROUND,
+                        other.id, other.departureTime, other.arrivalTime));
+                continue;
+            }
+            if (start < seasonEnd) {
+                LocalDateTime otherArrival = seasonEndDeparture.plusMinutes(duration);
+                conflicts.add(new Conflict(departure, arrival,
+                        overlaps(departure, arrival, seasonEndDeparture, otherArrival)
+                                ? ConflictType.DOUBLE_BOOKED : ConflictType.TURNAROUND,
+                        null, seasonEndDeparture, otherArrival));
+                continue;
+            }
+            accepted.add(departure);
+            seasonEnd = end;
+            seasonEndDeparture = departure;
+        }
+
+        // Berths at both ports, against the slots already held and the season itself
+        List<BerthAllocationService.Sailing> sailings = new ArrayList<>(accepted.size());
+        for (LocalDateTime departure : accepted) {
+            sailings.add(new BerthAllocationService.Sailing(null, route[1], route[2], departure,
+                    departure.plusMinutes(duration)));
+        }
+        BerthAllocationService.Plan berths = berthAllocationService.plan(sailings, !request.isDryRun());
+        if (berths.hasConflicts()) {
+            for (BerthAllocationService.BerthConflict conflict : berths.getConflicts()) {
+                conflicts.add(new Conflict(conflict.getDepartureTime(),
+                        conflict.getDepartureTime().plusMinutes(duration), ConflictType.BERTH,
+                        conflict.getOccupiedBy().isEmpty() ? null : conflict.getOccupiedBy().get(0),
+                        conflict.getSlotStart(), conflict.getSlotEnd()));
+            }
+            conflicts.sort(Comparator.comparing(Conflict::getDepartureTime));
+            accepted = new ArrayList<>(berths.getPlaced().size());
+            for (BerthAllocationService.Sailing sailing : berths.getPlaced()) {
+                accepted.add(sailing.getDepartureTime());
+            }
+        }
+
+        boolean apply = !request.isDryRun() && (conflicts.isEmpty() || request.isSkipConflicts());
+        if (!apply || accepted.isEmpty()) {
+            return new GenerationResult(request.getRouteId(), request.getFerryId(), departures.size(), 0, skipped,
+                    conflicts, false, 0, elapsedMs(started));
+        }
+
+        insert(request, accepted, duration, ferries.get(0), now);
+        assignIds(request.getFerryId(), berths.getPlaced());
+        berthAllocationService.persist(berths);
+        int allotted = allotmentService.applyToRoute(request.getRouteId(), accepted.get(0),
+                accepted.get(accepted.size() - 1));
+        return new GenerationResult(request.getRouteId(), request.getFerryId(), departures.size(), accepted.size(),
+                skipped, conflicts, true, allotted, elapsedMs(started));
+    }
+
+    private void insert(ScheduleGenerationRequest request, List<LocalDateTime> departures, int duration,
+            int[] ferry, LocalDateTime now) {
+        int deadline = request.getBookingDeadlineMinutes() != null ? request.getBookingDeadlineMinutes()
+                : defaultBookingDeadlineMinutes;
+        Timestamp createdAt = Timestamp.valueOf(now);
+        List<Object[]> rows = new ArrayList<>(Math.min(batchSize, departures.size()));
+        for (LocalDateTime departure : departures) {
+            rows.add(new Object[] { request.getRouteId(), request.getFerryId(), Timestamp.valueOf(departure),
+                    Timestamp.valueOf(departure.plusMinutes(duration)), ferry[0], ferry[1],
+                    Timestamp.valueOf(departure.minusMinutes(deadline)),
+                    request.getCheckInOpensMinutes() != null
+                            ? Time.valueOf(departure.minusMinutes(request.getCheckInOpensMinutes()).toLocalTime())
+                            : null,
+                    request.getCheckInClosesMinutes() != null
+                            ? Time.valueOf(departure.minusMinutes(request.getCheckInClosesMinutes()).toLocalTime())
+                            : null,
+                    request.getNotes(), createdAt, createdAt });
+            if (rows.size() == batchSize) {
+                insertBatch(rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            insertBatch(rows);
+        }
+    }
+
+    /**
+     * Reads back the ids of the inserted sailings; a ferry has one sailing
+     * per departure time after the conflict checks
+     */
+    private void assignIds(Long ferryId, List<BerthAllocationService.Sailing> sailings) {
+        Map<LocalDateTime, Long> ids = new HashMap<>();
+        jdbcTemplate.query("SELECT id, departure_time FROM schedules WHERE ferry_id = ? AND status = 'SCHEDULED' "
+                + "AND departure_time BETWEEN ? AND ?",
+                rs -> {
+                    ids.put(rs.getTimestamp(2).toLocalDateTime(), rs.getLong(1));
+                },
+                ferryId, Timestamp.valueOf(sailings.get(0).getDepartureTime()),
+                Timestamp.valueOf(sailings.get(sailings.size() - 1).getDepartureTime()));
+        for (BerthAllocationService.Sailing sailing : sailings) {
+            sailing.setScheduleId(ids.get(sailing.getDepartureTime()));
+        }
+    }
+
+    private void insertBatch(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO schedules (route_id, ferry_id, departure_time, arrival_time, status, "
+                + "available_vehicle_spaces, available_passenger_spaces, booking_deadline, check_in_start_time, "
+                + "check_in_end_time, notes, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, 'SCHEDULED', ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+
+    private static boolean overlaps(LocalDateTime departure, LocalDateTime arrival, LocalDateTime otherDeparture,
+            LocalDateTime otherArrival) {
+        return departure.isBefore(otherArrival) && otherDeparture.isBefore(arrival);
+    }
+
+    private static long minutes(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static long elapsedMs(long started) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    private static final class Existing {
+        private final long id;
+        private final LocalDateTime departureTime;
+        private final LocalDateTime arrivalTime;
+
+        private Existing(long id, LocalDateTime departureTime, LocalDateTime arrivalTime) {
+            this.id = id;
+            this.departureTime = departureTime;
+            this.arrivalTime = arrivalTime;
+        }
+    }
+}
@@ -1,64 +1,98 @@
 package org.vgu.backend.config;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
 
 /**
- * Test class to verify async configuration and bean injection
+ * Test class to verify async configuration and bean injection.
+ * Executors are exposed as {@link AsyncTaskExecutor}; the concrete type
+ * depends on app.async.default-mode.
  */
 @SpringBootTest
 @ActiveProfiles("test")
+@TestPropertySource(properties = "app.async.default-mode=PLATFORM")
 public class AsyncConfigTest {
 
     @Autowired
     @Qualifier("taskExecutor")
-    private ThreadPoolTaskExecutor taskExecutor;
+    private AsyncTaskExecutor taskExecutor;
 
     @Autowired
     @Qualifier("notificationExecutor")
-    private ThreadPoolTaskExecutor notificationExecutor;
+    private AsyncTaskExecutor notificationExecutor;
 
     @Autowired
     @Qualifier("emailExecutor")
-    private ThreadPoolTaskExecutor emailExecutor;
+    private AsyncTaskExecutor emailExecutor;
 
     @Test
     public void testTaskExecutorBeanInjection() {
         assertNotNull(taskExecutor, "taskExecutor bean should be injected");
-        assertNotNull(taskExecutor.getThreadPoolExecutor(), "ThreadPoolExecutor should be initialized");
+        assertNotNull(pool(taskExecutor).getThreadPoolExecutor(), "ThreadPoolExecutor should be initialized");
     }
 
     @Test
     public void testNotificationExecutorBeanInjection() {
         assertNotNull(notificationExecutor, "notificationExecutor bean should be injected");
-        assertNotNull(notificationExecutor.getThreadPoolExecutor(), "ThreadPoolExecutor should be initialized");
+        assertNotNull(pool(notificationExecutor).getThreadPoolExecutor(), "ThreadPoolExecutor should be initialized");
     }
 
     @Test
     public void testEmailExecutorBeanInjection() {
         assertNotNull(emailExecutor, "emailExecutor bean should be injected");
-        assertNotNull(emailExecutor.getThreadPoolExecutor(), "ThreadPoolExecutor should be initialized");
+        assertNotNull(pool(emailExecutor).getThreadPoolExecutor(), "ThreadPoolExecutor should be initialized");
     }
 
     @Test
     public void testThreadPoolConfiguration() {
         // Test main executor configuration
-        assertEquals(4, taskExecutor.getCorePoolSize());
-        assertEquals(8, taskExecutor.getMaxPoolSize());
+        assertEquals(4, pool(taskExecutor).getCorePoolSize());
+        assertEquals(8, pool(taskExecutor).getMaxPoolSize());
 
         // Test notification executor configuration
-        assertEquals(2, notificationExecutor.getCorePoolSize());
-        assertEquals(4, notificationExecutor.getMaxPoolSize());
+        assertEquals(2, pool(notificationExecutor).getCorePoolSize());
+        assertEquals(4, pool(notificationExecutor).getMaxPoolSize());
 
         // Test email executor configuration
-        assertEquals(2, emailExecutor.getCorePoolSize());
-        assertEquals(4, emailExecutor.getMaxPoolSize());
+        assertEquals(2, pool(emailExecutor).getCorePoolSize());
+        assertEquals(4, pool(emailExecutor).getMaxPoolSize());
+    }
+
+    private static ThreadPoolTaskExecutor pool(AsyncTaskExecutor executor) {
+        return assertInstanceOf(ThreadPoolTaskExecutor.class, executor, "PLATFORM mode should use a thread pool");
+    }
+
+    @Nested
+    @TestPropertySource(properties = "app.async.default-mode=VIRTUAL")
+    class VirtualMode {
+
+        @Autowired
+        @Qualifier("taskExecutor")
+        private AsyncTaskExecutor virtualTaskExecutor;
+
+        @Autowired
+        @Qualifier("notificationExecutor")
+        private AsyncTaskExecutor virtualNotificationExecutor;
+
+        @Test
+        public void testExecutorsRunOnVirtualThreads() throws Exception {
+            assertInstanceOf(SimpleAsyncTaskExecutor.class, virtualTaskExecutor);
+            assertInstanceOf(SimpleAsyncTaskExecutor.class, virtualNotificationExecutor);
+            assertTrue(virtualTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get(),
+                    "Tasks should run on virtual threads");
+        }
     }
 }
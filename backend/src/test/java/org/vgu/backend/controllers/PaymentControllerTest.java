@@ -0,0 +1,109 @@
+package org.vgu.backend.controllers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.vgu.backend.dto.response.PaymentHistoryItem;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.Customer;
+import org.vgu.backend.repository.AccountRepository;
+import org.vgu.backend.repository.CustomerRepository;
+import org.vgu.backend.service.payment.IPaymentService;
+
+/**
+ * Keyset paging of the customer's payment history
+ */
+public class PaymentControllerTest {
+
+    private IPaymentService paymentService;
+    private Authentication authentication;
+    private PaymentController controller;
+
+    @BeforeEach
+    public void setUp() {
+        paymentService = mock(IPaymentService.class);
+        AccountRepository accountRepository = mock(AccountRepository.class);
+        CustomerRepository customerRepository = mock(CustomerRepository.class);
+        when(accountRepository.findByUsername("customer1")).thenReturn(Optional.of(Account.builder().id(3L).build()));
+        when(customerRepository.findByAccountId(3L)).thenReturn(Optional.of(Customer.builder().id(7L).build()));
+        authentication = mock(Authentication.class);
+        when(authentication.getName()).thenReturn("customer1");
+
+        controller = new PaymentController();
+        ReflectionTestUtils.setField(controller, "paymentService", paymentService);
+        ReflectionTestUtils.setField(controller, "accountRepository", accountRepository);
+        ReflectionTestUtils.setField(controller, "customerRepository", customerRepository);
+    }
+
+    @Test
+    public void testFullPageReturnsCursorOfItsLastPayment() {
+        // One row more than asked for means another page follows
+        when(paymentService.getPaymentHistory(7L, null, 3)).thenReturn(items(9, 8, 7));
+
+        Map<String, Object> body = body(controller.getPaymentHistory(authentication, null, 2));
+
+        assertEquals(2, body.get("count"));
+        assertEquals(List.of(9L, 8L), ids(body));
+        assertTrue((Boolean) body.get("hasMore"));
+        assertEquals(8L, body.get("nextCursor"));
+    }
+
+    @Test
+    public void testLastPageHasNoCursor() {
+        when(paymentService.getPaymentHistory(7L, 8L, 3)).thenReturn(items(7, 5));
+
+        Map<String, Object> body = body(controller.getPaymentHistory(authentication, 8L, 2));
+
+        assertEquals(List.of(7L, 5L), ids(body));
+        assertFalse((Boolean) body.get("hasMore"));
+        assertNull(body.get("nextCursor"));
+    }
+
+    @Test
+    public void testPageSizeIsClamped() {
+        when(paymentService.getPaymentHistory(eq(7L), any(), anyInt())).thenReturn(List.of());
+
+        controller.getPaymentHistory(authentication, null, 500);
+        controller.getPaymentHistory(authentication, null, 0);
+
+        verify(paymentService).getPaymentHistory(7L, null, 101);
+        verify(paymentService).getPaymentHistory(7L, null, 2);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> body(ResponseEntity<?> response) {
+        assertEquals(200, response.getStatusCode().value());
+        return (Map<String, Object>) response.getBody();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> ids(Map<String, Object> body) {
+        return ((List<PaymentHistoryItem>) body.get("payments")).stream().map(PaymentHistoryItem::getId).toList();
+    }
+
+    private static List<PaymentHistoryItem> items(long... ids) {
+        return LongStream.of(ids).mapToObj(id -> {
+            PaymentHistoryItem item = new PaymentHistoryItem();
+            item.setId(id);
+            return item;
+        }).toList();
+    }
+}
@@ -0,0 +1,71 @@
+package org.vgu.backend.enums;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Pins the booking transition matrix cell by cell
+ */
+public class BookingStatusTest {
+
+    private static final Map<BookingStatus, Set<BookingStatus>> ALLOWED = Map.of(
+            BookingStatus.PENDING, EnumSet.of(BookingStatus.CONFIRMED, BookingStatus.REJECTED,
+                    BookingStatus.CANCELLED, BookingStatus.IN_REFUND, BookingStatus.REFUNDED),
+            BookingStatus.CONFIRMED, EnumSet.of(BookingStatus.WAITING_FOR_PAYMENT, BookingStatus.PAID,
+                    BookingStatus.IN_REVIEW, BookingStatus.CANCELLED, BookingStatus.IN_REFUND,
+                    BookingStatus.REFUNDED),
+            BookingStatus.WAITING_FOR_PAYMENT, EnumSet.of(BookingStatus.PAID, BookingStatus.CANCELLED,
+                    BookingStatus.IN_REFUND, BookingStatus.REFUNDED),
+            BookingStatus.PAID, EnumSet.of(BookingStatus.IN_REVIEW, BookingStatus.IN_PROGRESS,
+                    BookingStatus.CANCELLED, BookingStatus.IN_REFUND, BookingStatus.REFUNDED),
+            BookingStatus.IN_REVIEW, EnumSet.of(BookingStatus.IN_PROGRESS, BookingStatus.CANCELLED,
+                    BookingStatus.IN_REFUND, BookingStatus.REFUNDED),
+            BookingStatus.IN_PROGRESS, EnumSet.of(BookingStatus.COMPLETED, BookingStatus.CANCELLED,
+                    BookingStatus.IN_REFUND, BookingStatus.REFUNDED),
+            BookingStatus.IN_REFUND, EnumSet.of(BookingStatus.REFUNDED, BookingStatus.CANCELLED));
+
+    @Test
+    public void testTransitionMatrix() {
+        for (BookingStatus from : BookingStatus.values()) {
+            Set<BookingStatus> allowed = ALLOWED.getOrDefault(from, EnumSet.noneOf(BookingStatus.class));
+            for (BookingStatus to : BookingStatus.values()) {
+                assertEquals(allowed.contains(to), from.canTransitionTo(to), from + " -> " + to);
+            }
+        }
+    }
+
+    @Test
+    public void testTerminalStatusesHaveNoTransitions() {
+        for (BookingStatus from : BookingStatus.values()) {
+            if (!from.isTerminal()) {
+                continue;
+            }
+            for (BookingStatus to : BookingStatus.values()) {
+                assertFalse(from.canTransitionTo(to), from + " is terminal but allows " + to);
+            }
+        }
+    }
+
+    @Test
+    public void testNoSelfTransitions() {
+        for (BookingStatus status : BookingStatus.values()) {
+            assertFalse(status.canTransitionTo(status), status + " -> " + status);
+        }
+    }
+
+    @Test
+    public void testCapacityIsHeldUntilTheBookingEnds() {
+        assertFalse(BookingStatus.REJECTED.holdsCapacity());
+        assertFalse(BookingStatus.CANCELLED.holdsCapacity());
+        assertFalse(BookingStatus.REFUNDED.holdsCapacity());
+        assertTrue(BookingStatus.IN_REFUND.holdsCapacity());
+        assertTrue(BookingStatus.COMPLETED.holdsCapacity());
+    }
+}
@@ -0,0 +1,162 @@
+package org.vgu.backend.service.allotment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.vgu.backend.repository.CapacityAllotmentRepository;
+import org.vgu.backend.repository.CustomerRepository;
+import org.vgu.backend.repository.RouteRepository;
+import org.vgu.backend.service.lease.JobLeaseService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AllotmentServiceTest {
+
+    private static final long SCHEDULE = 10L;
+    private static final long CUSTOMER = 7L;
+
+    private JdbcTemplate jdbcTemplate;
+    private AllotmentService allotmentService;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        allotmentService = new AllotmentService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(CapacityAllotmentRepository.class), mock(CustomerRepository.class),
+                mock(RouteRepository.class), new SimpleMeterRegistry(), mock(JobLeaseService.class));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testConsumeTakesWhatTheBlockCovers() {
+        loadBlock(LocalDateTime.now().plusDays(1), 5, 10);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+
+        AllotmentService.Split split = allotmentService.consume(SCHEDULE, CUSTOMER, 3, 12);
+
+        assertEquals(3, split.getVehicles());
+        assertEquals(10, split.getPassengers());
+        assertRemaining(2, 0);
+    }
+
+    @Test
+    public void testConsumeWithoutBlockUsesThePublicPool() {
+        assertSame(AllotmentService.NONE, allotmentService.consume(SCHEDULE, CUSTOMER, 3, 2));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    public void testReleasedBlockIsNotDrawnOn() {
+        loadBlock(LocalDateTime.now().minusMinutes(1), 5, 10);
+
+        assertSame(AllotmentService.NONE, allotmentService.consume(SCHEDULE, CUSTOMER, 3, 2));
+        assertRemaining(0, 0);
+    }
+
+    @Test
+    public void testStaleBlockFallsBackToThePublicPool() {
+        loadBlock(LocalDateTime.now().plusDays(1), 5, 10);
+        // Drawn down on another node; the reload finds nothing left
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(0);
+
+        assertSame(AllotmentService.NONE, allotmentService.consume(SCHEDULE, CUSTOMER, 3, 2));
+        assertRemaining(0, 0);
+    }
+
+    @Test
+    public void testRollbackReturnsConsumedSpace() {
+        loadBlock(LocalDateTime.now().plusDays(1), 5, 10);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        allotmentService.consume(SCHEDULE, CUSTOMER, 3, 4);
+        assertRemaining(2, 6);
+
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        assertRemaining(5, 10);
+    }
+
+    @Test
+    public void testCommitKeepsConsumedSpace() {
+        loadBlock(LocalDateTime.now().plusDays(1), 5, 10);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        allotmentService.consume(SCHEDULE, CUSTOMER, 3, 4);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertRemaining(2, 6);
+    }
+
+    @Test
+    public void testGiveBackCreditsTheBlockOnlyAfterCommit() {
+        loadBlock(LocalDateTime.now().plusDays(1), 1, 2);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(1);
+        TransactionSynchronizationManager.initSynchronization();
+
+        assertTrue(allotmentService.giveBack(SCHEDULE, CUSTOMER, 2, 3));
+        assertRemaining(1, 2);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertRemaining(3, 5);
+    }
+
+    @Test
+    public void testGiveBackToReleasedBlockReturnsFalse() {
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenReturn(0);
+
+        assertFalse(allotmentService.giveBack(SCHEDULE, CUSTOMER, 2, 3));
+        assertFalse(allotmentService.giveBack(SCHEDULE, CUSTOMER, 0, 0));
+    }
+
+    private void loadBlock(LocalDateTime releaseAt, int vehicles, int passengers) {
+        doAnswer(invocation -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(1)).thenReturn(SCHEDULE);
+            when(rs.getLong(2)).thenReturn(CUSTOMER);
+            when(rs.getTimestamp(3)).thenReturn(Timestamp.valueOf(releaseAt));
+            when(rs.getInt(4)).thenReturn(vehicles);
+            when(rs.getInt(5)).thenReturn(passengers);
+            invocation.<RowCallbackHandler>getArgument(1).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        allotmentService.reloadAll();
+    }
+
+    private void assertRemaining(int vehicles, int passengers) {
+        AllotmentService.Remaining remaining = allotmentService.remaining(SCHEDULE, CUSTOMER);
+        assertEquals(vehicles, remaining.getVehicleSpaces(), "vehicle spaces");
+        assertEquals(passengers, remaining.getPassengerSpaces(), "passenger spaces");
+    }
+
+    private static void complete(int status) {
+        TransactionSynchronizationManager.getSynchronizations().forEach(sync -> sync.afterCompletion(status));
+    }
+}
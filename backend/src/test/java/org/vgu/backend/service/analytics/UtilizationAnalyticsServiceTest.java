@@ -0,0 +1,241 @@
+package org.vgu.backend.service.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Cube keys of the utilization report and incremental merges of the
+ * columnar snapshot
+ */
+public class UtilizationAnalyticsServiceTest {
+
+    private static final LocalDate DAY = LocalDate.now().minusMonths(1);
+
+    // schedules joined with their ferry and booked space, by id: ferry_id,
+    // route_id, departure_time, cancelled, capacities, vehicles, passengers
+    private final TreeMap<Long, Object[]> facts = new TreeMap<>();
+    // Schedule ids the change query returns
+    private final List<Long> changed = new ArrayList<>();
+    private final List<List<Object>> reread = new ArrayList<>();
+    private UtilizationAnalyticsService service;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            List<Object[]> rows = new ArrayList<>();
+            if (sql.contains("s.id IN")) {
+                // The filter arguments are bound twice
+                List<Object> ids = Arrays.asList(args).subList(0, args.length / 2);
+                reread.add(ids);
+                facts.forEach((id, row) -> {
+                    if (ids.contains(id)) {
+                        rows.add(row(id, row));
+                    }
+                });
+            } else {
+                LocalDateTime cutoff = ((Timestamp) args[0]).toLocalDateTime();
+                facts.forEach((id, row) -> {
+                    if (!((LocalDateTime) row[2]).isBefore(cutoff)) {
+                        rows.add(row(id, row));
+                    }
+                });
+            }
+            for (Object[] row : rows) {
+                invocation.<RowCallbackHandler>getArgument(1).processRow(resultSet(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenAnswer(invocation -> new ArrayList<>(changed));
+
+        service = new UtilizationAnalyticsService(jdbcTemplate, mock(AsyncTaskExecutor.class));
+        ReflectionTestUtils.setField(service, "historyYears", 3);
+        ReflectionTestUtils.setField(service, "overlapMinutes", 5);
+        ReflectionTestUtils.setField(service, "chunkSize", 500);
+    }
+
+    @Test
+    public void testCellKeysRoundTripEveryDimension() {
+        LocalDateTime midnight = DAY.atStartOfDay();
+        LocalDateTime evening = DAY.atTime(23, 30);
+        // Route ids use the full 30 bits of their field
+        fact(1L, 70_000L, 1_000_000_000L, midnight, false, 10, 100, 4, 50);
+        fact(2L, 70_000L, 1_000_000_000L, midnight.plusMinutes(45), false, 10, 100, 6, 30);
+        fact(3L, 1L, 2L, evening, false, 10, 100, 1, 10);
+        service.reload();
+
+        UtilizationAnalyticsService.UtilizationReport report = service.utilization(null, null, null, null,
+                EnumSet.allOf(UtilizationAnalyticsService.Dimension.class));
+
+        assertEquals(3, report.getSailings());
+        assertEquals(2, report.getCells().size());
+        UtilizationAnalyticsService.Cell small = report.getCells().get(0);
+        assertEquals(1L, small.getFerryId());
+        assertEquals(2L, small.getRouteId());
+        assertEquals(DAY.getDayOfWeek(), small.getDayOfWeek());
+        assertEquals(23, small.getHour());
+
+        UtilizationAnalyticsService.Cell large = report.getCells().get(1);
+        assertEquals(70_000L, large.getFerryId());
+        assertEquals(1_000_000_000L, large.getRouteId());
+        assertEquals(DAY.getDayOfWeek(), large.getDayOfWeek());
+        // Midnight is hour 0, not an ungrouped hour
+        assertEquals(0, large.getHour());
+        assertEquals(2, large.getSailings());
+        assertEquals(20, large.getVehicleCapacity());
+        assertEquals(10, large.getVehiclesCarried());
+        assertEquals(0.5, large.getVehicleLoadFactor());
+        assertEquals(0.4, large.getPassengerLoadFactor());
+    }
+
+    @Test
+    public void testUngroupedDimensionsAreNull() {
+        fact(1L, 1L, 2L, DAY.atTime(8, 0), false, 10, 300, 3, 100);
+        fact(2L, 1L, 3L, DAY.plusDays(1).atTime(9, 0), false, 10, 300, 0, 0);
+        fact(3L, 4L, 2L, DAY.plusDays(2).atTime(8, 0), false, 10, 300, 5, 200);
+        service.reload();
+
+        UtilizationAnalyticsService.UtilizationReport byRoute = service.utilization(null, null, null, null,
+                Set.of(UtilizationAnalyticsService.Dimension.ROUTE));
+        assertEquals(2, byRoute.getCells().size());
+        UtilizationAnalyticsService.Cell route = byRoute.getCells().get(0);
+        assertEquals(2L, route.getRouteId());
+        assertNull(route.getFerryId());
+        assertNull(route.getDayOfWeek());
+        assertNull(route.getHour());
+        assertEquals(2, route.getSailings());
+        assertEquals(0.5, route.getPassengerLoadFactor());
+
+        UtilizationAnalyticsService.UtilizationReport total = service.utilization(null, null, null, null, Set.of());
+        assertEquals(1, total.getCells().size());
+        assertEquals(3, total.getSailings());
+        assertEquals(8, total.getCells().get(0).getVehiclesCarried());
+        // 300 of 900 passenger places
+        assertEquals(0.3333, total.getCells().get(0).getPassengerLoadFactor());
+    }
+
+    @Test
+    public void testFiltersAndCancelledSailings() {
+        fact(1L, 1L, 2L, DAY.atTime(8, 0), false, 10, 100, 5, 50);
+        fact(2L, 1L, 2L, DAY.atTime(12, 0), true, 10, 100, 0, 0);
+        fact(3L, 1L, 2L, DAY.plusDays(1).atTime(8, 0), false, 10, 100, 2, 20);
+        fact(4L, 9L, 2L, DAY.atTime(8, 0), false, 10, 100, 10, 100);
+        service.reload();
+
+        assertEquals(3, service.utilization(null, null, null, null, Set.of()).getSailings());
+        assertEquals(2, service.utilization(1L, null, null, null, Set.of()).getSailings());
+        // The end date is inclusive
+        assertEquals(1, service.utilization(1L, 2L, DAY, DAY, Set.of()).getSailings());
+        assertEquals(2, service.utilization(1L, 2L, DAY, DAY.plusDays(1), Set.of()).getSailings());
+        assertEquals(0, service.utilization(null, 3L, null, null, Set.of()).getSailings());
+    }
+
+    @Test
+    public void testRefreshMergesOnlyChangedSailings() {
+        fact(1L, 1L, 2L, DAY.atTime(8, 0), false, 10, 100, 5, 50);
+        fact(2L, 1L, 2L, DAY.atTime(12, 0), false, 10, 100, 5, 50);
+        fact(3L, 1L, 2L, DAY.atTime(16, 0), false, 10, 100, 5, 50);
+        service.reload();
+
+        // Unchanged sailing 1 moves in the database but keeps its snapshot row
+        fact(1L, 1L, 2L, DAY.atTime(8, 0), false, 10, 100, 0, 0);
+        fact(2L, 1L, 2L, DAY.atTime(12, 0), false, 10, 100, 10, 100);
+        fact(3L, 1L, 2L, DAY.atTime(16, 0), true, 10, 100, 5, 50);
+        fact(4L, 1L, 2L, DAY.atTime(20, 0), false, 10, 100, 1, 10);
+        changed.addAll(List.of(4L, 3L, 2L));
+        service.refresh();
+
+        assertEquals(List.of(List.of(2L, 3L, 4L)), reread);
+        UtilizationAnalyticsService.UtilizationReport report = service.utilization(null, null, null, null,
+                Set.of(UtilizationAnalyticsService.Dimension.HOUR));
+        assertEquals(List.of(8, 12, 20), report.getCells().stream()
+                .map(UtilizationAnalyticsService.Cell::getHour).toList());
+        assertEquals(List.of(5L, 10L, 1L), report.getCells().stream()
+                .map(UtilizationAnalyticsService.Cell::getVehiclesCarried).toList());
+        assertEquals(4, service.getStatus().get("sailings"));
+    }
+
+    @Test
+    public void testRefreshReadsChangesInChunksAndDropsExpiredSailings() {
+        fact(1L, 1L, 2L, DAY.minusYears(2).atTime(8, 0), false, 10, 100, 5, 50);
+        fact(2L, 1L, 2L, DAY.atTime(8, 0), false, 10, 100, 5, 50);
+        service.reload();
+        assertEquals(2, service.getStatus().get("sailings"));
+
+        ReflectionTestUtils.setField(service, "historyYears", 1);
+        ReflectionTestUtils.setField(service, "chunkSize", 2);
+        for (long id = 3; id <= 5; id++) {
+            fact(id, 1L, 2L, DAY.atTime((int) id, 0), false, 10, 100, 1, 10);
+            changed.add(id);
+        }
+        service.refresh();
+
+        assertEquals(List.of(List.of(3L, 4L), List.of(5L)), reread);
+        // Sailing 1 fell out of the history window without changing
+        assertEquals(4, service.getStatus().get("sailings"));
+        assertTrue(service.utilization(null, null, DAY.minusYears(3), DAY.minusYears(1), Set.of()).getCells()
+                .isEmpty());
+    }
+
+    @Test
+    public void testRefreshBeforeLoadDoesNothing() {
+        service.refresh();
+
+        assertEquals(false, service.isReady());
+        assertTrue(reread.isEmpty());
+    }
+
+    private void fact(long id, long ferryId, long routeId, LocalDateTime departure, boolean cancelled,
+            int vehicleCapacity, int passengerCapacity, int vehicles, int passengers) {
+        facts.put(id, new Object[] { ferryId, routeId, departure, cancelled, vehicleCapacity, passengerCapacity,
+                vehicles, passengers });
+    }
+
+    private static Object[] row(long id, Object[] fact) {
+        Object[] row = new Object[fact.length + 1];
+        row[0] = id;
+        System.arraycopy(fact, 0, row, 1, fact.length);
+        return row;
+    }
+
+    private static ResultSet resultSet(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                case "getInt" -> ((Number) value).intValue();
+                default -> value;
+            };
+        });
+    }
+}
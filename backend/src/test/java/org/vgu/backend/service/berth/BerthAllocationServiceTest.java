@@ -0,0 +1,169 @@
+package org.vgu.backend.service.berth;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.vgu.backend.exception.BusinessException;
+
+public class BerthAllocationServiceTest {
+
+    private static final long PORT = 1L;
+    // No berths registered, so not constrained
+    private static final long OPEN_PORT = 2L;
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 6, 1, 0, 0);
+
+    private final List<Object[]> berths = new ArrayList<>();
+    private final List<Object[]> slots = new ArrayList<>();
+    private BerthAllocationService service;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Object[] row : sql.contains("FROM berths") ? berths : slots) {
+                handler.processRow(row(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        service = new BerthAllocationService(jdbcTemplate, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "departureMinutes", 60);
+        ReflectionTestUtils.setField(service, "arrivalMinutes", 45);
+        ReflectionTestUtils.setField(service, "maxWindowDays", 31);
+
+        berths.add(new Object[] { 100L, PORT, "B1" });
+        berths.add(new Object[] { 101L, PORT, "B2" });
+        // Schedule 900 holds B1 from 08:00 to 10:00
+        slots.add(new Object[] { 100L, 900L, "DEPARTURE", at(8, 0), at(10, 0) });
+    }
+
+    @Test
+    public void testOverlappingSlotMovesToAnotherBerth() {
+        // Boarding from 09:30 overlaps B1 until 10:00
+        BerthAllocationService.Plan plan = service.plan(List.of(sailing(null, 10, 30)), false);
+
+        assertFalse(plan.hasConflicts());
+        assertEquals(1, plan.getSlots().size());
+        assertEquals(101L, plan.getSlots().get(0).getBerthId());
+    }
+
+    @Test
+    public void testTouchingSlotTakesTheClosestBerth() {
+        // Boarding from 10:00 starts as the B1 slot ends; best fit keeps B2 free
+        BerthAllocationService.Plan plan = service.plan(List.of(sailing(null, 11, 0)), false);
+
+        assertFalse(plan.hasConflicts());
+        BerthAllocationService.Slot slot = plan.getSlots().get(0);
+        assertEquals(100L, slot.getBerthId());
+        assertEquals(at(10, 0), slot.getStart());
+        assertEquals(at(11, 0), slot.getEnd());
+    }
+
+    @Test
+    public void testConflictNamesTheSailingsHoldingTheBerths() {
+        slots.add(new Object[] { 101L, 901L, "ARRIVAL", at(9, 0), at(9, 45) });
+
+        BerthAllocationService.Plan plan = service.plan(List.of(sailing(null, 10, 0)), false);
+
+        assertTrue(plan.hasConflicts());
+        assertTrue(plan.getPlaced().isEmpty());
+        assertTrue(plan.getSlots().isEmpty());
+        BerthAllocationService.BerthConflict conflict = plan.getConflicts().get(0);
+        assertEquals(PORT, conflict.getPortId());
+        assertEquals(BerthAllocationService.SlotType.DEPARTURE, conflict.getSlotType());
+        assertEquals(List.of(900L, 901L), conflict.getOccupiedBy());
+    }
+
+    @Test
+    public void testSailingsOfOnePlanDoNotShareABerth() {
+        BerthAllocationService.Plan plan = service.plan(List.of(sailing(null, 14, 0), sailing(null, 14, 30),
+                sailing(null, 14, 15)), false);
+
+        assertEquals(2, plan.getPlaced().size());
+        assertEquals(List.of(100L, 101L), plan.getSlots().stream().map(BerthAllocationService.Slot::getBerthId)
+                .toList());
+        // The third overlaps both unsaved sailings, which have no schedule id yet
+        assertEquals(1, plan.getConflicts().size());
+        assertTrue(plan.getConflicts().get(0).getOccupiedBy().isEmpty());
+    }
+
+    @Test
+    public void testReplannedSailingIgnoresItsOwnSlot() {
+        BerthAllocationService.Plan plan = service.plan(List.of(sailing(900L, 10, 0)), false);
+
+        assertFalse(plan.hasConflicts());
+        assertEquals(100L, plan.getSlots().get(0).getBerthId());
+    }
+
+    @Test
+    public void testFreeWindows() {
+        List<BerthAllocationService.FreeWindow> windows = service.freeWindows(PORT, at(6, 0), at(14, 0), 60);
+
+        assertEquals(3, windows.size());
+        assertWindow(windows.get(0), "B1", at(6, 0), at(8, 0));
+        assertWindow(windows.get(1), "B2", at(6, 0), at(14, 0));
+        assertWindow(windows.get(2), "B1", at(10, 0), at(14, 0));
+    }
+
+    @Test
+    public void testFreeWindowsSkipShortGaps() {
+        List<BerthAllocationService.FreeWindow> windows = service.freeWindows(PORT, at(6, 0), at(14, 0), 180);
+
+        assertEquals(2, windows.size());
+        assertEquals("B2", windows.get(0).getBerthCode());
+        assertEquals(at(10, 0), windows.get(1).getStart());
+    }
+
+    @Test
+    public void testFreeWindowsRejectsInvalidRange() {
+        BusinessException e = assertThrows(BusinessException.class,
+                () -> service.freeWindows(PORT, at(14, 0), at(6, 0), 60));
+        assertEquals("INVALID_WINDOW", e.getErrorCode());
+    }
+
+    private static void assertWindow(BerthAllocationService.FreeWindow window, String berth, LocalDateTime start,
+            LocalDateTime end) {
+        assertEquals(berth, window.getBerthCode());
+        assertEquals(start, window.getStart());
+        assertEquals(end, window.getEnd());
+    }
+
+    private static BerthAllocationService.Sailing sailing(Long scheduleId, int hour, int minute) {
+        LocalDateTime departure = at(hour, minute);
+        return new BerthAllocationService.Sailing(scheduleId, PORT, OPEN_PORT, departure, departure.plusHours(3));
+    }
+
+    private static LocalDateTime at(int hour, int minute) {
+        return DAY.withHour(hour).withMinute(minute);
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                default -> value;
+            };
+        });
+    }
+}
@@ -0,0 +1,162 @@
+package org.vgu.backend.service.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.vgu.backend.dto.request.BookingUpdateRequest;
+import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.service.bookingrecord.AuditChangeCodec;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+
+/**
+ * Batch updates merge requests per booking and audit what actually changed
+ */
+public class AsyncBookingUpdateServiceTest {
+
+    private static final LocalDateTime CREATED = LocalDateTime.of(2026, 3, 1, 9, 0);
+
+    // id, created_at, booking_code, passenger_count, total_amount
+    private final Map<Long, Object[]> bookings = Map.of(
+            1L, new Object[] { 1L, CREATED, "BK-1", 2, new BigDecimal("100.00") },
+            2L, new Object[] { 2L, CREATED, "BK-2", 4, new BigDecimal("80.00") });
+    private final List<BookingUpdateRequest> written = new ArrayList<>();
+    private BookingStatsService bookingStatsService;
+    private IBookingRecordService bookingRecordService;
+    private AsyncBookingUpdateService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            for (int i = 2; i < invocation.getArguments().length; i++) {
+                Object[] row = bookings.get(invocation.getArgument(i));
+                if (row != null) {
+                    invocation.<RowCallbackHandler>getArgument(1).processRow(row(row));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        doAnswer(invocation -> {
+            written.addAll(invocation.<Collection<BookingUpdateRequest>>getArgument(1));
+            return new int[0][0];
+        }).when(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        BookingRepository bookingRepository = mock(BookingRepository.class);
+        when(bookingRepository.getReferenceById(any()))
+                .thenAnswer(invocation -> Booking.builder().id(invocation.getArgument(0)).build());
+        AsyncTaskExecutor executor = mock(AsyncTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+        bookingStatsService = mock(BookingStatsService.class);
+        bookingRecordService = mock(IBookingRecordService.class);
+
+        service = new AsyncBookingUpdateService(bookingRepository, new BookingUpdateJobRegistry(), jdbcTemplate,
+                mock(PlatformTransactionManager.class), executor, bookingStatsService, bookingRecordService);
+        ReflectionTestUtils.setField(service, "chunkSize", 500);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDuplicateRequestsAreMergedAndAuditedOnce() {
+        BookingUpdateJob job = service.submitBatchUpdate(List.of(
+                request(1L, null, null, new BigDecimal("120.00")),
+                request(1L, null, 3, null),
+                request(2L, "BK-2", null, new BigDecimal("80")),
+                request(9L, "BK-9", null, null)));
+
+        assertEquals(1, written.stream().filter(r -> r.getId() == 1L).count());
+        BookingUpdateRequest merged = written.get(0);
+        assertEquals(3, merged.getPassengerCount());
+        assertEquals(new BigDecimal("120.00"), merged.getTotalAmount());
+        verify(bookingStatsService, times(1)).amountChanged(CREATED, new BigDecimal("100.00"),
+                new BigDecimal("120.00"));
+
+        // Booking 2 was sent its current values, so only booking 1 is audited
+        ArgumentCaptor<List<BookingRecord>> records = ArgumentCaptor.forClass(List.class);
+        verify(bookingRecordService).createRecords(records.capture());
+        assertEquals(1, records.getValue().size());
+        BookingRecord record = records.getValue().get(0);
+        assertEquals(1L, record.getBooking().getId());
+        List<AuditChangeCodec.Change> changes = AuditChangeCodec.decode(record.getCurrentValues()).getChanges();
+        assertEquals(List.of("passengerCount", "totalAmount"),
+                changes.stream().map(AuditChangeCodec.Change::getField).toList());
+        assertEquals(2, ((Number) changes.get(0).getOldValue()).intValue());
+        assertEquals(3, ((Number) changes.get(0).getNewValue()).intValue());
+
+        assertEquals(3, job.getUpdatedCount().get());
+        assertEquals(1, job.getNotFoundCount().get());
+        assertEquals(4, job.getProcessedCount().get());
+    }
+
+    @Test
+    public void testFailedChunkWritesNoRecords() {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("deadlock");
+        }).when(bookingRecordService).createRecords(anyList());
+
+        BookingUpdateJob job = service.submitBatchUpdate(List.of(
+                request(1L, "BK-1A", null, null),
+                request(1L, "BK-1B", null, null)));
+
+        assertEquals(2, job.getFailedCount().get());
+        assertEquals(0, job.getUpdatedCount().get());
+    }
+
+    private static BookingUpdateRequest request(Long id, String bookingCode, Integer passengers, BigDecimal amount) {
+        return BookingUpdateRequest.builder()
+                .id(id)
+                .bookingCode(bookingCode)
+                .passengerCount(passengers)
+                .totalAmount(amount)
+                .skipAsyncNotification(true)
+                .build();
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            String method = invocation.getMethod().getName();
+            if (method.equals("wasNull")) {
+                return false;
+            }
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (method) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                case "getInt" -> ((Number) value).intValue();
+                default -> value;
+            };
+        });
+    }
+}
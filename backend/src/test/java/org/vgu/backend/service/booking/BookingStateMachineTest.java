@@ -0,0 +1,177 @@
+package org.vgu.backend.service.booking;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.exception.BusinessException;
+import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.Customer;
+import org.vgu.backend.model.Schedule;
+import org.vgu.backend.model.Vehicle;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+import org.vgu.backend.service.notification.NotificationService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BookingStateMachineTest {
+
+    private IBookingRecordService bookingRecordService;
+    private NotificationService notificationService;
+    private AllotmentService allotmentService;
+    private SimpleMeterRegistry meterRegistry;
+    private BookingStateMachine stateMachine;
+
+    @BeforeEach
+    public void setUp() {
+        bookingRecordService = mock(IBookingRecordService.class);
+        notificationService = mock(NotificationService.class);
+        allotmentService = mock(AllotmentService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        stateMachine = new BookingStateMachine(bookingRecordService, notificationService, meterRegistry,
+                allotmentService);
+        stateMachine.registerBuiltIns();
+    }
+
+    @Test
+    public void testIllegalTransitionIsRejected() {
+        Booking booking = booking(BookingStatus.PENDING);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> stateMachine.transition(booking,
+                BookingStatus.COMPLETED, null, null, null, null));
+
+        assertEquals("INVALID_STATUS_TRANSITION", e.getErrorCode());
+        assertEquals(BookingStatus.PENDING, booking.getStatus());
+        assertEquals(1.0, meterRegistry.get("app.booking.transition").tag("outcome", "rejected").counter().count());
+    }
+
+    @Test
+    public void testRefundNeedsAnApprovedRequest() {
+        Booking booking = booking(BookingStatus.CONFIRMED);
+        assertEquals("Booking has no approved refund request", stateMachine.check(booking, BookingStatus.REFUNDED));
+
+        booking.setRefundRequested(true);
+        assertNull(stateMachine.check(booking, BookingStatus.REFUNDED));
+
+        // Bookings already in refund passed the request check on the way in
+        assertNull(stateMachine.check(booking(BookingStatus.IN_REFUND), BookingStatus.REFUNDED));
+    }
+
+    @Test
+    public void testGuardCanVetoTransition() {
+        stateMachine.addGuard(BookingStatus.PAID, (booking, from, to) -> "Payment not settled");
+        Booking booking = booking(BookingStatus.CONFIRMED);
+
+        assertEquals("Payment not settled", stateMachine.check(booking, BookingStatus.PAID));
+        assertThrows(BusinessException.class, () -> stateMachine.transition(booking, BookingStatus.PAID, null,
+                null, null, null));
+        assertEquals(BookingStatus.CONFIRMED, booking.getStatus());
+    }
+
+    @Test
+    public void testHooksOnlyRunForTheirTransition() {
+        List<String> seen = new ArrayList<>();
+        stateMachine.onTransition(BookingStatus.PENDING, BookingStatus.CONFIRMED,
+                transition -> seen.add(transition.getFrom() + "->" + transition.getTo()));
+
+        stateMachine.transition(booking(BookingStatus.PENDING), BookingStatus.CONFIRMED, null, null, null, null);
+        stateMachine.transition(booking(BookingStatus.PENDING), BookingStatus.REJECTED, null, null, null, null);
+
+        assertEquals(List.of("PENDING->CONFIRMED"), seen);
+    }
+
+    @Test
+    public void testHooksCannotBeRegisteredForIllegalTransitions() {
+        assertThrows(IllegalArgumentException.class, () -> stateMachine.onTransition(BookingStatus.COMPLETED,
+                BookingStatus.PENDING, transition -> {
+                }));
+    }
+
+    @Test
+    public void testCancellationReleasesPublicAndAllottedCapacity() {
+        Booking booking = booking(BookingStatus.CONFIRMED);
+        booking.setAllottedVehicles(2);
+        booking.setAllottedPassengers(1);
+        when(allotmentService.giveBack(10L, 7L, 2, 1)).thenReturn(true);
+
+        stateMachine.transition(booking, BookingStatus.CANCELLED, null, null, null, null);
+
+        // 3 vehicles and 4 passengers booked, 2 and 1 of them from the block
+        assertEquals(21, booking.getSchedule().getAvailableVehicleSpaces());
+        assertEquals(53, booking.getSchedule().getAvailablePassengerSpaces());
+    }
+
+    @Test
+    public void testCancellationAfterBlockReleaseReturnsEverythingToThePublicPool() {
+        Booking booking = booking(BookingStatus.CONFIRMED);
+        booking.setAllottedVehicles(2);
+        booking.setAllottedPassengers(1);
+        when(allotmentService.giveBack(anyLong(), anyLong(), anyInt(), anyInt())).thenReturn(false);
+
+        stateMachine.transition(booking, BookingStatus.CANCELLED, null, null, null, null);
+
+        assertEquals(23, booking.getSchedule().getAvailableVehicleSpaces());
+        assertEquals(54, booking.getSchedule().getAvailablePassengerSpaces());
+    }
+
+    @Test
+    public void testMovesBetweenHoldingStatusesKeepCapacity() {
+        Booking booking = booking(BookingStatus.CONFIRMED);
+
+        stateMachine.transition(booking, BookingStatus.PAID, null, null, null, null);
+
+        assertEquals(20, booking.getSchedule().getAvailableVehicleSpaces());
+        verify(allotmentService, never()).giveBack(any(), any(), anyInt(), anyInt());
+    }
+
+    @Test
+    public void testAuditAndNotificationRun() {
+        Booking booking = booking(BookingStatus.PENDING);
+
+        stateMachine.transition(booking, BookingStatus.CONFIRMED, null, TypeAction.BOOKING_UPDATED, "Approved",
+                null);
+
+        assertEquals(BookingStatus.CONFIRMED, booking.getStatus());
+        assertTrue(booking.getUpdatedAt() != null);
+        // No snapshot, so no audit record
+        verify(bookingRecordService, never()).createChangeRecord(any(), any(), any(), any(), any());
+        // Outside a transaction the customer is notified straight away
+        verify(notificationService).notifyCustomerOfStatusChange(eq("7"), eq("BK-1"), eq("CONFIRMED"),
+                anyString());
+    }
+
+    private static Booking booking(BookingStatus status) {
+        Schedule schedule = Schedule.builder()
+                .id(10L)
+                .availableVehicleSpaces(20)
+                .availablePassengerSpaces(50)
+                .build();
+        Booking booking = Booking.builder()
+                .bookingCode("BK-1")
+                .customer(Customer.builder().id(7L).build())
+                .schedule(schedule)
+                .status(status)
+                .passengerCount(4)
+                .build();
+        booking.getVehicles().add(Vehicle.builder().quantity(3).build());
+        return booking;
+    }
+}
@@ -0,0 +1,241 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.vgu.backend.enums.AuditDurability;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.Booking;
+import org.vgu.backend.model.BookingRecord;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Records handed off after commit must reach the table even when the ring
+ * buffer cannot take them
+ */
+public class AsyncAuditWriterTest {
+
+    private RecordingTransactionManager transactionManager;
+    private JdbcTemplate jdbcTemplate;
+    private AsyncAuditWriter writer;
+    private Path walDirectory;
+    // Holds the consumer thread inside its insert until released
+    private final CountDownLatch consumerBlocked = new CountDownLatch(1);
+    private volatile boolean blockConsumer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        transactionManager = new RecordingTransactionManager();
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            if (blockConsumer && Thread.currentThread().getName().equals("audit-writer")) {
+                consumerBlocked.await(10, TimeUnit.SECONDS);
+            }
+            transactionManager.write((Collection<AuditRow>) invocation.getArgument(1));
+            return new int[0][0];
+        }).when(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        writer = new AsyncAuditWriter(jdbcTemplate, transactionManager, new ObjectMapper().findAndRegisterModules(),
+                new SimpleMeterRegistry());
+        walDirectory = Files.createTempDirectory("audit-writer");
+        ReflectionTestUtils.setField(writer, "durability", AuditDurability.AFTER_COMMIT);
+        ReflectionTestUtils.setField(writer, "ringSize", 1);
+        ReflectionTestUtils.setField(writer, "batchSize", 10);
+        ReflectionTestUtils.setField(writer, "publishTimeoutMs", 1L);
+        ReflectionTestUtils.setField(writer, "walDirectory", walDirectory.toString());
+        ReflectionTestUtils.setField(writer, "walSegmentBytes", 1024L * 1024);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        consumerBlocked.countDown();
+        writer.stop();
+        try (Stream<Path> files = Files.walk(walDirectory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testStoppedWriterCommitsRowsSubmittedInATransaction() {
+        inTransaction(() -> writer.submit(record("stopped")));
+
+        assertEquals(List.of("stopped"), transactionManager.committedDescriptions());
+    }
+
+    @Test
+    public void testSaturatedRingCommitsRowsSubmittedInATransaction() throws Exception {
+        blockConsumer = true;
+        writer.start();
+        // The consumer takes the first row and blocks in its insert; the second fills the ring
+        writer.submit(record("drained"));
+        waitFor(() -> ringSize() == 0);
+        writer.submit(record("queued"));
+
+        inTransaction(() -> writer.submit(record("overflow")));
+        assertEquals(List.of("overflow"), transactionManager.committedDescriptions());
+
+        consumerBlocked.countDown();
+        waitFor(() -> transactionManager.committedDescriptions().size() == 3);
+        assertEquals(List.of("overflow", "drained", "queued"), transactionManager.committedDescriptions());
+    }
+
+    @Test
+    public void testFailedWalAppendIsWrittenThroughOnce() throws Exception {
+        ReflectionTestUtils.setField(writer, "durability", AuditDurability.AFTER_COMMIT_WAL);
+        ReflectionTestUtils.setField(writer, "ringSize", 16);
+        writer.start();
+        // Later appends hit a closed channel
+        ((AuditWriteAheadLog) ReflectionTestUtils.getField(writer, "writeAheadLog")).close();
+
+        inTransaction(() -> writer.submit(record("unspilled")));
+        assertEquals(List.of("unspilled"), transactionManager.committedDescriptions());
+
+        writer.submit(record("after"));
+        waitFor(() -> transactionManager.committedDescriptions().size() == 2);
+        Thread.sleep(50);
+        assertEquals(List.of("unspilled", "after"), transactionManager.committedDescriptions());
+    }
+
+    private long ringSize() {
+        return ((AuditRingBuffer) ReflectionTestUtils.getField(writer, "ringBuffer")).size();
+    }
+
+    private void inTransaction(Runnable work) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> work.run());
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Timed out waiting for the audit writer");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static BookingRecord record(String description) {
+        return BookingRecord.builder()
+                .booking(Booking.builder().id(1L).build())
+                .action(TypeAction.BOOKING_UPDATED)
+                .description(description)
+                .createdAt(LocalDateTime.of(2026, 5, 1, 12, 0))
+                .build();
+    }
+
+    /**
+     * Transaction manager whose writes only become visible on commit. Joining,
+     * suspension and synchronization come from AbstractPlatformTransactionManager,
+     * as with a DataSource; the transaction stays bound until cleanup, so
+     * afterCommit callbacks still see it as active.
+     */
+    private static final class RecordingTransactionManager extends AbstractPlatformTransactionManager {
+
+        private static final class Tx {
+            private final List<AuditRow> pending = new ArrayList<>();
+        }
+
+        private static final class Handle {
+            private Tx tx;
+        }
+
+        private final ThreadLocal<Tx> current = new ThreadLocal<>();
+        private final List<AuditRow> committed = new ArrayList<>();
+
+        synchronized void write(Collection<AuditRow> rows) {
+            Tx tx = current.get();
+            if (tx != null) {
+                tx.pending.addAll(rows);
+            } else {
+                committed.addAll(rows);
+            }
+        }
+
+        synchronized List<String> committedDescriptions() {
+            return committed.stream().map(AuditRow::getDescription).toList();
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            Handle handle = new Handle();
+            handle.tx = current.get();
+            return handle;
+        }
+
+        @Override
+        protected boolean isExistingTransaction(Object transaction) {
+            return ((Handle) transaction).tx != null;
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            Tx tx = new Tx();
+            ((Handle) transaction).tx = tx;
+            current.set(tx);
+        }
+
+        @Override
+        protected Object doSuspend(Object transaction) {
+            ((Handle) transaction).tx = null;
+            Tx suspended = current.get();
+            current.remove();
+            return suspended;
+        }
+
+        @Override
+        protected void doResume(Object transaction, Object suspendedResources) {
+            current.set((Tx) suspendedResources);
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            synchronized (this) {
+                committed.addAll(((Handle) status.getTransaction()).tx.pending);
+            }
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            ((Handle) status.getTransaction()).tx.pending.clear();
+        }
+
+        @Override
+        protected void doCleanupAfterCompletion(Object transaction) {
+            current.remove();
+        }
+    }
+}
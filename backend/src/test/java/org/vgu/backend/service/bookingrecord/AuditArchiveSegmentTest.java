@@ -0,0 +1,179 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.BookingRecord;
+
+/**
+ * Rows written to a segment read back unchanged through every lookup
+ */
+public class AuditArchiveSegmentTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-segment");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testEveryFieldRoundTrips() throws IOException {
+        AuditArchiveSegment.ArchivedRow full = AuditArchiveSegment.ArchivedRow.builder()
+                .id(11)
+                .bookingId(5)
+                .createdAt(START.plusSeconds(90).plusNanos(250_000_000))
+                .performedById(3L)
+                .action(TypeAction.BOOKING_UPDATED.name())
+                .bookingCode("BK-0005")
+                .performer("operator1")
+                .description("Đổi chuyến — moved to 10:30")
+                .previousValues("{\"status\":\"PENDING\"}")
+                .currentValues("cc:AAEC")
+                .ipAddress("10.0.0.7")
+                .userAgent("Mozilla/5.0")
+                .sessionId("session-1")
+                .additionalData("{}")
+                .build();
+        AuditArchiveSegment.ArchivedRow bare = AuditArchiveSegment.ArchivedRow.builder()
+                .id(12)
+                .bookingId(5)
+                .createdAt(START.plusSeconds(91))
+                .action(TypeAction.BOOKING_CREATED.name())
+                .build();
+
+        AuditArchiveSegment segment = write(List.of(bare, full));
+
+        List<AuditArchiveSegment.ArchivedRow> rows = segment.findByBookingId(5);
+        assertEquals(2, rows.size());
+        AuditArchiveSegment.ArchivedRow read = rows.get(0);
+        assertEquals(11, read.getId());
+        assertEquals(full.getCreatedAt(), read.getCreatedAt());
+        assertEquals(3L, read.getPerformedById());
+        assertEquals("BK-0005", read.getBookingCode());
+        assertEquals("operator1", read.getPerformer());
+        assertEquals("Đổi chuyến — moved to 10:30", read.getDescription());
+        assertEquals("{\"status\":\"PENDING\"}", read.getPreviousValues());
+        assertEquals("cc:AAEC", read.getCurrentValues());
+        assertEquals("10.0.0.7", read.getIpAddress());
+        assertEquals("Mozilla/5.0", read.getUserAgent());
+        assertEquals("session-1", read.getSessionId());
+        assertEquals("{}", read.getAdditionalData());
+
+        AuditArchiveSegment.ArchivedRow empty = rows.get(1);
+        assertNull(empty.getPerformedById());
+        assertNull(empty.getDescription());
+        assertNull(empty.getAdditionalData());
+
+        BookingRecord record = read.toBookingRecord();
+        assertEquals(TypeAction.BOOKING_UPDATED, record.getAction());
+        assertEquals(5L, record.getBooking().getId());
+        assertEquals("operator1", record.getPerformedBy().getUsername());
+        assertNull(empty.toBookingRecord().getPerformedBy());
+    }
+
+    @Test
+    public void testLookupsAcrossBlocks() throws IOException {
+        // 300 rows span three blocks; bookings 0..9 repeat every ten rows
+        List<AuditArchiveSegment.ArchivedRow> rows = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            rows.add(row(1000 + i, i % 10, START.plusMinutes(i)));
+        }
+        Collections.shuffle(rows);
+
+        AuditArchiveSegment segment = write(rows);
+
+        assertEquals(300, segment.getRecordCount());
+        assertEquals(START, segment.getMinCreatedAt());
+        assertEquals(START.plusMinutes(299), segment.getMaxCreatedAt());
+        // Rows are stored in creation order whatever order they were written in
+        assertEquals(1000L, segment.ids().get(0));
+        assertEquals(1299L, segment.ids().get(299));
+
+        List<AuditArchiveSegment.ArchivedRow> booking = segment.findByBookingId(7);
+        assertEquals(30, booking.size());
+        assertTrue(booking.stream().allMatch(r -> r.getBookingId() == 7));
+        assertEquals(1007L, booking.get(0).getId());
+        assertTrue(segment.findByBookingId(42).isEmpty());
+
+        long from = AuditArchiveSegment.toMillis(START.plusMinutes(100));
+        long to = AuditArchiveSegment.toMillis(START.plusMinutes(259));
+        assertEquals(160, segment.countInRange(from, to));
+        List<AuditArchiveSegment.Entry> entries = segment.entriesInRangeDesc(from, to);
+        assertEquals(160, entries.size());
+        assertEquals(1259L, entries.get(0).getId());
+        assertEquals(1100L, entries.get(159).getId());
+        assertEquals(START.plusMinutes(259), segment.read(entries.get(0)).getCreatedAt());
+
+        assertEquals(0, segment.countInRange(AuditArchiveSegment.toMillis(START.minusDays(2)),
+                AuditArchiveSegment.toMillis(START.minusDays(1))));
+    }
+
+    @Test
+    public void testEmptySegment() throws IOException {
+        AuditArchiveSegment segment = write(List.of());
+
+        assertEquals(0, segment.getRecordCount());
+        assertTrue(segment.ids().isEmpty());
+        assertTrue(segment.findByBookingId(1).isEmpty());
+        assertEquals(0, segment.countInRange(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testOtherFilesAreRejected() throws IOException {
+        Path file = directory.resolve("not-a-segment.seg");
+        Files.write(file, new byte[128]);
+
+        assertThrows(IOException.class, () -> AuditArchiveSegment.open(file));
+    }
+
+    @Test
+    public void testMillisRoundTrip() {
+        LocalDateTime time = LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_000_000);
+
+        assertEquals(time, AuditArchiveSegment.fromMillis(AuditArchiveSegment.toMillis(time)));
+    }
+
+    private AuditArchiveSegment write(List<AuditArchiveSegment.ArchivedRow> rows) throws IOException {
+        Path file = directory.resolve("audit-test.seg");
+        AuditArchiveSegment.write(file, rows);
+        return AuditArchiveSegment.open(file);
+    }
+
+    private static AuditArchiveSegment.ArchivedRow row(long id, long bookingId, LocalDateTime createdAt) {
+        return AuditArchiveSegment.ArchivedRow.builder()
+                .id(id)
+                .bookingId(bookingId)
+                .createdAt(createdAt)
+                .action(TypeAction.BOOKING_UPDATED.name())
+                .description("row " + id)
+                .build();
+    }
+}
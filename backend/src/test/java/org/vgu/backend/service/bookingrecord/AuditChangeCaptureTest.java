@@ -0,0 +1,120 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.model.Account;
+import org.vgu.backend.model.Booking;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Field-level change capture on entities and rendering of stored change sets
+ */
+public class AuditChangeCaptureTest {
+
+    private final AuditChangeCapture capture = new AuditChangeCapture(new ObjectMapper().findAndRegisterModules());
+
+    @Test
+    public void testOnlyChangedFieldsAreEncoded() {
+        Booking booking = booking();
+        AuditChangeCapture.Snapshot before = capture.snapshot(booking);
+
+        booking.setStatus(BookingStatus.CANCELLED);
+        booking.setCancelledBy(Account.builder().id(9L).build());
+        booking.setCancelledAt(LocalDateTime.of(2026, 5, 1, 12, 0));
+        // Same amount at another scale is not a change
+        booking.setTotalAmount(new BigDecimal("150.0"));
+        // Not captured: maintained by Hibernate
+        booking.setUpdatedAt(LocalDateTime.now());
+
+        AuditChangeCodec.Decoded decoded = AuditChangeCodec.decode(capture.encodeChanges(before, booking));
+
+        assertEquals("Booking", decoded.getEntity());
+        assertFalse(decoded.isCreated());
+        Map<String, AuditChangeCodec.Change> changes = byField(decoded.getChanges());
+        assertEquals(Set.of("status", "cancelledById", "cancelledAt"), changes.keySet());
+        assertEquals("CONFIRMED", changes.get("status").getOldValue());
+        assertEquals("CANCELLED", changes.get("status").getNewValue());
+        assertNull(changes.get("cancelledById").getOldValue());
+        assertEquals(9L, changes.get("cancelledById").getNewValue());
+        assertEquals(LocalDateTime.of(2026, 5, 1, 12, 0), changes.get("cancelledAt").getNewValue());
+    }
+
+    @Test
+    public void testNothingChangedEncodesToNull() {
+        Booking booking = booking();
+        AuditChangeCapture.Snapshot before = capture.snapshot(booking);
+
+        assertNull(capture.encodeChanges(before, booking));
+    }
+
+    @Test
+    public void testCreationKeepsEveryNonNullField() {
+        AuditChangeCodec.Decoded decoded = AuditChangeCodec.decode(capture.encodeChanges(null, booking()));
+
+        assertTrue(decoded.isCreated());
+        Map<String, AuditChangeCodec.Change> changes = byField(decoded.getChanges());
+        assertEquals("BK-0001", changes.get("bookingCode").getNewValue());
+        assertEquals(3L, changes.get("passengerCount").getNewValue());
+        assertEquals(new BigDecimal("150.00"), changes.get("totalAmount").getNewValue());
+        assertFalse(changes.containsKey("note"));
+        assertFalse(changes.containsKey("updatedAt"));
+    }
+
+    @Test
+    public void testRenderingEncodedChangeSets() {
+        Booking booking = booking();
+        AuditChangeCapture.Snapshot before = capture.snapshot(booking);
+        booking.setPassengerCount(5);
+        booking.setNote("Window seats");
+        String encoded = capture.encodeChanges(before, booking);
+
+        assertEquals("{\"passengerCount\":3,\"note\":null}", capture.renderPrevious(null, encoded));
+        assertEquals("{\"passengerCount\":5,\"note\":\"Window seats\"}", capture.renderCurrent(encoded));
+        // A creation has no previous state
+        assertNull(capture.renderPrevious(null, capture.encodeChanges(null, booking)));
+    }
+
+    @Test
+    public void testLegacyJsonPassesThrough() {
+        String previous = "{\"status\":\"PENDING\"}";
+        String current = "{\"status\":\"CONFIRMED\"}";
+
+        assertEquals(previous, capture.renderPrevious(previous, current));
+        assertEquals(current, capture.renderCurrent(current));
+        assertNull(capture.renderCurrent(null));
+    }
+
+    @Test
+    public void testUnreadableChangeSetRendersAsNull() {
+        assertNull(capture.renderCurrent(AuditChangeCodec.PREFIX + "AgAA"));
+    }
+
+    private static Booking booking() {
+        Booking booking = Booking.builder()
+                .id(1L)
+                .bookingCode("BK-0001")
+                .passengerCount(3)
+                .totalAmount(new BigDecimal("150.00"))
+                .status(BookingStatus.CONFIRMED)
+                .build();
+        booking.setNote(null);
+        return booking;
+    }
+
+    private static Map<String, AuditChangeCodec.Change> byField(List<AuditChangeCodec.Change> changes) {
+        return changes.stream().collect(Collectors.toMap(AuditChangeCodec.Change::getField, change -> change));
+    }
+}
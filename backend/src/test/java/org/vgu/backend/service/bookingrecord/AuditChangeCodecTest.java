@@ -0,0 +1,134 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.vgu.backend.enums.BookingStatus;
+
+/**
+ * Round trips of the binary change-set format
+ */
+public class AuditChangeCodecTest {
+
+    @Test
+    public void testEveryValueTypeRoundTrips() {
+        LocalDateTime beforeEpoch = LocalDateTime.of(1965, 3, 1, 8, 30, 15, 123_456_789);
+        List<AuditChangeCodec.Change> changes = List.of(
+                new AuditChangeCodec.Change("note", null, "Cabin 2 — vé khứ hồi"),
+                new AuditChangeCodec.Change("passengerCount", 2L, -3L),
+                new AuditChangeCodec.Change("maxLong", Long.MIN_VALUE, Long.MAX_VALUE),
+                new AuditChangeCodec.Change("totalAmount", new BigDecimal("100.50"), new BigDecimal("-0.0001")),
+                new AuditChangeCodec.Change("bigAmount", new BigDecimal("123456789012345678901234567890.12"),
+                        new BigDecimal("1E+5")),
+                new AuditChangeCodec.Change("refundRequested", Boolean.FALSE, Boolean.TRUE),
+                new AuditChangeCodec.Change("cancelledAt", beforeEpoch, LocalDateTime.of(2026, 5, 1, 12, 0)),
+                new AuditChangeCodec.Change("travelDate", LocalDate.of(1969, 12, 31), LocalDate.of(2026, 5, 1)),
+                new AuditChangeCodec.Change("rating", -0.25d, Double.NaN));
+
+        AuditChangeCodec.Decoded decoded = roundTrip("Booking", false, changes);
+
+        assertEquals("Booking", decoded.getEntity());
+        assertFalse(decoded.isCreated());
+        assertEquals(changes.size(), decoded.getChanges().size());
+        for (int i = 0; i < changes.size(); i++) {
+            AuditChangeCodec.Change expected = changes.get(i);
+            AuditChangeCodec.Change actual = decoded.getChanges().get(i);
+            assertEquals(expected.getField(), actual.getField());
+            assertEquals(expected.getOldValue(), actual.getOldValue(), expected.getField());
+            assertEquals(expected.getNewValue(), actual.getNewValue(), expected.getField());
+        }
+    }
+
+    @Test
+    public void testValuesAreNormalisedToTheirWireType() {
+        AuditChangeCodec.Decoded decoded = roundTrip("Booking", true, List.of(
+                new AuditChangeCodec.Change("passengerCount", null, 4),
+                new AuditChangeCodec.Change("status", null, BookingStatus.CONFIRMED),
+                new AuditChangeCodec.Change("ratio", null, 0.5f),
+                new AuditChangeCodec.Change("reference", null, new StringBuilder("BK-7"))));
+
+        assertTrue(decoded.isCreated());
+        assertEquals(4L, decoded.getChanges().get(0).getNewValue());
+        assertEquals("CONFIRMED", decoded.getChanges().get(1).getNewValue());
+        assertEquals(0.5d, decoded.getChanges().get(2).getNewValue());
+        assertEquals("BK-7", decoded.getChanges().get(3).getNewValue());
+    }
+
+    @Test
+    public void testLargeChangeSetsAreDeflated() {
+        List<AuditChangeCodec.Change> changes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            changes.add(new AuditChangeCodec.Change("field" + i, "previous value " + i, "current value " + i));
+        }
+
+        String encoded = AuditChangeCodec.encode("Booking", false, changes);
+
+        assertTrue((header(encoded) & 0x80) != 0);
+        AuditChangeCodec.Decoded decoded = AuditChangeCodec.decode(encoded);
+        assertEquals(40, decoded.getChanges().size());
+        assertEquals("current value 39", decoded.getChanges().get(39).getNewValue());
+    }
+
+    @Test
+    public void testSmallChangeSetsStayPlain() {
+        String encoded = AuditChangeCodec.encode("Booking", false,
+                List.of(new AuditChangeCodec.Change("status", "PENDING", "CONFIRMED")));
+
+        assertTrue(encoded.startsWith(AuditChangeCodec.PREFIX));
+        assertEquals(0, header(encoded) & 0x80);
+        assertEquals(1, header(encoded) & 0x0F);
+    }
+
+    @Test
+    public void testEmptyChangeSet() {
+        AuditChangeCodec.Decoded decoded = roundTrip("Schedule", true, List.of());
+
+        assertEquals("Schedule", decoded.getEntity());
+        assertTrue(decoded.getChanges().isEmpty());
+    }
+
+    @Test
+    public void testLegacyAndForeignInputIsRejected() {
+        assertFalse(AuditChangeCodec.isEncoded("{\"status\":\"PENDING\"}"));
+        assertFalse(AuditChangeCodec.isEncoded(null));
+        assertThrows(IllegalArgumentException.class, () -> AuditChangeCodec.decode("{\"status\":\"PENDING\"}"));
+
+        // A future format version is not guessed at
+        byte[] bytes = Base64.getUrlDecoder().decode(AuditChangeCodec.encode("Booking", false, List.of())
+                .substring(AuditChangeCodec.PREFIX.length()));
+        bytes[0] = 2;
+        String future = AuditChangeCodec.PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        assertThrows(IllegalArgumentException.class, () -> AuditChangeCodec.decode(future));
+    }
+
+    @Test
+    public void testNullValuesOnBothSides() {
+        AuditChangeCodec.Decoded decoded = roundTrip("Booking", false,
+                List.of(new AuditChangeCodec.Change("note", null, null)));
+
+        assertNull(decoded.getChanges().get(0).getOldValue());
+        assertNull(decoded.getChanges().get(0).getNewValue());
+    }
+
+    private static AuditChangeCodec.Decoded roundTrip(String entity, boolean created,
+            List<AuditChangeCodec.Change> changes) {
+        String encoded = AuditChangeCodec.encode(entity, created, changes);
+        assertTrue(AuditChangeCodec.isEncoded(encoded));
+        return AuditChangeCodec.decode(encoded);
+    }
+
+    private static int header(String encoded) {
+        return Base64.getUrlDecoder().decode(encoded.substring(AuditChangeCodec.PREFIX.length()))[0] & 0xFF;
+    }
+}
@@ -0,0 +1,124 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class AuditRingBufferTest {
+
+    @Test
+    public void testCapacityMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new AuditRingBuffer(6, 0));
+        assertThrows(IllegalArgumentException.class, () -> new AuditRingBuffer(0, 0));
+    }
+
+    @Test
+    public void testRowsDrainInSequenceOrderFromTheStartSequence() {
+        AuditRingBuffer ring = new AuditRingBuffer(4, 100);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(ring.publish(row("row " + i), 0, null));
+        }
+        assertEquals(3, ring.size());
+
+        List<AuditRow> out = new ArrayList<>();
+        assertEquals(2, ring.drainTo(out, 2));
+        assertEquals(1, ring.drainTo(out, 10));
+
+        assertEquals(List.of(100L, 101L, 102L), out.stream().map(AuditRow::getSeq).toList());
+        assertEquals("row 2", out.get(2).getDescription());
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void testFullBufferTimesOutUntilDrained() {
+        AuditRingBuffer ring = new AuditRingBuffer(2, 0);
+        assertTrue(ring.publish(row("a"), 0, null));
+        assertTrue(ring.publish(row("b"), 0, null));
+
+        assertFalse(ring.publish(row("c"), TimeUnit.MILLISECONDS.toNanos(5), null));
+
+        ring.drainTo(new ArrayList<>(), 1);
+        assertTrue(ring.publish(row("c"), 0, null));
+    }
+
+    @Test
+    public void testDrainedRowsAreCopies() {
+        AuditRingBuffer ring = new AuditRingBuffer(1, 0);
+        List<AuditRow> out = new ArrayList<>();
+        ring.publish(row("first"), 0, null);
+        ring.drainTo(out, 1);
+        // Reuses the only slot
+        ring.publish(row("second"), 0, null);
+
+        assertEquals("first", out.get(0).getDescription());
+    }
+
+    @Test
+    public void testFailedWriteAheadStillPublishesTheSlot() {
+        AuditRingBuffer ring = new AuditRingBuffer(4, 0);
+        List<Long> logged = new ArrayList<>();
+        ring.publish(row("a"), 0, r -> logged.add(r.getSeq()));
+        assertThrows(IllegalStateException.class, () -> ring.publish(row("b"), 0, r -> {
+            throw new IllegalStateException("disk full");
+        }));
+        ring.publish(row("c"), 0, r -> logged.add(r.getSeq()));
+
+        List<AuditRow> out = new ArrayList<>();
+        // The consumer is not stalled behind the failed slot
+        assertEquals(3, ring.drainTo(out, 10));
+        assertEquals(List.of(0L, 2L), logged);
+    }
+
+    @Test
+    public void testConcurrentProducersGetContiguousSequences() throws Exception {
+        int producers = 4;
+        int perProducer = 2_000;
+        AuditRingBuffer ring = new AuditRingBuffer(64, 0);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            for (int p = 0; p < producers; p++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < perProducer; i++) {
+                            ring.publish(row("x"), TimeUnit.SECONDS.toNanos(10), null);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            start.countDown();
+
+            List<AuditRow> out = new ArrayList<>();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (out.size() < producers * perProducer && System.nanoTime() < deadline) {
+                if (ring.drainTo(out, 32) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+
+            assertEquals(producers * perProducer, out.size());
+            for (int i = 0; i < out.size(); i++) {
+                assertEquals(i, out.get(i).getSeq());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static AuditRow row(String description) {
+        return AuditRow.builder().bookingId(1L).description(description).build();
+    }
+}
@@ -0,0 +1,156 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Matching, BM25 ranking, removal and snapshots of the audit search index
+ */
+public class AuditSearchIndexTest {
+
+    @Test
+    public void testEveryQueryTermMustMatch() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        index.add(1, "BK-0001", "BOOKING_UPDATED", "operator1", "Vehicle count changed");
+        index.add(2, "BK-0002", "BOOKING_UPDATED", "operator1", "Passenger count changed");
+
+        assertEquals(List.of(2L), ids(index.search("passenger changed", 0, 10)));
+        assertEquals(2, index.search("count", 0, 10).getTotalHits());
+        assertEquals(0, index.search("passenger refund", 0, 10).getTotalHits());
+        assertEquals(0, index.search("  ", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void testBookingCodeMatchesWithOrWithoutSeparators() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        index.add(1, "BK-0042", "BOOKING_CREATED", "customer1", "Booking created");
+        index.add(2, "BK-0043", "BOOKING_CREATED", "customer1", "Booking created");
+
+        assertEquals(List.of(1L), ids(index.search("BK-0042", 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("bk0042", 0, 10)));
+        assertEquals(List.of(1L), ids(index.search("0042", 0, 10)));
+        // Prefixes of the joined code reach both bookings
+        assertEquals(2, index.search("bk004", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void testHeavierFieldsRankFirst() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        index.add(1, "BK-0001", "BOOKING_UPDATED", "operator1", "Refund requested by customer");
+        index.add(2, "BK-0002", "REFUND", "operator1", "Booking updated");
+
+        // The action field outweighs the description
+        assertEquals(List.of(2L, 1L), ids(index.search("refund", 0, 10)));
+    }
+
+    @Test
+    public void testShorterRecordsRankFirst() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        index.add(1, null, null, null, "storm delay");
+        index.add(2, null, null, null, "storm delay on the evening crossing to the island");
+
+        List<AuditSearchIndex.Hit> hits = index.search("storm", 0, 10).getHits();
+        assertEquals(1L, hits.get(0).getRecordId());
+        assertTrue(hits.get(0).getScore() > hits.get(1).getScore());
+    }
+
+    @Test
+    public void testExactMatchesRankAbovePrefixMatches() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        index.add(1, null, null, null, "cancelled");
+        index.add(2, null, null, null, "cancel");
+
+        assertEquals(List.of(2L, 1L), ids(index.search("cancel", 0, 10)));
+        // Too short to expand
+        assertEquals(0, index.search("ca", 0, 10).getTotalHits());
+    }
+
+    @Test
+    public void testTiesGoToTheNewestRecordAndPagesFollowRank() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        for (long id = 1; id <= 5; id++) {
+            index.add(id, null, null, null, "schedule changed");
+        }
+
+        AuditSearchIndex.Result first = index.search("schedule", 0, 2);
+        assertEquals(List.of(5L, 4L), ids(first));
+        assertEquals(5, first.getTotalHits());
+        assertEquals(List.of(3L, 2L), ids(index.search("schedule", 2, 2)));
+        assertEquals(List.of(1L), ids(index.search("schedule", 4, 2)));
+    }
+
+    @Test
+    public void testRemovedRecordsStopMatching() {
+        AuditSearchIndex index = new AuditSearchIndex();
+        for (long id = 1; id <= 4; id++) {
+            index.add(id, "BK-000" + id, "BOOKING_UPDATED", "operator1", "seat changed");
+        }
+
+        assertEquals(2, index.removeAll(List.of(1L, 3L, 99L)));
+        assertEquals(0, index.removeAll(List.of(1L)));
+
+        AuditSearchIndex.Result result = index.search("seat", 0, 10);
+        assertEquals(List.of(4L, 2L), ids(result));
+        assertEquals(2, result.getTotalHits());
+        assertEquals(0, index.search("bk0001", 0, 10).getTotalHits());
+        assertEquals(2, index.getDocCount());
+        // Removal does not rewind the tail position
+        assertEquals(4, index.getLastRecordId());
+    }
+
+    @Test
+    public void testSnapshotRoundTrip() throws IOException {
+        AuditSearchIndex index = new AuditSearchIndex();
+        for (long id = 1; id <= 300; id++) {
+            index.add(id * 10, "BK-" + id, "BOOKING_UPDATED", "operator" + (id % 3), "trip " + id + " changed");
+        }
+        index.removeAll(List.of(20L, 2000L));
+
+        AuditSearchIndex copy = AuditSearchIndex.readFrom(new DataInputStream(
+                new ByteArrayInputStream(snapshot(index))));
+
+        assertEquals(298, copy.getDocCount());
+        assertEquals(index.getTermCount(), copy.getTermCount());
+        assertEquals(3000, copy.getLastRecordId());
+        for (String query : List.of("changed", "operator1", "bk150", "trip 42", "bk-2", "bk200")) {
+            AuditSearchIndex.Result expected = index.search(query, 0, 20);
+            AuditSearchIndex.Result actual = copy.search(query, 0, 20);
+            assertEquals(expected.getTotalHits(), actual.getTotalHits(), query);
+            assertEquals(ids(expected), ids(actual), query);
+        }
+        // Indexing continues where the snapshot left off
+        copy.add(3010, "BK-301", "BOOKING_CREATED", "operator1", "trip 301 created");
+        assertEquals(List.of(3010L), ids(copy.search("bk301", 0, 10)));
+    }
+
+    @Test
+    public void testOldSnapshotFormatIsRejected() throws IOException {
+        byte[] snapshot = snapshot(new AuditSearchIndex());
+        snapshot[3] = 1;
+
+        assertThrows(IOException.class, () -> AuditSearchIndex.readFrom(new DataInputStream(
+                new ByteArrayInputStream(snapshot))));
+    }
+
+    private static byte[] snapshot(AuditSearchIndex index) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            index.writeTo(out);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<Long> ids(AuditSearchIndex.Result result) {
+        return result.getHits().stream().map(AuditSearchIndex.Hit::getRecordId).toList();
+    }
+}
@@ -0,0 +1,238 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.BookingRecord;
+import org.vgu.backend.repository.BookingRecordRepository;
+
+/**
+ * The service tails booking_records into the index, back-fills IDs that
+ * committed late and drops records once they are archived
+ */
+public class AuditSearchServiceTest {
+
+    // booking_records as the database currently shows it, by ID
+    private final TreeMap<Long, Object[]> table = new TreeMap<>();
+    private final List<AuditArchiveSegment> sealed = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private AuditArchiveService archiveService;
+    private BookingRecordRepository repository;
+    private AsyncTaskExecutor executor;
+    private Path directory;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-search");
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            for (Object[] row : table.values()) {
+                invocation.<RowCallbackHandler>getArgument(1).processRow(row(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            List<Object[]> rows = new ArrayList<>();
+            if (sql.contains("r.id > ?")) {
+                table.tailMap((Long) args[0], false).values().stream().limit((Integer) args[1]).forEach(rows::add);
+            } else {
+                for (Object id : args) {
+                    if (table.containsKey(id)) {
+                        rows.add(table.get(id));
+                    }
+                }
+            }
+            List<Object> mapped = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                mapped.add(invocation.<RowMapper<Object>>getArgument(1).mapRow(row(rows.get(i)), i));
+            }
+            return mapped;
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        repository = mock(BookingRecordRepository.class);
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<BookingRecord> records = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                if (table.containsKey(id)) {
+                    records.add(BookingRecord.builder().id(id).build());
+                }
+            }
+            return records;
+        });
+        archiveService = mock(AuditArchiveService.class);
+        when(archiveService.getSealedSegments()).thenAnswer(invocation -> List.copyOf(sealed));
+        executor = mock(AsyncTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testLateCommitsAreBackFilled() {
+        insert(1, "ferry boarded");
+        insert(2, "ferry boarded");
+        AuditSearchService service = start();
+        assertEquals(2, search(service, "boarded").getTotalElements());
+
+        // Record 4 commits before record 3
+        insert(4, "ferry delayed");
+        service.refresh();
+        assertEquals(1, service.getStatus().get("pendingGaps"));
+
+        insert(3, "ferry delayed");
+        service.refresh();
+
+        assertEquals(0, service.getStatus().get("pendingGaps"));
+        // Equal scores rank by indexing order, so the back-filled record comes first
+        assertEquals(List.of(3L, 4L), ids(search(service, "delayed")));
+    }
+
+    @Test
+    public void testArchivedRecordsStopMatching() throws IOException {
+        for (long id = 1; id <= 5; id++) {
+            insert(id, "ticket reissued");
+        }
+        AuditSearchService service = start();
+
+        sealed.add(segment(1, 2));
+        table.remove(1L);
+        table.remove(2L);
+        service.refresh();
+
+        Page<BookingRecord> page = search(service, "reissued");
+        assertEquals(List.of(5L, 4L, 3L), ids(page));
+        assertEquals(3, page.getTotalElements());
+        assertEquals(3, service.getStatus().get("documents"));
+    }
+
+    @Test
+    public void testRebuildDropsArchivedRecordsAgain() throws IOException {
+        for (long id = 1; id <= 3; id++) {
+            insert(id, "ticket reissued");
+        }
+        AuditSearchService service = start();
+        sealed.add(segment(1));
+        service.refresh();
+
+        // The full scan still sees record 1 because its purge has not finished
+        assertTrue(service.rebuildAsync());
+        service.refresh();
+
+        assertEquals(2, search(service, "reissued").getTotalElements());
+    }
+
+    @Test
+    public void testSnapshotIsLoadedInsteadOfRescanning() throws IOException {
+        insert(1, "cabin upgraded");
+        insert(2, "cabin upgraded");
+        AuditSearchService first = start();
+        sealed.add(segment(1));
+        first.refresh();
+        first.snapshot();
+
+        clearInvocations(jdbcTemplate);
+        AuditSearchService second = start();
+
+        verify(jdbcTemplate, never()).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+        assertEquals(List.of(2L), ids(search(second, "cabin")));
+        assertEquals(2L, second.getStatus().get("lastIndexedRecordId"));
+    }
+
+    /**
+     * A service whose index file lives in the test directory, after its
+     * startup load or build has finished
+     */
+    private AuditSearchService start() {
+        AuditSearchService service = new AuditSearchService(jdbcTemplate, repository, executor, archiveService);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "indexFile", directory.resolve("audit-index.bin").toString());
+        ReflectionTestUtils.setField(service, "tailBatchSize", 100);
+        ReflectionTestUtils.setField(service, "gapRetentionMs", 60_000L);
+        service.initialize();
+        assertTrue(service.isReady());
+        return service;
+    }
+
+    private AuditArchiveSegment segment(long... ids) throws IOException {
+        List<AuditArchiveSegment.ArchivedRow> rows = new ArrayList<>();
+        for (long id : ids) {
+            rows.add(AuditArchiveSegment.ArchivedRow.builder()
+                    .id(id)
+                    .bookingId(1)
+                    .createdAt(LocalDateTime.of(2025, 1, 1, 0, 0).plusMinutes(id))
+                    .action(TypeAction.BOOKING_UPDATED.name())
+                    .build());
+        }
+        Path file = directory.resolve("audit-" + ids[0] + ".seg");
+        AuditArchiveSegment.write(file, rows);
+        return AuditArchiveSegment.open(file);
+    }
+
+    private void insert(long id, String description) {
+        table.put(id, new Object[] { id, "BK-" + id, TypeAction.BOOKING_UPDATED.name(), "operator1", description });
+    }
+
+    private static Page<BookingRecord> search(AuditSearchService service, String query) {
+        return service.search(query, PageRequest.of(0, 20)).orElseThrow();
+    }
+
+    private static List<Long> ids(Page<BookingRecord> page) {
+        return page.getContent().stream().map(BookingRecord::getId).toList();
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getLong" -> ((Number) value).longValue();
+                default -> value;
+            };
+        });
+    }
+}
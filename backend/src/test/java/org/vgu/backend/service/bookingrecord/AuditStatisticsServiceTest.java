@@ -0,0 +1,160 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.vgu.backend.enums.TypeAction;
+import org.vgu.backend.model.BookingRecord;
+
+/**
+ * Checkpoints add each node's deltas to the shared rollups and re-count
+ * closed hours whole
+ */
+public class AuditStatisticsServiceTest {
+
+    private static final TypeAction ACTION = TypeAction.BOOKING_UPDATED;
+    private static final DateTimeFormatter BUCKET = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00:00");
+
+    private final LocalDateTime openHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+    private final LocalDateTime closedHour = openHour.minusHours(3);
+    // booking_record_rollups as bucket_start, action, record_count
+    private final List<Object[]> rollups = new ArrayList<>();
+    // booking_records counted per hour as action, bucket, count
+    private final List<Object[]> recordCounts = new ArrayList<>();
+    // SQL and rows of each JDBC batch, in order
+    private final List<String> batchSql = new ArrayList<>();
+    private final List<List<Object[]>> batchRows = new ArrayList<>();
+    private boolean failBatches;
+    private AuditStatisticsService service;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            for (Object[] row : rollups) {
+                invocation.<RowCallbackHandler>getArgument(1).processRow(row(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class));
+        doAnswer(invocation -> {
+            for (Object[] row : recordCounts) {
+                invocation.<RowCallbackHandler>getArgument(1).processRow(row(row));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        doAnswer(invocation -> {
+            if (failBatches) {
+                throw new IllegalStateException("connection lost");
+            }
+            batchSql.add(invocation.getArgument(0));
+            batchRows.add(new ArrayList<>(invocation.<List<Object[]>>getArgument(1)));
+            return new int[0];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+        AsyncTaskExecutor executor = mock(AsyncTaskExecutor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any(Runnable.class));
+
+        service = new AuditStatisticsService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(AuditArchiveService.class), executor);
+        ReflectionTestUtils.setField(service, "reconcileGraceMinutes", 60L);
+
+        rollups.add(new Object[] { openHour, ACTION.name(), 5L });
+        recordCounts.add(new Object[] { ACTION.name(), openHour.format(BUCKET), 5L });
+        service.initialize();
+        assertTrue(service.isReady());
+    }
+
+    @Test
+    public void testCheckpointAddsDeltasAndReloadsSharedCounts() {
+        service.recordCreated(record(openHour.plusMinutes(5)));
+        service.recordCreated(record(openHour.plusMinutes(6)));
+        assertEquals(7, service.getActionTotal(ACTION));
+        // Another node checkpointed three records of its own meanwhile
+        rollups.set(0, new Object[] { openHour, ACTION.name(), 8L });
+
+        service.checkpoint();
+
+        List<Object[]> added = rows("record_count = record_count + VALUES(record_count)");
+        assertEquals(1, added.size());
+        assertArrayEquals(new Object[] { Timestamp.valueOf(openHour), ACTION.name(), 2L }, added.get(0));
+        // The reload shows the shared count; this node's deltas are in it now
+        assertEquals(8, service.getActionTotal(ACTION));
+    }
+
+    @Test
+    public void testClosedHourIsRecountedNotAdded() {
+        service.recordCreated(record(closedHour.plusMinutes(10)));
+        recordCounts.clear();
+        recordCounts.add(new Object[] { ACTION.name(), closedHour.format(BUCKET), 4L });
+
+        service.checkpoint();
+
+        assertTrue(rows("record_count + VALUES").isEmpty());
+        assertArrayEquals(new Object[] { Timestamp.valueOf(closedHour) }, rows("DELETE").get(0));
+        List<Object[]> inserted = rows("INSERT");
+        assertEquals(1, inserted.size());
+        assertArrayEquals(new Object[] { Timestamp.valueOf(closedHour), ACTION.name(), 4L }, inserted.get(0));
+    }
+
+    @Test
+    public void testFailedCheckpointKeepsTheDeltas() {
+        service.recordCreated(record(openHour.plusMinutes(5)));
+        failBatches = true;
+        service.checkpoint();
+        assertEquals(6, service.getActionTotal(ACTION));
+
+        failBatches = false;
+        service.checkpoint();
+
+        assertArrayEquals(new Object[] { Timestamp.valueOf(openHour), ACTION.name(), 1L },
+                rows("record_count + VALUES").get(0));
+    }
+
+    private List<Object[]> rows(String sqlFragment) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < batchSql.size(); i++) {
+            if (batchSql.get(i).contains(sqlFragment)) {
+                rows.addAll(batchRows.get(i));
+            }
+        }
+        return rows;
+    }
+
+    private static BookingRecord record(LocalDateTime createdAt) {
+        return BookingRecord.builder().action(ACTION).createdAt(createdAt).build();
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                default -> value;
+            };
+        });
+    }
+}
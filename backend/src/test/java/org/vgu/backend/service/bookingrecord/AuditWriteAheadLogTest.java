@@ -0,0 +1,174 @@
+package org.vgu.backend.service.bookingrecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.vgu.backend.enums.TypeAction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Recovery of un-checkpointed audit rows after a restart
+ */
+public class AuditWriteAheadLogTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("audit-wal");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyLogStartsAtZero() {
+        try (AuditWriteAheadLog wal = wal(1024)) {
+            AuditWriteAheadLog.Recovery recovery = wal.open();
+            assertTrue(recovery.getPendingRows().isEmpty());
+            assertEquals(0, recovery.getNextSequence());
+        }
+    }
+
+    @Test
+    public void testUncheckpointedRowsAreReplayedInOrder() {
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            wal.open();
+            for (long seq = 0; seq < 5; seq++) {
+                wal.append(row(seq));
+            }
+        }
+
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            AuditWriteAheadLog.Recovery recovery = wal.open();
+            assertEquals(List.of(0L, 1L, 2L, 3L, 4L), seqs(recovery));
+            assertEquals(5, recovery.getNextSequence());
+            assertEquals("row 3", recovery.getPendingRows().get(3).getDescription());
+            assertEquals(TypeAction.BOOKING_UPDATED, recovery.getPendingRows().get(3).getAction());
+        }
+    }
+
+    @Test
+    public void testCheckpointedRowsAreNotReplayed() throws IOException {
+        // One row per segment, so every append seals a segment
+        try (AuditWriteAheadLog wal = wal(1)) {
+            wal.open();
+            for (long seq = 0; seq < 6; seq++) {
+                wal.append(row(seq));
+            }
+            wal.checkpoint(3);
+            // Sealed segments of rows 4 and 5, and the empty current one
+            assertEquals(3, segments().size());
+        }
+
+        try (AuditWriteAheadLog wal = wal(1)) {
+            AuditWriteAheadLog.Recovery recovery = wal.open();
+            assertEquals(List.of(4L, 5L), seqs(recovery));
+            assertEquals(6, recovery.getNextSequence());
+        }
+    }
+
+    @Test
+    public void testSequenceContinuesAfterFullCheckpoint() throws IOException {
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            wal.open();
+            wal.append(row(0));
+            wal.append(row(1));
+            wal.checkpoint(1);
+        }
+        assertTrue(segments().isEmpty());
+
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            AuditWriteAheadLog.Recovery recovery = wal.open();
+            assertTrue(recovery.getPendingRows().isEmpty());
+            assertEquals(2, recovery.getNextSequence());
+        }
+    }
+
+    @Test
+    public void testTornLastLineIsSkipped() throws IOException {
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            wal.open();
+            wal.append(row(0));
+            wal.append(row(1));
+        }
+        // Crash in the middle of writing the next row
+        Files.writeString(segments().get(0), "{\"seq\":2,\"descri", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            AuditWriteAheadLog.Recovery recovery = wal.open();
+            assertEquals(List.of(0L, 1L), seqs(recovery));
+            assertEquals(2, recovery.getNextSequence());
+        }
+    }
+
+    @Test
+    public void testRecoveredSequenceSeedsTheRingBuffer() {
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            wal.open();
+            wal.append(row(0));
+            wal.append(row(1));
+            wal.checkpoint(0);
+        }
+
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            AuditWriteAheadLog.Recovery recovery = wal.open();
+            AuditRingBuffer ring = new AuditRingBuffer(8, recovery.getNextSequence());
+            assertTrue(ring.publish(row(-1), 0, wal::append));
+            List<AuditRow> drained = new ArrayList<>();
+            ring.drainTo(drained, 8);
+            assertEquals(2, drained.get(0).getSeq());
+        }
+
+        try (AuditWriteAheadLog wal = wal(1024 * 1024)) {
+            assertEquals(List.of(1L, 2L), seqs(wal.open()));
+        }
+    }
+
+    private AuditWriteAheadLog wal(long maxSegmentBytes) {
+        return new AuditWriteAheadLog(directory, maxSegmentBytes, false, objectMapper);
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().endsWith(".wal")).sorted().toList();
+        }
+    }
+
+    private static List<Long> seqs(AuditWriteAheadLog.Recovery recovery) {
+        return recovery.getPendingRows().stream().map(AuditRow::getSeq).toList();
+    }
+
+    private static AuditRow row(long seq) {
+        return AuditRow.builder()
+                .seq(seq)
+                .bookingId(42L)
+                .action(TypeAction.BOOKING_UPDATED)
+                .description("row " + seq)
+                .createdAt(LocalDateTime.of(2026, 5, 1, 12, 0))
+                .build();
+    }
+}
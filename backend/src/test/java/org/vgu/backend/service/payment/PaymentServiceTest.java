@@ -0,0 +1,95 @@
+package org.vgu.backend.service.payment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.vgu.backend.dto.response.PaymentHistoryItem;
+import org.vgu.backend.dto.response.PaymentStatementResponse;
+import org.vgu.backend.enums.PaymentStatus;
+import org.vgu.backend.repository.PaymentRepository;
+
+public class PaymentServiceTest {
+
+    private PaymentRepository paymentRepository;
+    private PaymentService paymentService;
+
+    @BeforeEach
+    public void setUp() {
+        paymentRepository = mock(PaymentRepository.class);
+        paymentService = new PaymentService();
+        ReflectionTestUtils.setField(paymentService, "paymentRepository", paymentRepository);
+    }
+
+    @Test
+    public void testHistoryPageStartsBelowTheCursor() {
+        List<PaymentHistoryItem> page = List.of(new PaymentHistoryItem());
+        when(paymentRepository.findHistoryPage(7L, 120L, Limit.of(21))).thenReturn(page);
+
+        assertSame(page, paymentService.getPaymentHistory(7L, 120L, 21));
+    }
+
+    @Test
+    public void testStatementTotals() {
+        PaymentRepository.StatementTotals totals = mock(PaymentRepository.StatementTotals.class);
+        when(totals.getPaidBefore()).thenReturn(new BigDecimal("500"));
+        when(totals.getRefundedBefore()).thenReturn(new BigDecimal("100"));
+        when(totals.getPayments()).thenReturn(3L);
+        when(totals.getPaid()).thenReturn(new BigDecimal("300.5"));
+        when(totals.getRefunds()).thenReturn(1L);
+        when(totals.getRefunded()).thenReturn(50);
+        when(totals.getPending()).thenReturn(new BigDecimal("80.005"));
+        when(totals.getFailed()).thenReturn(2L);
+        when(paymentRepository.getStatementTotals(anyLong(), any(), any(), any(), any(), any())).thenReturn(totals);
+
+        PaymentStatementResponse statement = paymentService.getStatement(7L, LocalDate.of(2026, 5, 1),
+                LocalDate.of(2026, 5, 31));
+
+        assertEquals(new BigDecimal("400.00"), statement.getOpeningBalance());
+        assertEquals(3, statement.getPayments());
+        assertEquals(new BigDecimal("300.50"), statement.getTotalPaid());
+        assertEquals(1, statement.getRefunds());
+        assertEquals(new BigDecimal("50.00"), statement.getTotalRefunded());
+        assertEquals(new BigDecimal("250.50"), statement.getNetPaid());
+        assertEquals(new BigDecimal("650.50"), statement.getClosingBalance());
+        assertEquals(new BigDecimal("80.01"), statement.getPendingAmount());
+        assertEquals(2, statement.getFailedPayments());
+    }
+
+    @Test
+    public void testStatementPeriodIncludesTheLastDay() {
+        PaymentRepository.StatementTotals totals = mock(PaymentRepository.StatementTotals.class);
+        when(totals.getPaidBefore()).thenReturn(0);
+        when(totals.getRefundedBefore()).thenReturn(0);
+        when(totals.getPayments()).thenReturn(0);
+        when(totals.getPaid()).thenReturn(0);
+        when(totals.getRefunds()).thenReturn(0);
+        when(totals.getRefunded()).thenReturn(0);
+        when(totals.getPending()).thenReturn(0);
+        when(totals.getFailed()).thenReturn(0);
+        when(paymentRepository.getStatementTotals(anyLong(), any(), any(), any(), any(), any())).thenReturn(totals);
+
+        PaymentStatementResponse statement = paymentService.getStatement(7L, LocalDate.of(2026, 5, 1),
+                LocalDate.of(2026, 5, 31));
+
+        verify(paymentRepository).getStatementTotals(eq(7L), eq(LocalDateTime.of(2026, 5, 1, 0, 0)),
+                eq(LocalDateTime.of(2026, 6, 1, 0, 0)),
+                eq(List.of(PaymentStatus.COMPLETED, PaymentStatus.REFUNDED, PaymentStatus.PARTIALLY_REFUNDED)),
+                eq(List.of(PaymentStatus.PENDING, PaymentStatus.PROCESSING)), eq(PaymentStatus.FAILED));
+        assertEquals(new BigDecimal("0.00"), statement.getClosingBalance());
+    }
+}
@@ -0,0 +1,192 @@
+package org.vgu.backend.service.report;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.vgu.backend.exception.BusinessException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Cents accumulators, group keys and output of the revenue report
+ */
+public class RevenueReportServiceTest {
+
+    private static final LocalDate FROM = LocalDate.of(2026, 3, 1);
+    private static final LocalDate TO = LocalDate.of(2026, 3, 31);
+
+    // day offset, route_id, ferry_id, payment_method, amount and refund in cents
+    private final List<Object[]> payments = new ArrayList<>();
+    private final List<PreparedStatement> statements = new ArrayList<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private RevenueReportService service;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            Connection connection = mock(Connection.class);
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+            invocation.<PreparedStatementCreator>getArgument(0).createPreparedStatement(connection);
+            statements.add(statement);
+            for (Object[] payment : payments) {
+                invocation.<RowCallbackHandler>getArgument(1).processRow(row(payment));
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        service = new RevenueReportService(jdbcTemplate, objectMapper, mock(AsyncTaskExecutor.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "syncMaxDays", 92);
+        ReflectionTestUtils.setField(service, "maxDays", 1100);
+        ReflectionTestUtils.setField(service, "fetchSize", Integer.MIN_VALUE);
+    }
+
+    @Test
+    public void testCsvGroupsByRouteAndMethod() throws IOException {
+        payments.add(new Object[] { 0, 2L, 1L, "CARD", 10L, 0L });
+        payments.add(new Object[] { 3, 2L, 1L, "CARD", 20L, 0L });
+        payments.add(new Object[] { 1, 1L, 1L, "BANK_TRANSFER", 150000L, 50000L });
+        payments.add(new Object[] { 4, 2L, 5L, "BANK_TRANSFER", 999L, 999L });
+
+        String csv = csv(EnumSet.of(RevenueReportService.Dimension.ROUTE, RevenueReportService.Dimension.METHOD));
+
+        // Rows by route, then by method in the order first seen
+        assertEquals("route,method,payments,revenue,refunds,net\n"
+                + "1,BANK_TRANSFER,1,1500.00,500.00,1000.00\n"
+                + "2,CARD,2,0.30,0.00,0.30\n"
+                + "2,BANK_TRANSFER,1,9.99,9.99,0.00\n", csv);
+    }
+
+    @Test
+    public void testCsvGroupsByDayAndFerry() throws IOException {
+        payments.add(new Object[] { 30, 1L, 7L, "CARD", 500L, 0L });
+        payments.add(new Object[] { 0, 1L, 7L, "CARD", 250L, 100L });
+        payments.add(new Object[] { 0, 1L, 3L, "CARD", 100L, 0L });
+        payments.add(new Object[] { 0, 2L, 7L, "CASH", 150L, 0L });
+
+        String csv = csv(EnumSet.of(RevenueReportService.Dimension.DAY, RevenueReportService.Dimension.FERRY));
+
+        assertEquals("day,ferry,payments,revenue,refunds,net\n"
+                + "2026-03-01,3,1,1.00,0.00,1.00\n"
+                + "2026-03-01,7,2,4.00,1.00,3.00\n"
+                + "2026-03-31,7,1,5.00,0.00,5.00\n", csv);
+    }
+
+    @Test
+    public void testUngroupedReportSumsInCents() throws IOException {
+        for (int i = 0; i < 1000; i++) {
+            // 0.10 and 0.20 do not add up exactly in binary floating point
+            payments.add(new Object[] { i % 31, 1L, 1L, "CARD", i % 2 == 0 ? 10L : 20L, 0L });
+        }
+        payments.add(new Object[] { 0, 1L, 1L, "CARD", 99_999_999_999L, 1L });
+
+        assertEquals("payments,revenue,refunds,net\n1001,1000000149.99,0.01,1000000149.98\n",
+                csv(Set.of()));
+    }
+
+    @Test
+    public void testJsonReport() throws IOException {
+        payments.add(new Object[] { 0, 2L, 1L, "CARD", 1234L, 0L });
+        payments.add(new Object[] { 1, 2L, 1L, "CASH", 766L, 500L });
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = service.write(FROM, TO, EnumSet.of(RevenueReportService.Dimension.ROUTE,
+                RevenueReportService.Dimension.METHOD), RevenueReportService.Format.JSON, out);
+
+        assertEquals(2, rows);
+        JsonNode report = objectMapper.readTree(out.toByteArray());
+        assertEquals("2026-03-01", report.get("from").asText());
+        assertEquals("ROUTE", report.get("groupBy").get(0).asText());
+        JsonNode first = report.get("rows").get(0);
+        assertEquals(2, first.get("routeId").asLong());
+        assertEquals("CARD", first.get("method").asText());
+        // Amounts are written with exactly two decimals
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"revenue\":12.34,\"refunds\":0.00,\"net\":12.34"));
+        assertTrue(json.endsWith("\"totals\":{\"payments\":2,\"revenue\":20.00,\"refunds\":5.00,\"net\":15.00}}"));
+    }
+
+    @Test
+    public void testRangeIsBoundToTheStatement() throws Exception {
+        csv(Set.of());
+
+        PreparedStatement statement = statements.get(0);
+        verify(statement).setFetchSize(Integer.MIN_VALUE);
+        verify(statement).setTimestamp(1, Timestamp.valueOf(FROM.atStartOfDay()));
+        verify(statement).setTimestamp(2, Timestamp.valueOf(FROM.atStartOfDay()));
+        // The last day is included in full
+        verify(statement).setTimestamp(3, Timestamp.valueOf(LocalDate.of(2026, 4, 1).atStartOfDay()));
+    }
+
+    @Test
+    public void testIdsTooWideForTheKeyAreRefused() {
+        payments.add(new Object[] { 0, 1L, 1L << 20, "CARD", 100L, 0L });
+
+        assertThrows(IllegalStateException.class,
+                () -> csv(EnumSet.of(RevenueReportService.Dimension.FERRY)));
+        // Ungrouped, the ferry id is not part of the key
+        assertDoesNotThrow(() -> csv(EnumSet.of(RevenueReportService.Dimension.ROUTE)));
+    }
+
+    @Test
+    public void testRangeLimits() {
+        assertTrue(service.fitsRequest(FROM, FROM.plusDays(91)));
+        assertFalse(service.fitsRequest(FROM, FROM.plusDays(92)));
+        assertEquals("RANGE_TOO_LARGE", assertThrows(BusinessException.class,
+                () -> service.fitsRequest(FROM, FROM.plusDays(1100))).getErrorCode());
+        assertEquals("INVALID_RANGE", assertThrows(BusinessException.class,
+                () -> service.fitsRequest(FROM, FROM.minusDays(1))).getErrorCode());
+    }
+
+    private String csv(Set<RevenueReportService.Dimension> groupBy) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.write(FROM, TO, groupBy, RevenueReportService.Format.CSV, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getLong" -> ((Number) value).longValue();
+                case "getInt" -> ((Number) value).intValue();
+                default -> value;
+            };
+        });
+    }
+}
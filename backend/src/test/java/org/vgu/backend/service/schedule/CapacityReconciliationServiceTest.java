@@ -0,0 +1,244 @@
+package org.vgu.backend.service.schedule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.vgu.backend.service.lease.JobLeaseService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Expected capacity, drift reporting and conditional correction of
+ * upcoming sailings
+ */
+public class CapacityReconciliationServiceTest {
+
+    private static final LocalDateTime DEPARTURE = LocalDateTime.of(2030, 6, 1, 8, 0);
+
+    // Sailings by id: recorded vehicle and passenger spaces, ferry capacity,
+    // space held by bookings and the unused share of open allotment blocks
+    private final TreeMap<Long, Sailing> sailings = new TreeMap<>();
+    // Sailings whose counters moved after they were read
+    private final Set<Long> changedMeanwhile = new HashSet<>();
+    private final List<List<Long>> checkedPartitions = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private CapacityReconciliationService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForStream(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> sailings.keySet().stream());
+        doAnswer(invocation -> {
+            Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            // The ids are bound once for each of the three IN lists
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < args.length / 3; i++) {
+                ids.add((Long) args[i]);
+            }
+            // Partitions are checked on the pool's threads
+            synchronized (checkedPartitions) {
+                queries.add(invocation.getArgument(0));
+                checkedPartitions.add(ids);
+            }
+            List<Object> mapped = new ArrayList<>();
+            for (Long id : ids) {
+                mapped.add(invocation.<RowMapper<Object>>getArgument(1).mapRow(row(id, sailings.get(id)),
+                        mapped.size()));
+            }
+            return mapped;
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+        doAnswer(invocation -> {
+            Collection<CapacityReconciliationService.Drift> drifts = invocation.getArgument(1);
+            int[] counts = new int[drifts.size()];
+            int i = 0;
+            for (CapacityReconciliationService.Drift drift : drifts) {
+                counts[i++] = changedMeanwhile.contains(drift.getScheduleId()) ? 0 : 1;
+            }
+            return new int[][] { counts };
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        service = new CapacityReconciliationService(jdbcTemplate, transactionManager, mock(JobLeaseService.class),
+                new SimpleMeterRegistry(), 2);
+        ReflectionTestUtils.setField(service, "partitionSize", 500);
+        ReflectionTestUtils.setField(service, "maxReported", 200);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    public void testMatchingSailingsAreClean() {
+        sailings.put(1L, new Sailing(12, 180, 20, 300, 8, 120, 0, 0));
+        sailings.put(2L, new Sailing(0, 0, 20, 300, 20, 300, 0, 0));
+
+        CapacityReconciliationService.ReconciliationReport report = service.reconcile(false);
+
+        assertEquals(2, report.getChecked());
+        assertEquals(0, report.getDrifted());
+        assertTrue(report.getDrifts().isEmpty());
+    }
+
+    @Test
+    public void testUnusedAllotmentSpaceIsNotAvailable() {
+        // A block of 5 vehicles with 2 used still holds 3 back from the public pool
+        sailings.put(1L, new Sailing(9, 250, 20, 300, 8, 40, 3, 10));
+        sailings.put(2L, new Sailing(12, 260, 20, 300, 8, 40, 3, 10));
+
+        CapacityReconciliationService.ReconciliationReport report = service.reconcile(false);
+
+        assertEquals(1, report.getDrifted());
+        CapacityReconciliationService.Drift drift = report.getDrifts().get(0);
+        assertEquals(2L, drift.getScheduleId());
+        assertEquals(DEPARTURE, drift.getDepartureTime());
+        assertEquals(12, drift.getRecordedVehicleSpaces());
+        assertEquals(9, drift.getExpectedVehicleSpaces());
+        assertEquals(260, drift.getRecordedPassengerSpaces());
+        assertEquals(250, drift.getExpectedPassengerSpaces());
+        assertFalse(drift.isCorrected());
+
+        String sql = queries.get(0);
+        assertTrue(sql.contains("- COALESCE(a.vehicles, 0)"));
+        assertTrue(sql.contains("SUM(GREATEST(0, vehicle_spaces - used_vehicle_spaces))"));
+        assertTrue(sql.contains("released_at IS NULL"));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    public void testOverbookedSailingsAreExpectedAtZero() {
+        sailings.put(1L, new Sailing(0, 0, 20, 300, 22, 280, 1, 30));
+
+        CapacityReconciliationService.ReconciliationReport report = service.reconcile(false);
+
+        assertEquals(0, report.getDrifted());
+    }
+
+    @Test
+    public void testCorrectionSkipsCountersChangedMeanwhile() {
+        sailings.put(1L, new Sailing(5, 100, 20, 300, 10, 100, 0, 0));
+        sailings.put(2L, new Sailing(5, 100, 20, 300, 10, 100, 0, 0));
+        changedMeanwhile.add(2L);
+
+        CapacityReconciliationService.ReconciliationReport report = service.reconcile(true);
+
+        assertEquals(2, report.getDrifted());
+        assertEquals(1, report.getCorrected());
+        assertEquals(1, report.getChangedConcurrently());
+        for (CapacityReconciliationService.Drift drift : report.getDrifts()) {
+            assertEquals(drift.getScheduleId() == 1L, drift.isCorrected());
+        }
+    }
+
+    @Test
+    public void testPartitionsCoverEveryScheduleAndLargestDriftsComeFirst() {
+        ReflectionTestUtils.setField(service, "partitionSize", 3);
+        ReflectionTestUtils.setField(service, "maxReported", 2);
+        for (long id = 1; id <= 8; id++) {
+            // Sailing n is n vehicle spaces off
+            sailings.put(id, new Sailing(10 + (int) id, 200, 20, 300, 10, 100, 0, 0));
+        }
+
+        CapacityReconciliationService.ReconciliationReport report = service.reconcile(false);
+
+        assertEquals(3, report.getPartitions());
+        assertEquals(8, report.getChecked());
+        assertEquals(8, report.getDrifted());
+        assertEquals(List.of(8L, 7L), report.getDrifts().stream()
+                .map(CapacityReconciliationService.Drift::getScheduleId).toList());
+        List<Long> checked = checkedPartitions.stream().flatMap(List::stream).sorted().toList();
+        assertEquals(List.copyOf(sailings.keySet()), checked);
+        assertTrue(checkedPartitions.stream().allMatch(partition -> partition.size() <= 3));
+    }
+
+    @Test
+    public void testNoUpcomingSailings() {
+        when(jdbcTemplate.queryForStream(anyString(), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> Stream.empty());
+
+        CapacityReconciliationService.ReconciliationReport report = service.reconcile(true);
+
+        assertEquals(0, report.getChecked());
+        assertEquals(0, report.getPartitions());
+    }
+
+    /**
+     * The row of the grouped query, computing the expected counters the
+     * way the query does
+     */
+    private static ResultSet row(long id, Sailing sailing) {
+        Object[] values = { id, DEPARTURE, sailing.recordedVehicles, sailing.recordedPassengers,
+                (long) sailing.capacityVehicles - sailing.bookedVehicles - sailing.blockedVehicles,
+                (long) sailing.capacityPassengers - sailing.bookedPassengers - sailing.blockedPassengers };
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                case "getInt" -> ((Number) value).intValue();
+                default -> value;
+            };
+        });
+    }
+
+    private static final class Sailing {
+        private final int recordedVehicles;
+        private final int recordedPassengers;
+        private final int capacityVehicles;
+        private final int capacityPassengers;
+        private final int bookedVehicles;
+        private final int bookedPassengers;
+        private final int blockedVehicles;
+        private final int blockedPassengers;
+
+        private Sailing(int recordedVehicles, int recordedPassengers, int capacityVehicles, int capacityPassengers,
+                int bookedVehicles, int bookedPassengers, int blockedVehicles, int blockedPassengers) {
+            this.recordedVehicles = recordedVehicles;
+            this.recordedPassengers = recordedPassengers;
+            this.capacityVehicles = capacityVehicles;
+            this.capacityPassengers = capacityPassengers;
+            this.bookedVehicles = bookedVehicles;
+            this.bookedPassengers = bookedPassengers;
+            this.blockedVehicles = blockedVehicles;
+            this.blockedPassengers = blockedPassengers;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.vgu.backend.service.schedule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Overlap queries on the static interval tree against a linear scan
+ */
+public class IntervalTreeTest {
+
+    @Test
+    public void testEmptyTree() {
+        IntervalTree<String> tree = new IntervalTree<>(List.of());
+
+        assertEquals(0, tree.size());
+        assertTrue(tree.overlapping(Long.MIN_VALUE, Long.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void testIntervalsAreHalfOpen() {
+        IntervalTree<String> tree = new IntervalTree<>(List.of(interval(60, 120, "morning")));
+
+        // Touching at either end is not an overlap
+        assertTrue(tree.overlapping(0, 60).isEmpty());
+        assertTrue(tree.overlapping(120, 180).isEmpty());
+        assertEquals(List.of("morning"), values(tree.overlapping(119, 180)));
+        assertEquals(List.of("morning"), values(tree.overlapping(0, 61)));
+        assertEquals(List.of("morning"), values(tree.overlapping(90, 91)));
+    }
+
+    @Test
+    public void testMatchesComeBackByStart() {
+        IntervalTree<String> tree = new IntervalTree<>(List.of(
+                interval(300, 400, "d"),
+                interval(0, 1000, "a"),
+                interval(100, 200, "b"),
+                interval(150, 160, "c"),
+                interval(500, 600, "e")));
+
+        assertEquals(List.of("a", "b", "c"), values(tree.overlapping(155, 170)));
+        assertEquals(List.of("a", "d", "e"), values(tree.overlapping(350, 550)));
+        // A long interval early in the order is found from deep in the right subtree
+        assertEquals(List.of("a"), values(tree.overlapping(900, 950)));
+        assertTrue(tree.overlapping(1000, 2000).isEmpty());
+    }
+
+    @Test
+    public void testAgreesWithLinearScan() {
+        Random random = new Random(42);
+        List<IntervalTree.Interval<Integer>> intervals = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            long start = random.nextInt(10_000);
+            intervals.add(interval(start, start + 1 + random.nextInt(300), i));
+        }
+        IntervalTree<Integer> tree = new IntervalTree<>(intervals);
+        assertEquals(500, tree.size());
+
+        for (int q = 0; q < 2_000; q++) {
+            long start = random.nextInt(10_500) - 200;
+            long end = start + random.nextInt(400);
+            List<Integer> expected = intervals.stream()
+                    .filter(interval -> interval.start < end && start < interval.end)
+                    .sorted((a, b) -> Long.compare(a.start, b.start))
+                    .map(interval -> interval.value)
+                    .toList();
+            List<IntervalTree.Interval<Integer>> found = tree.overlapping(start, end);
+
+            assertEquals(expected.size(), found.size(), "query " + start + ".." + end);
+            assertEquals(expected.stream().sorted().toList(), values(found).stream().sorted().toList());
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(found.get(i - 1).start <= found.get(i).start);
+            }
+        }
+    }
+
+    private static <T> IntervalTree.Interval<T> interval(long start, long end, T value) {
+        return new IntervalTree.Interval<>(start, end, value);
+    }
+
+    private static <T> List<T> values(List<IntervalTree.Interval<T>> intervals) {
+        return intervals.stream().map(interval -> interval.value).toList();
+    }
+}
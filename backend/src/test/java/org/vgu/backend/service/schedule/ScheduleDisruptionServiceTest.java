@@ -0,0 +1,299 @@
+package org.vgu.backend.service.schedule;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.vgu.backend.enums.BookingStatus;
+import org.vgu.backend.repository.BookingRepository;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.berth.BerthAllocationService;
+import org.vgu.backend.service.booking.BookingStateMachine;
+import org.vgu.backend.service.booking.BookingStatsService;
+import org.vgu.backend.service.bookingrecord.IBookingRecordService;
+import org.vgu.backend.service.notification.NotificationService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ScheduleDisruptionServiceTest {
+
+    private static final long SAILING = 10L;
+    private static final long CUSTOMER = 7L;
+    private static final LocalDateTime DEPARTURE = LocalDateTime.now().plusDays(2).withNano(0);
+
+    private final List<Object[]> bookings = new ArrayList<>();
+    private final List<Object[]> alternatives = new ArrayList<>();
+    // capacity_vehicles, capacity_passengers, active of the ferry swapped in
+    private Object[] ferry = { 0, 0, true };
+    // SQL -> rows of each JDBC batch
+    private final Map<String, List<Object[]>> batches = new LinkedHashMap<>();
+    private JdbcTemplate jdbcTemplate;
+    private AllotmentService allotmentService;
+    private BookingStateMachine stateMachine;
+    private ScheduleDisruptionService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            List<Object[]> rows = sql.contains("FROM bookings") ? bookings
+                    : sql.contains("FROM ferries") ? List.<Object[]>of(ferry)
+                    : sql.contains("route_id = ?") ? alternatives
+                    : List.<Object[]>of(sailing(SAILING, DEPARTURE, 0, 0));
+            List<Object> mapped = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                mapped.add(invocation.<RowMapper<Object>>getArgument(1).mapRow(row(rows.get(i)), i));
+            }
+            return mapped;
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+        doAnswer(invocation -> {
+            batches.put(invocation.getArgument(0), new ArrayList<>(invocation.<List<Object[]>>getArgument(1)));
+            return new int[0];
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+
+        allotmentService = mock(AllotmentService.class);
+        when(allotmentService.remaining(anyLong(), anyLong()))
+                .thenAnswer(invocation -> new AllotmentService.Remaining(invocation.getArgument(0),
+                        invocation.getArgument(1), 0, 0, null));
+        when(allotmentService.consume(anyLong(), anyLong(), anyInt(), anyInt())).thenReturn(AllotmentService.NONE);
+        stateMachine = new BookingStateMachine(mock(IBookingRecordService.class), mock(NotificationService.class),
+                new SimpleMeterRegistry(), allotmentService);
+
+        service = new ScheduleDisruptionService(jdbcTemplate, mock(PlatformTransactionManager.class),
+                mock(BookingRepository.class), mock(IBookingRecordService.class), mock(NotificationService.class),
+                mock(BookingStatsService.class), stateMachine, mock(BerthAllocationService.class), allotmentService,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxAlternatives", 10);
+        ReflectionTestUtils.setField(service, "lookaheadHours", 72);
+        ReflectionTestUtils.setField(service, "chunkSize", 500);
+    }
+
+    @Test
+    public void testCancelledBookingReturnsAllottedSpaceToTheBlock() {
+        bookings.add(booking(1L, BookingStatus.CONFIRMED, 2, 4, 1, 3));
+        when(allotmentService.giveBack(SAILING, CUSTOMER, 1, 3)).thenReturn(true);
+
+        ScheduleDisruptionService.DisruptionResult result = cancel();
+
+        assertEquals(1, result.getCancelledBookings());
+        // Only the public share goes back to the pool
+        verify(jdbcTemplate).update(contains("available_vehicle_spaces + ?"), eq(1), eq(1), eq(SAILING));
+    }
+
+    @Test
+    public void testReleasedBlockSpaceGoesToThePublicPool() {
+        bookings.add(booking(1L, BookingStatus.CONFIRMED, 2, 4, 1, 3));
+        when(allotmentService.giveBack(SAILING, CUSTOMER, 1, 3)).thenReturn(false);
+
+        cancel();
+
+        verify(jdbcTemplate).update(contains("available_vehicle_spaces + ?"), eq(2), eq(4), eq(SAILING));
+    }
+
+    @Test
+    public void testMoveDrawsOnTheCustomersBlockOnTheNewSailing() {
+        bookings.add(booking(1L, BookingStatus.PAID, 2, 3, 2, 0));
+        // No public vehicle space left; the customer's block covers both vehicles
+        alternatives.add(sailing(20L, DEPARTURE.plusHours(4), 0, 10));
+        when(allotmentService.remaining(20L, CUSTOMER))
+                .thenReturn(new AllotmentService.Remaining(20L, CUSTOMER, 2, 1, DEPARTURE));
+        when(allotmentService.consume(20L, CUSTOMER, 2, 3)).thenReturn(new AllotmentService.Split(2, 1));
+        when(allotmentService.giveBack(SAILING, CUSTOMER, 2, 0)).thenReturn(true);
+
+        ScheduleDisruptionService.DisruptionResult result = cancel();
+
+        assertEquals(1, result.getMovedBookings());
+        assertArrayEquals(new Object[] { 2, 1, 1L }, batch("allotted_vehicles = ?").get(0));
+        List<Object[]> capacity = batch("UPDATE schedules");
+        assertArrayEquals(new Object[] { 0, 2, 20L }, capacity.get(0));
+        // The two allotted vehicles went back to the old block, not the public pool
+        assertArrayEquals(new Object[] { 0, -3, SAILING }, capacity.get(1));
+    }
+
+    @Test
+    public void testMoveWithoutBlockNeedsPublicSpace() {
+        bookings.add(booking(1L, BookingStatus.PAID, 2, 3, 0, 0));
+        alternatives.add(sailing(20L, DEPARTURE.plusHours(4), 0, 10));
+
+        ScheduleDisruptionService.DisruptionResult result = cancel();
+
+        assertEquals(0, result.getMovedBookings());
+        assertEquals(List.of(1L), result.getUnplacedBookingIds());
+        assertNull(batch("allotted_vehicles = ?"));
+    }
+
+    @Test
+    public void testFirstFitTakesTheEarliestSailingWithRoom() {
+        bookings.add(booking(1L, BookingStatus.CONFIRMED, 1, 1, 0, 0));
+        bookings.add(booking(2L, BookingStatus.CONFIRMED, 4, 1, 0, 0));
+        bookings.add(booking(3L, BookingStatus.CONFIRMED, 1, 1, 0, 0));
+        alternatives.add(sailing(20L, DEPARTURE.plusHours(2), 0, 10));
+        alternatives.add(sailing(21L, DEPARTURE.plusHours(4), 5, 10));
+        alternatives.add(sailing(22L, DEPARTURE.plusHours(6), 5, 10));
+
+        ScheduleDisruptionService.DisruptionResult result = cancel();
+
+        // 20 has no vehicle space; 21 takes the first two exactly; 3 spills to 22
+        assertEquals(Map.of(21L, 2, 22L, 1), result.getMovedTo());
+        assertEquals(3, result.getMovedBookings());
+        assertEquals(0, result.getCancelledBookings());
+        List<Object[]> capacity = batch("UPDATE schedules");
+        assertArrayEquals(new Object[] { 5, 2, 21L }, capacity.get(0));
+        assertArrayEquals(new Object[] { 1, 1, 22L }, capacity.get(1));
+    }
+
+    @Test
+    public void testUnplacedPaidBookingsGoToRefundOthersAreCancelled() {
+        bookings.add(booking(1L, BookingStatus.CONFIRMED, 1, 2, 0, 0));
+        bookings.add(booking(2L, BookingStatus.PAID, 1, 3, 0, 0));
+        bookings.add(booking(3L, BookingStatus.WAITING_FOR_PAYMENT, 0, 1, 0, 0));
+        bookings.add(booking(4L, BookingStatus.IN_REVIEW, 2, 2, 0, 0));
+
+        ScheduleDisruptionService.DisruptionResult result = cancel();
+
+        assertEquals(4, result.getCancelledBookings());
+        verify(jdbcTemplate).update(contains("SET status = ?"), eq("CANCELLED"), any(), any(), any(), any(),
+                eq(1L), eq(3L));
+        verify(jdbcTemplate).update(contains("SET status = ?"), eq("IN_REFUND"), any(), any(), any(), any(),
+                eq(2L), eq(4L));
+        // Bookings in refund keep holding their space until refunded
+        verify(jdbcTemplate).update(contains("available_vehicle_spaces + ?"), eq(1), eq(3), eq(SAILING));
+    }
+
+    @Test
+    public void testSwapBumpsLowestPriorityFirst() {
+        ferry = new Object[] { 3, 100, true };
+        bookings.add(booking(1L, BookingStatus.PAID, 2, 1, 0, 0));
+        bookings.add(booking(2L, BookingStatus.CONFIRMED, 1, 1, 0, 0));
+        bookings.add(booking(3L, BookingStatus.IN_PROGRESS, 2, 1, 0, 0));
+        bookings.add(booking(4L, BookingStatus.WAITING_FOR_PAYMENT, 1, 1, 0, 0));
+        alternatives.add(sailing(20L, DEPARTURE.plusHours(4), 10, 10));
+
+        ScheduleDisruptionService.VesselSwapResult result = swap(true);
+
+        // Kept in priority order: 3 (in progress), then 4 fits beside it; 1 and 2 do not
+        assertEquals(List.of(1L, 2L),
+                result.getBumped().stream().map(ScheduleDisruptionService.PlanItem::getBookingId).toList());
+        assertTrue(result.getBumped().stream().allMatch(item -> item.getTargetScheduleId() == 20L));
+        assertEquals(3, result.getCommittedVehicles());
+        assertEquals(0, result.getAvailableVehicleSpaces());
+        assertEquals(98, result.getAvailablePassengerSpaces());
+        assertFalse(result.isApplied());
+        verify(jdbcTemplate, never()).update(contains("SET ferry_id = ?"), any(Object[].class));
+    }
+
+    @Test
+    public void testSwapReprojectsCapacityOnTheNewVessel() {
+        ferry = new Object[] { 10, 50, true };
+        bookings.add(booking(1L, BookingStatus.PAID, 2, 4, 0, 0));
+        bookings.add(booking(2L, BookingStatus.CONFIRMED, 1, 3, 0, 0));
+
+        ScheduleDisruptionService.VesselSwapResult result = swap(false);
+
+        assertTrue(result.getBumped().isEmpty());
+        assertEquals(7, result.getAvailableVehicleSpaces());
+        assertEquals(43, result.getAvailablePassengerSpaces());
+        assertFalse(result.isOverCapacity());
+        verify(jdbcTemplate).update(contains("SET ferry_id = ?"), eq(2L), eq(7), eq(43), any(), eq(SAILING));
+    }
+
+    @Test
+    public void testBumpedBookingsGoingToRefundKeepTheirSpace() {
+        ferry = new Object[] { 2, 100, true };
+        bookings.add(booking(1L, BookingStatus.PAID, 2, 2, 0, 0));
+        bookings.add(booking(2L, BookingStatus.CONFIRMED, 1, 1, 0, 0));
+        bookings.add(booking(3L, BookingStatus.PAID, 1, 1, 0, 0));
+
+        ScheduleDisruptionService.VesselSwapResult result = swap(false);
+
+        assertEquals(2, result.getBumped().size());
+        // Booking 3 goes to refund and still holds its vehicle; booking 2 is cancelled
+        assertEquals(3, result.getCommittedVehicles());
+        assertEquals(3, result.getCommittedPassengers());
+        assertEquals(0, result.getAvailableVehicleSpaces());
+        assertEquals(97, result.getAvailablePassengerSpaces());
+        assertTrue(result.isOverCapacity());
+        verify(jdbcTemplate).update(contains("available_vehicle_spaces + ?"), eq(1), eq(1), eq(SAILING));
+    }
+
+    @SuppressWarnings("unchecked")
+    private ScheduleDisruptionService.VesselSwapResult swap(boolean dryRun) {
+        int vehicles = 0;
+        int passengers = 0;
+        for (Object[] booking : bookings) {
+            passengers += (Integer) booking[5];
+            vehicles += (Integer) booking[6];
+        }
+        long[] committed = { vehicles, passengers };
+        when(jdbcTemplate.queryForMap(anyString(), any(Object[].class)))
+                .thenReturn(Map.of("ferry_id", 1L, "arrival_time", Timestamp.valueOf(DEPARTURE.plusHours(2))));
+        when(jdbcTemplate.queryForObject(contains("SUM(b.passenger_count)"), any(RowMapper.class), any(Object[].class)))
+                .thenReturn(committed);
+        return service.swapVessel(SAILING, 2L, "Engine fault", dryRun, null);
+    }
+
+    private ScheduleDisruptionService.DisruptionResult cancel() {
+        ScheduleDisruptionService.DisruptionResult result = service.disrupt(SAILING,
+                ScheduleDisruptionService.Type.CANCELLED, null, "Storm", true, null);
+        assertNotNull(result);
+        return result;
+    }
+
+    private List<Object[]> batch(String sqlFragment) {
+        return batches.entrySet().stream().filter(e -> e.getKey().contains(sqlFragment))
+                .map(Map.Entry::getValue).findFirst().orElse(null);
+    }
+
+    private static Object[] sailing(long id, LocalDateTime departure, int vehicleSpaces, int passengerSpaces) {
+        return new Object[] { id, 1L, departure, "SCHEDULED", vehicleSpaces, passengerSpaces };
+    }
+
+    private static Object[] booking(long id, BookingStatus status, int vehicles, int passengers,
+            int allottedVehicles, int allottedPassengers) {
+        return new Object[] { id, "BK" + id, status.name(), new BigDecimal("100.00"), CUSTOMER, passengers,
+                vehicles, allottedVehicles, allottedPassengers };
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                default -> value;
+            };
+        });
+    }
+}
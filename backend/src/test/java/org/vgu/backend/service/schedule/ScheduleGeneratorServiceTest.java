@@ -0,0 +1,195 @@
+package org.vgu.backend.service.schedule;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.vgu.backend.dto.request.ScheduleGenerationRequest;
+import org.vgu.backend.service.allotment.AllotmentService;
+import org.vgu.backend.service.berth.BerthAllocationService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Conflict detection of generated seasons against the ferry's saved
+ * sailings and against each other
+ */
+public class ScheduleGeneratorServiceTest {
+
+    private static final LocalDate DAY = LocalDate.now().plusDays(10);
+
+    // id, departure_time, arrival_time of the ferry's saved sailings
+    private final List<Object[]> existing = new ArrayList<>();
+    private final List<BerthAllocationService.Sailing> planned = new ArrayList<>();
+    private JdbcTemplate jdbcTemplate;
+    private ScheduleGeneratorService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            List<Object[]> rows = sql.contains("FROM ferries") ? List.<Object[]>of(new Object[] { 20, 300, true })
+                    : sql.contains("FROM routes") ? List.<Object[]>of(new Object[] { 2L, 1L, 2L })
+                    : existing;
+            List<Object> mapped = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                mapped.add(invocation.<RowMapper<Object>>getArgument(1).mapRow(row(rows.get(i)), i));
+            }
+            return mapped;
+        }).when(jdbcTemplate).query(anyString(), any(RowMapper.class), any(Object[].class));
+
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        BerthAllocationService berthAllocationService = mock(BerthAllocationService.class);
+        when(berthAllocationService.plan(anyList(), anyBoolean())).thenAnswer(invocation -> {
+            planned.addAll(invocation.getArgument(0));
+            BerthAllocationService.Plan plan = new BerthAllocationService.Plan();
+            plan.getPlaced().addAll(invocation.getArgument(0));
+            return plan;
+        });
+
+        service = new ScheduleGeneratorService(jdbcTemplate, transactionManager, mock(AllotmentService.class),
+                berthAllocationService, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxSailings", 5000);
+        ReflectionTestUtils.setField(service, "defaultTurnaroundMinutes", 60);
+        ReflectionTestUtils.setField(service, "defaultBookingDeadlineMinutes", 60);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+    }
+
+    @Test
+    public void testConflictsWithSavedSailings() {
+        // Saved 10:00-12:00, busy until 13:00 with turnaround
+        existing.add(new Object[] { 5L, at(10, 0), at(12, 0) });
+
+        ScheduleGeneratorService.GenerationResult result = service.generate(
+                request(true, "07:30", "09:00", "11:00", "12:30", "13:00"));
+
+        List<ScheduleGeneratorService.Conflict> conflicts = result.getConflicts();
+        assertEquals(4, conflicts.size());
+        // Arrives 09:30, no time to turn around before 10:00
+        assertConflict(conflicts.get(0), at(7, 30), ScheduleGeneratorService.ConflictType.TURNAROUND);
+        assertConflict(conflicts.get(1), at(9, 0), ScheduleGeneratorService.ConflictType.DOUBLE_BOOKED);
+        assertConflict(conflicts.get(2), at(11, 0), ScheduleGeneratorService.ConflictType.DOUBLE_BOOKED);
+        // Leaves 30 minutes after the saved sailing arrives
+        assertConflict(conflicts.get(3), at(12, 30), ScheduleGeneratorService.ConflictType.TURNAROUND);
+        for (ScheduleGeneratorService.Conflict conflict : conflicts) {
+            assertEquals(5L, conflict.getConflictingScheduleId());
+            assertEquals(at(10, 0), conflict.getConflictingDepartureTime());
+            assertEquals(at(12, 0), conflict.getConflictingArrivalTime());
+        }
+        // Only 13:00 goes on to berth planning
+        assertEquals(List.of(at(13, 0)), departures(planned));
+        assertFalse(result.isApplied());
+        assertEquals(5, result.getSailings());
+    }
+
+    @Test
+    public void testConflictsWithinTheSeason() {
+        ScheduleGeneratorService.GenerationResult result = service.generate(
+                request(true, "16:00", "17:00", "18:30", "20:00"));
+
+        List<ScheduleGeneratorService.Conflict> conflicts = result.getConflicts();
+        assertEquals(2, conflicts.size());
+        assertConflict(conflicts.get(0), at(17, 0), ScheduleGeneratorService.ConflictType.DOUBLE_BOOKED);
+        assertConflict(conflicts.get(1), at(18, 30), ScheduleGeneratorService.ConflictType.TURNAROUND);
+        for (ScheduleGeneratorService.Conflict conflict : conflicts) {
+            assertNull(conflict.getConflictingScheduleId());
+            assertEquals(at(16, 0), conflict.getConflictingDepartureTime());
+            assertEquals(at(18, 0), conflict.getConflictingArrivalTime());
+        }
+        // A rejected sailing does not block the ones after it
+        assertEquals(List.of(at(16, 0), at(20, 0)), departures(planned));
+    }
+
+    @Test
+    public void testSailingsClearOfTheTurnaroundAreAccepted() {
+        existing.add(new Object[] { 5L, at(6, 0), at(8, 0) });
+
+        ScheduleGeneratorService.GenerationResult result = service.generate(request(true, "09:00", "12:00"));
+
+        assertTrue(result.getConflicts().isEmpty());
+        assertEquals(List.of(at(9, 0), at(12, 0)), departures(planned));
+    }
+
+    @Test
+    public void testConflictsRefuseTheSeason() {
+        existing.add(new Object[] { 5L, at(10, 0), at(12, 0) });
+
+        ScheduleGeneratorService.GenerationResult result = service.generate(request(false, "11:00", "14:00"));
+
+        assertFalse(result.isApplied());
+        assertEquals(0, result.getCreated());
+        assertEquals(1, result.getConflicts().size());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    private static ScheduleGenerationRequest request(boolean dryRun, String... times) {
+        return ScheduleGenerationRequest.builder()
+                .routeId(1L)
+                .ferryId(3L)
+                .startDate(DAY)
+                .endDate(DAY)
+                .daysOfWeek(Arrays.asList(DayOfWeek.values()))
+                .departureTimes(Arrays.stream(times).map(LocalTime::parse).toList())
+                .durationMinutes(120)
+                .turnaroundMinutes(60)
+                .dryRun(dryRun)
+                .build();
+    }
+
+    private static void assertConflict(ScheduleGeneratorService.Conflict conflict, LocalDateTime departure,
+            ScheduleGeneratorService.ConflictType type) {
+        assertEquals(departure, conflict.getDepartureTime());
+        assertEquals(departure.plusMinutes(120), conflict.getArrivalTime());
+        assertEquals(type, conflict.getType());
+    }
+
+    private static List<LocalDateTime> departures(List<BerthAllocationService.Sailing> sailings) {
+        return sailings.stream().map(BerthAllocationService.Sailing::getDepartureTime).toList();
+    }
+
+    private static LocalDateTime at(int hour, int minute) {
+        return DAY.atTime(hour, minute);
+    }
+
+    private static ResultSet row(Object[] values) {
+        return mock(ResultSet.class, invocation -> {
+            Object value = values[(Integer) invocation.getArgument(0) - 1];
+            return switch (invocation.getMethod().getName()) {
+                case "getTimestamp" -> Timestamp.valueOf((LocalDateTime) value);
+                case "getLong" -> ((Number) value).longValue();
+                case "getInt" -> ((Number) value).intValue();
+                default -> value;
+            };
+        });
+    }
+}
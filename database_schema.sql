@@ -54,6 +54,19 @@ CREATE TABLE ports (
     INDEX idx_is_active (is_active)
 );
 
+-- Berths of a port; a port without berths is not slot-checked
+CREATE TABLE berths (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    port_id BIGINT NOT NULL,
+    berth_code VARCHAR(20) NOT NULL,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+
+    FOREIGN KEY (port_id) REFERENCES ports(id) ON DELETE CASCADE,
+
+    UNIQUE KEY uk_port_berth (port_id, berth_code)
+);
+
 -- ================================================
 -- 3. ROUTES TABLE (Ferry Routes Between Ports)
 -- ================================================
@@ -114,7 +127,7 @@ CREATE TABLE schedules (
     ferry_id BIGINT NOT NULL,
     departure_time DATETIME NOT NULL,
     arrival_time DATETIME NOT NULL,
-    status ENUM('SCHEDULED', 'BOARDING', 'DEPARTED', 'ARRIVED', 'CANCELLED', 'DELAYED') DEFAULT 'SCHEDULED',
+    status ENUM('SCHEDULED', 'BOARDING', 'DEPARTED', 'ARRIVED', 'CANCELLED', 'DELAYED', 'MAINTENANCE', 'WEATHER_HOLD') DEFAULT 'SCHEDULED',
     available_vehicle_spaces INT,
     available_passenger_spaces INT,
     booking_deadline DATETIME,
@@ -133,7 +146,10 @@ CREATE TABLE schedules (
     INDEX idx_route_id (route_id),
     INDEX idx_ferry_id (ferry_id),
     INDEX idx_departure_time (departure_time),
-    INDEX idx_status (status)
+    INDEX idx_status (status),
+    INDEX idx_updated_at (updated_at),
+    -- Next sailings on a route, for disruption re-accommodation
+    INDEX idx_route_status_departure (route_id, status, departure_time)
 );
 
 -- ================================================
@@ -144,6 +160,7 @@ CREATE TABLE customers (
     customer_code VARCHAR(20) NOT NULL UNIQUE,
     account_id BIGINT NOT NULL,
     company_name VARCHAR(200),
+    customer_type ENUM('INDIVIDUAL', 'CORPORATION') NOT NULL DEFAULT 'INDIVIDUAL',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     
@@ -160,7 +177,7 @@ CREATE TABLE employees (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     employee_code VARCHAR(20) NOT NULL UNIQUE,
     account_id BIGINT NOT NULL,
-    position ENUM('MANAGER', 'SUPERVISOR', 'OPERATOR', 'ADMIN', 'CUSTOMER_SERVICE', 'FINANCE', 'SECURITY') NOT NULL,
+    position ENUM('MANAGER', 'SUPERVISOR', 'OPERATOR', 'ADMIN', 'CUSTOMER_SERVICE', 'FINANCE', 'SECURITY', 'PLANNER', 'OPERATION_MANAGER', 'ACCOUNTANT') NOT NULL,
     hire_date DATE,
     salary DECIMAL(10,2),
     is_active BOOLEAN DEFAULT TRUE,
@@ -208,6 +225,9 @@ CREATE TABLE bookings (
     passenger_count INT NOT NULL DEFAULT 0,
     vehicle_count INT NOT NULL DEFAULT 0,
     total_amount DECIMAL(10,2) NOT NULL DEFAULT 0.00,
+    -- Part of the booking taken from the customer's allotment rather than the public pool
+    allotted_vehicles INT NOT NULL DEFAULT 0,
+    allotted_passengers INT NOT NULL DEFAULT 0,
     status ENUM('PENDING', 'CONFIRMED', 'REJECTED', 'WAITING_FOR_PAYMENT', 'PAID', 'REFUNDED', 'IN_PROGRESS', 'CANCELLED', 'COMPLETED', 'IN_REVIEW', 'IN_REFUND') DEFAULT 'PENDING',
     booking_date DATETIME NOT NULL,
     expiry_date DATETIME,
@@ -229,7 +249,9 @@ CREATE TABLE bookings (
     INDEX idx_customer_id (customer_id),
     INDEX idx_schedule_id (schedule_id),
     INDEX idx_status (status),
-    INDEX idx_booking_date (booking_date)
+    INDEX idx_booking_date (booking_date),
+    -- Incremental refresh of the utilization snapshot
+    INDEX idx_updated_at (updated_at)
 );
 
 -- Update vehicles table to add foreign key after bookings table is created
@@ -255,10 +277,15 @@ CREATE TABLE approvals (
     rejected_by BIGINT,
     rejection_reason TEXT,
     rejected_at DATETIME,
+    -- Accountant work queue claim (ApprovalQueueService), not mapped by JPA
+    claimed_by BIGINT,
+    claimed_at DATETIME(3),
+    claim_expires_at DATETIME(3),
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     
     FOREIGN KEY (booking_id) REFERENCES bookings(id) ON DELETE CASCADE,
+    FOREIGN KEY (claimed_by) REFERENCES accounts(id) ON DELETE SET NULL,
     FOREIGN KEY (reviewed_by) REFERENCES accounts(id) ON DELETE SET NULL,
     FOREIGN KEY (approved_by) REFERENCES accounts(id) ON DELETE SET NULL,
     FOREIGN KEY (rejected_by) REFERENCES accounts(id) ON DELETE SET NULL,
@@ -266,6 +293,8 @@ CREATE TABLE approvals (
     INDEX idx_booking_id (booking_id),
     INDEX idx_status (status),
     INDEX idx_reviewed_by (reviewed_by),
+    INDEX idx_status_created_at (status, created_at),
+    INDEX idx_claimed_by (claimed_by, claim_expires_at),
     INDEX idx_approved_by (approved_by)
 );
 
@@ -327,6 +356,139 @@ CREATE TABLE booking_records (
     INDEX idx_created_at (created_at)
 );
 
+-- Hourly audit record counts per action, checkpointed by the application
+CREATE TABLE booking_record_rollups (
+    bucket_start DATETIME NOT NULL,
+    action VARCHAR(50) NOT NULL,
+    record_count BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (bucket_start, action)
+);
+
+-- Booking dashboard rollups, checkpointed by the application
+CREATE TABLE booking_status_counts (
+    status VARCHAR(32) PRIMARY KEY,
+    booking_count BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE booking_stats_hourly (
+    bucket_start DATETIME PRIMARY KEY,
+    bookings_created BIGINT NOT NULL DEFAULT 0,
+    revenue_created BIGINT NOT NULL DEFAULT 0 COMMENT 'cents',
+    bookings_completed BIGINT NOT NULL DEFAULT 0,
+    revenue_completed BIGINT NOT NULL DEFAULT 0 COMMENT 'cents',
+    bookings_cancelled BIGINT NOT NULL DEFAULT 0,
+    bookings_refunded BIGINT NOT NULL DEFAULT 0
+);
+
+-- Bumped by every rebuild of the rollups; nodes drop deltas recorded before rebuilt_from
+CREATE TABLE booking_stats_meta (
+    id TINYINT PRIMARY KEY,
+    generation BIGINT NOT NULL DEFAULT 0,
+    rebuilt_from DATETIME(3) NULL
+);
+
+-- Berth occupied by a sailing while boarding before departure or unloading after arrival
+CREATE TABLE berth_slots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    berth_id BIGINT NOT NULL,
+    schedule_id BIGINT NOT NULL,
+    slot_type ENUM('DEPARTURE', 'ARRIVAL') NOT NULL,
+    start_time DATETIME NOT NULL,
+    end_time DATETIME NOT NULL,
+
+    FOREIGN KEY (berth_id) REFERENCES berths(id) ON DELETE CASCADE,
+    FOREIGN KEY (schedule_id) REFERENCES schedules(id) ON DELETE CASCADE,
+
+    UNIQUE KEY uk_schedule_slot (schedule_id, slot_type),
+    INDEX idx_berth_start (berth_id, start_time)
+);
+
+-- Corporate capacity contracts: space held back on every matching sailing of a route
+CREATE TABLE capacity_allotments (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id BIGINT NOT NULL,
+    route_id BIGINT NOT NULL,
+    days_of_week INT NOT NULL DEFAULT 127 COMMENT 'bit 0 = Monday',
+    vehicle_spaces INT NOT NULL DEFAULT 0,
+    passenger_spaces INT NOT NULL DEFAULT 0,
+    release_hours INT NOT NULL DEFAULT 48 COMMENT 'unused space returns to the public pool this long before departure',
+    valid_from DATE NOT NULL,
+    valid_to DATE,
+    is_active BOOLEAN NOT NULL DEFAULT TRUE,
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE,
+    FOREIGN KEY (route_id) REFERENCES routes(id) ON DELETE CASCADE,
+
+    INDEX idx_route_active (route_id, is_active),
+    INDEX idx_customer_id (customer_id)
+);
+
+-- Space actually reserved on one sailing for an allotment
+CREATE TABLE schedule_allotments (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    allotment_id BIGINT NOT NULL,
+    schedule_id BIGINT NOT NULL,
+    customer_id BIGINT NOT NULL,
+    vehicle_spaces INT NOT NULL,
+    passenger_spaces INT NOT NULL,
+    used_vehicle_spaces INT NOT NULL DEFAULT 0,
+    used_passenger_spaces INT NOT NULL DEFAULT 0,
+    release_at DATETIME NOT NULL,
+    released_at DATETIME,
+
+    FOREIGN KEY (allotment_id) REFERENCES capacity_allotments(id) ON DELETE CASCADE,
+    FOREIGN KEY (schedule_id) REFERENCES schedules(id) ON DELETE CASCADE,
+
+    UNIQUE KEY uk_allotment_schedule (allotment_id, schedule_id),
+    -- At most one unreleased block per customer and sailing; allotments never overlap
+    INDEX idx_schedule_customer (schedule_id, customer_id),
+    -- Release sweep
+    INDEX idx_pending_release (released_at, release_at)
+);
+
+-- Leases for cluster-wide scheduled jobs (see JobLeaseService)
+CREATE TABLE job_leases (
+    name VARCHAR(150) PRIMARY KEY,
+    owner VARCHAR(150) NOT NULL,
+    fencing_token BIGINT NOT NULL,
+    acquired_at DATETIME(3) NOT NULL,
+    heartbeat_at DATETIME(3) NOT NULL,
+    expires_at DATETIME(3) NOT NULL,
+
+    INDEX idx_expires_at (expires_at)
+);
+
+-- Audit archive segment files in the shared archive directory (see AuditArchiveService).
+-- A segment's rows leave booking_records only when it is SEALED.
+CREATE TABLE audit_archive_segments (
+    name VARCHAR(100) PRIMARY KEY,
+    first_id BIGINT NOT NULL,
+    last_id BIGINT NOT NULL,
+    record_count INT NOT NULL,
+    status ENUM('PENDING', 'SEALED') NOT NULL,
+    created_at DATETIME(3) NOT NULL,
+    sealed_at DATETIME(3) NULL,
+    -- Set once every row of a sealed segment is deleted from booking_records
+    purged_at DATETIME(3) NULL
+);
+
+-- Nodes reading the audit archive, kept alive by their refresh
+CREATE TABLE audit_archive_readers (
+    node_id VARCHAR(150) PRIMARY KEY,
+    heartbeat_at DATETIME(3) NOT NULL
+);
+
+-- Segments each node has opened
+CREATE TABLE audit_archive_segment_readers (
+    segment_name VARCHAR(100) NOT NULL,
+    node_id VARCHAR(150) NOT NULL,
+    opened_at DATETIME(3) NOT NULL,
+    PRIMARY KEY (segment_name, node_id)
+);
+
 -- ================================================
 -- 13. NOTIFICATIONS TABLE (System Notifications)
 -- ================================================